@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import android.test.AndroidTestCase;
+
+import com.google.fpl.gim.examplegame.utils.CompiledMissionAssets;
+import com.google.fpl.gim.examplegame.utils.CompiledMissionLoader;
+import com.google.fpl.gim.examplegame.utils.MissionCatalog;
+import com.google.fpl.gim.examplegame.utils.MissionCatalogEntry;
+import com.google.fpl.gim.examplegame.utils.Utils;
+
+import junit.framework.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Tests the mission catalog index against parsing every mission.
+ */
+public class MissionCatalogTest extends AndroidTestCase {
+
+    private static final String TAG = MissionCatalogTest.class.getSimpleName();
+
+    private static final int NUM_TIMED_LOADS = 20;
+    private static final String INDEX_FILE_NAME = "mission_catalog.idx";
+    // Magic number, format version, index key, number of entries, and the first entry's content
+    // hash, number of Moments and estimated duration.
+    private static final int FIRST_STRING_LENGTH_OFFSET = 4 + 4 + 20 + 4 + 8 + 4 + 4;
+
+    public void setUp() {
+        Utils.logDebug(TAG, "Setting up...");
+        MissionCatalog.invalidate(getContext());
+    }
+
+    public void tearDown() {
+        Utils.logDebug(TAG, "Tearing down...");
+        MissionCatalog.invalidate(getContext());
+    }
+
+    /**
+     * Test that a catalog read from the index matches a catalog built by parsing every mission.
+     */
+    public void testIndexMatchesParsedMissions() throws IOException {
+        // Builds and writes the index.
+        MissionCatalog built = MissionCatalog.load(getContext());
+        // Reads the index.
+        MissionCatalog indexed = MissionCatalog.load(getContext());
+        MissionCatalog parsed = MissionCatalog.build(getContext().getAssets(), getMissionAssets());
+
+        assertEntriesEqual(parsed.getEntries(), built.getEntries());
+        assertEntriesEqual(parsed.getEntries(), indexed.getEntries());
+    }
+
+    /**
+     * Test that an invalidated index is rebuilt.
+     */
+    public void testInvalidate() {
+        MissionCatalog before = MissionCatalog.load(getContext());
+        MissionCatalog.invalidate(getContext());
+        MissionCatalog after = MissionCatalog.load(getContext());
+        assertEntriesEqual(before.getEntries(), after.getEntries());
+    }
+
+    /**
+     * Test that an index with a corrupt string length is rebuilt, rather than allocating the
+     * length it gives.
+     */
+    public void testCorruptIndexIsRebuilt() throws IOException {
+        MissionCatalog before = MissionCatalog.load(getContext());
+        RandomAccessFile indexFile = new RandomAccessFile(
+                new File(getContext().getCacheDir(), INDEX_FILE_NAME), "rw");
+        try {
+            indexFile.seek(FIRST_STRING_LENGTH_OFFSET);
+            indexFile.writeInt(Integer.MAX_VALUE);
+        } finally {
+            indexFile.close();
+        }
+
+        int numBuilds = MissionCatalog.getNumBuilds();
+        MissionCatalog after = MissionCatalog.load(getContext());
+        Assert.assertEquals(numBuilds + 1, MissionCatalog.getNumBuilds());
+        assertEntriesEqual(before.getEntries(), after.getEntries());
+    }
+
+    /**
+     * Test that loading the catalog once the index is written reads the index without parsing any
+     * mission. Both times are logged, but not compared, as they depend on the device.
+     */
+    public void testIndexLoadDoesNotParse() throws IOException {
+        String[] assetNames = getMissionAssets();
+        // The first load builds and writes the index.
+        MissionCatalog.load(getContext());
+        int numBuilds = MissionCatalog.getNumBuilds();
+
+        long indexStartNanos = System.nanoTime();
+        for (int i = 0; i < NUM_TIMED_LOADS; i++) {
+            MissionCatalog.load(getContext());
+        }
+        long indexNanos = System.nanoTime() - indexStartNanos;
+        Assert.assertEquals(numBuilds, MissionCatalog.getNumBuilds());
+
+        long parseStartNanos = System.nanoTime();
+        for (int i = 0; i < NUM_TIMED_LOADS; i++) {
+            MissionCatalog.build(getContext().getAssets(), assetNames);
+        }
+        long parseNanos = System.nanoTime() - parseStartNanos;
+
+        Utils.logDebug(TAG, "Loading the index took " + (indexNanos / NUM_TIMED_LOADS)
+                + "ns, parsing every mission took " + (parseNanos / NUM_TIMED_LOADS) + "ns.");
+    }
+
+    /**
+     * Test that every mission that parses has a compiled form built from its current XML.
+     */
+    public void testCompiledMissionsUpToDate() throws Exception {
+        MissionCatalog catalog = MissionCatalog.load(getContext());
+        for (MissionCatalogEntry entry : catalog.getEntries()) {
+            if (entry.getNumMoments() == 0) {
+                // Missions that fail to parse are not compiled.
+                continue;
+            }
+            ByteBuffer compiledMission =
+                    CompiledMissionAssets.map(getContext().getAssets(), entry.getAssetPath());
+            Assert.assertEquals(entry.getAssetName() + " must be recompiled.",
+                    entry.getContentHash(),
+                    CompiledMissionLoader.readSourceChecksum(compiledMission));
+        }
+    }
+
+    private String[] getMissionAssets() throws IOException {
+        String[] assetNames =
+                getContext().getAssets().list(MissionCatalog.MISSION_ASSET_FOLDER_NAME);
+        Arrays.sort(assetNames);
+        return assetNames;
+    }
+
+    private void assertEntriesEqual(ArrayList<MissionCatalogEntry> expected,
+            ArrayList<MissionCatalogEntry> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            MissionCatalogEntry expectedEntry = expected.get(i);
+            MissionCatalogEntry actualEntry = actual.get(i);
+            Assert.assertEquals(expectedEntry.getAssetName(), actualEntry.getAssetName());
+            Assert.assertEquals(expectedEntry.getAssetPath(), actualEntry.getAssetPath());
+            Assert.assertEquals(expectedEntry.getMissionName(), actualEntry.getMissionName());
+            Assert.assertEquals(expectedEntry.getNumMoments(), actualEntry.getNumMoments());
+            Assert.assertEquals(expectedEntry.getEstimatedDurationMinutes(),
+                    actualEntry.getEstimatedDurationMinutes());
+            Assert.assertEquals(expectedEntry.getContentHash(), actualEntry.getContentHash());
+        }
+    }
+}
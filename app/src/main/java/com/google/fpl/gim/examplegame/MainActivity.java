@@ -36,9 +36,11 @@ import com.google.fpl.gim.examplegame.gui.FitnessDataDisplayFragment;
 import com.google.fpl.gim.examplegame.gui.GameViews;
 import com.google.fpl.gim.examplegame.gui.NotificationOptions;
 import com.google.fpl.gim.examplegame.google.GoogleApiClientWrapper;
+import com.google.fpl.gim.examplegame.utils.AndroidLogger;
 import com.google.fpl.gim.examplegame.utils.Utils;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * MainActivity class on the UI thread. It has a game handler for the game loop to execute on.
@@ -53,8 +55,9 @@ public class MainActivity extends ActionBarActivity {
             = "com.google.fpl.gim.examplegame.MISSION_START";
     public static final String MISSION_END
             = "com.google.fpl.gim.examplegame.MISSION_END";
-    private static final String UPDATE_FITNESS_STATS
-            = "com.google.fpl.gim.examplegame.UPDATE_FITNESS_STATS";
+
+    // The speed chart of the end screen averages the run into this many points.
+    private static final int NUM_SPEED_CHART_POINTS = 60;
 
     private MainService mMainService; // Service that runs the game logic.
     private GameViews mGameViews; // Container for all UI fragments.
@@ -78,10 +81,8 @@ public class MainActivity extends ActionBarActivity {
             filter.addAction(MISSION_END);
             registerReceiver(mReceiver, filter);
 
-            // Render the mReceiver with an intent filter for displaying an updated num steps
-            filter = new IntentFilter();
-            filter.addAction(UPDATE_FITNESS_STATS);
-            registerReceiver(mReceiver, filter);
+            // Receive the fitness stats while the service is bound.
+            mMainService.setFitnessStatsObserver(mFitnessStatsObserver);
         }
 
         public void onServiceDisconnected(ComponentName className) {
@@ -89,22 +90,39 @@ public class MainActivity extends ActionBarActivity {
         }
     };
 
-    private BroadcastReceiver mReceiver = new BroadcastReceiver() {
+    // The latest fitness stats not yet shown. The service sends them on the game thread; however
+    // many arrive before the UI thread gets to them, only the latest is shown, once.
+    private final AtomicReference<FitnessSnapshot> mPendingFitnessStats = new AtomicReference<>();
+
+    private final FitnessStatsChannel.Observer mFitnessStatsObserver =
+            new FitnessStatsChannel.Observer() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            // Update the step display fragment to show the current number of steps that the user
-            // has taken.
-            if (intent.getAction().equals(UPDATE_FITNESS_STATS)) {
-                if (mMainService != null) {
-                    FitnessDataDisplayFragment fitnessDataDisplayFragment
-                                = mGameViews.getFitnessDataDisplayFragment();
-                    if (fitnessDataDisplayFragment.isVisible()) {
-                        fitnessDataDisplayFragment.setFitnessStats(
-                                mMainService.getCurrentMission());
-                    }
-                }
+        public void onFitnessStats(FitnessSnapshot snapshot) {
+            if (mPendingFitnessStats.getAndSet(snapshot) == null) {
+                runOnUiThread(mShowFitnessStats);
             }
+        }
+    };
 
+    private final Runnable mShowFitnessStats = new Runnable() {
+        @Override
+        public void run() {
+            // Update the fitness display fragment to show the current stats of the user.
+            FitnessSnapshot snapshot = mPendingFitnessStats.getAndSet(null);
+            if (snapshot == null || mMainService == null) {
+                return;
+            }
+            FitnessDataDisplayFragment fitnessDataDisplayFragment
+                    = mGameViews.getFitnessDataDisplayFragment();
+            if (fitnessDataDisplayFragment.isVisible()) {
+                fitnessDataDisplayFragment.setFitnessStats(snapshot);
+            }
+        }
+    };
+
+    private BroadcastReceiver mReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
             // Receives an intent that requests back button to be enabled.
             if (intent.getAction().equals(ENABLE_BACK)) {
                 getFragmentManager().popBackStack();
@@ -229,6 +247,16 @@ public class MainActivity extends ActionBarActivity {
         }
     }
 
+    /**
+     * Starts loading a mission in the background as soon as it is selected.
+     * @param missionFilePath The path of the mission XML file within the assets folder.
+     */
+    public void prefetchMission(String missionFilePath) {
+        if (mMainService != null) {
+            mMainService.prefetchMission(missionFilePath);
+        }
+    }
+
     public void displayHomeUp(boolean display) {
         getSupportActionBar().setDisplayHomeAsUpEnabled(display);
         getSupportActionBar().setHomeButtonEnabled(display);
@@ -300,6 +328,7 @@ public class MainActivity extends ActionBarActivity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        AndroidLogger.install();
         Utils.logDebug(TAG, "onCreate");
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
@@ -342,6 +371,9 @@ public class MainActivity extends ActionBarActivity {
         } catch (IllegalArgumentException e) {
             Utils.logDebug(TAG, "Unable to unregister the Broadcast Receiver.");
         }
+        if (mMainService != null) {
+            mMainService.setFitnessStatsObserver(null);
+        }
         // Unbind to allow service to run in the background.
         unbindService(mConnection);
     }
@@ -397,13 +429,16 @@ public class MainActivity extends ActionBarActivity {
         // Get results.
         ArrayList<String> fictionalProgress = new ArrayList<>();
         ArrayList<String> fitnessResults = new ArrayList<>();
+        float[] speedChart = new float[0];
         if (mMainService != null) {
             fictionalProgress.addAll(mMainService.getOverallFictionalProgress());
             fitnessResults.addAll(mMainService.getFitnessStatistics());
+            speedChart = mMainService.getSpeedChart(NUM_SPEED_CHART_POINTS);
         }
 
         // Display results.
-        mGameViews.getEndSummaryFragment().displayStats(fictionalProgress, fitnessResults);
+        mGameViews.getEndSummaryFragment().displayStats(fictionalProgress, fitnessResults,
+                speedChart);
 
         // Unlock first mission achievement
         if(mMainService.unlockAchievement(getString(R.string.ach_id_first_mission))) {
@@ -17,6 +17,7 @@
 package com.google.fpl.gim.examplegame;
 
 import android.app.Activity;
+import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
 import android.content.BroadcastReceiver;
@@ -28,8 +29,12 @@ import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Looper;
 import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.text.TextUtils;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.NotificationManagerCompat;
 import android.widget.Toast;
@@ -37,25 +42,50 @@ import android.widget.Toast;
 import com.google.android.gms.games.Games;
 import com.google.fpl.gim.examplegame.gui.GameViews;
 import com.google.fpl.gim.examplegame.gui.NotificationOptions;
+import com.google.fpl.gim.examplegame.google.FitMissionSensors;
 import com.google.fpl.gim.examplegame.google.GoogleApiClientWrapper;
+import com.google.fpl.gim.examplegame.utils.AndroidLogger;
+import com.google.fpl.gim.examplegame.utils.Clock;
+import com.google.fpl.gim.examplegame.utils.CompiledMissionAssets;
+import com.google.fpl.gim.examplegame.utils.CompiledMissionLoader;
 import com.google.fpl.gim.examplegame.utils.MissionParseException;
+import com.google.fpl.gim.examplegame.utils.MissionParser;
+import com.google.fpl.gim.examplegame.utils.MissionTemplateCache;
+import com.google.fpl.gim.examplegame.utils.MissionValidator;
+import com.google.fpl.gim.examplegame.utils.RunRecorder;
+import com.google.fpl.gim.examplegame.utils.SensorSampleQueue;
+import com.google.fpl.gim.examplegame.utils.StrideModel;
+import com.google.fpl.gim.examplegame.utils.StrideModelStore;
 import com.google.fpl.gim.examplegame.utils.Utils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Locale;
 import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
- * This is a Runnable for executing on the UI thread, and will add itself back
- * to the UI thread handler at the end of the run() function.
+ * This is a Runnable for executing on the game thread, and will add itself back
+ * to the game thread handler at the end of the run() function, for the next time the
+ * mission needs to be updated.
  *
- * While it will block the UI thread while running, it shouldn't block for that long.
- * We could always make a game thread if needed.
+ * The mission, the audio queue and the MediaPlayer are only used on the game thread, so the
+ * UI thread is never blocked by the game. Calls from the UI and callbacks from other threads are
+ * passed to the game thread with runOnGameThread(), and the game passes its results to the UI in
+ * broadcasts.
  */
-public class MainService extends Service implements Runnable, MediaPlayer.OnCompletionListener {
+public class MainService extends Service
+        implements Runnable, MediaPlayer.OnCompletionListener, MissionHost {
 
     private final IBinder mBinder = new MainBinder();
     private static final String TAG = MainService.class.getSimpleName();
@@ -66,6 +96,14 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
             = "com.google.fpl.gim.examplegame.CHOICE_NOTIFICATION_ACTION_2";
     private static final String CHOICE_NOTIFICATION_ACTION_3
             = "com.google.fpl.gim.examplegame.CHOICE_NOTIFICATION_ACTION_3";
+    private static final String[] CHOICE_NOTIFICATION_ACTIONS = {CHOICE_NOTIFICATION_ACTION_1,
+            CHOICE_NOTIFICATION_ACTION_2, CHOICE_NOTIFICATION_ACTION_3};
+    private static final String CHOICE_ID_KEY
+            = "com.google.fpl.gim.examplegame.CHOICE_ID_KEY";
+    private static final String ICON_RESOURCE_FOLDER = "drawable";
+
+    // The UI is sent the fitness stats no more often than this, however often they change.
+    private static final float MAXIMUM_FITNESS_STATS_UPDATES_PER_SECOND = 4f;
 
     // Ids for notifications.
     public static final int CHOICE_NOTIFICATION_ID = 1;
@@ -73,25 +111,78 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
     public static final int FITNESS_DISCONNECT_NOTIFICATION_ID = 3;
 
     private static final Locale DEFAULT_TEXT_TO_SPEECH_LOCALE = Locale.UK;
+    // Buffer time before speaking with TextToSpeech.
+    private static final long SILENCE_LENGTH_MILLIS = 500;
+
+    private static final long[] CHOICE_VIBRATE_PATTERN = {0, 300, 100, 300, 100, 300};
+
+    // The game reads the time from this.
+    private final Clock mClock = Clock.SYSTEM;
 
     private Mission mMission; // The mission being played. Has reference to current game state.
 
-    private static final long DELAY_MILLIS = 1000; // Time between updates, used as Handler delay.
-    private Handler mUpdateHandler = new Handler();
+    // Recently played missions, kept parsed so that replaying them does not load them again.
+    private static final int MAX_CACHED_MISSION_TEMPLATES = 4;
+    private final MissionTemplateCache mMissionTemplateCache =
+            new MissionTemplateCache(MAX_CACHED_MISSION_TEMPLATES);
+
+    // Loads the selected mission in the background. Only accessed from the game thread.
+    private final ExecutorService mMissionLoader = Executors.newSingleThreadExecutor();
+    // How long the service waits, when destroyed, for the stride model to finish saving.
+    private static final long MISSION_LOADER_SHUTDOWN_TIMEOUT_SECONDS = 2;
+    private Future<MissionTemplate> mPrefetchedTemplate;
+    private String mPrefetchedMissionFilePath;
+
+    // The stride model of the player of the last mission, which each mission goes on training.
+    // It is read in the background with the prefetch when the player changes, and saved in the
+    // background when a mission ends. Only accessed from the game thread.
+    private StrideModelStore mStrideModelStore;
+    private StrideModel mStrideModel;
+    private String mStrideModelPlayerId;
+    private Future<StrideModel> mPrefetchedStrideModel;
+    private String mPrefetchedStrideModelPlayerId;
+
+    // The game loop runs when the mission next needs it, rather than at a fixed rate. It only
+    // polls, at this interval, while waiting for the mission to be ready or for audio focus.
+    private static final long DELAY_MILLIS = 1000;
+    private HandlerThread mGameThread;
+    private Handler mUpdateHandler;
+
+    // Runs the few things that must be done on the UI thread, such as showing a Toast.
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    // Whether the UI is bound, and so needs its clock updated every second.
+    private volatile boolean mIsUiBound = false;
+
+    // The number of times the game loop has run during the current mission.
+    private int mNumMissionUpdates;
+
+    // Sends the fitness stats to the UI while it is bound. Only used on the game thread.
+    private final FitnessStatsChannel mFitnessStatsChannel =
+            new FitnessStatsChannel(MAXIMUM_FITNESS_STATS_UPDATES_PER_SECOND);
+    private boolean mIsFitnessStatsFlushScheduled = false;
+    private final Runnable mFlushFitnessStats = new Runnable() {
+        @Override
+        public void run() {
+            mIsFitnessStatsFlushScheduled = false;
+            flushFitnessStats();
+        }
+    };
 
     // Audio related modules.
     private TextToSpeech mTextToSpeech;
-    private boolean mIsTextToSpeechReady = false;
+    private volatile boolean mIsTextToSpeechReady = false;
     private AudioManager mAudioManager;
     private AudioManager.OnAudioFocusChangeListener mAudioFocusChangeListener;
+    // Created on the game thread, so that its callbacks are delivered there.
     private MediaPlayer mMediaPlayer;
 
     // A queue of Audio Uris to be played.
     private class AudioQueueItem{
-        Uri mUri;
-        MediaPlayer.OnCompletionListener mListener;
+        String mUri;
+        MissionAudio.PlaybackListener mListener;
 
-        AudioQueueItem(Uri uri, MediaPlayer.OnCompletionListener listener) {
+        AudioQueueItem(String uri, MissionAudio.PlaybackListener listener) {
             mUri = uri;
             mListener = listener;
         }
@@ -105,6 +196,8 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
         }
     }
     private Queue<AudioQueueItem> mAudioQueue = new LinkedList<>();
+    // The item the MediaPlayer is playing, if any.
+    private AudioQueueItem mPlayingItem;
 
     private enum State {
         UNINITIALIZED,
@@ -112,24 +205,32 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
         MISSION_RUNNING,
         END_SCREEN
     }
-    private State mState = State.UNINITIALIZED;
+    // Only changed on the game thread, but also read by the UI.
+    private volatile State mState = State.UNINITIALIZED;
 
     private GoogleApiClientWrapper mGoogleApiClientWrapper =
             new GoogleApiClientWrapper(); // Container for the GoogleApiClient
 
     private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            if (mMission != null && mMission.getMissionData().getCurrentMoment() != null) {
-                // Choice moment handles choice selection.
-                ((ChoiceMoment) mMission.getMissionData().getCurrentMoment())
-                        .onReceive(context, intent);
-            }
+        public void onReceive(final Context context, final Intent intent) {
+            runOnGameThread(new Runnable() {
+                @Override
+                public void run() {
+                    if (mMission != null && mMission.getMissionData().getCurrentMoment()
+                            instanceof ChoiceMoment) {
+                        // Choice moment handles choice selection.
+                        ((ChoiceMoment) mMission.getMissionData().getCurrentMoment())
+                                .selectChoice(intent.getStringExtra(CHOICE_ID_KEY));
+                    }
+                }
+            });
         }
     };
 
     /**
-     * This is the main game loop. Whenever it is done, it adds itself back to the handler.
+     * This is the main game loop. Whenever it is done, it schedules itself for the next time the
+     * mission needs to be updated.
      */
     @Override
     public void run() {
@@ -137,7 +238,66 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
             // This is where we can call the game state and the game logic.
             update();
         }
-        mUpdateHandler.postDelayed(this, DELAY_MILLIS);
+        scheduleUpdate();
+    }
+
+    /**
+     * Schedules the single pending run of the game loop for the earliest deadline of the mission,
+     * replacing any run that is already scheduled.
+     */
+    private void scheduleUpdate() {
+        mUpdateHandler.removeCallbacks(this);
+        if (mState != State.MISSION_LOADED && mState != State.MISSION_RUNNING) {
+            return;
+        }
+
+        long nowNanos = mClock.nanoTime();
+        long pollNanos = nowNanos + Utils.secondsToNanos(DELAY_MILLIS / 1000f);
+        long deadlineNanos;
+        if (mState == State.MISSION_LOADED) {
+            deadlineNanos = pollNanos;
+        } else {
+            deadlineNanos = mMission.getNextDeadlineNanos();
+            if (mIsUiBound) {
+                deadlineNanos = Math.min(deadlineNanos, mMission.getNextSecondNanos());
+            }
+            if (!mAudioQueue.isEmpty()) {
+                deadlineNanos = Math.min(deadlineNanos, pollNanos);
+            }
+        }
+
+        // Round up, so that the loop never runs just before the deadline.
+        long delayMillis = Math.max(0, (deadlineNanos - nowNanos + 999999) / 1000000);
+        mUpdateHandler.postDelayed(this, delayMillis);
+    }
+
+    @Override
+    public Clock getClock() {
+        return mClock;
+    }
+
+    /**
+     * Runs the game loop as soon as possible, such as when a Moment finishes because of an event.
+     * May be called from any thread.
+     */
+    @Override
+    public void requestUpdate() {
+        mUpdateHandler.post(this);
+    }
+
+    /**
+     * Runs a task on the game thread, straight away if called from it, or otherwise as soon as
+     * the game thread is free. Anything that touches the mission or audio state from another
+     * thread must go through here.
+     * @param task The task to run.
+     */
+    @Override
+    public void runOnGameThread(Runnable task) {
+        if (Looper.myLooper() == mUpdateHandler.getLooper()) {
+            task.run();
+        } else {
+            mUpdateHandler.post(task);
+        }
     }
 
     public void userAuthenticated() {
@@ -170,36 +330,178 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
     }
 
     /**
-     * Loads and begins a mission.
+     * Loads and begins a mission, on the game thread.
      */
-    public void loadAndStartMission(String missionFilePath, String missionName,
-                                    float missionLengthMinutes, float intervalLengthMinutes,
-                                    float challengePaceMinutesPerMile) {
+    public void loadAndStartMission(final String missionFilePath, final String missionName,
+                                    final float missionLengthMinutes,
+                                    final float intervalLengthMinutes,
+                                    final float challengePaceMinutesPerMile) {
+        runOnGameThread(new Runnable() {
+            @Override
+            public void run() {
+                loadAndStartMissionOnGameThread(missionFilePath, missionName,
+                        missionLengthMinutes, intervalLengthMinutes, challengePaceMinutesPerMile);
+            }
+        });
+    }
+
+    private void loadAndStartMissionOnGameThread(String missionFilePath, String missionName,
+                                                 float missionLengthMinutes,
+                                                 float intervalLengthMinutes,
+                                                 float challengePaceMinutesPerMile) {
         if (!canEnterState(State.MISSION_LOADED)) {
             return;
         }
         MissionData data = new MissionData(missionName, missionFilePath, missionLengthMinutes,
                 intervalLengthMinutes, challengePaceMinutesPerMile);
-        mMission = new Mission(data);
-        mMission.setService(this);
+        mMission = new Mission(data, mClock);
+        mMission.setHost(this);
+        mMission.setStrideModel(getStrideModel());
+        mMission.setPublishingFitnessSnapshots(mFitnessStatsChannel.hasObserver());
+
+        // Take the mission parsed in the background when it was selected. Otherwise reuse it if
+        // it has been played recently, or load it now.
+        MissionTemplate template = takePrefetchedTemplate(missionFilePath);
+        if (template == null) {
+            template = mMissionTemplateCache.get(missionFilePath);
+        }
+        if (template == null) {
+            template = loadTemplate(missionFilePath);
+        }
+        if (template == null) {
+            requestReselection();
+            return;
+        }
+        mMission.setTemplate(template);
+        startMission();
+    }
+
+    /**
+     * Starts loading a mission on a worker thread, so that it is ready by the time the player has
+     * chosen their run specifications. Any other mission being prefetched is cancelled.
+     * @param missionFilePath The path of the mission XML file within the assets folder.
+     */
+    public void prefetchMission(final String missionFilePath) {
+        runOnGameThread(new Runnable() {
+            @Override
+            public void run() {
+                prefetchMissionOnGameThread(missionFilePath);
+            }
+        });
+    }
 
+    private void prefetchMissionOnGameThread(final String missionFilePath) {
+        prefetchStrideModel();
+        if (missionFilePath.equals(mPrefetchedMissionFilePath)) {
+            return;
+        }
+        cancelPrefetch();
+        if (mMissionTemplateCache.get(missionFilePath) != null) {
+            return;
+        }
+        Utils.logDebug(TAG, "Prefetching " + missionFilePath + ".");
+        mPrefetchedMissionFilePath = missionFilePath;
+        mPrefetchedTemplate = mMissionLoader.submit(new Callable<MissionTemplate>() {
+            @Override
+            public MissionTemplate call() {
+                return loadTemplate(missionFilePath);
+            }
+        });
+    }
+
+    /**
+     * Hands over the mission being prefetched, waiting for it to finish loading if needed. A
+     * prefetch of any other mission is cancelled.
+     * @param missionFilePath The path of the mission XML file within the assets folder.
+     * @return The prefetched mission, or null if it was not prefetched or could not be loaded.
+     */
+    private MissionTemplate takePrefetchedTemplate(String missionFilePath) {
+        if (!missionFilePath.equals(mPrefetchedMissionFilePath)) {
+            cancelPrefetch();
+            return null;
+        }
+        Future<MissionTemplate> prefetchedTemplate = mPrefetchedTemplate;
+        mPrefetchedTemplate = null;
+        mPrefetchedMissionFilePath = null;
+        try {
+            return prefetchedTemplate.get();
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Cancels the mission being prefetched, if there is one.
+     */
+    private void cancelPrefetch() {
+        if (mPrefetchedTemplate != null) {
+            Utils.logDebug(TAG, "Cancelling prefetch of " + mPrefetchedMissionFilePath + ".");
+            mPrefetchedTemplate.cancel(true);
+            mPrefetchedTemplate = null;
+            mPrefetchedMissionFilePath = null;
+        }
+    }
+
+    /**
+     * Loads a mission, preferring its compiled form, and caches it. Called from both the game
+     * thread and the prefetch thread.
+     * @param missionFilePath The path of the mission XML file within the assets folder.
+     * @return The loaded mission, or null if it could not be loaded.
+     */
+    private MissionTemplate loadTemplate(String missionFilePath) {
+        MissionTemplate template = readCompiledTemplate(missionFilePath);
+        if (template == null) {
+            template = readXmlTemplate(missionFilePath);
+        }
+        if (template != null) {
+            mMissionTemplateCache.put(missionFilePath, template);
+        }
+        return template;
+    }
+
+    /**
+     * Loads the current mission from its compiled form, if there is one.
+     * @param missionFilePath The path of the mission XML file within the assets folder.
+     * @return The loaded mission, or null if it could not be loaded.
+     */
+    private MissionTemplate readCompiledTemplate(String missionFilePath) {
+        ByteBuffer compiledMission;
+        try {
+            compiledMission = CompiledMissionAssets.map(getAssets(), missionFilePath);
+        } catch (IOException e) {
+            Utils.logDebug(TAG, "No compiled form of " + missionFilePath + ", reading XML.");
+            return null;
+        }
+
+        try {
+            return CompiledMissionLoader.loadTemplate(compiledMission);
+        } catch (MissionParseException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Loads the current mission by parsing its XML.
+     * @param missionFilePath The path of the mission XML file within the assets folder.
+     * @return The parsed mission, or null if it could not be parsed.
+     */
+    private MissionTemplate readXmlTemplate(String missionFilePath) {
         // Open an InputStream from the given missionFileName.
         InputStream missionStream;
         try {
             missionStream = getAssets().open(missionFilePath);
         } catch (IOException e) {
             e.printStackTrace();
-            requestReselection();
-            return;
+            return null;
         }
 
-        // Load the Moments.
+        MissionTemplate template = null;
         try {
-            mMission.readMoments(missionStream);
+            template = MissionParser.parseMissionTemplate(missionStream);
         } catch (MissionParseException e) {
             e.printStackTrace();
-            requestReselection();
-            return;
         }
 
         try {
@@ -207,7 +509,98 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
         } catch (IOException e) {
             e.printStackTrace();
         }
-        startMission();
+
+        if (template == null) {
+            logValidationReport(missionFilePath);
+        }
+        return template;
+    }
+
+    /**
+     * Logs every problem in a mission that could not be loaded, so that they can all be fixed at
+     * once.
+     * @param missionFilePath The path of the mission XML file within the assets folder.
+     */
+    private void logValidationReport(String missionFilePath) {
+        try {
+            InputStream missionStream = getAssets().open(missionFilePath);
+            Utils.logDebug(TAG, missionFilePath + ": "
+                    + MissionValidator.validate(missionStream));
+            missionStream.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Starts reading the stride model of the signed in player on the mission loader's thread, if
+     * the player has changed since the last mission. Any save queued before it is read first.
+     */
+    private void prefetchStrideModel() {
+        final String playerId = mGoogleApiClientWrapper.getCurrentPlayerId();
+        if ((mStrideModel != null && TextUtils.equals(playerId, mStrideModelPlayerId))
+                || (mPrefetchedStrideModel != null
+                        && TextUtils.equals(playerId, mPrefetchedStrideModelPlayerId))) {
+            return;
+        }
+        mPrefetchedStrideModelPlayerId = playerId;
+        mPrefetchedStrideModel = mMissionLoader.submit(new Callable<StrideModel>() {
+            @Override
+            public StrideModel call() {
+                return mStrideModelStore.load(playerId);
+            }
+        });
+    }
+
+    /**
+     * Gets the stride model of the signed in player, taking the one prefetched for them if the
+     * player has changed since the last mission. It is only read on the game thread if it was not
+     * prefetched.
+     */
+    private StrideModel getStrideModel() {
+        String playerId = mGoogleApiClientWrapper.getCurrentPlayerId();
+        if (mStrideModel == null || !TextUtils.equals(playerId, mStrideModelPlayerId)) {
+            StrideModel strideModel = takePrefetchedStrideModel(playerId);
+            mStrideModel = strideModel != null ? strideModel : mStrideModelStore.load(playerId);
+            mStrideModelPlayerId = playerId;
+        }
+        return mStrideModel;
+    }
+
+    /**
+     * Hands over the stride model being prefetched, waiting for it to be read if needed.
+     * @param playerId The player whose model is needed.
+     * @return The prefetched model, or null if it was not prefetched for that player or could not
+     *         be read.
+     */
+    private StrideModel takePrefetchedStrideModel(String playerId) {
+        Future<StrideModel> prefetchedStrideModel = mPrefetchedStrideModel;
+        boolean isForPlayer = TextUtils.equals(playerId, mPrefetchedStrideModelPlayerId);
+        mPrefetchedStrideModel = null;
+        mPrefetchedStrideModelPlayerId = null;
+        if (prefetchedStrideModel == null || !isForPlayer) {
+            return null;
+        }
+        try {
+            return prefetchedStrideModel.get();
+        } catch (InterruptedException | ExecutionException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Saves the stride model trained by the mission, on the mission loader's thread.
+     */
+    private void saveStrideModel() {
+        final String playerId = mStrideModelPlayerId;
+        final byte[] model = StrideModelStore.toBytes(mStrideModel);
+        mMissionLoader.execute(new Runnable() {
+            @Override
+            public void run() {
+                mStrideModelStore.save(playerId, model);
+            }
+        });
     }
 
     /**
@@ -221,19 +614,31 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
      * Ends a mission by halting updates.
      */
     public void endMission() {
-        setAndInitNextState(State.END_SCREEN);
+        runOnGameThread(new Runnable() {
+            @Override
+            public void run() {
+                setAndInitNextState(State.END_SCREEN);
+            }
+        });
     }
 
     @Override
     public void onCreate() {
         // The service is being created.
+        AndroidLogger.install();
         Utils.logDebug(TAG, "onCreate");
+        mGameThread = new HandlerThread("GameThread");
+        mGameThread.start();
+        mUpdateHandler = new Handler(mGameThread.getLooper());
+
         IntentFilter intentFilter = new IntentFilter();
         intentFilter.addAction(CHOICE_NOTIFICATION_ACTION_1);
         intentFilter.addAction(CHOICE_NOTIFICATION_ACTION_2);
         intentFilter.addAction(CHOICE_NOTIFICATION_ACTION_3);
         registerReceiver(mReceiver, intentFilter);
 
+        mStrideModelStore = new StrideModelStore(getFilesDir());
+
         mAudioManager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
 
         // Determines the behavior for handling Audio Focus surrender.
@@ -242,25 +647,12 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
             public void onAudioFocusChange(int focusChange) {
                 if (focusChange == AudioManager.AUDIOFOCUS_LOSS_TRANSIENT
                         || focusChange == AudioManager.AUDIOFOCUS_LOSS) {
-
-                    if (mTextToSpeech.isSpeaking()) {
-                        mTextToSpeech.setOnUtteranceProgressListener(null);
-                        mTextToSpeech.stop();
-                    }
-
-                    if (mMediaPlayer.isPlaying()) {
-                        mMediaPlayer.stop();
-                    }
-
-                    // Abandon Audio Focus, if it's requested elsewhere.
-                    mAudioManager.abandonAudioFocus(mAudioFocusChangeListener);
-
-                    // Restart the current moment if AudioFocus was lost. Since AudioFocus is only
-                    // requested away from this application if this application was using it,
-                    // only Moments that play sound will restart in this way.
-                    if (mMission != null) {
-                        mMission.restartMoment();
-                    }
+                    runOnGameThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            onAudioFocusLost();
+                        }
+                    });
                 }
             }
         };
@@ -293,7 +685,36 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
             }
         });
 
-        mMediaPlayer = new MediaPlayer();
+        runOnGameThread(new Runnable() {
+            @Override
+            public void run() {
+                mMediaPlayer = new MediaPlayer();
+            }
+        });
+    }
+
+    /**
+     * Stops all audio when another application takes audio focus.
+     */
+    private void onAudioFocusLost() {
+        if (mTextToSpeech.isSpeaking()) {
+            mTextToSpeech.setOnUtteranceProgressListener(null);
+            mTextToSpeech.stop();
+        }
+
+        if (mMediaPlayer.isPlaying()) {
+            mMediaPlayer.stop();
+        }
+
+        // Abandon Audio Focus, if it's requested elsewhere.
+        mAudioManager.abandonAudioFocus(mAudioFocusChangeListener);
+
+        // Restart the current moment if AudioFocus was lost. Since AudioFocus is only
+        // requested away from this application if this application was using it,
+        // only Moments that play sound will restart in this way.
+        if (mMission != null) {
+            mMission.restartMoment();
+        }
     }
 
     @Override
@@ -307,6 +728,8 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
     public IBinder onBind(Intent intent) {
         // A client is binding to the service with bindService()
         Utils.logDebug(TAG, "onBind");
+        mIsUiBound = true;
+        requestUpdate();
 
         return mBinder;
     }
@@ -315,6 +738,8 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
     public boolean onUnbind(Intent intent) {
         // All clients have unbound with unbindService()
         Utils.logDebug(TAG, "onUnbind");
+        mIsUiBound = false;
+        setFitnessStatsObserver(null);
         return true;
     }
 
@@ -323,10 +748,17 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
         // A client is binding to the service with bindService(),
         // after onUnbind() has already been called
         Utils.logDebug(TAG, "onRebind");
+        mIsUiBound = true;
+        requestUpdate();
 
-        if (mMission != null) {
-            mMission.onRebind();
-        }
+        runOnGameThread(new Runnable() {
+            @Override
+            public void run() {
+                if (mMission != null) {
+                    mMission.onRebind();
+                }
+            }
+        });
     }
 
     @Override
@@ -337,23 +769,55 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
         if (mIsTextToSpeechReady) {
             mTextToSpeech.shutdown();
         }
-        if (mMediaPlayer != null) {
-            mMediaPlayer.reset();
-        }
         mUpdateHandler.removeCallbacks(this);
+        mUpdateHandler.removeCallbacks(mFlushFitnessStats);
         unregisterReceiver(mReceiver);
-        if (mMission != null) {
-            mMission.cleanup();
-        }
+
+        // Clean up the game thread's state on the game thread, after anything already posted.
+        mUpdateHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mMediaPlayer != null) {
+                    mMediaPlayer.reset();
+                }
+                cancelPrefetch();
+                if (mMission != null) {
+                    mMission.cleanup();
+                    // Keep what the player's stride was learned to be, as when the mission ends.
+                    if (mState == State.MISSION_RUNNING) {
+                        saveStrideModel();
+                    }
+                }
+                // Let the stride model finish saving, but not for long.
+                mMissionLoader.shutdown();
+                try {
+                    if (!mMissionLoader.awaitTermination(MISSION_LOADER_SHUTDOWN_TIMEOUT_SECONDS,
+                            TimeUnit.SECONDS)) {
+                        Utils.logDebug(TAG, "Mission loader did not finish in time.");
+                        mMissionLoader.shutdownNow();
+                    }
+                } catch (InterruptedException e) {
+                    mMissionLoader.shutdownNow();
+                }
+                mGameThread.quit();
+            }
+        });
     }
 
     /**
-     * Callback listener for MediaPlayer.
+     * Callback listener for MediaPlayer. Tells the Moment that queued the sound, if any, that it
+     * has finished.
      * @param player MediaPlayer instance.
      */
     @Override
     public void onCompletion(MediaPlayer player) {
-        endPlayback();
+        AudioQueueItem item = mPlayingItem;
+        mPlayingItem = null;
+        if (item != null && item.mListener != null) {
+            item.mListener.onPlaybackDone();
+        } else {
+            endPlayback();
+        }
     }
 
     /**
@@ -381,6 +845,21 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
                 actionDescription, pendingIntent);
     }
 
+    private NotificationCompat.Action makeChoiceAction(int actionIndex, String choiceId,
+                                                       String drawableResourceName,
+                                                       String description) {
+        Intent actionIntent = new Intent(CHOICE_NOTIFICATION_ACTIONS[actionIndex]);
+        actionIntent.putExtra(CHOICE_ID_KEY, choiceId);
+
+        int resource = getResources().getIdentifier(drawableResourceName, ICON_RESOURCE_FOLDER,
+                getPackageName());
+        // If the resource does not exist, default to using application icon.
+        if (resource == 0) {
+            resource = getApplicationInfo().icon;
+        }
+        return makeNotificationAction(actionIntent, resource, description);
+    }
+
     /**
      * Builds and posts a notification from a set of options.
      * @param options The options to build the notification.
@@ -403,6 +882,109 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
         notificationManager.notify(options.getNotificationId(), builder.build());
     }
 
+    public void cancelNotification(int notificationId) {
+        NotificationManager notificationManager =
+                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        notificationManager.cancel(notificationId);
+    }
+
+    /**
+     * Warns the user of an approaching enemy, with an action for each choice they can make.
+     * @param choices The choices available to the user.
+     */
+    @Override
+    public void postChoiceNotification(Choice[] choices) {
+        NotificationCompat.Action[] actions = new NotificationCompat.Action[choices.length];
+        for (int i = 0; i < choices.length; i++) {
+            actions[i] = makeChoiceAction(i, choices[i].getChoiceId(),
+                    choices[i].getDrawableResourceName(), choices[i].getDescription());
+        }
+
+        NotificationOptions notificationOptions =
+                NotificationOptions.getDefaultNotificationOptions();
+        notificationOptions.setNotificationId(CHOICE_NOTIFICATION_ID);
+        notificationOptions.setPriorityAsMax();
+        notificationOptions.setActions(actions);
+        notificationOptions.setNotificationDefaults(0);
+        notificationOptions.setVibratePattern(CHOICE_VIBRATE_PATTERN);
+        postActionNotification(notificationOptions);
+    }
+
+    @Override
+    public void cancelChoiceNotification() {
+        cancelNotification(CHOICE_NOTIFICATION_ID);
+    }
+
+    /**
+     * Notifies the user of how charged their weapon is.
+     * @param weaponChargedPercentage How charged the weapon is, from 0 to 100.
+     */
+    @Override
+    public void postFitnessNotification(int weaponChargedPercentage) {
+        NotificationOptions notificationOptions =
+                NotificationOptions.getDefaultNotificationOptions();
+        notificationOptions.setTitle(weaponChargedPercentage
+                + getString(R.string.weapon_status_notification_title));
+        notificationOptions.setContent(getString(R.string.weapon_status_notification_text));
+        notificationOptions.setNotificationId(FITNESS_STATS_NOTIFICATION_ID);
+        notificationOptions.setPriorityAsHigh();
+        notificationOptions.setNotificationDefaults(NotificationCompat.DEFAULT_LIGHTS);
+        postActionNotification(notificationOptions);
+    }
+
+    @Override
+    public void cancelFitnessNotification() {
+        cancelNotification(FITNESS_STATS_NOTIFICATION_ID);
+    }
+
+    /**
+     * Notes that the fitness stats have changed. The UI is sent a snapshot of them straight away
+     * if it has not been sent one recently, or otherwise once the maximum rate allows, with any
+     * further changes in between folded into that one update.
+     */
+    @Override
+    public void publishFitnessStats() {
+        mFitnessStatsChannel.onStatsChanged();
+        flushFitnessStats();
+    }
+
+    /**
+     * Sends the UI the fitness stats if they are due, or schedules a single later flush if they
+     * have changed but were sent too recently.
+     */
+    private void flushFitnessStats() {
+        if (mMission == null || !mFitnessStatsChannel.isPending()) {
+            return;
+        }
+        long nowNanos = mClock.nanoTime();
+        if (mFitnessStatsChannel.flush(mMission, nowNanos) || mIsFitnessStatsFlushScheduled) {
+            return;
+        }
+        long delayMillis = Math.max(0,
+                (mFitnessStatsChannel.getNextFlushNanos() - nowNanos + 999999) / 1000000);
+        mIsFitnessStatsFlushScheduled = true;
+        mUpdateHandler.postDelayed(mFlushFitnessStats, delayMillis);
+    }
+
+    /**
+     * Sets the observer that the fitness stats are sent to, usually the bound Activity, which is
+     * sent them straight away. They are not sent to anything while it is null.
+     * May be called from any thread; the observer is called on the game thread.
+     * @param observer The observer, or null.
+     */
+    public void setFitnessStatsObserver(final FitnessStatsChannel.Observer observer) {
+        runOnGameThread(new Runnable() {
+            @Override
+            public void run() {
+                mFitnessStatsChannel.setObserver(observer);
+                if (mMission != null) {
+                    mMission.setPublishingFitnessSnapshots(observer != null);
+                }
+                flushFitnessStats();
+            }
+        });
+    }
+
     public boolean isMissionRunning() {
         return mState == State.MISSION_RUNNING;
     }
@@ -412,19 +994,64 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
     }
 
     public void reset() {
-        setAndInitNextState(State.UNINITIALIZED);
+        runOnGameThread(new Runnable() {
+            @Override
+            public void run() {
+                setAndInitNextState(State.UNINITIALIZED);
+            }
+        });
     }
 
+    /**
+     * Gets the fictional progress of the last played game. The mission no longer changes once it
+     * has ended, so this may be read by the UI when shouldDisplayEndScreen() is true.
+     * @return The fictional progress to display.
+     */
     public ArrayList<String> getOverallFictionalProgress() {
         return mMission.getOverallFictionalProgress();
     }
 
     /**
-     * Gets fitness statistics for the last played game.
+     * Gets fitness statistics for the last played game. Like getOverallFictionalProgress(), this
+     * may be read by the UI once the mission has ended.
      * @return An array list of fitness statistics to display.
      */
     public ArrayList<String> getFitnessStatistics() {
-        return getCurrentMission().getFitnessStatistics();
+        ArrayList<String> fitnessStats = new ArrayList<>();
+        fitnessStats.add(String.format(getString(R.string.fitness_stat_num_steps),
+                mMission.getNumSteps()));
+        fitnessStats.add(String.format(getString(R.string.fitness_stat_num_intervals),
+                mMission.getNumIntervalsCompleted()));
+
+        RunRecorder recorder = mMission.getRunRecorder();
+        int numSeconds = recorder.getNumSeconds();
+        int secondsAtChallengePace = Math.round(numSeconds
+                * recorder.getAverage(RunRecorder.METRIC_AT_CHALLENGE_PACE, 0, numSeconds));
+        fitnessStats.add(String.format(getString(R.string.fitness_stat_time_at_challenge_pace),
+                secondsAtChallengePace / Utils.MINUTES_TO_SECONDS_SCALE,
+                secondsAtChallengePace % Utils.MINUTES_TO_SECONDS_SCALE));
+        float averageSpeed =
+                recorder.getAverage(RunRecorder.METRIC_SPEED_METERS_PER_SECOND, 0, numSeconds);
+        if (averageSpeed > 0) {
+            fitnessStats.add(String.format(getString(R.string.fitness_stat_average_pace),
+                    Utils.metersPerSecondToMinutesPerMile(averageSpeed)));
+        }
+        return fitnessStats;
+    }
+
+    /**
+     * Gets the player's speed over the last played game, for a chart. Like
+     * getOverallFictionalProgress(), this may be read by the UI once the mission has ended.
+     * @param numPoints The number of points in the chart.
+     * @return The average speed over each of numPoints equal parts of the game, in meters per
+     * second. Shorter if the game lasted fewer seconds than that.
+     */
+    public float[] getSpeedChart(int numPoints) {
+        RunRecorder recorder = mMission.getRunRecorder();
+        float[] points = new float[numPoints];
+        int numPointsRead = recorder.readDownsampled(RunRecorder.METRIC_SPEED_METERS_PER_SECOND,
+                0, recorder.getNumSeconds(), points);
+        return Arrays.copyOf(points, numPointsRead);
     }
 
     public Mission getCurrentMission() {
@@ -434,17 +1061,20 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
     /**
      * Queue a sound into the audio queue.
      * @param uri The Uri of the sound.
-     * @param listener The listener to the sound. This is usually MainService but can be overridden.
+     * @param listener The listener to the sound. If null, MainService ends playback itself.
      */
-    public void queueSound(Uri uri, MediaPlayer.OnCompletionListener listener) {
+    @Override
+    public void queueSound(String uri, MissionAudio.PlaybackListener listener) {
         mAudioQueue.offer(new AudioQueueItem(uri, listener));
+        requestUpdate();
     }
 
     /**
      * Removes the first instance of a sound from the audio queue.
      * @param uri Uri of the item to be removed.
      */
-    public void dequeueSound(Uri uri) {
+    @Override
+    public void dequeueSound(String uri) {
         mAudioQueue.remove(new AudioQueueItem(uri, null));
     }
 
@@ -453,6 +1083,7 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
      * other audio clips, so it checks for "audio focus" within the app.
      * @return True if audio focus is obtained. False otherwise.
      */
+    @Override
     public boolean obtainAudioFocus() {
         if (mMediaPlayer.isPlaying() || mTextToSpeech.isSpeaking()) {
             return false;
@@ -467,12 +1098,60 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
     /**
      * End audio playback, and abandon audio focus.
      */
+    @Override
     public void endPlayback() {
         mMediaPlayer.reset();
+        mPlayingItem = null;
         mAudioManager.abandonAudioFocus(mAudioFocusChangeListener);
+        if (!mAudioQueue.isEmpty()) {
+            // Play the next sound now, rather than at the next deadline.
+            requestUpdate();
+        }
+    }
+
+    /**
+     * Speaks some text with TextToSpeech, after a short silence.
+     * @param utteranceId The id passed to the listener.
+     * @param text The text to speak.
+     * @param listener Told on the game thread when the text has been spoken.
+     */
+    @Override
+    public void speak(String utteranceId, String text,
+                      final MissionAudio.PlaybackListener listener) {
+        mTextToSpeech.setOnUtteranceProgressListener(new UtteranceProgressListener() {
+            @Override
+            public void onStart(String utteranceId) {
+            }
+
+            @Override
+            /**
+             * Called on a TextToSpeech thread when the text has been spoken, or stopped, so the
+             * listener is told on the game thread.
+             */
+            public void onDone(String utteranceId) {
+                runOnGameThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onPlaybackDone();
+                    }
+                });
+            }
+
+            @Override
+            public void onError(String utteranceId) {
+            }
+        });
+        mTextToSpeech.playSilence(SILENCE_LENGTH_MILLIS, TextToSpeech.QUEUE_ADD, null);
+        HashMap<String, String> map = new HashMap<>();
+        map.put(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, utteranceId);
+        mTextToSpeech.speak(text, TextToSpeech.QUEUE_ADD, map);
     }
 
-    protected TextToSpeech getTextToSpeech() { return mIsTextToSpeechReady? mTextToSpeech : null; }
+    @Override
+    public void stopSpeaking() {
+        mTextToSpeech.setOnUtteranceProgressListener(null);
+        mTextToSpeech.stop();
+    }
 
     /**
      * Checks if the state transition is valid.
@@ -526,16 +1205,19 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
             case UNINITIALIZED:
                 break;
             case MISSION_LOADED:
-                mMission.prepare(mGoogleApiClientWrapper);
+                mMission.prepare(new FitMissionSensors(mGoogleApiClientWrapper, this));
                 mUpdateHandler.post(this);
                 break;
             case MISSION_RUNNING:
+                mNumMissionUpdates = 0;
                 mMission.start();
                 broadcastStart();
                 break;
             case END_SCREEN:
                 mUpdateHandler.removeCallbacks(this);
+                logMissionUpdates();
                 mMission.cleanup();
+                saveStrideModel();
                 broadcastEnd();
                 break;
         }
@@ -546,6 +1228,7 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
             setAndInitNextState(State.MISSION_RUNNING);
         }
         if (mState == State.MISSION_RUNNING) {
+            mNumMissionUpdates++;
             mMission.update();
 
             if (mMission.isDone()) {
@@ -559,20 +1242,45 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
         }
     }
 
+    /**
+     * Logs how many times the game loop ran during the mission, compared to how many times it
+     * would have run if it were updated once every DELAY_MILLIS.
+     */
+    private void logMissionUpdates() {
+        long missionSeconds = mMission.getNumMinutesExercised() * Utils.MINUTES_TO_SECONDS_SCALE
+                + mMission.getNumSecondsExercised();
+        Utils.logDebug(TAG, "Mission updated " + mNumMissionUpdates + " times in "
+                + missionSeconds + " seconds, instead of "
+                + (missionSeconds * 1000 / DELAY_MILLIS) + " times.");
+        Utils.logDebug(TAG, "Fitness stats sent to the UI " + mFitnessStatsChannel.getNumDelivered()
+                + " times, with " + mFitnessStatsChannel.getNumCoalesced()
+                + " changes folded into those updates, and "
+                + mFitnessStatsChannel.getNumSkipped() + " unchanged versions skipped.");
+        SensorSampleQueue samples = mMission.getSensorSamples();
+        Utils.logDebug(TAG, "Applied " + samples.getNumDrained() + " sensor readings, "
+                + Utils.nanosToSeconds(samples.getAverageLatencyNanos()) + " seconds after they "
+                + "arrived on average, and at most "
+                + Utils.nanosToSeconds(samples.getMaximumLatencyNanos()) + " seconds. "
+                + samples.getNumOverflowed() + " were dropped because the queue was full.");
+        Utils.logDebug(TAG, "Reached or left the challenge pace "
+                + mMission.getNumChallengePaceChanges() + " times.");
+    }
+
     /**
      * Play the first item in the audio queue.
      */
     private void playFirstInQueue() {
         AudioQueueItem queueItem = mAudioQueue.poll();
         try {
-            mMediaPlayer.setDataSource(this, queueItem.mUri);
+            mMediaPlayer.setDataSource(this, Uri.parse(queueItem.mUri));
         } catch (IOException e) {
             e.printStackTrace();
             // Data source does not exist. Skip playback.
             endPlayback();
             return;
         }
-        mMediaPlayer.setOnCompletionListener(queueItem.mListener);
+        mPlayingItem = queueItem;
+        mMediaPlayer.setOnCompletionListener(this);
         try {
             mMediaPlayer.prepare();
         } catch (IOException e) {
@@ -602,7 +1310,13 @@ public class MainService extends Service implements Runnable, MediaPlayer.OnComp
      * Display a Toast that requests user to reselect their mission.
      */
     private void requestReselection() {
-        Toast.makeText(this, "Mission load failure. Select again.", Toast.LENGTH_SHORT).show();
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Toast.makeText(MainService.this, "Mission load failure. Select again.",
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
         enableBackNavigation();
     }
 
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.google;
+
+import com.google.android.gms.fitness.data.DataPoint;
+import com.google.android.gms.fitness.data.DataType;
+import com.google.android.gms.fitness.data.Field;
+import com.google.android.gms.fitness.data.Value;
+import com.google.android.gms.fitness.request.OnDataPointListener;
+import com.google.android.gms.fitness.request.SensorRequest;
+import com.google.fpl.gim.examplegame.MissionHost;
+import com.google.fpl.gim.examplegame.MissionSensors;
+import com.google.fpl.gim.examplegame.utils.SensorSampleQueue;
+import com.google.fpl.gim.examplegame.utils.Utils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads the sensors of a mission from Google Fit, and queues the readings for the game thread.
+ */
+public class FitMissionSensors implements MissionSensors, OnDataPointListener {
+
+    private static final String TAG = FitMissionSensors.class.getSimpleName();
+
+    private static final FitDataTypeSetting[] TRACKED_DATA_TYPES = {
+        new FitDataTypeSetting(
+                true /* isRequired */, DataType.TYPE_STEP_COUNT_DELTA, 1 /* samplingRateSeconds */,
+                SensorRequest.ACCURACY_MODE_DEFAULT),
+        new FitDataTypeSetting(
+                false /* isRequired */, DataType.TYPE_SPEED, 1 /* samplingRateSeconds */,
+                SensorRequest.ACCURACY_MODE_HIGH),
+        // Only used to calibrate the player's stride length.
+        new FitDataTypeSetting(
+                false /* isRequired */, DataType.TYPE_DISTANCE_DELTA, 5 /* samplingRateSeconds */,
+                SensorRequest.ACCURACY_MODE_HIGH),
+    };
+
+    private final GoogleApiClientWrapper mGoogleApiClientWrapper;
+    private final MissionHost mHost;
+    private volatile SensorSampleQueue mSamples;
+
+    /**
+     * @param googleApiClientWrapper Access to GoogleFitApiClient for fit data.
+     * @param host Updates the mission when readings have been queued.
+     */
+    public FitMissionSensors(GoogleApiClientWrapper googleApiClientWrapper, MissionHost host) {
+        mGoogleApiClientWrapper = googleApiClientWrapper;
+        mHost = host;
+    }
+
+    @Override
+    public void startSensors(String sessionDescription, SensorSampleQueue samples) {
+        mSamples = samples;
+        mGoogleApiClientWrapper.startFitDataSession(TRACKED_DATA_TYPES, sessionDescription, this);
+    }
+
+    @Override
+    public void stopSensors() {
+        mGoogleApiClientWrapper.endFitDataSession(TRACKED_DATA_TYPES, this);
+        mSamples = null;
+    }
+
+    /**
+     * Receives Fit data on the thread Fit calls back on. This is the only producer of the sample
+     * queue, so it only adds the readings to it, and asks for the mission to be updated, which
+     * applies them on the game thread.
+     * @param dataPoint The Fit data.
+     */
+    @Override
+    public void onDataPoint(DataPoint dataPoint) {
+        SensorSampleQueue samples = mSamples;
+        if (samples == null) {
+            return;
+        }
+        long nowNanos = mHost.getClock().nanoTime();
+        DataType dataType = dataPoint.getDataType();
+        for (Field field : dataType.getFields()) {
+            Value val = dataPoint.getValue(field);
+            boolean isQueued = true;
+            if (dataType.equals(DataType.TYPE_STEP_COUNT_DELTA)) {
+                isQueued = samples.offer(SensorSampleQueue.TYPE_STEPS, nowNanos, val.asInt());
+            } else if (dataType.equals(DataType.TYPE_SPEED)) {
+                isQueued = samples.offer(SensorSampleQueue.TYPE_SPEED, nowNanos, val.asFloat());
+            } else if (dataType.equals(DataType.TYPE_DISTANCE_DELTA)) {
+                // The distance covered over the reading's own interval, which is not the time
+                // between the readings that arrive.
+                long durationNanos = dataPoint.getEndTime(TimeUnit.NANOSECONDS)
+                        - dataPoint.getStartTime(TimeUnit.NANOSECONDS);
+                isQueued = samples.offer(SensorSampleQueue.TYPE_DISTANCE, nowNanos, durationNanos,
+                        val.asFloat());
+            }
+            if (!isQueued) {
+                Utils.logDebug(TAG, "Sensor queue full, dropped a reading.");
+            }
+        }
+        mHost.requestUpdate();
+    }
+}
@@ -61,7 +61,9 @@ public class GoogleApiClientWrapper implements ConnectionCallbacks, OnConnection
     private Activity mActivity; // Activity for GoogleApiClient to launch visual elements on.
     private GoogleApiClient mGoogleApiClient;
 
-    private Set<FitDataTypeSetting> sensorsAwaitingRegistration = new HashSet<>();
+    // Filled in on the game thread, and emptied by Fit result callbacks, so it is only accessed
+    // while holding its lock.
+    private final Set<FitDataTypeSetting> sensorsAwaitingRegistration = new HashSet<>();
 
     /**
      * Builds a GoogleApiClient that connects to the Fitness Api.
@@ -198,6 +200,16 @@ public class GoogleApiClientWrapper implements ConnectionCallbacks, OnConnection
         return (mGoogleApiClient != null && mGoogleApiClient.isConnected());
     }
 
+    /**
+     * @return The Play Games id of the signed in player, or null if no player is signed in.
+     */
+    public String getCurrentPlayerId() {
+        if (!isSignedIn()) {
+            return null;
+        }
+        return Games.Players.getCurrentPlayerId(mGoogleApiClient);
+    }
+
     public void userAuthenticated() {
         mAuthInProgress = false;
     }
@@ -205,10 +217,12 @@ public class GoogleApiClientWrapper implements ConnectionCallbacks, OnConnection
     public boolean isClientReady() {
         // Make sure all the required sensors are registered.
         boolean hasUnregisteredSensor = false;
-        for (FitDataTypeSetting fitDataTypeSetting : sensorsAwaitingRegistration) {
-            if (fitDataTypeSetting.isRequired()) {
-                hasUnregisteredSensor = true;
-                break;
+        synchronized (sensorsAwaitingRegistration) {
+            for (FitDataTypeSetting fitDataTypeSetting : sensorsAwaitingRegistration) {
+                if (fitDataTypeSetting.isRequired()) {
+                    hasUnregisteredSensor = true;
+                    break;
+                }
             }
         }
 
@@ -220,12 +234,14 @@ public class GoogleApiClientWrapper implements ConnectionCallbacks, OnConnection
     }
 
     protected void sensorRegistered(DataType dataType) {
-        for (FitDataTypeSetting fitDataTypeSetting : sensorsAwaitingRegistration) {
-            if (fitDataTypeSetting.getDataType().equals(dataType)) {
-                sensorsAwaitingRegistration.remove(fitDataTypeSetting);
-                break;
-            }
+        synchronized (sensorsAwaitingRegistration) {
+            for (FitDataTypeSetting fitDataTypeSetting : sensorsAwaitingRegistration) {
+                if (fitDataTypeSetting.getDataType().equals(dataType)) {
+                    sensorsAwaitingRegistration.remove(fitDataTypeSetting);
+                    break;
+                }
 
+            }
         }
     }
 
@@ -256,7 +272,9 @@ public class GoogleApiClientWrapper implements ConnectionCallbacks, OnConnection
      */
     private void registerFitDataListener(
             FitDataTypeSetting dataTypeSetting, OnDataPointListener listener) {
-        sensorsAwaitingRegistration.add(dataTypeSetting);
+        synchronized (sensorsAwaitingRegistration) {
+            sensorsAwaitingRegistration.add(dataTypeSetting);
+        }
         Fitness.SensorsApi.add(
                 mGoogleApiClient,
                 new SensorRequest.Builder()
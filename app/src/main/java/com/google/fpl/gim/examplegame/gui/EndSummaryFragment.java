@@ -35,6 +35,7 @@ import java.util.ArrayList;
 public class EndSummaryFragment extends Fragment {
     private ListView mFictionalProgressList;
     private ListView mFitnessStatisticsList;
+    private RunChartView mSpeedChart;
     private boolean mGoogleFitConnected = false;
 
     @Override
@@ -43,6 +44,7 @@ public class EndSummaryFragment extends Fragment {
         View rootView = inflater.inflate(R.layout.end_screen, container, false);
         mFictionalProgressList = (ListView) rootView.findViewById(R.id.fictionalProgressList);
         mFitnessStatisticsList = (ListView) rootView.findViewById(R.id.fitnessStatisticsList);
+        mSpeedChart = (RunChartView) rootView.findViewById(R.id.speedChart);
         return rootView;
     }
 
@@ -56,11 +58,12 @@ public class EndSummaryFragment extends Fragment {
     }
 
     public void displayStats(ArrayList<String> fictionalProgress,
-            ArrayList<String> fitnessStatistics) {
+            ArrayList<String> fitnessStatistics, float[] speedChart) {
         mFictionalProgressList.setAdapter(new ArrayAdapter<>(getActivity(),
                 R.layout.menu_list_item, R.id.list_item_text, fictionalProgress));
         mFitnessStatisticsList.setAdapter(new ArrayAdapter<>(getActivity(),
                 R.layout.menu_list_item, R.id.list_item_text, fitnessStatistics));
+        mSpeedChart.setValues(speedChart);
     }
 
     public void onFitStatusUpdated(boolean connected) {
@@ -24,6 +24,7 @@ import android.view.ViewGroup;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import com.google.fpl.gim.examplegame.FitnessSnapshot;
 import com.google.fpl.gim.examplegame.MainActivity;
 import com.google.fpl.gim.examplegame.Mission;
 import com.google.fpl.gim.examplegame.R;
@@ -89,11 +90,15 @@ public class FitnessDataDisplayFragment extends Fragment {
         mProgressBar.setProgress(weaponChargedPercentage);
     }
 
-    public void setFitnessStats(Mission mission) {
-        setNumSteps(mission.getNumSteps());
-        setMinutesPerMile(mission.getMinutesPerMile(), mission.getChallengePace());
-        setTimeExercised(mission.getNumMinutesExercised(), mission.getNumSecondsExercised());
-        setWeaponChargedPercentage(mission.getWeaponChargedPercentage());
+    /**
+     * Displays the fitness stats sent by the mission.
+     * @param stats A snapshot of the mission's fitness stats.
+     */
+    public void setFitnessStats(FitnessSnapshot stats) {
+        setNumSteps(stats.getNumSteps());
+        setMinutesPerMile(stats.getMinutesPerMile(), stats.getChallengePace());
+        setTimeExercised(stats.getNumMinutesExercised(), stats.getNumSecondsExercised());
+        setWeaponChargedPercentage(stats.getWeaponChargedPercentage());
     }
 
     public void setMissionName(String missionName) {
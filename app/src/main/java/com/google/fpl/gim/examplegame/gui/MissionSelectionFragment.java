@@ -18,7 +18,8 @@ package com.google.fpl.gim.examplegame.gui;
 
 import android.app.Fragment;
 import android.app.ListFragment;
-import android.content.res.AssetManager;
+import android.content.Context;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.view.LayoutInflater;
@@ -28,13 +29,11 @@ import android.widget.ArrayAdapter;
 import android.widget.ListView;
 
 import com.google.fpl.gim.examplegame.MainActivity;
-import com.google.fpl.gim.examplegame.utils.MissionParseException;
-import com.google.fpl.gim.examplegame.utils.MissionParser;
+import com.google.fpl.gim.examplegame.utils.MissionCatalog;
+import com.google.fpl.gim.examplegame.utils.MissionCatalogEntry;
 import com.google.fpl.gim.examplegame.R;
 import com.google.fpl.gim.examplegame.utils.Utils;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 
 /**
@@ -45,66 +44,51 @@ public class MissionSelectionFragment extends ListFragment {
 
     private static final String TAG = MissionSelectionFragment.class.getSimpleName();
 
-    private ArrayList<String> mAssetNames = new ArrayList<>();
+    private ArrayList<String> mAssetPaths = new ArrayList<>();
     private ArrayList<String> mMissionNames = new ArrayList<>();
+    private ArrayAdapter<String> mAdapter;
 
     private String mSelectedMissionName;
     private String mSelectedAssetPath;
 
-    private static final String MISSION_ASSET_FOLDER_NAME = "missions";
-
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        if (mMissionNames.size() == 0) {
-            // Needs access to a Context in order to access the assets folder.
-            AssetManager assetManager = getActivity().getAssets();
-            String[] missionFileNames = new String[0];
-            try {
-                // Obtain the files in assets/missions.
-                missionFileNames = assetManager.list(MISSION_ASSET_FOLDER_NAME);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-
-            // Open the missions to obtain plain text names.
-            for (String missionFileName : missionFileNames) {
-                // Open a stream for the mission.
-                InputStream stream;
-                try {
-                    // All missions should be in the assets/missions folder.
-                    ArrayList<String> subDirectories = new ArrayList<>();
-                    subDirectories.add(missionFileName);
-                    stream = assetManager
-                            .open(Utils.makeFilePath(MISSION_ASSET_FOLDER_NAME, subDirectories));
-                } catch (IOException e) {
-                    e.printStackTrace();
-                    continue;
-                }
+        mAdapter = new ArrayAdapter<>(getActivity(), R.layout.menu_list_item,
+                R.id.list_item_text, mMissionNames);
+        setListAdapter(mAdapter);
 
-                // Find the mission name.
-                String missionName;
-                try {
-                    missionName = MissionParser.getMissionName(stream);
-                } catch (MissionParseException e) {
-                    e.printStackTrace();
-                    missionName = "Description failed.";
+        if (mMissionNames.size() == 0) {
+            // The catalog may need to be rebuilt, which parses every mission, so it is loaded off
+            // the UI thread. Needs access to a Context in order to access the assets folder.
+            final Context context = getActivity().getApplicationContext();
+            new AsyncTask<Void, Void, MissionCatalog>() {
+                @Override
+                protected MissionCatalog doInBackground(Void... params) {
+                    return MissionCatalog.load(context);
                 }
 
-                // Close the stream.
-                try {
-                    stream.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+                @Override
+                protected void onPostExecute(MissionCatalog catalog) {
+                    onMissionCatalogLoaded(catalog);
                 }
+            }.execute();
+        }
+    }
 
-                mMissionNames.add(missionName);
-                mAssetNames.add(missionFileName);
-            }
+    /**
+     * Fills the mission list from the catalog.
+     * @param catalog The catalog of all missions.
+     */
+    private void onMissionCatalogLoaded(MissionCatalog catalog) {
+        mMissionNames.clear();
+        mAssetPaths.clear();
+        for (MissionCatalogEntry entry : catalog.getEntries()) {
+            mMissionNames.add(entry.getMissionName());
+            mAssetPaths.add(entry.getAssetPath());
         }
-        setListAdapter(new ArrayAdapter<>(getActivity(), R.layout.menu_list_item,
-                R.id.list_item_text, mMissionNames));
+        mAdapter.notifyDataSetChanged();
     }
 
     @Override
@@ -134,10 +118,10 @@ public class MissionSelectionFragment extends ListFragment {
                 " has been selected!");
 
         mSelectedMissionName = mMissionNames.get(position);
+        mSelectedAssetPath = mAssetPaths.get(position);
 
-        ArrayList<String> subDirectories = new ArrayList<>();
-        subDirectories.add(mAssetNames.get(position));
-        mSelectedAssetPath = Utils.makeFilePath(MISSION_ASSET_FOLDER_NAME, subDirectories);
+        // Parse the mission while the player chooses their run specifications.
+        ((MainActivity) getActivity()).prefetchMission(mSelectedAssetPath);
 
         // Display RunSpecificationSelectionFragment.
         Fragment runSpecificationsFragment =
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.gui;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.google.fpl.gim.examplegame.R;
+
+/**
+ * Draws a series of values, such as the player's speed over a run, as a line from the left edge
+ * to the right edge, scaled so that the largest value reaches the top.
+ */
+public class RunChartView extends View {
+
+    private static final float LINE_WIDTH_DP = 2f;
+
+    private final Paint mLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path mPath = new Path();
+    private float[] mValues = new float[0];
+
+    public RunChartView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        mLinePaint.setStyle(Paint.Style.STROKE);
+        mLinePaint.setStrokeWidth(LINE_WIDTH_DP * getResources().getDisplayMetrics().density);
+        mLinePaint.setColor(getResources().getColor(R.color.green));
+    }
+
+    /**
+     * @param values The values to draw, evenly spaced from left to right.
+     */
+    public void setValues(float[] values) {
+        mValues = values;
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mValues.length < 2) {
+            return;
+        }
+        float maximum = 0f;
+        for (float value : mValues) {
+            maximum = Math.max(maximum, value);
+        }
+        if (maximum <= 0f) {
+            return;
+        }
+
+        float left = getPaddingLeft();
+        float top = getPaddingTop();
+        float width = getWidth() - getPaddingLeft() - getPaddingRight();
+        float height = getHeight() - getPaddingTop() - getPaddingBottom();
+        mPath.reset();
+        for (int i = 0; i < mValues.length; i++) {
+            float x = left + width * i / (mValues.length - 1);
+            float y = top + height * (1f - mValues[i] / maximum);
+            if (i == 0) {
+                mPath.moveTo(x, y);
+            } else {
+                mPath.lineTo(x, y);
+            }
+        }
+        canvas.drawPath(mPath, mLinePaint);
+    }
+}
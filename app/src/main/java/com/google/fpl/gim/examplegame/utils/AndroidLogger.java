@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+import android.util.Log;
+
+import com.google.fpl.gim.examplegame.BuildConfig;
+
+/**
+ * Writes the debugging messages of the game to the Android log.
+ */
+public class AndroidLogger implements Utils.Logger {
+
+    /**
+     * Makes Utils.logDebug() write to the Android log.
+     */
+    public static void install() {
+        Utils.setLogger(new AndroidLogger());
+    }
+
+    /**
+     * Debugging messages are only written by debug builds.
+     */
+    @Override
+    public boolean isDebugEnabled() {
+        return BuildConfig.DEBUG;
+    }
+
+    @Override
+    public void logDebug(String tag, String message) {
+        Log.d(tag, message);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the compiled missions in the assets folder, which are stored uncompressed so that
+ * CompiledMissionLoader can read them straight from a memory-mapped buffer.
+ */
+public class CompiledMissionAssets {
+
+    /**
+     * Maps the compiled form of a mission into memory without copying it.
+     * @param assetManager AssetManager to read the asset from.
+     * @param missionFilePath The path of the mission XML file within the assets folder.
+     * @return A read-only buffer over the compiled mission.
+     * @throws IOException Thrown if the mission has no compiled form or it is compressed.
+     */
+    public static ByteBuffer map(AssetManager assetManager, String missionFilePath)
+            throws IOException {
+        AssetFileDescriptor descriptor =
+                assetManager.openFd(CompiledMissionLoader.getCompiledAssetPath(missionFilePath));
+        try {
+            FileInputStream stream = descriptor.createInputStream();
+            try {
+                return stream.getChannel().map(FileChannel.MapMode.READ_ONLY,
+                        descriptor.getStartOffset(), descriptor.getLength());
+            } finally {
+                stream.close();
+            }
+        } finally {
+            descriptor.close();
+        }
+    }
+}
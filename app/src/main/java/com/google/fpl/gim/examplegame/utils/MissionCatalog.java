@@ -0,0 +1,386 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.AssetManager;
+
+import com.google.fpl.gim.examplegame.ChoiceMomentData;
+import com.google.fpl.gim.examplegame.MissionTemplate;
+import com.google.fpl.gim.examplegame.MomentData;
+import com.google.fpl.gim.examplegame.SpokenTextMomentData;
+import com.google.fpl.gim.examplegame.TimerMomentData;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * An index of the missions in the assets folder. Building the index parses every mission once;
+ * the result is written to the cache folder and memory-mapped on later launches, so the missions
+ * can be listed without opening any XML. The index is rebuilt when the application is updated or
+ * when the set of mission files changes.
+ */
+public class MissionCatalog {
+    private static final String TAG = MissionCatalog.class.getSimpleName();
+
+    public static final String MISSION_ASSET_FOLDER_NAME = "missions";
+
+    private static final String INDEX_FILE_NAME = "mission_catalog.idx";
+    private static final int INDEX_MAGIC = 0x47494d43; // "GIMC"
+    private static final int INDEX_FORMAT_VERSION = 1;
+
+    private static final String MISSION_NAME_PARSE_FAILED = "Description failed.";
+    // Used to estimate how long it takes to speak the text of a SpokenTextMoment.
+    private static final float SPOKEN_WORDS_PER_MINUTE = 150f;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // The number of catalogs built by parsing, so that reading the index can be told apart from
+    // rebuilding it.
+    private static final AtomicInteger sNumBuilds = new AtomicInteger();
+
+    private final ArrayList<MissionCatalogEntry> mEntries;
+
+    private MissionCatalog(ArrayList<MissionCatalogEntry> entries) {
+        mEntries = entries;
+    }
+
+    public ArrayList<MissionCatalogEntry> getEntries() {
+        return mEntries;
+    }
+
+    /**
+     * Loads the catalog from the index in the cache folder, rebuilding the index if it is missing
+     * or out of date. Rebuilding parses every mission, so this should not be called on the UI
+     * thread.
+     * @param context Context used to access the assets and cache folders.
+     * @return The catalog of all missions in the missions asset folder.
+     */
+    public static MissionCatalog load(Context context) {
+        String[] assetNames = listMissionAssets(context.getAssets());
+        IndexKey key = new IndexKey(context, assetNames);
+        File indexFile = getIndexFile(context);
+
+        MissionCatalog catalog = readIndex(indexFile, key);
+        if (catalog == null) {
+            Utils.logDebug(TAG, "Mission catalog index is missing or stale, rebuilding.");
+            catalog = build(context.getAssets(), assetNames);
+            writeIndex(indexFile, key, catalog);
+        }
+        return catalog;
+    }
+
+    /**
+     * Deletes the index, so that the next call to load rebuilds it.
+     * @param context Context used to access the cache folder.
+     */
+    public static void invalidate(Context context) {
+        File indexFile = getIndexFile(context);
+        if (indexFile.exists() && !indexFile.delete()) {
+            Utils.logDebug(TAG, "Unable to delete the mission catalog index.");
+        }
+    }
+
+    /**
+     * Builds a catalog by parsing every mission. Missions that fail to parse are still listed,
+     * with no Moments.
+     * @param assetManager AssetManager to read the missions from.
+     * @param assetNames The names of the mission files in the missions asset folder.
+     * @return A catalog of the given missions.
+     */
+    public static MissionCatalog build(AssetManager assetManager, String[] assetNames) {
+        sNumBuilds.incrementAndGet();
+        ArrayList<MissionCatalogEntry> entries = new ArrayList<>();
+        for (String assetName : assetNames) {
+            byte[] contents;
+            try {
+                contents = readAsset(assetManager, getMissionAssetPath(assetName));
+            } catch (IOException e) {
+                e.printStackTrace();
+                continue;
+            }
+            entries.add(buildEntry(assetName, contents));
+        }
+        return new MissionCatalog(entries);
+    }
+
+    /**
+     * @return The number of catalogs built by parsing every mission since the application started.
+     */
+    public static int getNumBuilds() {
+        return sNumBuilds.get();
+    }
+
+    /**
+     * @param assetName The name of a mission file within the missions asset folder.
+     * @return The path of the mission file within the assets folder.
+     */
+    public static String getMissionAssetPath(String assetName) {
+        ArrayList<String> subDirectories = new ArrayList<>();
+        subDirectories.add(assetName);
+        return Utils.makeFilePath(MISSION_ASSET_FOLDER_NAME, subDirectories);
+    }
+
+    private static MissionCatalogEntry buildEntry(String assetName, byte[] contents) {
+        CRC32 crc = new CRC32();
+        crc.update(contents);
+
+        String missionName;
+        try {
+            missionName = MissionParser.getMissionName(new ByteArrayInputStream(contents));
+        } catch (MissionParseException e) {
+            e.printStackTrace();
+            return new MissionCatalogEntry(assetName, MISSION_NAME_PARSE_FAILED, 0, 0f,
+                    crc.getValue());
+        }
+
+        MissionTemplate template;
+        try {
+            template = MissionParser.parseMissionTemplate(new ByteArrayInputStream(contents));
+        } catch (MissionParseException e) {
+            e.printStackTrace();
+            return new MissionCatalogEntry(assetName, missionName, 0, 0f, crc.getValue());
+        }
+
+        return new MissionCatalogEntry(assetName, missionName, template.getNumMoments(),
+                estimateDurationMinutes(template), crc.getValue());
+    }
+
+    /**
+     * Estimates the length of a mission by following its Moments from the first Moment, taking
+     * the default Choice at every ChoiceMoment.
+     * @param template The parsed mission.
+     * @return The estimated length of the mission in minutes.
+     */
+    private static float estimateDurationMinutes(MissionTemplate template) {
+        float durationMinutes = 0f;
+        boolean[] visited = new boolean[template.getNumMoments()];
+        int momentIndex = template.getFirstMomentIndex();
+        while (momentIndex != MissionTemplate.END_MOMENT_INDEX && !visited[momentIndex]) {
+            visited[momentIndex] = true;
+            MomentData data = template.getMomentData(momentIndex);
+            momentIndex = data.getNextMomentIndex();
+            if (data instanceof TimerMomentData) {
+                durationMinutes += ((TimerMomentData) data).getLengthMinutes();
+            } else if (data instanceof SpokenTextMomentData) {
+                String text = ((SpokenTextMomentData) data).getTextToSpeak();
+                durationMinutes += text.trim().split("\\s+").length / SPOKEN_WORDS_PER_MINUTE;
+            } else if (data instanceof ChoiceMomentData) {
+                ChoiceMomentData choiceData = (ChoiceMomentData) data;
+                durationMinutes += choiceData.getTimeoutLengthMinutes();
+                momentIndex = choiceData.getChoiceById(choiceData.getDefaultChoiceId())
+                        .getNextMomentIndex();
+            }
+        }
+        return durationMinutes;
+    }
+
+    /**
+     * Reads the index file.
+     * @param indexFile The index file.
+     * @param key The key the index must have been built with.
+     * @return The catalog stored in the index, or null if the index is missing, unreadable, or
+     *         was built with a different key.
+     */
+    private static MissionCatalog readIndex(File indexFile, IndexKey key) {
+        if (!indexFile.exists()) {
+            return null;
+        }
+        try {
+            RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+            MappedByteBuffer buffer;
+            try {
+                buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            } finally {
+                file.close();
+            }
+
+            if (buffer.getInt() != INDEX_MAGIC || buffer.getInt() != INDEX_FORMAT_VERSION
+                    || !key.matches(buffer)) {
+                return null;
+            }
+
+            int numEntries = buffer.getInt();
+            ArrayList<MissionCatalogEntry> entries = new ArrayList<>(numEntries);
+            for (int i = 0; i < numEntries; i++) {
+                long contentHash = buffer.getLong();
+                int numMoments = buffer.getInt();
+                float estimatedDurationMinutes = buffer.getFloat();
+                String missionName = readString(buffer);
+                String assetName = readString(buffer);
+                entries.add(new MissionCatalogEntry(assetName, missionName, numMoments,
+                        estimatedDurationMinutes, contentHash));
+            }
+            return new MissionCatalog(entries);
+        } catch (IOException | RuntimeException e) {
+            // A truncated or corrupt index is rebuilt.
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the index file. The index is written to a temporary file first, so a partially
+     * written index is never read.
+     * @param indexFile The index file.
+     * @param key The key the catalog was built with.
+     * @param catalog The catalog to store.
+     */
+    private static void writeIndex(File indexFile, IndexKey key, MissionCatalog catalog) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_FORMAT_VERSION);
+            key.write(out);
+            out.writeInt(catalog.mEntries.size());
+            for (MissionCatalogEntry entry : catalog.mEntries) {
+                out.writeLong(entry.getContentHash());
+                out.writeInt(entry.getNumMoments());
+                out.writeFloat(entry.getEstimatedDurationMinutes());
+                writeString(out, entry.getMissionName());
+                writeString(out, entry.getAssetName());
+            }
+            out.flush();
+
+            File tempFile = new File(indexFile.getPath() + ".tmp");
+            FileOutputStream fileStream = new FileOutputStream(tempFile);
+            try {
+                bytes.writeTo(fileStream);
+            } finally {
+                fileStream.close();
+            }
+            if (!tempFile.renameTo(indexFile)) {
+                Utils.logDebug(TAG, "Unable to write the mission catalog index.");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        // A corrupt length must not be allocated, as running out of memory is not recoverable.
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IOException("Invalid string length " + length + " in the mission catalog "
+                    + "index.");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static File getIndexFile(Context context) {
+        return new File(context.getCacheDir(), INDEX_FILE_NAME);
+    }
+
+    private static String[] listMissionAssets(AssetManager assetManager) {
+        String[] assetNames = new String[0];
+        try {
+            // Obtain the files in assets/missions.
+            assetNames = assetManager.list(MISSION_ASSET_FOLDER_NAME);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        // The order of AssetManager.list is not specified, and the index key depends on it.
+        Arrays.sort(assetNames);
+        return assetNames;
+    }
+
+    private static byte[] readAsset(AssetManager assetManager, String assetPath)
+            throws IOException {
+        InputStream stream = assetManager.open(assetPath);
+        try {
+            ByteArrayOutputStream contents = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int numBytesRead;
+            while ((numBytesRead = stream.read(buffer)) != -1) {
+                contents.write(buffer, 0, numBytesRead);
+            }
+            return contents.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * Identifies the build of the application and the set of mission files an index was built
+     * from. Assets can only change when the application is updated, so file contents do not need
+     * to be checked.
+     */
+    private static class IndexKey {
+        private final int mVersionCode;
+        private final long mLastUpdateTime;
+        private final long mAssetNamesHash;
+
+        IndexKey(Context context, String[] assetNames) {
+            int versionCode = 0;
+            long lastUpdateTime = 0;
+            try {
+                PackageInfo packageInfo = context.getPackageManager()
+                        .getPackageInfo(context.getPackageName(), 0);
+                versionCode = packageInfo.versionCode;
+                lastUpdateTime = packageInfo.lastUpdateTime;
+            } catch (PackageManager.NameNotFoundException e) {
+                e.printStackTrace();
+            }
+            mVersionCode = versionCode;
+            mLastUpdateTime = lastUpdateTime;
+
+            CRC32 crc = new CRC32();
+            for (String assetName : assetNames) {
+                crc.update(assetName.getBytes(UTF_8));
+                crc.update('\n');
+            }
+            mAssetNamesHash = crc.getValue();
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(mVersionCode);
+            out.writeLong(mLastUpdateTime);
+            out.writeLong(mAssetNamesHash);
+        }
+
+        boolean matches(ByteBuffer buffer) {
+            return buffer.getInt() == mVersionCode
+                    && buffer.getLong() == mLastUpdateTime
+                    && buffer.getLong() == mAssetNamesHash;
+        }
+    }
+}
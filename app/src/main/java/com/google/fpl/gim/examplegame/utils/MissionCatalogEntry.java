@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+/**
+ * Describes one mission in the MissionCatalog, so that missions can be listed without reading
+ * their XML.
+ */
+public class MissionCatalogEntry {
+
+    // The name of the mission file within the missions asset folder.
+    private final String mAssetName;
+    // User-facing name of the mission.
+    private final String mMissionName;
+    // Number of Moments in the mission. Zero if the mission failed to parse.
+    private final int mNumMoments;
+    // Estimated length of the mission, following default choices.
+    private final float mEstimatedDurationMinutes;
+    // Checksum of the mission file contents.
+    private final long mContentHash;
+
+    public MissionCatalogEntry(String assetName, String missionName, int numMoments,
+            float estimatedDurationMinutes, long contentHash) {
+        mAssetName = assetName;
+        mMissionName = missionName;
+        mNumMoments = numMoments;
+        mEstimatedDurationMinutes = estimatedDurationMinutes;
+        mContentHash = contentHash;
+    }
+
+    public String getAssetName() {
+        return mAssetName;
+    }
+
+    /**
+     * @return The path of the mission file within the assets folder. Also used as the mission id.
+     */
+    public String getAssetPath() {
+        return MissionCatalog.getMissionAssetPath(mAssetName);
+    }
+
+    public String getMissionName() {
+        return mMissionName;
+    }
+
+    public int getNumMoments() {
+        return mNumMoments;
+    }
+
+    public float getEstimatedDurationMinutes() {
+        return mEstimatedDurationMinutes;
+    }
+
+    public long getContentHash() {
+        return mContentHash;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Keeps a StrideModel for each player in a folder, so that the stride length learned in one
+ * mission is used in the next. A player who is not signed in shares the model of
+ * LOCAL_PLAYER_ID.
+ */
+public class StrideModelStore {
+
+    private static final String TAG = StrideModelStore.class.getSimpleName();
+
+    public static final String LOCAL_PLAYER_ID = "local";
+    private static final String FILE_NAME_PREFIX = "stride_model_";
+
+    private final File mDirectory;
+
+    /**
+     * @param directory The folder the models are kept in, usually the files folder of the app.
+     */
+    public StrideModelStore(File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Reads the model of a player.
+     * @param playerId The id of the player, or null if no player is signed in.
+     * @return The model of the player, or a new model if they do not have one, or it can not be
+     * read.
+     */
+    public StrideModel load(String playerId) {
+        File file = getFile(playerId);
+        if (!file.exists()) {
+            return new StrideModel();
+        }
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                return StrideModel.read(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Utils.logDebug(TAG, "Unable to read the stride model, starting a new one: "
+                    + e.getMessage());
+            return new StrideModel();
+        }
+    }
+
+    /**
+     * Copies a model, so that it can be saved on another thread while the original goes on
+     * learning.
+     * @param model The model to copy.
+     * @return The model, as save() writes it.
+     */
+    public static byte[] toBytes(StrideModel model) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            model.write(out);
+            out.flush();
+        } catch (IOException e) {
+            // Writing to memory does not fail.
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Saves the model of a player. The model is written to a temporary file first, so a partially
+     * written model is never read.
+     * @param playerId The id of the player, or null if no player is signed in.
+     * @param model The model, from toBytes().
+     */
+    public void save(String playerId, byte[] model) {
+        File file = getFile(playerId);
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            FileOutputStream fileStream = new FileOutputStream(tempFile);
+            try {
+                fileStream.write(model);
+            } finally {
+                fileStream.close();
+            }
+            if (!tempFile.renameTo(file)) {
+                Utils.logDebug(TAG, "Unable to write the stride model.");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private File getFile(String playerId) {
+        if (playerId == null) {
+            playerId = LOCAL_PLAYER_ID;
+        }
+        // Player ids are letters and digits, but nothing else may leave the folder.
+        return new File(mDirectory, FILE_NAME_PREFIX + playerId.replaceAll("[^A-Za-z0-9_]", "_"));
+    }
+}
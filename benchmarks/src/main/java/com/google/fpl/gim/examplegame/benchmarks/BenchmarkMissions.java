@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.benchmarks;
+
+import com.google.fpl.gim.examplegame.Mission;
+import com.google.fpl.gim.examplegame.MissionData;
+import com.google.fpl.gim.examplegame.MissionTemplate;
+import com.google.fpl.gim.examplegame.utils.ManualClock;
+import com.google.fpl.gim.examplegame.utils.MissionParseException;
+import com.google.fpl.gim.examplegame.utils.MissionParser;
+import com.google.fpl.gim.examplegame.utils.Utils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Builds the missions the benchmarks run.
+ */
+public class BenchmarkMissions {
+
+    public static final String TYPE_TIMER = "timer";
+    public static final String TYPE_SFX = "sfx";
+    public static final String TYPE_SPOKEN_TEXT = "spoken_text";
+    public static final String TYPE_CHOICE = "choice";
+    private static final String[] MOMENT_TYPES =
+            {TYPE_TIMER, TYPE_SFX, TYPE_SPOKEN_TEXT, TYPE_CHOICE};
+
+    // Longer than any benchmark runs for, so that a Moment never finishes while it is measured.
+    private static final float ENDLESS_MINUTES = 1e7f;
+
+    public static final float CHALLENGE_PACE_MINUTES_PER_MILE = 10f;
+    private static final float INTERVAL_MINUTES = 1f;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Stops the mission from writing debug messages, which would otherwise dominate the
+     * measurements, as a release build does.
+     */
+    public static void disableLogging() {
+        Utils.setLogger(Utils.SILENT_LOGGER);
+    }
+
+    /**
+     * Makes a mission of Moments of every type, one after the other.
+     * @param numMoments The number of Moments in the mission.
+     * @return The XML of the mission.
+     */
+    public static byte[] makeMissionXml(int numMoments) {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<mission start_id=\"moment_0\" name=\"Benchmark\">\n");
+        for (int i = 0; i < numMoments; i++) {
+            String nextId = i + 1 < numMoments ? "moment_" + (i + 1) : null;
+            appendMoment(xml, MOMENT_TYPES[i % MOMENT_TYPES.length], "moment_" + i, nextId, 3f);
+        }
+        xml.append("</mission>\n");
+        return xml.toString().getBytes(UTF_8);
+    }
+
+    /**
+     * Makes a running mission whose only Moment is of the given type, and never finishes.
+     * @param momentType The type of the Moment.
+     * @param clock The clock the mission reads the time from.
+     * @return The started mission.
+     */
+    public static Mission startEndlessMission(String momentType, ManualClock clock)
+            throws MissionParseException {
+        StringBuilder xml = new StringBuilder();
+        xml.append("<mission start_id=\"endless\" name=\"Endless\">\n");
+        appendMoment(xml, momentType, "endless", null, ENDLESS_MINUTES);
+        xml.append("</mission>\n");
+        MissionTemplate template = MissionParser.parseMissionTemplate(
+                new ByteArrayInputStream(xml.toString().getBytes(UTF_8)));
+
+        Mission mission = new Mission(new MissionData("Endless", "endless", ENDLESS_MINUTES,
+                INTERVAL_MINUTES, CHALLENGE_PACE_MINUTES_PER_MILE), clock);
+        mission.setHost(new NoOpMissionHost(clock));
+        mission.setTemplate(template);
+        mission.start();
+        return mission;
+    }
+
+    private static void appendMoment(StringBuilder xml, String type, String id, String nextId,
+                                     float lengthMinutes) {
+        xml.append("  <moment type=\"").append(type).append("\" id=\"").append(id)
+                .append("\">\n");
+        if (!type.equals(TYPE_CHOICE) && nextId != null) {
+            xml.append("    <next_moment id=\"").append(nextId).append("\"/>\n");
+        }
+        xml.append("    <fictional_progress>Reached ").append(id)
+                .append("</fictional_progress>\n");
+        switch (type) {
+            case TYPE_TIMER:
+                xml.append("    <length_minutes>").append(lengthMinutes)
+                        .append("</length_minutes>\n");
+                break;
+            case TYPE_SFX:
+                xml.append("    <uri>android.resource://com.google.fpl.gim.examplegame/raw/axe"
+                        + "</uri>\n");
+                break;
+            case TYPE_SPOKEN_TEXT:
+                xml.append("    <text_to_speak>The zombies are closing in on ").append(id)
+                        .append(", keep running!</text_to_speak>\n");
+                break;
+            case TYPE_CHOICE:
+                xml.append("    <timeout_length_minutes>").append(lengthMinutes)
+                        .append("</timeout_length_minutes>\n");
+                xml.append("    <description>What will you do?</description>\n");
+                xml.append("    <default_choice id=\"choice_axe\"/>\n");
+                appendChoice(xml, "fire", nextId, true);
+                appendChoice(xml, "choice_axe", nextId, false);
+                appendChoice(xml, "choice_blend", nextId, false);
+                break;
+        }
+        xml.append("  </moment>\n");
+    }
+
+    private static void appendChoice(StringBuilder xml, String id, String nextId,
+                                     boolean depletesWeapon) {
+        xml.append("    <choice id=\"").append(id).append("\">\n");
+        xml.append("      <description>Use ").append(id).append(".</description>\n");
+        if (nextId != null) {
+            xml.append("      <next_moment id=\"").append(nextId).append("\"/>\n");
+        }
+        xml.append("      <outcome deplete_weapon=\"").append(depletesWeapon)
+                .append("\" increment_enemies=\"true\"/>\n");
+        xml.append("      <icon name=\"ic_axe_white\"/>\n");
+        xml.append("    </choice>\n");
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.benchmarks;
+
+import com.google.fpl.gim.examplegame.MissionTemplate;
+import com.google.fpl.gim.examplegame.utils.MissionParseException;
+import com.google.fpl.gim.examplegame.utils.MissionParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long MissionParser takes to read missions of different sizes from XML. The time
+ * should grow linearly with the number of Moments, so the time per Moment of the largest mission
+ * should be close to that of the smaller ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MissionParserBenchmark {
+
+    @Param({"10", "100", "1000", "100000"})
+    public int numMoments;
+
+    private byte[] mMissionXml;
+
+    @Setup
+    public void setUp() {
+        BenchmarkMissions.disableLogging();
+        mMissionXml = BenchmarkMissions.makeMissionXml(numMoments);
+    }
+
+    @Benchmark
+    public MissionTemplate parseMission() throws MissionParseException {
+        return MissionParser.parseMissionTemplate(new ByteArrayInputStream(mMissionXml));
+    }
+}
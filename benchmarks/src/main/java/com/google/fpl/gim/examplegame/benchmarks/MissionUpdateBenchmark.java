@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.benchmarks;
+
+import com.google.fpl.gim.examplegame.Mission;
+import com.google.fpl.gim.examplegame.utils.ManualClock;
+import com.google.fpl.gim.examplegame.utils.MissionParseException;
+import com.google.fpl.gim.examplegame.utils.Utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one run of the game loop, Mission.update(), while a Moment of each type is active.
+ * Each update is a second after the last, as it is while the UI is bound, so every tenth update
+ * also samples the average speed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MissionUpdateBenchmark {
+
+    private static final long TICK_NANOS = Utils.secondsToNanos(1f);
+
+    @Param({BenchmarkMissions.TYPE_TIMER, BenchmarkMissions.TYPE_SFX,
+            BenchmarkMissions.TYPE_SPOKEN_TEXT, BenchmarkMissions.TYPE_CHOICE})
+    public String momentType;
+
+    private ManualClock mClock;
+    private Mission mMission;
+
+    // A new mission for each iteration, so the clock never reaches the end of the Moment.
+    @Setup(Level.Iteration)
+    public void setUp() throws MissionParseException {
+        BenchmarkMissions.disableLogging();
+        mClock = new ManualClock(0);
+        mMission = BenchmarkMissions.startEndlessMission(momentType, mClock);
+    }
+
+    @Benchmark
+    public void update() {
+        mClock.advanceNanos(TICK_NANOS);
+        mMission.update();
+    }
+}
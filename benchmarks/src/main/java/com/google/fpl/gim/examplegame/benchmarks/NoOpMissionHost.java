@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.benchmarks;
+
+import com.google.fpl.gim.examplegame.Choice;
+import com.google.fpl.gim.examplegame.MissionHost;
+import com.google.fpl.gim.examplegame.utils.Clock;
+
+/**
+ * A MissionHost that does nothing, so that a benchmark measures only the mission. Sounds and
+ * speech never finish, so a sound or spoken text Moment stays active for as long as it is
+ * updated.
+ */
+public class NoOpMissionHost implements MissionHost {
+
+    private final Clock mClock;
+
+    public NoOpMissionHost(Clock clock) {
+        mClock = clock;
+    }
+
+    @Override
+    public Clock getClock() {
+        return mClock;
+    }
+
+    @Override
+    public void requestUpdate() {
+    }
+
+    @Override
+    public void runOnGameThread(Runnable task) {
+        task.run();
+    }
+
+    @Override
+    public void queueSound(String uri, PlaybackListener listener) {
+    }
+
+    @Override
+    public void dequeueSound(String uri) {
+    }
+
+    @Override
+    public boolean obtainAudioFocus() {
+        return true;
+    }
+
+    @Override
+    public void endPlayback() {
+    }
+
+    @Override
+    public void speak(String utteranceId, String text, PlaybackListener listener) {
+    }
+
+    @Override
+    public void stopSpeaking() {
+    }
+
+    @Override
+    public void postChoiceNotification(Choice[] choices) {
+    }
+
+    @Override
+    public void cancelChoiceNotification() {
+    }
+
+    @Override
+    public void postFitnessNotification(int weaponChargedPercentage) {
+    }
+
+    @Override
+    public void cancelFitnessNotification() {
+    }
+
+    @Override
+    public void publishFitnessStats() {
+    }
+}
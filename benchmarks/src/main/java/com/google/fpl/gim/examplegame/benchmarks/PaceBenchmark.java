@@ -0,0 +1,83 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.benchmarks;
+
+import com.google.fpl.gim.examplegame.Mission;
+import com.google.fpl.gim.examplegame.utils.ManualClock;
+import com.google.fpl.gim.examplegame.utils.MissionParseException;
+import com.google.fpl.gim.examplegame.utils.Utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the pace calculation: the steps of one second are reported, which moves the sliding
+ * window of step readings and checks the average pace against the challenge pace, and the mission
+ * is updated a second later. The pace either stays above the challenge pace, or crosses it once
+ * each pace window.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PaceBenchmark {
+
+    // A step reading arrives about once a second.
+    private static final long READING_NANOS = Utils.secondsToNanos(1f);
+    // Readings in the default pace window of a mission.
+    private static final int READINGS_PER_WINDOW = 10;
+    // Steps in a second: about 8 and 16 minutes per mile, either side of the challenge pace.
+    private static final int FAST_STEPS = 2;
+    private static final int SLOW_STEPS = 1;
+
+    @Param({"steady", "alternating"})
+    public String pace;
+
+    private ManualClock mClock;
+    private Mission mMission;
+    private boolean mIsAlternating;
+    private boolean mIsFast;
+    private int mNumReadings;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws MissionParseException {
+        BenchmarkMissions.disableLogging();
+        mClock = new ManualClock(0);
+        mMission = BenchmarkMissions.startEndlessMission(BenchmarkMissions.TYPE_TIMER, mClock);
+        mIsAlternating = pace.equals("alternating");
+        mIsFast = true;
+        mNumReadings = 0;
+    }
+
+    @Benchmark
+    public void samplePace() {
+        if (mIsAlternating && ++mNumReadings % READINGS_PER_WINDOW == 0) {
+            mIsFast = !mIsFast;
+        }
+        mMission.onStepTaken(mIsFast ? FAST_STEPS : SLOW_STEPS);
+        mClock.advanceNanos(READING_NANOS);
+        mMission.update();
+    }
+}
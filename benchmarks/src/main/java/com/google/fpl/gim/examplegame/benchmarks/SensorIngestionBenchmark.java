@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.benchmarks;
+
+import com.google.fpl.gim.examplegame.Mission;
+import com.google.fpl.gim.examplegame.utils.ManualClock;
+import com.google.fpl.gim.examplegame.utils.MissionParseException;
+import com.google.fpl.gim.examplegame.utils.SensorSampleQueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many sensor readings a running mission can take in: the step and speed readings
+ * that Google Fit adds to the mission's SensorSampleQueue, applied directly, or queued and drained
+ * as an update does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SensorIngestionBenchmark {
+
+    // Either side of the challenge pace, in meters per second.
+    private static final float FAST_SPEED = 3.0f;
+    private static final float SLOW_SPEED = 2.0f;
+
+    private Mission mMission;
+    private SensorSampleQueue mSamples;
+    private boolean mIsFast;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws MissionParseException {
+        BenchmarkMissions.disableLogging();
+        mMission = BenchmarkMissions.startEndlessMission(BenchmarkMissions.TYPE_TIMER,
+                new ManualClock(0));
+        mSamples = mMission.getSensorSamples();
+    }
+
+    @Benchmark
+    public void stepTaken() {
+        mMission.onStepTaken(1);
+    }
+
+    @Benchmark
+    public void speedMeasured() {
+        mMission.onSpeedMeasured(FAST_SPEED);
+    }
+
+    // Every reading crosses the challenge pace, so each one also queues a sound.
+    @Benchmark
+    public void speedMeasuredCrossingPace() {
+        mIsFast = !mIsFast;
+        mMission.onSpeedMeasured(mIsFast ? FAST_SPEED : SLOW_SPEED);
+    }
+
+    // A step reading passed through the queue, on one thread, without the rest of an update.
+    @Benchmark
+    public int stepQueuedAndDrained() {
+        mSamples.offer(SensorSampleQueue.TYPE_STEPS, 0, 1f);
+        return mSamples.drain(mMission, 0);
+    }
+}
@@ -16,6 +16,8 @@
 
 package com.google.fpl.gim.examplegame;
 
+import com.google.fpl.gim.examplegame.utils.MissionParseException;
+
 import java.util.ArrayList;
 
 /**
@@ -29,6 +31,8 @@ public class Choice {
     private String mDescription;
     // The moment to go to next.
     private String mNextMomentId;
+    // Index of the next moment, resolved when the mission is linked. Not changed afterwards.
+    private int mNextMomentIndex = MissionTemplate.END_MOMENT_INDEX;
     // The set of changes to make if the player chooses this option.
     private Outcome mOutcome;
     // Whether or not this Choice requires a charged weapon.
@@ -62,6 +66,23 @@ public class Choice {
         return mNextMomentId;
     }
 
+    public int getNextMomentIndex() {
+        return mNextMomentIndex;
+    }
+
+    public void setNextMomentIndex(int nextMomentIndex) {
+        mNextMomentIndex = nextMomentIndex;
+    }
+
+    /**
+     * Resolves the id of the Moment this Choice leads to.
+     * @param template The mission being linked.
+     * @throws MissionParseException Thrown if the next Moment does not exist.
+     */
+    public void link(MissionTemplate template) throws MissionParseException {
+        mNextMomentIndex = template.findMomentIndex(mNextMomentId, mChoiceId);
+    }
+
     public Outcome getOutcome() {
         return mOutcome;
     }
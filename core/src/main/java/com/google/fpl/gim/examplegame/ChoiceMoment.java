@@ -16,12 +16,7 @@
 
 package com.google.fpl.gim.examplegame;
 
-import android.app.NotificationManager;
-import android.content.Context;
-import android.content.Intent;
-import android.support.v4.app.NotificationCompat;
-
-import com.google.fpl.gim.examplegame.gui.NotificationOptions;
+import com.google.fpl.gim.examplegame.utils.TimerWheel;
 import com.google.fpl.gim.examplegame.utils.Utils;
 
 import java.util.ArrayList;
@@ -35,30 +30,26 @@ public class ChoiceMoment extends Moment {
     public static final int MAXIMUM_NUM_OF_CHOICES = 3;
     public static final int MINIMUM_NUM_OF_CHOICES = 2;
 
-    private static final String CHOICE_NOTIFICATION_ACTION_1
-            = "com.google.fpl.gim.examplegame.CHOICE_NOTIFICATION_ACTION_1";
-    private static final String CHOICE_NOTIFICATION_ACTION_2
-            = "com.google.fpl.gim.examplegame.CHOICE_NOTIFICATION_ACTION_2";
-    private static final String CHOICE_NOTIFICATION_ACTION_3
-            = "com.google.fpl.gim.examplegame.CHOICE_NOTIFICATION_ACTION_3";
-    private static final String CHOICE_ID_KEY
-            = "com.google.fpl.gim.examplegame.CHOICE_ID_KEY";
-
-    private static final String ICON_RESOURCE_FOLDER = "drawable";
-    private static long[] VIBRATE_PATTERN = {0, 300, 100, 300, 100, 300};
-
     private ChoiceMomentData mData;
     private long mStartTimeNanos;
     private Choice mSelectedChoice = null;
 
+    // Picks the default Choice if the player has not chosen in time.
+    private final TimerWheel.Timer mTimeoutTimer = new TimerWheel.Timer() {
+        @Override
+        protected void onExpired(long nowNanos) {
+            onTimeToMakeChoiceExpired();
+        }
+    };
+
     public ChoiceMoment (Mission mission, ChoiceMomentData data) {
         super(mission);
         this.mData = data;
     }
 
-    public void update(long nowNanos) {
-        Utils.logDebug(TAG, "ChoiceMoment \"" + mData.getMomentId() + "\" update.");
-        if (!isDone() && hasTimeToMakeChoiceExpired(nowNanos)) {
+    private void onTimeToMakeChoiceExpired() {
+        Utils.logDebug(TAG, "ChoiceMoment \"" + mData.getMomentId() + "\" timed out.");
+        if (!isDone()) {
             // Pick default choice
             if (noChoiceSelectedYet()) {
                 selectChoice(mData.getDefaultChoiceId());
@@ -72,53 +63,29 @@ public class ChoiceMoment extends Moment {
         super.start(nowNanos);
         Utils.logDebug(TAG, "ChoiceMoment \"" + mData.getMomentId() + "\" started.");
         setStartTimeNanos(nowNanos);
+        getTimerWheel().schedule(mTimeoutTimer, nowNanos + mData.getTimeoutLengthNanos());
 
         // If the user's weapon is not charged, the choice to fire their weapon should not be
         // displayed.
         Choice[] choices = mData.getChoices();
-        int numActions = mData.getNumChoices();
+        int numAvailable = mData.getNumChoices();
         if (!getMission().isWeaponCharged()) {
-            numActions--;
+            numAvailable--;
         }
 
-        // Create notification actions using the valid choices.
-        NotificationCompat.Action[] actions = new NotificationCompat.Action[numActions];
+        // Bounds checked in MissionParser.java, which requires each choice moment to have
+        // 2 or 3 choices associated with it.
+        Choice[] available = new Choice[numAvailable];
         int index = 0;
-        String[] allActions = {CHOICE_NOTIFICATION_ACTION_1, CHOICE_NOTIFICATION_ACTION_2,
-                CHOICE_NOTIFICATION_ACTION_3};
         for (Choice choice : choices) {
             if (!choice.requiresChargedWeapon() || getMission().isWeaponCharged()) {
-                // Bounds checked in MissionParser.java, which requires each choice moment to have
-                // 2 or 3 choices associated with it.
-                Intent actionIntent = new Intent(allActions[index]);
-                actionIntent.putExtra(CHOICE_ID_KEY, choice.getChoiceId());
-
-                String resourceName = choice.getDrawableResourceName();
-                String packageName = getMission().getService().getPackageName();
-                int resource = getMission().getService().getResources()
-                        .getIdentifier(resourceName, ICON_RESOURCE_FOLDER, packageName);
-
-                // If the resource does not exist, default to using application icon.
-                if (resource == 0) {
-                    resource = getMission().getService().getApplicationInfo().icon;
-                }
-
-                actions[index] = getMission().getService()
-                        .makeNotificationAction(actionIntent, resource,
-                        choice.getDescription());
+                available[index] = choice;
                 index++;
             }
         }
 
         // Create the notification to warn the user of an approaching enemy.
-        NotificationOptions notificationOptions =
-                NotificationOptions.getDefaultNotificationOptions();
-        notificationOptions.setNotificationId(MainService.CHOICE_NOTIFICATION_ID);
-        notificationOptions.setPriorityAsMax();
-        notificationOptions.setActions(actions);
-        notificationOptions.setNotificationDefaults(0);
-        notificationOptions.setVibratePattern(VIBRATE_PATTERN);
-        getMission().getService().postActionNotification(notificationOptions);
+        getMission().getHost().postChoiceNotification(available);
     }
 
     @Override
@@ -141,11 +108,26 @@ public class ChoiceMoment extends Moment {
         }
     }
 
+    /**
+     * The next moment is not defined for a ChoiceMoment until the user has selected a choice.
+     * @return Returns MissionTemplate.END_MOMENT_INDEX until a choice is made, then returns the
+     *         index of the next moment.
+     */
+    @Override
+    public int getNextMomentIndex() {
+        if (mSelectedChoice == null) {
+            return MissionTemplate.END_MOMENT_INDEX;
+        } else {
+            return mSelectedChoice.getNextMomentIndex();
+        }
+    }
+
     @Override
     public void restart(long nowNanos) {
         start(nowNanos);
     }
 
+    @Override
     public ChoiceMomentData getMomentData() {
         return this.mData;
     }
@@ -154,18 +136,14 @@ public class ChoiceMoment extends Moment {
         this.mStartTimeNanos = startTimeNanos;
     }
 
-    public boolean hasTimeToMakeChoiceExpired(long nowNanos) {
-        return (nowNanos - mStartTimeNanos) >= Utils.minutesToNanos(mData
-                .getTimeoutLengthMinutes());
+    @Override
+    public void cancelTimers() {
+        super.cancelTimers();
+        getTimerWheel().cancel(mTimeoutTimer);
     }
 
-    public void onReceive(Context context, Intent intent) {
-        if (intent.getAction().equals(CHOICE_NOTIFICATION_ACTION_1)
-                || intent.getAction().equals(CHOICE_NOTIFICATION_ACTION_2)
-                || intent.getAction().equals(CHOICE_NOTIFICATION_ACTION_3)) {
-            String choiceId = intent.getStringExtra(CHOICE_ID_KEY);
-            selectChoice(choiceId);
-        }
+    public boolean hasTimeToMakeChoiceExpired(long nowNanos) {
+        return (nowNanos - mStartTimeNanos) >= mData.getTimeoutLengthNanos();
     }
 
     public synchronized void selectChoice(String choiceId) {
@@ -178,9 +156,14 @@ public class ChoiceMoment extends Moment {
     }
 
     public void dismissNotification() {
-        NotificationManager notificationManager = (NotificationManager) getMission().getService()
-                .getSystemService(Context.NOTIFICATION_SERVICE);
-        notificationManager.cancel(MainService.CHOICE_NOTIFICATION_ID);
+        getMission().getHost().cancelChoiceNotification();
+    }
+
+    /**
+     * @return The choice the player made, or null if no choice has been made yet.
+     */
+    public Choice getSelectedChoice() {
+        return mSelectedChoice;
     }
 
     public boolean noChoiceSelectedYet() {
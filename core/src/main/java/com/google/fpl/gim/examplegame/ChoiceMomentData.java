@@ -16,6 +16,9 @@
 
 package com.google.fpl.gim.examplegame;
 
+import com.google.fpl.gim.examplegame.utils.MissionParseException;
+import com.google.fpl.gim.examplegame.utils.Utils;
+
 import java.util.ArrayList;
 import java.util.HashMap;
 
@@ -32,6 +35,8 @@ public class ChoiceMomentData extends MomentData {
     private final String mDefaultChoiceId;
     // Time in minutes until the default Choice is executed.
     private final float mTimeoutLengthMinutes;
+    // The same time in nanoseconds, converted once rather than whenever the Moment starts.
+    private final long mTimeoutLengthNanos;
 
     /**
      * Constructor to explicitly set all fields for a ChoiceMomentData.
@@ -50,6 +55,7 @@ public class ChoiceMomentData extends MomentData {
         mChoices = choices;
         mDefaultChoiceId = defaultChoiceId;
         mTimeoutLengthMinutes = timeoutLengthMinutes;
+        mTimeoutLengthNanos = Utils.minutesToNanos(timeoutLengthMinutes);
     }
 
     /**
@@ -86,6 +92,19 @@ public class ChoiceMomentData extends MomentData {
         mChoices.put(choice.getChoiceId(), choice);
     }
 
+    @Override
+    public void link(MissionTemplate template) throws MissionParseException {
+        super.link(template);
+        for (Choice choice : mChoices.values()) {
+            choice.link(template);
+        }
+    }
+
+    @Override
+    public Moment createMoment(Mission mission) {
+        return new ChoiceMoment(mission, this);
+    }
+
     public String getDefaultChoiceId() {
         return mDefaultChoiceId;
     }
@@ -93,4 +112,8 @@ public class ChoiceMomentData extends MomentData {
     public float getTimeoutLengthMinutes() {
         return mTimeoutLengthMinutes;
     }
+
+    public long getTimeoutLengthNanos() {
+        return mTimeoutLengthNanos;
+    }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+/**
+ * The fitness stats of a mission at one moment in time, as shown by the UI. Never changes once it
+ * is created, so it can be handed from the game thread to the UI thread without copying, and its
+ * values always belong together.
+ */
+public class FitnessSnapshot {
+
+    // Increases by one each time the mission publishes stats that differ from the last snapshot.
+    private final long mVersion;
+    private final int mNumSteps;
+    private final float mMinutesPerMile;
+    private final float mChallengePace;
+    private final int mNumMinutesExercised;
+    private final int mNumSecondsExercised;
+    private final int mWeaponChargedPercentage;
+
+    public FitnessSnapshot(long version, int numSteps, float minutesPerMile, float challengePace,
+                           int numMinutesExercised, int numSecondsExercised,
+                           int weaponChargedPercentage) {
+        mVersion = version;
+        mNumSteps = numSteps;
+        mMinutesPerMile = minutesPerMile;
+        mChallengePace = challengePace;
+        mNumMinutesExercised = numMinutesExercised;
+        mNumSecondsExercised = numSecondsExercised;
+        mWeaponChargedPercentage = weaponChargedPercentage;
+    }
+
+    /**
+     * @return The version of the stats. A reader that has already seen this version can skip the
+     *         snapshot without comparing its values.
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    public int getNumSteps() {
+        return mNumSteps;
+    }
+
+    public float getMinutesPerMile() {
+        return mMinutesPerMile;
+    }
+
+    public float getChallengePace() {
+        return mChallengePace;
+    }
+
+    public int getNumMinutesExercised() {
+        return mNumMinutesExercised;
+    }
+
+    public int getNumSecondsExercised() {
+        return mNumSecondsExercised;
+    }
+
+    public int getWeaponChargedPercentage() {
+        return mWeaponChargedPercentage;
+    }
+
+    /**
+     * Compares the snapshot with a new set of stats, so that a new version is only published when
+     * something has changed.
+     * @return Whether every value of the snapshot is equal to the one given.
+     */
+    public boolean hasStats(int numSteps, float minutesPerMile, float challengePace,
+                            int numMinutesExercised, int numSecondsExercised,
+                            int weaponChargedPercentage) {
+        return mNumSteps == numSteps
+                && Float.compare(mMinutesPerMile, minutesPerMile) == 0
+                && Float.compare(mChallengePace, challengePace) == 0
+                && mNumMinutesExercised == numMinutesExercised
+                && mNumSecondsExercised == numSecondsExercised
+                && mWeaponChargedPercentage == weaponChargedPercentage;
+    }
+}
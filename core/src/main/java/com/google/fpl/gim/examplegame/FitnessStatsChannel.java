@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.Utils;
+
+/**
+ * Carries the fitness stats of a mission from the game thread to the UI. Changes to the stats
+ * only mark the channel as dirty; the latest snapshot is read and handed to the observer when the
+ * channel is flushed, and no more often than the maximum rate, so a burst of changes, such as
+ * several step readings in a row, becomes a single update. A snapshot whose version the observer
+ * has already been sent is skipped. Nothing is read or sent while there is no observer, which is
+ * the case while no UI is bound.
+ *
+ * Not thread safe: it is only used on the game thread, and the observer is called there.
+ */
+public class FitnessStatsChannel {
+
+    /**
+     * Whatever the fitness stats are read from, usually the running Mission.
+     */
+    public interface Source {
+        /**
+         * @return The latest fitness stats, or null if there are none yet.
+         */
+        FitnessSnapshot getFitnessSnapshot();
+    }
+
+    /**
+     * Receives the fitness stats, usually the UI.
+     */
+    public interface Observer {
+        /**
+         * Called on the game thread with the latest fitness stats.
+         * @param snapshot The fitness stats, which never change.
+         */
+        void onFitnessStats(FitnessSnapshot snapshot);
+    }
+
+    private Observer mObserver;
+    private long mMinimumIntervalNanos;
+
+    // Whether the stats have changed since the observer was last sent them.
+    private boolean mIsDirty = false;
+    private boolean mHasDelivered = false;
+    private long mLastDeliveryNanos;
+    // The version of the last snapshot sent to the current observer. Versions start at 1.
+    private long mLastDeliveredVersion = 0;
+
+    // The number of snapshots sent, the number of changes that were folded into them, and the
+    // number of flushes that found no new version to send.
+    private int mNumDelivered = 0;
+    private int mNumCoalesced = 0;
+    private int mNumSkipped = 0;
+
+    /**
+     * @param maximumUpdatesPerSecond The most times a second that the observer is sent the stats.
+     */
+    public FitnessStatsChannel(float maximumUpdatesPerSecond) {
+        setMaximumUpdatesPerSecond(maximumUpdatesPerSecond);
+    }
+
+    /**
+     * @param maximumUpdatesPerSecond The most times a second that the observer is sent the stats.
+     *                                Must be greater than zero.
+     */
+    public void setMaximumUpdatesPerSecond(float maximumUpdatesPerSecond) {
+        if (maximumUpdatesPerSecond <= 0) {
+            throw new IllegalArgumentException(
+                    "Maximum updates per second must be positive: " + maximumUpdatesPerSecond);
+        }
+        mMinimumIntervalNanos = Utils.secondsToNanos(1f / maximumUpdatesPerSecond);
+    }
+
+    /**
+     * Sets the observer to send the stats to, or null to stop sending them. A new observer is
+     * sent the stats at the next flush, whether or not they have changed.
+     * @param observer The observer, or null.
+     */
+    public void setObserver(Observer observer) {
+        mObserver = observer;
+        mIsDirty = observer != null;
+        mLastDeliveredVersion = 0;
+    }
+
+    public boolean hasObserver() {
+        return mObserver != null;
+    }
+
+    /**
+     * Notes that the stats have changed. Cheap enough to call on every step reading.
+     */
+    public void onStatsChanged() {
+        if (mObserver == null) {
+            return;
+        }
+        if (mIsDirty) {
+            mNumCoalesced++;
+        }
+        mIsDirty = true;
+    }
+
+    /**
+     * @return Whether the stats have changed since the observer was last sent them.
+     */
+    public boolean isPending() {
+        return mIsDirty;
+    }
+
+    /**
+     * @return The earliest time at which a pending change may be sent, or Long.MAX_VALUE if
+     *         there is no pending change.
+     */
+    public long getNextFlushNanos() {
+        if (!mIsDirty) {
+            return Long.MAX_VALUE;
+        }
+        if (!mHasDelivered) {
+            return Long.MIN_VALUE;
+        }
+        return mLastDeliveryNanos + mMinimumIntervalNanos;
+    }
+
+    /**
+     * Sends the observer the latest snapshot of the stats, if they have changed, the last snapshot
+     * was sent long enough ago, and the observer has not been sent this version already.
+     * @param source Where to read the stats from.
+     * @param nowNanos The current time.
+     * @return Whether a snapshot was sent.
+     */
+    public boolean flush(Source source, long nowNanos) {
+        if (!mIsDirty || mObserver == null) {
+            return false;
+        }
+        if (mHasDelivered && nowNanos - mLastDeliveryNanos < mMinimumIntervalNanos) {
+            return false;
+        }
+        mIsDirty = false;
+        FitnessSnapshot snapshot = source.getFitnessSnapshot();
+        if (snapshot == null || snapshot.getVersion() == mLastDeliveredVersion) {
+            mNumSkipped++;
+            return false;
+        }
+        mHasDelivered = true;
+        mLastDeliveryNanos = nowNanos;
+        mLastDeliveredVersion = snapshot.getVersion();
+        mNumDelivered++;
+        mObserver.onFitnessStats(snapshot);
+        return true;
+    }
+
+    public int getNumDelivered() {
+        return mNumDelivered;
+    }
+
+    public int getNumCoalesced() {
+        return mNumCoalesced;
+    }
+
+    public int getNumSkipped() {
+        return mNumSkipped;
+    }
+}
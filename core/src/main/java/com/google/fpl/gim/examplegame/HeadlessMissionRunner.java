@@ -0,0 +1,442 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.Clock;
+import com.google.fpl.gim.examplegame.utils.ManualClock;
+import com.google.fpl.gim.examplegame.utils.SensorSampleQueue;
+import com.google.fpl.gim.examplegame.utils.Utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * Runs a mission without a device, as fast as it can be updated rather than in real time. The
+ * runner is the mission's host: it plays a scripted trace of sensor readings into the mission,
+ * makes scripted choices, and pretends to play sounds and speech for a fixed length of time. The
+ * clock jumps straight from one event to the next, so a long mission runs in a few milliseconds.
+ *
+ * The Moments started, the choices made and the number of updates are recorded, so that a run can
+ * be checked by a test, or timed to measure the whole engine.
+ */
+public class HeadlessMissionRunner implements MissionHost {
+
+    private static final String TAG = HeadlessMissionRunner.class.getSimpleName();
+
+    // How long the pretend sounds and speech take to play.
+    private static final long SOUND_LENGTH_NANOS = Utils.secondsToNanos(2f);
+    private static final long SPEECH_LENGTH_PER_WORD_NANOS = Utils.secondsToNanos(0.4f);
+
+    private static final long NO_EVENT = Long.MAX_VALUE;
+
+    // A sensor reading from the trace.
+    private static class SensorSample {
+        final long mTimeNanos;
+        final int mType;
+        final long mDurationNanos;
+        final float mValue;
+
+        SensorSample(long timeNanos, int type, long durationNanos, float value) {
+            mTimeNanos = timeNanos;
+            mType = type;
+            mDurationNanos = durationNanos;
+            mValue = value;
+        }
+    }
+
+    // A sound waiting to be played.
+    private static class QueuedSound {
+        final String mUri;
+        final PlaybackListener mListener;
+
+        QueuedSound(String uri, PlaybackListener listener) {
+            mUri = uri;
+            mListener = listener;
+        }
+    }
+
+    private final ManualClock mClock;
+    private final long mStartNanos;
+    private final Mission mMission;
+
+    // The trace, in time order, and the next reading to play.
+    private final ArrayList<SensorSample> mTrace = new ArrayList<>();
+    private int mNextSampleIndex = 0;
+    // Readings are delivered at the end of each batch of this length, or straight away if 0.
+    private long mSensorBatchNanos = 0;
+
+    // The choice to make in each choice moment, by moment id.
+    private final Map<String, String> mScriptedChoices = new HashMap<>();
+
+    // Audio waiting to be played, and what is playing.
+    private final Queue<QueuedSound> mSoundQueue = new LinkedList<>();
+    private long mPlaybackEndNanos = NO_EVENT;
+    private PlaybackListener mPlayingSoundListener;
+    private PlaybackListener mSpeechListener;
+
+    private boolean mIsUpdateRequested = false;
+
+    // What happened during the run.
+    private final ArrayList<String> mMomentSequence = new ArrayList<>();
+    private final ArrayList<String> mChoicesMade = new ArrayList<>();
+    private Moment mCurrentMoment;
+    private int mNumUpdates = 0;
+    private int mNumFitnessStatsChanges = 0;
+    private int mNumNotificationsPosted = 0;
+    private int mNumSoundsPlayed = 0;
+
+    /**
+     * @param template The mission to run.
+     * @param data The settings of the run.
+     */
+    public HeadlessMissionRunner(MissionTemplate template, MissionData data) {
+        mStartNanos = 0;
+        mClock = new ManualClock(mStartNanos);
+        mMission = new Mission(data, mClock);
+        mMission.setHost(this);
+        mMission.setTemplate(template);
+    }
+
+    /**
+     * Adds steps to the sensor trace. Readings must be added in time order.
+     * @param timeSeconds When the steps are reported, from the start of the mission.
+     * @param steps The number of steps taken since the last step reading.
+     */
+    public void addSteps(float timeSeconds, int steps) {
+        addSample(new SensorSample(toNanos(timeSeconds), SensorSampleQueue.TYPE_STEPS, 0, steps));
+    }
+
+    /**
+     * Adds a speed reading to the sensor trace. Readings must be added in time order.
+     * @param timeSeconds When the speed is reported, from the start of the mission.
+     * @param speedMetersPerSecond The speed of the player.
+     */
+    public void addSpeed(float timeSeconds, float speedMetersPerSecond) {
+        addSample(new SensorSample(toNanos(timeSeconds), SensorSampleQueue.TYPE_SPEED, 0,
+                speedMetersPerSecond));
+    }
+
+    /**
+     * Adds a distance reading to the sensor trace. Readings must be added in time order.
+     * @param timeSeconds When the distance is reported, from the start of the mission.
+     * @param durationSeconds The time over which the distance was covered, up to when it is
+     *                        reported.
+     * @param meters The distance covered.
+     */
+    public void addDistance(float timeSeconds, float durationSeconds, float meters) {
+        addSample(new SensorSample(toNanos(timeSeconds), SensorSampleQueue.TYPE_DISTANCE,
+                Utils.secondsToNanos(durationSeconds), meters));
+    }
+
+    /**
+     * Delivers the readings of the trace in batches, as a phone that reports its sensors every
+     * few seconds does. Each reading keeps the time it was taken, but the mission is only given
+     * it at the end of its batch.
+     * @param batchSeconds The length of a batch, or 0 to deliver each reading when it is taken.
+     */
+    public void setSensorBatchSeconds(float batchSeconds) {
+        mSensorBatchNanos = Utils.secondsToNanos(batchSeconds);
+    }
+
+    private void addSample(SensorSample sample) {
+        if (!mTrace.isEmpty() && sample.mTimeNanos < mTrace.get(mTrace.size() - 1).mTimeNanos) {
+            throw new IllegalArgumentException("Sensor readings must be added in time order.");
+        }
+        mTrace.add(sample);
+    }
+
+    /**
+     * Makes a choice as soon as a choice moment starts. Choice moments without a scripted choice
+     * time out, and pick their default choice.
+     * @param momentId The id of the choice moment.
+     * @param choiceId The id of the choice to make.
+     */
+    public void setChoice(String momentId, String choiceId) {
+        mScriptedChoices.put(momentId, choiceId);
+    }
+
+    /**
+     * Runs the mission until it ends, or until a length of time has passed.
+     * @param maximumMinutes The longest the mission may run for, in mission time.
+     * @return True if the mission ended.
+     */
+    public boolean run(float maximumMinutes) {
+        long endNanos = mStartNanos + Utils.minutesToNanos(maximumMinutes);
+
+        mMission.start();
+        onMomentChanged();
+        while (!mMission.isDone()) {
+            long nextEventNanos = getNextEventNanos();
+            if (nextEventNanos > endNanos) {
+                break;
+            }
+            mClock.setNanoTime(Math.max(mClock.nanoTime(), nextEventNanos));
+            mIsUpdateRequested = false;
+
+            playSensorSamples();
+            finishPlayback();
+            makeScriptedChoice();
+
+            int numMomentsStarted = mMission.getNumMomentsStarted();
+            mMission.update();
+            mNumUpdates++;
+            if (mMission.getNumMomentsStarted() != numMomentsStarted || mMission.isDone()) {
+                onMomentChanged();
+            }
+
+            // Consume the audio queue, as MainService does at the end of each update.
+            if (!mSoundQueue.isEmpty() && obtainAudioFocus()) {
+                playFirstInQueue();
+            }
+        }
+        mMission.cleanup();
+
+        Utils.logDebug(TAG, "Ran " + Utils.nanosToSeconds(getMissionNanos()) + " seconds in "
+                + mNumUpdates + " updates: " + mMomentSequence);
+        return mMission.isDone();
+    }
+
+    /**
+     * @return The time of the next thing that needs the mission to be updated.
+     */
+    private long getNextEventNanos() {
+        long nowNanos = mClock.nanoTime();
+        Moment currentMoment = mMission.getMissionData().getCurrentMoment();
+        if (mIsUpdateRequested || (currentMoment instanceof ChoiceMoment
+                && !currentMoment.isDone()
+                && mScriptedChoices.containsKey(currentMoment.getMomentData().getMomentId()))) {
+            return nowNanos;
+        }
+        long nextEventNanos = Math.min(mMission.getNextDeadlineNanos(), mPlaybackEndNanos);
+        if (mNextSampleIndex < mTrace.size()) {
+            nextEventNanos = Math.min(nextEventNanos,
+                    getDeliveryNanos(mTrace.get(mNextSampleIndex)));
+        }
+        return nextEventNanos;
+    }
+
+    /**
+     * @return When a reading is given to the mission: at the end of its batch, if the readings
+     *         are batched.
+     */
+    private long getDeliveryNanos(SensorSample sample) {
+        if (mSensorBatchNanos <= 0) {
+            return sample.mTimeNanos;
+        }
+        long batchesNanos = sample.mTimeNanos - mStartNanos + mSensorBatchNanos - 1;
+        return mStartNanos + batchesNanos / mSensorBatchNanos * mSensorBatchNanos;
+    }
+
+    private void playSensorSamples() {
+        while (mNextSampleIndex < mTrace.size()
+                && getDeliveryNanos(mTrace.get(mNextSampleIndex)) <= mClock.nanoTime()) {
+            SensorSample sample = mTrace.get(mNextSampleIndex++);
+            // Queued as the sensors do, with the time the reading was taken, to be applied by the
+            // next update.
+            mMission.getSensorSamples().offer(sample.mType, sample.mTimeNanos,
+                    sample.mDurationNanos, sample.mValue);
+        }
+    }
+
+    private void finishPlayback() {
+        if (mPlaybackEndNanos > mClock.nanoTime()) {
+            return;
+        }
+        if (mSpeechListener != null) {
+            PlaybackListener listener = mSpeechListener;
+            mSpeechListener = null;
+            listener.onPlaybackDone();
+        } else if (mPlayingSoundListener != null) {
+            PlaybackListener listener = mPlayingSoundListener;
+            mPlayingSoundListener = null;
+            listener.onPlaybackDone();
+        } else {
+            endPlayback();
+        }
+    }
+
+    private void makeScriptedChoice() {
+        Moment currentMoment = mMission.getMissionData().getCurrentMoment();
+        if (currentMoment instanceof ChoiceMoment && !currentMoment.isDone()) {
+            String choiceId = mScriptedChoices.get(currentMoment.getMomentData().getMomentId());
+            if (choiceId != null) {
+                ((ChoiceMoment) currentMoment).selectChoice(choiceId);
+            }
+        }
+    }
+
+    /**
+     * Records the choice made in the Moment that has just ended, and the Moment that has started,
+     * if the mission has not ended.
+     */
+    private void onMomentChanged() {
+        if (mCurrentMoment instanceof ChoiceMoment) {
+            Choice choice = ((ChoiceMoment) mCurrentMoment).getSelectedChoice();
+            mChoicesMade.add(choice == null ? null : choice.getChoiceId());
+        }
+        mCurrentMoment = mMission.getMissionData().getCurrentMoment();
+        if (!mMission.isDone()) {
+            mMomentSequence.add(mMission.getMissionData().getCurrentMomentId());
+        }
+    }
+
+    private void playFirstInQueue() {
+        mPlayingSoundListener = mSoundQueue.poll().mListener;
+        mPlaybackEndNanos = mClock.nanoTime() + SOUND_LENGTH_NANOS;
+        mNumSoundsPlayed++;
+    }
+
+    private long toNanos(float timeSeconds) {
+        return mStartNanos + Utils.secondsToNanos(timeSeconds);
+    }
+
+    /**
+     * @return The mission being run.
+     */
+    public Mission getMission() {
+        return mMission;
+    }
+
+    /**
+     * @return The ids of the Moments, in the order they were started.
+     */
+    public List<String> getMomentSequence() {
+        return mMomentSequence;
+    }
+
+    /**
+     * @return The id of the choice made in each choice moment, in the order they ended.
+     */
+    public List<String> getChoicesMade() {
+        return mChoicesMade;
+    }
+
+    /**
+     * @return How long the mission ran for, in mission time.
+     */
+    public long getMissionNanos() {
+        return mClock.nanoTime() - mStartNanos;
+    }
+
+    public int getNumUpdates() {
+        return mNumUpdates;
+    }
+
+    public int getNumFitnessStatsChanges() {
+        return mNumFitnessStatsChanges;
+    }
+
+    public int getNumNotificationsPosted() {
+        return mNumNotificationsPosted;
+    }
+
+    public int getNumSoundsPlayed() {
+        return mNumSoundsPlayed;
+    }
+
+    @Override
+    public Clock getClock() {
+        return mClock;
+    }
+
+    @Override
+    public void requestUpdate() {
+        mIsUpdateRequested = true;
+    }
+
+    /**
+     * The runner only has one thread, so the task is run straight away.
+     */
+    @Override
+    public void runOnGameThread(Runnable task) {
+        task.run();
+    }
+
+    @Override
+    public void queueSound(String uri, PlaybackListener listener) {
+        mSoundQueue.offer(new QueuedSound(uri, listener));
+        requestUpdate();
+    }
+
+    @Override
+    public void dequeueSound(String uri) {
+        Iterator<QueuedSound> iterator = mSoundQueue.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().mUri.equals(uri)) {
+                iterator.remove();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean obtainAudioFocus() {
+        return mPlaybackEndNanos == NO_EVENT;
+    }
+
+    @Override
+    public void endPlayback() {
+        mPlaybackEndNanos = NO_EVENT;
+        mPlayingSoundListener = null;
+        if (!mSoundQueue.isEmpty()) {
+            requestUpdate();
+        }
+    }
+
+    @Override
+    public void speak(String utteranceId, String text, PlaybackListener listener) {
+        int numWords = text.trim().split("\\s+").length;
+        mSpeechListener = listener;
+        mPlaybackEndNanos = mClock.nanoTime() + numWords * SPEECH_LENGTH_PER_WORD_NANOS;
+    }
+
+    @Override
+    public void stopSpeaking() {
+        if (mSpeechListener != null) {
+            mSpeechListener = null;
+            mPlaybackEndNanos = NO_EVENT;
+        }
+    }
+
+    @Override
+    public void postChoiceNotification(Choice[] choices) {
+        mNumNotificationsPosted++;
+    }
+
+    @Override
+    public void cancelChoiceNotification() {
+    }
+
+    @Override
+    public void postFitnessNotification(int weaponChargedPercentage) {
+        mNumNotificationsPosted++;
+    }
+
+    @Override
+    public void cancelFitnessNotification() {
+    }
+
+    @Override
+    public void publishFitnessStats() {
+        mNumFitnessStatsChanges++;
+    }
+}
@@ -0,0 +1,806 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.Clock;
+import com.google.fpl.gim.examplegame.utils.MissionParseException;
+import com.google.fpl.gim.examplegame.utils.MissionParser;
+import com.google.fpl.gim.examplegame.utils.PaceEstimator;
+import com.google.fpl.gim.examplegame.utils.RunRecorder;
+import com.google.fpl.gim.examplegame.utils.SpeedFusionFilter;
+import com.google.fpl.gim.examplegame.utils.StrideModel;
+import com.google.fpl.gim.examplegame.utils.SensorSampleQueue;
+import com.google.fpl.gim.examplegame.utils.TimerWheel;
+import com.google.fpl.gim.examplegame.utils.Utils;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A mission is a complete gameplay during which the exercising user will be challenged to defeat
+ * fictional pursuers.  The user will have a weapon that can only be charged by running faster.
+ */
+public class Mission implements SensorSampleQueue.Consumer, FitnessStatsChannel.Source {
+
+    private static final String TAG = Mission.class.getSimpleName();
+
+    private MissionData mData;
+
+    // Access to the MainService, or whatever else is running the mission, for audio,
+    // notifications and the fitness stats shown by the UI.
+    private MissionHost mHost;
+
+    // The mission reads the time from this, rather than System.nanoTime().
+    private final Clock mClock;
+
+    private boolean mIsDone = false;
+    private boolean mIsStarted = false;
+    private int mNumMomentsStarted = 0;
+
+    // Access to the fitness sensors, such as Google Fit.
+    private MissionSensors mSensors;
+
+    // Readings from the sensors, waiting to be applied at the start of the next update. A reading
+    // arrives about once a second for each type, so this holds half a minute of them.
+    private static final int SENSOR_SAMPLE_QUEUE_CAPACITY = 64;
+    private final SensorSampleQueue mSensorSamples =
+            new SensorSampleQueue(SENSOR_SAMPLE_QUEUE_CAPACITY);
+
+    // Fitness stats for the mission as a whole.
+    private int mTotalNumStepsTaken = 0;
+    private int mTotalNumIntervalsCompleted = 0;
+    private long mMissionStartTimeNanos;
+
+    // The metrics of every second of the mission, for the summary at the end. Recording stops
+    // after four hours, so that a mission left running does not use more and more memory.
+    private static final int MAXIMUM_RECORDED_SECONDS = 4 * 60 * Utils.MINUTES_TO_SECONDS_SCALE;
+    private static final long RECORD_INTERVAL_NANOS = Utils.secondsToNanos(1f);
+    private RunRecorder mRunRecorder;
+    private long mNextRecordNanos;
+
+    // Fitness stats for a small portion of the mission: the steps of the last few seconds, over a
+    // window whose length is set by the mission. A step reading arrives about once a second, so
+    // this holds a window of up to four minutes.
+    private static final int PACE_ESTIMATOR_CAPACITY = 256;
+    private final PaceEstimator mPaceEstimator = new PaceEstimator(PACE_ESTIMATOR_CAPACITY,
+            Utils.secondsToNanos(MissionTemplate.DEFAULT_PACE_WINDOW_SECONDS));
+    private float mCurrentAverageMinutesPerMile = 0f;
+    private static final float MAXIMUM_MINUTES_PER_MILE = 1000f;
+
+    // The speed worked out from the steps and the speed read from the sensor are combined into a
+    // single speed, from which the pace is worked out. The variances, in (m/s)^2, say how far
+    // each source is trusted: a stride length that has not been calibrated is a rough guess, a
+    // calibrated one is better, and the speed sensor is usually within a third of a meter per
+    // second. The speed of a runner may change by about a quarter of a meter per second in a
+    // second.
+    private static final float SPEED_PROCESS_VARIANCE_PER_SECOND = 0.05f;
+    private static final float CADENCE_SPEED_VARIANCE = 0.25f;
+    private static final float CALIBRATED_CADENCE_SPEED_VARIANCE = 0.12f;
+    private static final float SENSOR_SPEED_VARIANCE = 0.09f;
+    private final SpeedFusionFilter mSpeedFilter =
+            new SpeedFusionFilter(SPEED_PROCESS_VARIANCE_PER_SECOND);
+
+    // The player's stride length at each cadence, learned whenever the speed is known, and used to
+    // work out the speed from the steps.
+    private StrideModel mStrideModel = new StrideModel();
+
+    // The fitness notification is not updated more often than this while the weapon charges.
+    private static final long MINIMUM_FITNESS_NOTIFICATION_INTERVAL_NANOS =
+            Utils.secondsToNanos(1f);
+
+    private boolean mIsAtChallengePace = false;
+    private long mTimestampStartOfChallengePaceNanos;
+    private long mLengthOfIntervalNanos;
+
+    // The pace must stay on the other side of the challenge pace for mChallengePaceDwellNanos
+    // before mIsAtChallengePace changes. While it does, a change is pending, since
+    // mPendingChallengePaceChangeNanos.
+    private long mChallengePaceDwellNanos;
+    private boolean mIsChallengePaceChangePending = false;
+    private long mPendingChallengePaceChangeNanos;
+    private int mNumChallengePaceChanges = 0;
+
+    // Every deadline of the mission and its Moments.
+    private final TimerWheel mTimerWheel;
+
+    // Works out the average pace again when the oldest step reading leaves the window, so that
+    // the pace slows down when the step readings stop.
+    private final TimerWheel.Timer mPaceTimer = new TimerWheel.Timer() {
+        @Override
+        protected void onExpired(long nowNanos) {
+            calculateAverageMinutesPerMile(nowNanos);
+        }
+    };
+
+    // Changes whether the player is at the challenge pace once a pending change has lasted long
+    // enough, even if no reading arrives at that moment.
+    private final TimerWheel.Timer mChallengePaceDwellTimer = new TimerWheel.Timer() {
+        @Override
+        protected void onExpired(long nowNanos) {
+            evaluateChallengePace();
+            scheduleWeaponChargeTimer();
+        }
+    };
+
+    // Wakes the mission when the weapon charge shown in the fitness notification next changes,
+    // and when the weapon is charged, even if no reading arrives at that moment.
+    private final TimerWheel.Timer mWeaponChargeTimer = new TimerWheel.Timer() {
+        @Override
+        protected void onExpired(long nowNanos) {
+            checkWeaponCharged();
+            scheduleWeaponChargeTimer();
+        }
+    };
+
+    private static final String AT_CHALLENGE_PACE_URI
+            = "android.resource://com.google.fpl.gim.examplegame/raw/atchallengepace";
+    private static final String NO_LONGER_AT_CHALLENGE_PACE_URI
+            = "android.resource://com.google.fpl.gim.examplegame/raw/nolongeratchallengepace";
+    private static final String WEAPON_CHARGED_URI
+            = "android.resource://com.google.fpl.gim.examplegame/raw/weaponcharged";
+
+    // The current time represented in nanoseconds.
+    private long mNowNanos;
+
+    private boolean mIsWeaponCharged = false;
+    // The weapon charge last shown in the fitness notification, as a percentage.
+    private int mLastWeaponCharge;
+    private int mNumEnemiesDefeated = 0;
+
+    private ArrayList<String> mOverallFictionalProgress = new ArrayList<>();
+
+    // The fitness stats last published, which may be read from any thread. Only replaced, on the
+    // game thread, and only while publishing is turned on, as each new version is a new object.
+    private final AtomicReference<FitnessSnapshot> mPublishedFitnessSnapshot =
+            new AtomicReference<>();
+    private long mFitnessSnapshotVersion = 0;
+    private boolean mIsPublishingFitnessSnapshots = false;
+
+    public Mission(MissionData data) {
+        this(data, Clock.SYSTEM);
+    }
+
+    /**
+     * @param data The settings of the run.
+     * @param clock The clock to read the time from.
+     */
+    public Mission(MissionData data, Clock clock) {
+        this.mData = data;
+        this.mClock = clock;
+        this.mTimerWheel = new TimerWheel(clock.nanoTime());
+    }
+
+    /**
+     * Makes the moment referred to by nextMomentIndex the current Moment. Checks if the game
+     * should end by checking the nextMomentIndex.
+     * @param nextMomentIndex The index of the moment to make the current moment.
+     */
+    public void changeCurrentMoment(int nextMomentIndex, long now) {
+        if (nextMomentIndex == MissionTemplate.END_MOMENT_INDEX) {
+            mIsDone = true;
+            return;
+        }
+
+        mData.setCurrentMomentIndex(nextMomentIndex);
+        mNumMomentsStarted++;
+        mData.getCurrentMoment().start(now);
+    }
+
+    /**
+     * @return How many times the current Moment has changed since the mission started, including
+     *         the first Moment.
+     */
+    public int getNumMomentsStarted() {
+        return mNumMomentsStarted;
+    }
+
+    /**
+     * @return The wheel on which the mission and its Moments schedule their deadlines.
+     */
+    public TimerWheel getTimerWheel() {
+        return mTimerWheel;
+    }
+
+    /**
+     * Loads the moments read from an xml file that define a mission into the mission data.
+     * @param missionStream An input stream for an xml file.
+     * @throws com.google.fpl.gim.examplegame.utils.MissionParseException Thrown when file parsing failed due to parser configuration,
+     * input exceptions, or incorrectly structured file.
+     */
+    public void readMoments(InputStream missionStream) throws MissionParseException {
+        // Exceptions may be thrown from MissionParser.parseMissionTemplate
+        setTemplate(MissionParser.parseMissionTemplate(missionStream));
+    }
+
+    /**
+     * Creates the Moments for this run of the mission from a template. The template is not
+     * changed, so it can be shared with other runs.
+     * @param template The parsed mission.
+     */
+    public void setTemplate(MissionTemplate template) {
+        Moment[] moments = new Moment[template.getNumMoments()];
+        for (int i = 0; i < moments.length; i++) {
+            moments[i] = template.getMomentData(i).createMoment(this);
+        }
+        mData.setMoments(template, moments);
+        mData.setChallengePaceHysteresisMinutesPerMile(
+                template.getChallengePaceHysteresisMinutesPerMile());
+        mData.setChallengePaceDwellSeconds(template.getChallengePaceDwellSeconds());
+    }
+
+    public void start() {
+        mNowNanos = mClock.nanoTime();
+        mMissionStartTimeNanos = mNowNanos;
+        mRunRecorder = new RunRecorder(Math.min(MAXIMUM_RECORDED_SECONDS,
+                (int) (mData.getLengthOfMissionMinutes() * Utils.MINUTES_TO_SECONDS_SCALE)));
+        mNextRecordNanos = mMissionStartTimeNanos + RECORD_INTERVAL_NANOS;
+        // Readings from before the start are discarded.
+        mSensorSamples.drain(this, mNowNanos);
+        changeCurrentMoment(mData.getFirstMomentIndex(), mNowNanos);
+        mIsStarted = true;
+        MissionTemplate template = mData.getTemplate();
+        mPaceEstimator.setWindowNanos(Utils.secondsToNanos(template != null
+                ? template.getPaceWindowSeconds() : MissionTemplate.DEFAULT_PACE_WINDOW_SECONDS));
+        mPaceEstimator.reset(mNowNanos);
+        mSpeedFilter.reset();
+        // Not moving, until the first step reading.
+        mCurrentAverageMinutesPerMile = MAXIMUM_MINUTES_PER_MILE;
+        mLengthOfIntervalNanos = Utils.minutesToNanos(mData.getLengthOfIntervalMinutes());
+        mChallengePaceDwellNanos = Utils.secondsToNanos(mData.getChallengePaceDwellSeconds());
+        mLastWeaponCharge = getWeaponChargedPercentage();
+        // Create the notification to notify the user of their current fitness statistics.
+        getHost().postFitnessNotification(mLastWeaponCharge);
+        publishFitnessSnapshot();
+    }
+
+    public void cleanup() {
+        Utils.logDebug(TAG, mOverallFictionalProgress.toString());
+
+        // Clean up the current moment.
+        if (mData.getCurrentMoment() != null) {
+            mData.getCurrentMoment().end();
+            mData.getCurrentMoment().cancelTimers();
+        }
+        mTimerWheel.cancel(mPaceTimer);
+        mTimerWheel.cancel(mChallengePaceDwellTimer);
+        mTimerWheel.cancel(mWeaponChargeTimer);
+
+        getHost().cancelChoiceNotification();
+        getHost().cancelFitnessNotification();
+
+        if (mSensors != null) {
+            mSensors.stopSensors();
+            mSensors = null;
+        }
+    }
+
+    public void update() {
+        mNowNanos = mClock.nanoTime();
+
+        // Record the seconds that have passed since the last update, before this update changes
+        // anything.
+        recordRun();
+
+        // Apply the sensor readings that have arrived since the last update, in order.
+        mSensorSamples.drain(this, mNowNanos);
+
+        // Expire the deadlines that have passed, such as the next speed sample, or the end of the
+        // current Moment.
+        mTimerWheel.advance(mNowNanos);
+
+        Moment currentMoment = mData.getCurrentMoment();
+        currentMoment.update(mNowNanos);
+        if (currentMoment.isDone()) {
+            mOverallFictionalProgress.addAll(currentMoment.getFictionalProgress());
+            currentMoment.end();
+            currentMoment.cancelTimers();
+            changeCurrentMoment(currentMoment.getNextMomentIndex(), mNowNanos);
+        }
+
+        int weaponChargedPercentage = getWeaponChargedPercentage();
+        if (mLastWeaponCharge != weaponChargedPercentage) {
+            mLastWeaponCharge = weaponChargedPercentage;
+            // Create the notification to notify the user of their current fitness statistics.
+            getHost().postFitnessNotification(weaponChargedPercentage);
+        }
+
+        publishFitnessSnapshot();
+        getHost().publishFitnessStats();
+    }
+
+    /**
+     * The earliest time at which update() needs to be called, if nothing else happens first: the
+     * next deadline on the timer wheel, or straight away if the current Moment has finished.
+     * @return The time in nanoseconds.
+     */
+    public long getNextDeadlineNanos() {
+        Moment currentMoment = mData.getCurrentMoment();
+        if (currentMoment != null && currentMoment.isDone()) {
+            return mNowNanos;
+        }
+        return mTimerWheel.getNextDeadlineNanos();
+    }
+
+    /**
+     * Schedules the weapon charge timer for when the weapon charge shown in the fitness
+     * notification next changes, but no later than when the weapon is charged, or cancels it if
+     * the weapon is not charging.
+     */
+    private void scheduleWeaponChargeTimer() {
+        if (!mIsAtChallengePace || mIsWeaponCharged) {
+            mTimerWheel.cancel(mWeaponChargeTimer);
+            return;
+        }
+        int weaponChargedPercentage = getWeaponChargedPercentage();
+        long nextPercentageNanos = mTimestampStartOfChallengePaceNanos
+                + mLengthOfIntervalNanos * (weaponChargedPercentage + 1) / 100;
+        long chargedNanos = mTimestampStartOfChallengePaceNanos + mLengthOfIntervalNanos;
+        mTimerWheel.schedule(mWeaponChargeTimer, Math.min(chargedNanos, Math.max(
+                nextPercentageNanos, mNowNanos + MINIMUM_FITNESS_NOTIFICATION_INTERVAL_NANOS)));
+    }
+
+    /**
+     * Records the metrics of each whole second of the mission up to now. Nothing changes between
+     * updates, so when updates are further apart than a second, each second in between has the
+     * same metrics.
+     */
+    private void recordRun() {
+        while (mNextRecordNanos <= mNowNanos
+                && mRunRecorder.getNumSeconds() < MAXIMUM_RECORDED_SECONDS) {
+            mRunRecorder.record(mTotalNumStepsTaken, mCurrentAverageMinutesPerMile,
+                    mSpeedFilter.getSpeedMetersPerSecond(), getWeaponChargedPercentage(),
+                    mData.getCurrentMomentIndex(), mIsAtChallengePace);
+            mNextRecordNanos += RECORD_INTERVAL_NANOS;
+        }
+    }
+
+    /**
+     * @return The metrics of each second of the mission, or null if it has not started. Once the
+     * mission has ended, this may be read by any thread.
+     */
+    public RunRecorder getRunRecorder() {
+        return mRunRecorder;
+    }
+
+    /**
+     * @return The time in nanoseconds at which the number of seconds exercised next changes.
+     */
+    public long getNextSecondNanos() {
+        long secondsExercised = (mNowNanos - mMissionStartTimeNanos)
+                / (long) Utils.SECONDS_TO_NANOS_SCALE;
+        return mMissionStartTimeNanos
+                + (secondsExercised + 1) * (long) Utils.SECONDS_TO_NANOS_SCALE;
+    }
+
+    /**
+     * Asks for update() to be called as soon as possible, such as when the current Moment has
+     * finished because of an event. May be called from any thread.
+     */
+    public void requestUpdate() {
+        if (mHost != null) {
+            mHost.requestUpdate();
+        }
+    }
+
+    public void setHost(MissionHost host) {
+        this.mHost = host;
+    }
+
+    public MissionHost getHost() {
+        return this.mHost;
+    }
+
+    /**
+     * @return The clock the mission reads the time from.
+     */
+    public Clock getClock() {
+        return mClock;
+    }
+
+    public boolean isDone() {
+        return mIsDone;
+    }
+
+    public void prepare(MissionSensors sensors) {
+        Utils.logDebug(TAG, "Mission prepared.");
+
+        // Start collecting fitness data
+        mSensors = sensors;
+        mSensors.startSensors(getMissionData().getMissionName(), mSensorSamples);
+    }
+
+    /**
+     * @return The queue that the sensors add their readings to.
+     */
+    public SensorSampleQueue getSensorSamples() {
+        return mSensorSamples;
+    }
+
+    /**
+     * Applies a reading taken from the sensor queue. Called on the game thread.
+     */
+    @Override
+    public void onSample(int type, long timestampNanos, long durationNanos, float value) {
+        // A reading offered after this update read the clock is applied as of now.
+        long readingNanos = Math.min(timestampNanos, mNowNanos);
+        switch (type) {
+            case SensorSampleQueue.TYPE_STEPS:
+                onStepTaken(readingNanos, (int) value);
+                break;
+            case SensorSampleQueue.TYPE_SPEED:
+                onSpeedMeasured(readingNanos, value);
+                break;
+            case SensorSampleQueue.TYPE_DISTANCE:
+                onDistanceMeasured(readingNanos, durationNanos, value);
+                break;
+        }
+    }
+
+    /**
+     * Sets the stride model of the player, which the mission goes on training. Called before the
+     * mission starts.
+     * @param strideModel The stride model, usually read from the player's last mission.
+     */
+    public void setStrideModel(StrideModel strideModel) {
+        mStrideModel = strideModel;
+    }
+
+    public StrideModel getStrideModel() {
+        return mStrideModel;
+    }
+
+    public boolean isWeaponCharged() {
+        return mIsWeaponCharged;
+    }
+
+    public MissionData getMissionData() {
+        return this.mData;
+    }
+
+    /**
+     * Restarts the current moment with a time delay.
+     */
+    public void restartMoment() {
+        if (mData.getCurrentMoment() != null) {
+            mData.getCurrentMoment().restartWithDelay(mNowNanos, 0f);
+            requestUpdate();
+        }
+    }
+
+    public void applyOutcome(Outcome outcome) {
+        if (outcome.numEnemiesDefeatedIncremented()) {
+            mNumEnemiesDefeated++;
+        }
+        if (outcome.weaponChargeDepleted()) {
+            mIsWeaponCharged = false;
+            scheduleWeaponChargeTimer();
+        }
+    }
+
+    public ArrayList<String> getOverallFictionalProgress() {
+        return mOverallFictionalProgress;
+    }
+
+    /**
+     * Applies a speed reading taken now. Called on the game thread.
+     * @param speedMetersPerSeconds The speed of the player.
+     */
+    public void onSpeedMeasured(float speedMetersPerSeconds) {
+        onSpeedMeasured(mNowNanos, speedMetersPerSeconds);
+    }
+
+    /**
+     * Applies a speed reading. Called on the game thread.
+     * @param timestampNanos When the reading was taken, no later than the current update.
+     * @param speedMetersPerSeconds The speed of the player.
+     */
+    public void onSpeedMeasured(long timestampNanos, float speedMetersPerSeconds) {
+        // If we get data before the mission has started, discard them.
+        if (!mIsStarted) {
+            return;
+        }
+        learnStride(timestampNanos, speedMetersPerSeconds);
+        updateSpeed(timestampNanos, speedMetersPerSeconds, SENSOR_SPEED_VARIANCE);
+
+        publishFitnessSnapshot();
+        getHost().publishFitnessStats();
+    }
+
+    /**
+     * Applies a distance reading, from which the stride length is learned. Called on the game
+     * thread.
+     * @param timestampNanos When the reading was taken, no later than the current update.
+     * @param durationNanos The time over which the distance was covered. A reading that does not
+     *                      say, with 0, is not learned from, as the time between the readings
+     *                      that arrive is not the time they cover.
+     * @param meters The distance covered.
+     */
+    public void onDistanceMeasured(long timestampNanos, long durationNanos, float meters) {
+        // If we get data before the mission has started, discard them.
+        if (!mIsStarted || durationNanos <= 0) {
+            return;
+        }
+        learnStride(timestampNanos, meters / Utils.nanosToSeconds(durationNanos));
+    }
+
+    /**
+     * Applies a step reading taken now. Called on the game thread.
+     * @param steps The number of steps taken since the last reading.
+     */
+    public void onStepTaken(int steps) {
+        onStepTaken(mNowNanos, steps);
+    }
+
+    /**
+     * Applies a step reading. Called on the game thread.
+     * @param timestampNanos When the reading was taken, no later than the current update.
+     *                       Readings must be applied in time order.
+     * @param steps The number of steps taken since the last reading.
+     */
+    public void onStepTaken(long timestampNanos, int steps) {
+        // If we get data before the mission has started, discard them.
+        if (!mIsStarted) {
+            return;
+        }
+        mTotalNumStepsTaken += steps;
+        mPaceEstimator.addSteps(timestampNanos, steps);
+        calculateAverageMinutesPerMile(timestampNanos);
+        if (Utils.isDebugLogEnabled()) {
+            Utils.logDebug(TAG,
+                    "Fit data update. You have now taken " + mTotalNumStepsTaken + " steps.");
+        }
+
+        // Update UI whenever a step is taken
+        publishFitnessSnapshot();
+        getHost().publishFitnessStats();
+    }
+
+    public int getNumSteps() {
+        return this.mTotalNumStepsTaken;
+    }
+
+    public float getMinutesPerMile() {
+        return this.mCurrentAverageMinutesPerMile;
+    }
+
+    public int getNumMinutesExercised() {
+        long timePassedNanos = mNowNanos - mMissionStartTimeNanos;
+        int timePassedSeconds = (int) Utils.nanosToSeconds(timePassedNanos);
+        int timePassedMinutes = timePassedSeconds / Utils.MINUTES_TO_SECONDS_SCALE;
+        return timePassedMinutes;
+    }
+
+    public int getNumSecondsExercised() {
+        long timePassedNanos = mNowNanos - mMissionStartTimeNanos;
+        int timePassedSeconds = (int) Utils.nanosToSeconds(timePassedNanos);
+        return timePassedSeconds % Utils.MINUTES_TO_SECONDS_SCALE;
+    }
+
+    public int getWeaponChargedPercentage() {
+        if (mIsWeaponCharged) {
+            return 100;
+        }
+        if (!mIsAtChallengePace) {
+            return 0;
+        }
+        if (mLengthOfIntervalNanos <= 0) {
+            return 100;
+        }
+        long timeAtChallengePaceNanos = mNowNanos - mTimestampStartOfChallengePaceNanos;
+        return (int) Math.min(timeAtChallengePaceNanos * 100 / mLengthOfIntervalNanos, 100);
+    }
+
+    public float getChallengePace() {
+        return mData.getChallengePaceMinutesPerMile();
+    }
+
+    /**
+     * Turns publishing of fitness snapshots on or off. Publishing is only turned on while
+     * something, such as the UI, reads the snapshots, so that the game loop does not allocate
+     * otherwise. Turning it on publishes the current stats straight away.
+     * @param isPublishing Whether to publish a snapshot each time the stats change.
+     */
+    public void setPublishingFitnessSnapshots(boolean isPublishing) {
+        mIsPublishingFitnessSnapshots = isPublishing;
+        publishFitnessSnapshot();
+    }
+
+    /**
+     * Publishes a new version of the fitness stats if publishing is on, the mission has started,
+     * and the stats differ from the last version published.
+     */
+    private void publishFitnessSnapshot() {
+        if (!mIsPublishingFitnessSnapshots || !mIsStarted) {
+            return;
+        }
+        int numSteps = getNumSteps();
+        float minutesPerMile = getMinutesPerMile();
+        float challengePace = getChallengePace();
+        int numMinutesExercised = getNumMinutesExercised();
+        int numSecondsExercised = getNumSecondsExercised();
+        int weaponChargedPercentage = getWeaponChargedPercentage();
+        FitnessSnapshot published = mPublishedFitnessSnapshot.get();
+        if (published != null && published.hasStats(numSteps, minutesPerMile, challengePace,
+                numMinutesExercised, numSecondsExercised, weaponChargedPercentage)) {
+            return;
+        }
+        mFitnessSnapshotVersion++;
+        mPublishedFitnessSnapshot.set(new FitnessSnapshot(mFitnessSnapshotVersion, numSteps,
+                minutesPerMile, challengePace, numMinutesExercised, numSecondsExercised,
+                weaponChargedPercentage));
+    }
+
+    /**
+     * Gets the fitness stats last published. Safe to call from any thread, without locking; the
+     * values of the snapshot always belong to the same moment, unlike separate calls to the
+     * getters of the Mission.
+     * @return The latest snapshot, or null if none has been published.
+     */
+    @Override
+    public FitnessSnapshot getFitnessSnapshot() {
+        return mPublishedFitnessSnapshot.get();
+    }
+
+    public void onRebind() {
+        // Update UI after app wakes up (after the Activity is rebound to the Service)
+        getHost().publishFitnessStats();
+    }
+
+    public static float getMaximumMinutesPerMile() {
+        return MAXIMUM_MINUTES_PER_MILE;
+    }
+
+    public int getNumIntervalsCompleted() {
+        return mTotalNumIntervalsCompleted;
+    }
+
+    /**
+     * @return The number of times the player has reached or left the challenge pace.
+     */
+    public int getNumChallengePaceChanges() {
+        return mNumChallengePaceChanges;
+    }
+
+    /**
+     * Works out the average speed from the step readings in the window, and schedules the pace
+     * timer for when the oldest of them leaves it.
+     * @param timestampNanos The time to work it out at: that of the step reading being applied,
+     *                       or of the update when no reading is.
+     */
+    private void calculateAverageMinutesPerMile(long timestampNanos) {
+        float stepsPerMinute = mPaceEstimator.getStepsPerMinute(timestampNanos);
+        float metersPerMinute =
+                Utils.feetToMeters(stepsPerMinute * mStrideModel.getStrideFeet(stepsPerMinute));
+        updateSpeed(timestampNanos, metersPerMinute / Utils.MINUTES_TO_SECONDS_SCALE,
+                mStrideModel.isCalibrated(stepsPerMinute)
+                        ? CALIBRATED_CADENCE_SPEED_VARIANCE : CADENCE_SPEED_VARIANCE);
+
+        long nextExpiryNanos = mPaceEstimator.getNextExpiryNanos();
+        if (nextExpiryNanos == TimerWheel.NO_DEADLINE) {
+            mTimerWheel.cancel(mPaceTimer);
+        } else {
+            mTimerWheel.schedule(mPaceTimer, nextExpiryNanos);
+        }
+    }
+
+    /**
+     * Learns the stride length at the cadence of the time of a known speed.
+     * @param timestampNanos When the speed was measured.
+     * @param speedMetersPerSecond The speed of the player, from the sensor or the distance.
+     */
+    private void learnStride(long timestampNanos, float speedMetersPerSecond) {
+        float stepsPerMinute = mPaceEstimator.getStepsPerMinute(timestampNanos);
+        if (mStrideModel.learn(stepsPerMinute, speedMetersPerSecond)
+                && Utils.isDebugLogEnabled()) {
+            Utils.logDebug(TAG, "Stride at " + (int) stepsPerMinute + " steps per minute is now "
+                    + mStrideModel.getStrideFeet(stepsPerMinute) + " feet.");
+        }
+    }
+
+    /**
+     * Combines a measurement of the speed with the earlier ones, and updates the pace from the
+     * combined speed.
+     * @param timestampNanos When the measurement was taken.
+     * @param speedMetersPerSecond The measured speed.
+     * @param variance How far the measurement is trusted, in (m/s)^2.
+     */
+    private void updateSpeed(long timestampNanos, float speedMetersPerSecond, float variance) {
+        float speed = mSpeedFilter.addMeasurement(timestampNanos, speedMetersPerSecond, variance);
+        // Speed is in meters per second, have to convert to minutes per mile.
+        updateChallengePace(Utils.metersPerSecondToMinutesPerMile(speed));
+    }
+
+    private void updateChallengePace(float averageMinutesPerMile) {
+        if (averageMinutesPerMile > 0) {
+            mCurrentAverageMinutesPerMile =
+                    Math.min(averageMinutesPerMile, MAXIMUM_MINUTES_PER_MILE);
+        } else {
+            mCurrentAverageMinutesPerMile = MAXIMUM_MINUTES_PER_MILE;
+        }
+
+        if (Utils.isDebugLogEnabled()) {
+            Utils.logDebug(TAG, averageMinutesPerMile > 0
+                    ? (int) (mCurrentAverageMinutesPerMile) + " minutes per mile."
+                    : "You are not moving.");
+        }
+
+        evaluateChallengePace();
+        scheduleWeaponChargeTimer();
+    }
+
+    /**
+     * Works out whether the player is at the challenge pace. A player who is at it stays at it
+     * until they are slower than the challenge pace by more than the hysteresis band, and the
+     * change only happens once the pace has stayed on the other side for the dwell time.
+     */
+    private void evaluateChallengePace() {
+        float challengePace = mData.getChallengePaceMinutesPerMile();
+        boolean isPaceAtChallengePace = mIsAtChallengePace
+                ? mCurrentAverageMinutesPerMile
+                        <= challengePace + mData.getChallengePaceHysteresisMinutesPerMile()
+                : mCurrentAverageMinutesPerMile <= challengePace;
+
+        if (isPaceAtChallengePace == mIsAtChallengePace) {
+            // The pace went back before the change happened.
+            mIsChallengePaceChangePending = false;
+            mTimerWheel.cancel(mChallengePaceDwellTimer);
+        } else if (!mIsChallengePaceChangePending) {
+            mIsChallengePaceChangePending = true;
+            mPendingChallengePaceChangeNanos = mNowNanos;
+        }
+
+        if (mIsChallengePaceChangePending) {
+            long changeNanos = mPendingChallengePaceChangeNanos + mChallengePaceDwellNanos;
+            if (mNowNanos >= changeNanos) {
+                mIsChallengePaceChangePending = false;
+                mTimerWheel.cancel(mChallengePaceDwellTimer);
+                changeChallengePace(isPaceAtChallengePace);
+            } else {
+                mTimerWheel.schedule(mChallengePaceDwellTimer, changeNanos);
+            }
+        }
+
+        checkWeaponCharged();
+    }
+
+    /**
+     * Charges the weapon once the player has been at the challenge pace for an interval.
+     */
+    private void checkWeaponCharged() {
+        // Player has been running at challenge pace for enough time to charge their weapon.
+        if (mIsAtChallengePace && !mIsWeaponCharged
+                && mNowNanos - mTimestampStartOfChallengePaceNanos >= mLengthOfIntervalNanos) {
+            mHost.queueSound(WEAPON_CHARGED_URI, null);
+
+            mIsWeaponCharged = true;
+            mTotalNumIntervalsCompleted++;
+        }
+    }
+
+    private void changeChallengePace(boolean isAtChallengePace) {
+        mIsAtChallengePace = isAtChallengePace;
+        mNumChallengePaceChanges++;
+        if (isAtChallengePace) {
+            mHost.queueSound(AT_CHALLENGE_PACE_URI, null);
+            // The weapon has been charging since the pace was first reached.
+            mTimestampStartOfChallengePaceNanos = mPendingChallengePaceChangeNanos;
+        } else {
+            mHost.queueSound(NO_LONGER_AT_CHALLENGE_PACE_URI, null);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+/**
+ * Plays the sounds and speech of a mission. Only one sound or piece of speech plays at a time.
+ */
+public interface MissionAudio {
+
+    /**
+     * Told when a sound or piece of speech has finished playing. Always called on the game thread.
+     */
+    interface PlaybackListener {
+        void onPlaybackDone();
+    }
+
+    /**
+     * Queues a sound to be played once no other sound or speech is playing.
+     * @param uri The Uri of the sound.
+     * @param listener Called when the sound has finished playing. If null, playback is simply
+     *                 ended.
+     */
+    void queueSound(String uri, PlaybackListener listener);
+
+    /**
+     * Removes the first instance of a sound from the audio queue.
+     * @param uri Uri of the item to be removed.
+     */
+    void dequeueSound(String uri);
+
+    /**
+     * Obtains audio focus, if no other sound or speech is playing.
+     * @return True if audio focus is obtained. False otherwise.
+     */
+    boolean obtainAudioFocus();
+
+    /**
+     * Ends audio playback, and abandons audio focus.
+     */
+    void endPlayback();
+
+    /**
+     * Speaks some text, after audio focus has been obtained.
+     * @param utteranceId An id for the text, for logging.
+     * @param text The text to speak.
+     * @param listener Told when the text has been spoken.
+     */
+    void speak(String utteranceId, String text, PlaybackListener listener);
+
+    /**
+     * Stops speaking, without telling the listener.
+     */
+    void stopSpeaking();
+}
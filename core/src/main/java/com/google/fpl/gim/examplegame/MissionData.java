@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+/**
+ * Encapsulates all of the game data that is necessary to represent a mission.
+ */
+public class MissionData {
+
+    private String mMissionName; // User-facing name of mission.
+    // ID must be unique to each mission
+    private String mMissionId;
+    private float mLengthOfMissionMinutes;
+    private float mLengthOfIntervalMinutes;
+    private float mChallengePaceMinutesPerMile;
+    private float mChallengePaceHysteresisMinutesPerMile =
+            MissionTemplate.DEFAULT_CHALLENGE_PACE_HYSTERESIS_MINUTES_PER_MILE;
+    private float mChallengePaceDwellSeconds =
+            MissionTemplate.DEFAULT_CHALLENGE_PACE_DWELL_SECONDS;
+    // The shared, immutable Moment graph of this mission.
+    private MissionTemplate mTemplate;
+    // The per-run state of each Moment in the template, in the same order.
+    private Moment[] mMoments = new Moment[0];
+    private int mCurrentMomentIndex = MissionTemplate.END_MOMENT_INDEX;
+
+    /**
+     * Constructor used when populating MissionData with information from menu screens.
+     * @param missionId String identifying the Mission.
+     * @param lengthOfGameMinutes Total length of game.
+     * @param lengthOfIntervalMinutes Length of a running interval.
+     */
+    public MissionData(String missionName, String missionId, float lengthOfGameMinutes,
+            float lengthOfIntervalMinutes, float challengePaceMinutesPerMile) {
+        this.mMissionName = missionName;
+        this.mMissionId = missionId;
+        this.mLengthOfMissionMinutes = lengthOfGameMinutes;
+        this.mLengthOfIntervalMinutes = lengthOfIntervalMinutes;
+        this.mChallengePaceMinutesPerMile = challengePaceMinutesPerMile;
+    }
+
+    public String getMissionName() {
+        return this.mMissionName;
+    }
+
+    public String getMissionId() {
+        return this.mMissionId;
+    }
+
+    public float getLengthOfMissionMinutes() {
+        return this.mLengthOfMissionMinutes;
+    }
+
+    public float getLengthOfIntervalMinutes() {
+        return this.mLengthOfIntervalMinutes;
+    }
+
+    public float getChallengePaceMinutesPerMile() {
+        return this.mChallengePaceMinutesPerMile;
+    }
+
+    public float getChallengePaceHysteresisMinutesPerMile() {
+        return this.mChallengePaceHysteresisMinutesPerMile;
+    }
+
+    /**
+     * Sets how much slower than the challenge pace a player who is at it must go to leave it. A
+     * player reaches the challenge pace at the challenge pace itself.
+     * @param hysteresisMinutesPerMile The width of the band, 0 for none.
+     */
+    public void setChallengePaceHysteresisMinutesPerMile(float hysteresisMinutesPerMile) {
+        if (!(hysteresisMinutesPerMile >= 0)) {
+            throw new IllegalArgumentException(
+                    "Hysteresis must not be negative: " + hysteresisMinutesPerMile);
+        }
+        this.mChallengePaceHysteresisMinutesPerMile = hysteresisMinutesPerMile;
+    }
+
+    public float getChallengePaceDwellSeconds() {
+        return this.mChallengePaceDwellSeconds;
+    }
+
+    /**
+     * Sets how long a player must stay on the other side of the challenge pace before they reach
+     * or leave it, so that a pace which crosses it briefly changes nothing.
+     * @param dwellSeconds The minimum time, 0 to change straight away.
+     */
+    public void setChallengePaceDwellSeconds(float dwellSeconds) {
+        if (!(dwellSeconds >= 0)) {
+            throw new IllegalArgumentException("Dwell time must not be negative: " + dwellSeconds);
+        }
+        this.mChallengePaceDwellSeconds = dwellSeconds;
+    }
+
+    public MissionTemplate getTemplate() {
+        return this.mTemplate;
+    }
+
+    /**
+     * Sets the Moments of this run.
+     * @param template The template the Moments were created from.
+     * @param moments One Moment for each Moment in the template, in the same order.
+     */
+    public void setMoments(MissionTemplate template, Moment[] moments) {
+        this.mTemplate = template;
+        this.mMoments = moments;
+        this.mCurrentMomentIndex = MissionTemplate.END_MOMENT_INDEX;
+    }
+
+    /**
+     * Finds a Moment by id. Intended for debugging and tools; the running mission follows Moment
+     * indices instead.
+     * @param momentId The id of the Moment.
+     * @return The Moment, or null if there is no Moment with that id.
+     */
+    public Moment getMomentFromId(String momentId) {
+        if (mTemplate == null) {
+            return null;
+        }
+        return getMoment(mTemplate.getMomentIndex(momentId));
+    }
+
+    /**
+     * @param momentIndex The index of a Moment in the template.
+     * @return The Moment, or null for MissionTemplate.END_MOMENT_INDEX.
+     */
+    public Moment getMoment(int momentIndex) {
+        return momentIndex == MissionTemplate.END_MOMENT_INDEX ? null : mMoments[momentIndex];
+    }
+
+    public String getCurrentMomentId() {
+        return mTemplate == null ? null : mTemplate.getMomentId(mCurrentMomentIndex);
+    }
+
+    public String getFirstMomentId() {
+        return mTemplate == null ? null : mTemplate.getFirstMomentId();
+    }
+
+    public int getFirstMomentIndex() {
+        return mTemplate == null
+                ? MissionTemplate.END_MOMENT_INDEX : mTemplate.getFirstMomentIndex();
+    }
+
+    public int getCurrentMomentIndex() {
+        return this.mCurrentMomentIndex;
+    }
+
+    public void setCurrentMomentIndex(int currentMomentIndex) {
+        this.mCurrentMomentIndex = currentMomentIndex;
+    }
+
+    public Moment getCurrentMoment() {
+        return getMoment(mCurrentMomentIndex);
+    }
+
+    public int getNumMoments() {
+        return mMoments.length;
+    }
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import java.util.HashMap;
+
+/**
+ * The attributes of a mission's root element. Read without reading any of the mission's Moments,
+ * so that missions can be listed cheaply.
+ */
+public class MissionHeader {
+
+    // User-facing name of the mission. Empty string if not specified.
+    private final String mName;
+    // The id of the first Moment in the mission. Empty string if not specified.
+    private final String mStartMomentId;
+    // All attributes of the mission element, including the name and start id.
+    private final HashMap<String, String> mAttributes;
+
+    /**
+     * @param name User-facing name of the mission.
+     * @param startMomentId The id of the first Moment in the mission.
+     * @param attributes All attributes of the mission element, keyed by attribute name.
+     */
+    public MissionHeader(String name, String startMomentId, HashMap<String, String> attributes) {
+        mName = name;
+        mStartMomentId = startMomentId;
+        mAttributes = attributes;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public String getStartMomentId() {
+        return mStartMomentId;
+    }
+
+    /**
+     * Looks up an attribute of the mission element, for metadata beyond the name and start id.
+     * @param attributeName The name of the attribute.
+     * @return The value of the attribute, or null if the mission element does not have it.
+     */
+    public String getAttribute(String attributeName) {
+        return mAttributes.get(attributeName);
+    }
+}
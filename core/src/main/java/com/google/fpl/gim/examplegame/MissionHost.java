@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.Clock;
+
+/**
+ * Everything a running Mission and its Moments need from the rest of the application. MainService
+ * is the host on a device, and HeadlessMissionRunner runs a mission without one.
+ */
+public interface MissionHost extends MissionAudio, MissionNotifications, MissionStatsPublisher {
+
+    /**
+     * @return The clock the mission reads the time from.
+     */
+    Clock getClock();
+
+    /**
+     * Asks for the mission to be updated as soon as possible. May be called from any thread.
+     */
+    void requestUpdate();
+
+    /**
+     * Runs a task on the thread the mission is updated on. May be called from any thread.
+     * @param task The task to run.
+     */
+    void runOnGameThread(Runnable task);
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+/**
+ * Shows the notifications of a mission: the choice the player has to make, and the charge of
+ * their weapon.
+ */
+public interface MissionNotifications {
+
+    /**
+     * Shows a choice to the player, replacing any choice already shown.
+     * @param choices The choices the player can make, in order.
+     */
+    void postChoiceNotification(Choice[] choices);
+
+    /**
+     * Removes the choice shown to the player, if there is one.
+     */
+    void cancelChoiceNotification();
+
+    /**
+     * Shows the player how charged their weapon is, replacing the last charge shown.
+     * @param weaponChargedPercentage The charge of the weapon, from 0 to 100.
+     */
+    void postFitnessNotification(int weaponChargedPercentage);
+
+    /**
+     * Removes the weapon charge shown to the player, if there is one.
+     */
+    void cancelFitnessNotification();
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.SensorSampleQueue;
+
+/**
+ * Reads the fitness sensors of the player during a mission.
+ */
+public interface MissionSensors {
+
+    /**
+     * Starts reading the sensors. Readings are only added to the queue, on whatever thread they
+     * arrive on, and the mission applies them on the game thread at the start of its next update.
+     * @param sessionDescription A description of the session the readings are recorded in.
+     * @param samples The queue to add the readings to. The sensors are its only producer.
+     */
+    void startSensors(String sessionDescription, SensorSampleQueue samples);
+
+    /**
+     * Stops reading the sensors. No more readings are added to the queue.
+     */
+    void stopSensors();
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+/**
+ * Tells the UI about changes to a mission.
+ */
+public interface MissionStatsPublisher {
+
+    /**
+     * Tells the UI that the fitness stats of the mission have changed. Called on the game thread,
+     * possibly many times a second, so it should only note the change and not build anything
+     * until the UI asks for the stats.
+     */
+    void publishFitnessStats();
+}
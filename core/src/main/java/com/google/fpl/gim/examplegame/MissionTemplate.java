@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.MissionParseException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The parsed form of a mission: the data of every Moment, ordered by id, with each Moment
+ * referring to the next by index. A MissionTemplate is not changed once it has been linked, so a
+ * single template is shared by every run of its mission. Each run creates its own Moments from
+ * the template to hold its state.
+ */
+public class MissionTemplate {
+
+    // Index that signifies the end of the mission wherever a Moment index is expected.
+    public static final int END_MOMENT_INDEX = -1;
+
+    // The length of time the player's pace is averaged over, unless the mission sets its own.
+    public static final float DEFAULT_PACE_WINDOW_SECONDS = 10f;
+    // Unless the mission sets its own, a player at the challenge pace stays at it until they are a
+    // quarter of a minute per mile slower, and the pace must hold for five seconds before the
+    // state changes.
+    public static final float DEFAULT_CHALLENGE_PACE_HYSTERESIS_MINUTES_PER_MILE = 0.25f;
+    public static final float DEFAULT_CHALLENGE_PACE_DWELL_SECONDS = 5f;
+
+    private final String[] mMomentIds;
+    private final MomentData[] mMomentData;
+    private final int mFirstMomentIndex;
+    private final float mPaceWindowSeconds;
+    private final float mChallengePaceHysteresisMinutesPerMile;
+    private final float mChallengePaceDwellSeconds;
+
+    /**
+     * Constructor for Moments that are already linked, with the default pace settings.
+     * @param momentIds The ids of the Moments, in ascending order.
+     * @param momentData The data of the Moments, in the same order as their ids.
+     * @param firstMomentIndex The index of the first Moment.
+     */
+    public MissionTemplate(String[] momentIds, MomentData[] momentData, int firstMomentIndex) {
+        this(momentIds, momentData, firstMomentIndex, DEFAULT_PACE_WINDOW_SECONDS,
+                DEFAULT_CHALLENGE_PACE_HYSTERESIS_MINUTES_PER_MILE,
+                DEFAULT_CHALLENGE_PACE_DWELL_SECONDS);
+    }
+
+    /**
+     * Constructor for Moments that are already linked, such as those loaded from a compiled
+     * mission.
+     * @param momentIds The ids of the Moments, in ascending order.
+     * @param momentData The data of the Moments, in the same order as their ids.
+     * @param firstMomentIndex The index of the first Moment.
+     * @param paceWindowSeconds The length of time the player's pace is averaged over.
+     * @param challengePaceHysteresisMinutesPerMile How much slower than the challenge pace a
+     *                                              player who is at it must go to leave it.
+     * @param challengePaceDwellSeconds How long the player must stay on the other side of the
+     *                                  challenge pace to reach or leave it.
+     */
+    public MissionTemplate(String[] momentIds, MomentData[] momentData, int firstMomentIndex,
+            float paceWindowSeconds, float challengePaceHysteresisMinutesPerMile,
+            float challengePaceDwellSeconds) {
+        mMomentIds = momentIds;
+        mMomentData = momentData;
+        mFirstMomentIndex = firstMomentIndex;
+        mPaceWindowSeconds = paceWindowSeconds;
+        mChallengePaceHysteresisMinutesPerMile = challengePaceHysteresisMinutesPerMile;
+        mChallengePaceDwellSeconds = challengePaceDwellSeconds;
+    }
+
+    /**
+     * Creates a template from parsed Moments, resolving the start moment, and every reference
+     * between Moments, to an index.
+     * @param momentData The data of every Moment, by id.
+     * @param firstMomentId The id of the first Moment.
+     * @return The linked template.
+     * @throws MissionParseException Thrown if the first Moment, or any next Moment, does not
+     *         exist.
+     */
+    public static MissionTemplate link(HashMap<String, MomentData> momentData,
+            String firstMomentId) throws MissionParseException {
+        return link(momentData, firstMomentId, DEFAULT_PACE_WINDOW_SECONDS,
+                DEFAULT_CHALLENGE_PACE_HYSTERESIS_MINUTES_PER_MILE,
+                DEFAULT_CHALLENGE_PACE_DWELL_SECONDS);
+    }
+
+    /**
+     * Creates a template from parsed Moments, resolving the start moment, and every reference
+     * between Moments, to an index.
+     * @param momentData The data of every Moment, by id.
+     * @param firstMomentId The id of the first Moment.
+     * @param paceWindowSeconds The length of time the player's pace is averaged over.
+     * @param challengePaceHysteresisMinutesPerMile How much slower than the challenge pace a
+     *                                              player who is at it must go to leave it.
+     * @param challengePaceDwellSeconds How long the player must stay on the other side of the
+     *                                  challenge pace to reach or leave it.
+     * @return The linked template.
+     * @throws MissionParseException Thrown if the first Moment, or any next Moment, does not
+     *         exist.
+     */
+    public static MissionTemplate link(HashMap<String, MomentData> momentData,
+            String firstMomentId, float paceWindowSeconds,
+            float challengePaceHysteresisMinutesPerMile, float challengePaceDwellSeconds)
+            throws MissionParseException {
+        String[] momentIds = momentData.keySet().toArray(new String[momentData.size()]);
+        Arrays.sort(momentIds);
+        MomentData[] sortedMomentData = new MomentData[momentIds.length];
+        for (int i = 0; i < momentIds.length; i++) {
+            sortedMomentData[i] = momentData.get(momentIds[i]);
+        }
+
+        if (firstMomentId == null) {
+            throw new MissionParseException("Mission has no start moment.");
+        }
+        int firstMomentIndex = findMomentIndex(momentIds, firstMomentId, "mission start");
+        MissionTemplate template = new MissionTemplate(momentIds, sortedMomentData,
+                firstMomentIndex, paceWindowSeconds, challengePaceHysteresisMinutesPerMile,
+                challengePaceDwellSeconds);
+        for (MomentData data : sortedMomentData) {
+            data.link(template);
+        }
+        return template;
+    }
+
+    /**
+     * Resolves a Moment id while linking.
+     * @param momentId The id of a Moment, or null for the end of the mission.
+     * @param referrer Describes where the id was found, for error messages.
+     * @return The index of the Moment, or END_MOMENT_INDEX for the end of the mission.
+     * @throws MissionParseException Thrown if there is no Moment with the given id.
+     */
+    public int findMomentIndex(String momentId, String referrer) throws MissionParseException {
+        return findMomentIndex(mMomentIds, momentId, referrer);
+    }
+
+    private static int findMomentIndex(String[] momentIds, String momentId, String referrer)
+            throws MissionParseException {
+        if (momentId == null) {
+            return END_MOMENT_INDEX;
+        }
+        int index = Arrays.binarySearch(momentIds, momentId);
+        if (index < 0) {
+            throw new MissionParseException("Moment \"" + momentId + "\" referred to by \""
+                    + referrer + "\" could not be found.");
+        }
+        return index;
+    }
+
+    /**
+     * Finds a Moment by id. Intended for debugging and tools; a running mission follows Moment
+     * indices instead.
+     * @param momentId The id of the Moment.
+     * @return The index of the Moment, or END_MOMENT_INDEX if there is no Moment with that id.
+     */
+    public int getMomentIndex(String momentId) {
+        if (momentId == null) {
+            return END_MOMENT_INDEX;
+        }
+        int index = Arrays.binarySearch(mMomentIds, momentId);
+        return index >= 0 ? index : END_MOMENT_INDEX;
+    }
+
+    /**
+     * @return The length of time the player's pace is averaged over, set by the pace_window_seconds
+     *         attribute of the mission element.
+     */
+    public float getPaceWindowSeconds() {
+        return mPaceWindowSeconds;
+    }
+
+    /**
+     * @return How much slower than the challenge pace a player who is at it must go to leave it,
+     *         set by the challenge_pace_hysteresis attribute of the mission element.
+     */
+    public float getChallengePaceHysteresisMinutesPerMile() {
+        return mChallengePaceHysteresisMinutesPerMile;
+    }
+
+    /**
+     * @return How long the player must stay on the other side of the challenge pace to reach or
+     *         leave it, set by the challenge_pace_dwell_seconds attribute of the mission element.
+     */
+    public float getChallengePaceDwellSeconds() {
+        return mChallengePaceDwellSeconds;
+    }
+
+    public int getNumMoments() {
+        return mMomentData.length;
+    }
+
+    /**
+     * @param momentIndex The index of a Moment.
+     * @return The data of the Moment, or null for END_MOMENT_INDEX.
+     */
+    public MomentData getMomentData(int momentIndex) {
+        return momentIndex == END_MOMENT_INDEX ? null : mMomentData[momentIndex];
+    }
+
+    public String getMomentId(int momentIndex) {
+        return momentIndex == END_MOMENT_INDEX ? null : mMomentIds[momentIndex];
+    }
+
+    /**
+     * @return The ids of all Moments in this mission, in ascending order. The index of each id
+     *         is the index of its Moment.
+     */
+    public String[] getMomentIds() {
+        return mMomentIds.clone();
+    }
+
+    public int getFirstMomentIndex() {
+        return mFirstMomentIndex;
+    }
+
+    public String getFirstMomentId() {
+        return mMomentIds[mFirstMomentIndex];
+    }
+}
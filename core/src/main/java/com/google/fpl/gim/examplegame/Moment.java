@@ -16,6 +16,7 @@
 
 package com.google.fpl.gim.examplegame;
 
+import com.google.fpl.gim.examplegame.utils.TimerWheel;
 import com.google.fpl.gim.examplegame.utils.Utils;
 
 import java.util.ArrayList;
@@ -29,9 +30,14 @@ public abstract class Moment {
     private Mission mMission;
 
     public boolean mIsDone;
-    private boolean mShouldRestart;
-    private long mTimeWhenRestartRequestedNanos;
-    private long mRestartDelayLengthNanos;
+
+    // Restarts the Moment after a delay.
+    private final TimerWheel.Timer mRestartTimer = new TimerWheel.Timer() {
+        @Override
+        protected void onExpired(long nowNanos) {
+            restart(nowNanos);
+        }
+    };
 
     /**
      * @param mission The Mission to which this moment belongs. Cannot be changed after
@@ -54,19 +60,35 @@ public abstract class Moment {
     }
 
     public void setIsDone(boolean isDone) {
+        boolean becameDone = isDone && !mIsDone;
         this.mIsDone = isDone;
+        if (becameDone) {
+            // Move on to the next Moment now, rather than at the next deadline.
+            mMission.requestUpdate();
+        }
     }
 
     /**
-     * Update the moment information for the current time. Default behavior checks if the Moment
-     * should restart, and does.
+     * Update the moment information for the current time. Deadlines, such as a delayed restart,
+     * are handled by timers on the mission's TimerWheel, so by default this does nothing.
      * @param nowNanos The current time, represented in nanoseconds.
      */
     public void update(long nowNanos) {
-        if (mShouldRestart
-                && nowNanos > mTimeWhenRestartRequestedNanos + mRestartDelayLengthNanos) {
-            restart(nowNanos);
-        }
+    }
+
+    /**
+     * @return The wheel on which this Moment schedules its deadlines.
+     */
+    protected TimerWheel getTimerWheel() {
+        return mMission.getTimerWheel();
+    }
+
+    /**
+     * Cancels every deadline of this Moment. Called once the Moment is no longer the current
+     * Moment.
+     */
+    public void cancelTimers() {
+        getTimerWheel().cancel(mRestartTimer);
     }
 
     /**
@@ -76,13 +98,24 @@ public abstract class Moment {
 
     public abstract String getNextMomentId();
 
+    /**
+     * Read the index of the next Moment associated with this Moment.
+     * @return Index of the next Moment in the linked mission, or MissionTemplate.END_MOMENT_INDEX.
+     */
+    public abstract int getNextMomentIndex();
+
+    /**
+     * @return The data that defines this Moment.
+     */
+    public abstract MomentData getMomentData();
+
     /**
      * Make this moment active. Runs when the moment begins.
      * @param nowNanos The current time, represented in nanoseconds.
      */
     public void start(long nowNanos) {
         this.mIsDone = false;
-        this.mShouldRestart = false;
+        getTimerWheel().cancel(mRestartTimer);
     }
 
     /**
@@ -96,9 +129,8 @@ public abstract class Moment {
     public abstract void restart(long nowNanos);
 
     public void restartWithDelay(long nowNanos, float secondsDelayRestart) {
-        mShouldRestart = true;
-        mTimeWhenRestartRequestedNanos = nowNanos;
-        mRestartDelayLengthNanos = Utils.secondsToNanos(secondsDelayRestart);
+        getTimerWheel().schedule(mRestartTimer,
+                nowNanos + Utils.secondsToNanos(secondsDelayRestart));
     }
 
     public abstract ArrayList<String> getFictionalProgress();
@@ -16,6 +16,8 @@
 
 package com.google.fpl.gim.examplegame;
 
+import com.google.fpl.gim.examplegame.utils.MissionParseException;
+
 import java.util.ArrayList;
 
 /**
@@ -27,6 +29,8 @@ public abstract class MomentData {
     private final String mMomentId;
     // The moment to go to next.
     private final String mNextMomentId;
+    // Index of the next moment, resolved when the mission is linked. Not changed afterwards.
+    private int mNextMomentIndex = MissionTemplate.END_MOMENT_INDEX;
 
     private ArrayList<String> mFictionalProgress;
 
@@ -50,6 +54,31 @@ public abstract class MomentData {
         return mNextMomentId;
     }
 
+    public int getNextMomentIndex() {
+        return mNextMomentIndex;
+    }
+
+    public void setNextMomentIndex(int nextMomentIndex) {
+        mNextMomentIndex = nextMomentIndex;
+    }
+
+    /**
+     * Resolves the ids of the Moments this moment can lead to.
+     * @param template The mission being linked.
+     * @throws MissionParseException Thrown if a Moment that this moment leads to does not exist.
+     */
+    public void link(MissionTemplate template) throws MissionParseException {
+        mNextMomentIndex = template.findMomentIndex(mNextMomentId, mMomentId);
+    }
+
+    /**
+     * Creates a Moment that plays this data during one run of a mission. MomentData is shared
+     * between runs, so all per-run state belongs in the Moment.
+     * @param mission The Mission the Moment belongs to.
+     * @return A new Moment.
+     */
+    public abstract Moment createMoment(Mission mission);
+
     public ArrayList<String> getFictionalProgress() {
         return mFictionalProgress;
     }
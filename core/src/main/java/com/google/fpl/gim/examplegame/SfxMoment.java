@@ -16,16 +16,13 @@
 
 package com.google.fpl.gim.examplegame;
 
-import android.media.MediaPlayer;
-
-import java.io.IOException;
 import java.util.ArrayList;
 
 /**
  * Describes a Moment in which the user listens to a pre-recorded sound effect as part of the
  * gameplay.
  */
-public class SfxMoment extends Moment implements MediaPlayer.OnCompletionListener {
+public class SfxMoment extends Moment implements MissionAudio.PlaybackListener {
 
     private SfxMomentData mData;
 
@@ -37,7 +34,7 @@ public class SfxMoment extends Moment implements MediaPlayer.OnCompletionListene
     @Override
     public void start(long nowNanos) {
         super.start(nowNanos);
-        getMission().getService().queueSound(mData.getUriAsset(), this);
+        getMission().getHost().queueSound(mData.getUriAsset(), this);
     }
 
     @Override
@@ -49,23 +46,29 @@ public class SfxMoment extends Moment implements MediaPlayer.OnCompletionListene
         return mData.getNextMomentId();
     }
 
+    @Override
+    public int getNextMomentIndex() {
+        return mData.getNextMomentIndex();
+    }
+
     /**
-     * We need to know when our specific sfx is done playing. Then we fallback to the default
-     * onCompletionListener to finish cleaning up.
+     * We need to know when our specific sfx is done playing. Then we let the host finish
+     * cleaning up.
      */
     @Override
-    public void onCompletion(MediaPlayer mp) {
+    public void onPlaybackDone() {
         setIsDone(true);
-        getMission().getService().onCompletion(mp);
+        getMission().getHost().endPlayback();
     }
 
     @Override
     public void restart(long nowNanos) {
-        getMission().getService().dequeueSound(mData.getUriAsset());
+        getMission().getHost().dequeueSound(mData.getUriAsset());
         // Try to start again.
         start(nowNanos);
     }
 
+    @Override
     public SfxMomentData getMomentData() {
         return this.mData;
     }
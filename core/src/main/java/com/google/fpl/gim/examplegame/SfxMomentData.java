@@ -16,8 +16,6 @@
 
 package com.google.fpl.gim.examplegame;
 
-import android.net.Uri;
-
 import java.util.ArrayList;
 
 /**
@@ -26,7 +24,7 @@ import java.util.ArrayList;
 public class SfxMomentData extends MomentData {
 
     // The name of the sound file to play
-    private final Uri mUriAsset;
+    private final String mUriAsset;
 
     /**
      * Constructor to explicitly set all fields for a ChoiceMomentData.
@@ -36,12 +34,17 @@ public class SfxMomentData extends MomentData {
      * @param uriAsset Uri of the sound to play with this moment.
      */
     public SfxMomentData(String momentId, String nextMomentId,
-                         ArrayList<String> fictionalProgress, Uri uriAsset) {
+                         ArrayList<String> fictionalProgress, String uriAsset) {
         super(momentId, nextMomentId, fictionalProgress);
         mUriAsset = uriAsset;
     }
 
-    public Uri getUriAsset() {
+    public String getUriAsset() {
         return mUriAsset;
     }
+
+    @Override
+    public Moment createMoment(Mission mission) {
+        return new SfxMoment(mission, this);
+    }
 }
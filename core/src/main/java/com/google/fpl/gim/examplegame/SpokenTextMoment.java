@@ -16,13 +16,9 @@
 
 package com.google.fpl.gim.examplegame;
 
-import android.speech.tts.TextToSpeech;
-import android.speech.tts.UtteranceProgressListener;
-
 import com.google.fpl.gim.examplegame.utils.Utils;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 
 /**
  * Describes a Moment in which the user listens to a piece of fiction as part of the gameplay.
@@ -35,26 +31,13 @@ public class SpokenTextMoment extends Moment {
     private SpokenTextMomentData mData;
 
     private static final float RETRY_WAIT_TIME_SECONDS = 2.5f;
-    // Buffer time before speaking with TextToSpeech.
-    private static final long SILENCE_LENGTH_MILLIS = 500;
-
-    // Determines behavior to execute during TextToSpeech speaking.
-    private UtteranceProgressListener mUtteranceProgressListener = new UtteranceProgressListener() {
-        @Override
-        public void onStart(String utteranceId) {
-        }
 
+    // Determines behavior when the text has been spoken, or stopped.
+    private MissionAudio.PlaybackListener mPlaybackListener = new MissionAudio.PlaybackListener() {
         @Override
-        /**
-         * Determines behavior when TextToSpeech has completed speaking, or stopped.
-         */
-        public void onDone(String utteranceId) {
+        public void onPlaybackDone() {
             setIsDone(true);
-            getMission().getService().endPlayback();
-        }
-
-        @Override
-        public void onError(String utteranceId) {
+            getMission().getHost().endPlayback();
         }
     };
 
@@ -68,7 +51,7 @@ public class SpokenTextMoment extends Moment {
         super.start(nowNanos);
         Utils.logDebug(TAG, "SpokenTextMoment \"" + mData.getMomentId() + "\" started.");
 
-        if (getMission().getService().obtainAudioFocus()) {
+        if (getMission().getHost().obtainAudioFocus()) {
             speak();
         } else {
             // Try again at a future time.
@@ -79,24 +62,24 @@ public class SpokenTextMoment extends Moment {
     @Override
     public void end() {
         Utils.logDebug(TAG, "SpokenTextMoment \"" + mData.getMomentId() + "\" ended.");
-        getMission().getService().getTextToSpeech().setOnUtteranceProgressListener(null);
-        getMission().getService().getTextToSpeech().stop();
+        getMission().getHost().stopSpeaking();
     }
 
     public String getNextMomentId() {
         return mData.getNextMomentId();
     }
 
+    @Override
+    public int getNextMomentIndex() {
+        return mData.getNextMomentIndex();
+    }
+
     /**
      * Use TextToSpeech to say the words associated with this Moment.
      */
     private void speak() {
-        TextToSpeech textToSpeech = getMission().getService().getTextToSpeech();
-        textToSpeech.setOnUtteranceProgressListener(mUtteranceProgressListener);
-        textToSpeech.playSilence(SILENCE_LENGTH_MILLIS, TextToSpeech.QUEUE_ADD, null);
-        HashMap<String, String> map = new HashMap<>();
-        map.put(TextToSpeech.Engine.KEY_PARAM_UTTERANCE_ID, mData.getMomentId());
-        textToSpeech.speak(mData.getTextToSpeak(), TextToSpeech.QUEUE_ADD, map);
+        getMission().getHost().speak(mData.getMomentId(), mData.getTextToSpeak(),
+                mPlaybackListener);
     }
 
     @Override
@@ -106,6 +89,7 @@ public class SpokenTextMoment extends Moment {
         start(nowNanos);
     }
 
+    @Override
     public SpokenTextMomentData getMomentData() {
         return this.mData;
     }
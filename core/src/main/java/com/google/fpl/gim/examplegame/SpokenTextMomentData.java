@@ -41,4 +41,9 @@ public class SpokenTextMomentData extends MomentData {
     public String getTextToSpeak() {
         return mTextToSpeak;
     }
+
+    @Override
+    public Moment createMoment(Mission mission) {
+        return new SpokenTextMoment(mission, this);
+    }
 }
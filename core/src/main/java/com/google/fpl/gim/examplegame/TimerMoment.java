@@ -16,6 +16,7 @@
 
 package com.google.fpl.gim.examplegame;
 
+import com.google.fpl.gim.examplegame.utils.TimerWheel;
 import com.google.fpl.gim.examplegame.utils.Utils;
 
 import java.util.ArrayList;
@@ -29,21 +30,31 @@ public class TimerMoment extends Moment {
 
     private long mStartTimeNanos;
 
+    // Ends the Moment once its length has passed.
+    private final TimerWheel.Timer mTimer = new TimerWheel.Timer() {
+        @Override
+        protected void onExpired(long nowNanos) {
+            setIsDone(true);
+        }
+    };
+
     public TimerMoment(Mission mission, TimerMomentData data) {
         super(mission);
         this.mData = data;
     }
 
-    @Override
-    public void update(long nowNanos) {
-        setIsDone(hasMomentTimeElapsed(nowNanos));
-    }
-
     @Override
     public void start(long nowNanos) {
         super.start(nowNanos);
         Utils.logDebug(TAG, "TimerMoment \"" + mData.getMomentId() + "\" started.");
         setStartTimeNanos(nowNanos);
+        getTimerWheel().schedule(mTimer, nowNanos + mData.getLengthNanos());
+    }
+
+    @Override
+    public void cancelTimers() {
+        super.cancelTimers();
+        getTimerWheel().cancel(mTimer);
     }
 
     @Override
@@ -58,7 +69,7 @@ public class TimerMoment extends Moment {
      *         of the timer moment.
      */
     public boolean hasMomentTimeElapsed(long nowNanos) {
-        return (nowNanos - mStartTimeNanos) >= Utils.minutesToNanos(mData.getLengthMinutes());
+        return (nowNanos - mStartTimeNanos) >= mData.getLengthNanos();
     }
 
     public void setStartTimeNanos(long startTimeNanos) {
@@ -70,12 +81,18 @@ public class TimerMoment extends Moment {
         return mData.getNextMomentId();
     }
 
+    @Override
+    public int getNextMomentIndex() {
+        return mData.getNextMomentIndex();
+    }
+
     @Override
     public void restart(long nowNanos) {
         // No additional tear down or resetting necessary.
         start(nowNanos);
     }
 
+    @Override
     public TimerMomentData getMomentData() {
         return this.mData;
     }
@@ -16,6 +16,8 @@
 
 package com.google.fpl.gim.examplegame;
 
+import com.google.fpl.gim.examplegame.utils.Utils;
+
 import java.util.ArrayList;
 
 /**
@@ -25,6 +27,8 @@ public class TimerMomentData extends MomentData {
 
     // The length of the timer in minutes
     private float mLengthMinutes;
+    // The same length in nanoseconds, converted once rather than whenever the timer starts.
+    private final long mLengthNanos;
 
     /**
      * Constructor to explicitly set all fields for a ChoiceMomentData.
@@ -37,9 +41,19 @@ public class TimerMomentData extends MomentData {
         ArrayList<String> fictionalProgress, float lengthMinutes) {
         super(momentId, nextMomentId, fictionalProgress);
         mLengthMinutes = lengthMinutes;
+        mLengthNanos = Utils.minutesToNanos(lengthMinutes);
     }
 
     public float getLengthMinutes() {
         return mLengthMinutes;
     }
+
+    public long getLengthNanos() {
+        return mLengthNanos;
+    }
+
+    @Override
+    public Moment createMoment(Mission mission) {
+        return new TimerMoment(mission, this);
+    }
 }
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+import com.google.fpl.gim.examplegame.Choice;
+import com.google.fpl.gim.examplegame.ChoiceMomentData;
+import com.google.fpl.gim.examplegame.MissionTemplate;
+import com.google.fpl.gim.examplegame.MomentData;
+import com.google.fpl.gim.examplegame.Outcome;
+import com.google.fpl.gim.examplegame.SfxMomentData;
+import com.google.fpl.gim.examplegame.SpokenTextMomentData;
+import com.google.fpl.gim.examplegame.TimerMomentData;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+/**
+ * Loads the templates of missions compiled by MissionCompiler. The compiled form is read
+ * directly from a mapped ByteBuffer: there is no XML to tokenize, and Moments are stored sorted
+ * by id with their transitions already resolved to indices.
+ *
+ * Layout, big-endian:
+ *   header:   magic, format version, CRC32 of the source XML (long), pace window seconds
+ *             (float), challenge pace hysteresis in minutes per mile (float), challenge pace
+ *             dwell seconds (float)
+ *   strings:  count, count + 1 offsets into the UTF-8 data that follows, UTF-8 data
+ *   progress: count, string index of each fictional progress entry
+ *   outcomes: count, records of OUTCOME_RECORD_INTS ints
+ *   choices:  count, records of CHOICE_RECORD_INTS ints
+ *   moments:  count, index of the first Moment, records of MOMENT_RECORD_INTS ints
+ * Missing strings and Moments are stored as NO_INDEX.
+ */
+public class CompiledMissionLoader {
+    private static final String TAG = CompiledMissionLoader.class.getSimpleName();
+
+    public static final String COMPILED_MISSION_ASSET_FOLDER_NAME = "compiled_missions";
+    // Compiled missions must be stored uncompressed in the APK so they can be mapped.
+    public static final String COMPILED_MISSION_EXTENSION = ".mbin";
+    private static final String MISSION_EXTENSION = ".xml";
+
+    static final int MAGIC = 0x47494d42; // "GIMB"
+    static final int FORMAT_VERSION = 3;
+    // Also marks the end of the mission where a Moment index is expected.
+    static final int NO_INDEX = MissionTemplate.END_MOMENT_INDEX;
+
+    static final int MOMENT_TYPE_TIMER = 0;
+    static final int MOMENT_TYPE_SFX = 1;
+    static final int MOMENT_TYPE_SPOKEN_TEXT = 2;
+    static final int MOMENT_TYPE_CHOICE = 3;
+
+    // Fields of a Moment record. The payload fields depend on the type of the Moment.
+    static final int MOMENT_TYPE = 0;
+    static final int MOMENT_ID = 1;
+    static final int MOMENT_NEXT = 2;
+    static final int MOMENT_PROGRESS_START = 3;
+    static final int MOMENT_PROGRESS_COUNT = 4;
+    static final int MOMENT_PAYLOAD = 5;
+    static final int MOMENT_RECORD_INTS = 10;
+    // Payload of a TimerMoment.
+    static final int TIMER_LENGTH_MINUTES = MOMENT_PAYLOAD;
+    // Payload of an SfxMoment.
+    static final int SFX_URI = MOMENT_PAYLOAD;
+    // Payload of a SpokenTextMoment.
+    static final int SPOKEN_TEXT_TEXT = MOMENT_PAYLOAD;
+    // Payload of a ChoiceMoment.
+    static final int CHOICE_MOMENT_DESCRIPTION = MOMENT_PAYLOAD;
+    static final int CHOICE_MOMENT_DEFAULT_CHOICE = MOMENT_PAYLOAD + 1;
+    static final int CHOICE_MOMENT_TIMEOUT_MINUTES = MOMENT_PAYLOAD + 2;
+    static final int CHOICE_MOMENT_CHOICES_START = MOMENT_PAYLOAD + 3;
+    static final int CHOICE_MOMENT_CHOICES_COUNT = MOMENT_PAYLOAD + 4;
+
+    // Fields of a Choice record.
+    static final int CHOICE_ID = 0;
+    static final int CHOICE_DESCRIPTION = 1;
+    static final int CHOICE_NEXT = 2;
+    static final int CHOICE_OUTCOME = 3;
+    static final int CHOICE_REQUIRES_CHARGED_WEAPON = 4;
+    static final int CHOICE_ICON = 5;
+    static final int CHOICE_PROGRESS_START = 6;
+    static final int CHOICE_PROGRESS_COUNT = 7;
+    static final int CHOICE_RECORD_INTS = 8;
+
+    // Fields of an Outcome record.
+    static final int OUTCOME_DEPLETE_WEAPON = 0;
+    static final int OUTCOME_INCREMENT_ENEMIES = 1;
+    static final int OUTCOME_RECORD_INTS = 2;
+
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * @param missionAssetPath The path of a mission XML file within the assets folder.
+     * @return The path within the assets folder where the compiled form of that mission is
+     *         stored.
+     */
+    public static String getCompiledAssetPath(String missionAssetPath) {
+        String fileName = missionAssetPath.substring(missionAssetPath.lastIndexOf('/') + 1);
+        if (fileName.endsWith(MISSION_EXTENSION)) {
+            fileName = fileName.substring(0, fileName.length() - MISSION_EXTENSION.length());
+        }
+        ArrayList<String> subDirectories = new ArrayList<>();
+        subDirectories.add(fileName + COMPILED_MISSION_EXTENSION);
+        return Utils.makeFilePath(COMPILED_MISSION_ASSET_FOLDER_NAME, subDirectories);
+    }
+
+    /**
+     * Reads the CRC32 of the XML a compiled mission was built from.
+     * @param buffer The compiled mission.
+     * @return The checksum of the source XML.
+     * @throws MissionParseException Thrown if the buffer is not a compiled mission.
+     */
+    public static long readSourceChecksum(ByteBuffer buffer) throws MissionParseException {
+        ByteBuffer header = buffer.duplicate();
+        readHeader(header);
+        return header.getLong();
+    }
+
+    /**
+     * Reads the template of a compiled mission.
+     * @param buffer The compiled mission. Its position is not changed.
+     * @return The linked template of the mission.
+     * @throws MissionParseException Thrown if the buffer is not a valid compiled mission.
+     */
+    public static MissionTemplate loadTemplate(ByteBuffer buffer) throws MissionParseException {
+        ByteBuffer in = buffer.duplicate();
+        try {
+            readHeader(in);
+            // Source checksum.
+            in.getLong();
+            float paceWindowSeconds = in.getFloat();
+            float challengePaceHysteresis = in.getFloat();
+            float challengePaceDwellSeconds = in.getFloat();
+            if (!(paceWindowSeconds > 0) || !(challengePaceHysteresis >= 0)
+                    || !(challengePaceDwellSeconds >= 0)) {
+                throw new MissionParseException("Compiled mission is truncated or corrupt.");
+            }
+
+            String[] strings = readStrings(in);
+            String[] progress = new String[in.getInt()];
+            for (int i = 0; i < progress.length; i++) {
+                progress[i] = getString(strings, in.getInt());
+            }
+
+            Outcome[] outcomes = new Outcome[in.getInt()];
+            for (int i = 0; i < outcomes.length; i++) {
+                outcomes[i] = new Outcome(in.getInt() != 0, in.getInt() != 0);
+            }
+
+            int numChoices = in.getInt();
+            int choicesPosition = in.position();
+            in.position(choicesPosition + numChoices * CHOICE_RECORD_INTS * 4);
+
+            String[] momentIds = new String[in.getInt()];
+            int firstMoment = in.getInt();
+            int momentsPosition = in.position();
+            if (in.remaining() != momentIds.length * MOMENT_RECORD_INTS * 4) {
+                throw new MissionParseException("Compiled mission is truncated or corrupt.");
+            }
+            for (int i = 0; i < momentIds.length; i++) {
+                momentIds[i] = getString(strings, getRecordInt(in, momentsPosition,
+                        MOMENT_RECORD_INTS, i, MOMENT_ID));
+            }
+
+            MomentData[] momentData = new MomentData[momentIds.length];
+            for (int i = 0; i < momentData.length; i++) {
+                momentData[i] = readMomentData(in, momentsPosition, i, strings, progress,
+                        momentIds, outcomes, choicesPosition, numChoices);
+            }
+
+            checkMomentIndex(firstMoment, momentData.length);
+            if (firstMoment == NO_INDEX) {
+                throw new MissionParseException("Mission has no start moment.");
+            }
+            Utils.logDebug(TAG, "Loaded " + momentData.length + " compiled Moments.");
+            return new MissionTemplate(momentIds, momentData, firstMoment, paceWindowSeconds,
+                    challengePaceHysteresis, challengePaceDwellSeconds);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException
+                | IllegalArgumentException e) {
+            e.printStackTrace();
+            throw new MissionParseException("Compiled mission is truncated or corrupt.");
+        }
+    }
+
+    private static void readHeader(ByteBuffer in) throws MissionParseException {
+        if (in.remaining() < 8 || in.getInt() != MAGIC) {
+            throw new MissionParseException("Not a compiled mission.");
+        }
+        if (in.getInt() != FORMAT_VERSION) {
+            throw new MissionParseException("Unsupported compiled mission version.");
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer in) throws MissionParseException {
+        String[] strings = new String[in.getInt()];
+        int offsetsPosition = in.position();
+        int dataPosition = offsetsPosition + (strings.length + 1) * 4;
+        for (int i = 0; i < strings.length; i++) {
+            int start = dataPosition + in.getInt(offsetsPosition + i * 4);
+            int end = dataPosition + in.getInt(offsetsPosition + (i + 1) * 4);
+            // Decodes directly from the mapped buffer.
+            ByteBuffer bytes = in.duplicate();
+            bytes.limit(end);
+            bytes.position(start);
+            try {
+                strings[i] = UTF_8.newDecoder().decode(bytes).toString();
+            } catch (CharacterCodingException e) {
+                e.printStackTrace();
+                throw new MissionParseException("Compiled mission contains invalid text.");
+            }
+        }
+        in.position(dataPosition + in.getInt(offsetsPosition + strings.length * 4));
+        return strings;
+    }
+
+    private static MomentData readMomentData(ByteBuffer in, int momentsPosition, int index,
+            String[] strings, String[] progress, String[] momentIds, Outcome[] outcomes,
+            int choicesPosition, int numChoices) throws MissionParseException {
+        int base = momentsPosition + index * MOMENT_RECORD_INTS * 4;
+        String id = momentIds[index];
+        int nextIndex = checkMomentIndex(in.getInt(base + MOMENT_NEXT * 4), momentIds.length);
+        String nextId = getMomentId(momentIds, nextIndex);
+        ArrayList<String> fictionalProgress = getProgress(progress,
+                in.getInt(base + MOMENT_PROGRESS_START * 4),
+                in.getInt(base + MOMENT_PROGRESS_COUNT * 4));
+
+        MomentData data;
+        switch (in.getInt(base + MOMENT_TYPE * 4)) {
+            case MOMENT_TYPE_TIMER:
+                data = new TimerMomentData(id, nextId, fictionalProgress,
+                        in.getFloat(base + TIMER_LENGTH_MINUTES * 4));
+                break;
+            case MOMENT_TYPE_SFX:
+                data = new SfxMomentData(id, nextId, fictionalProgress,
+                        getString(strings, in.getInt(base + SFX_URI * 4)));
+                break;
+            case MOMENT_TYPE_SPOKEN_TEXT:
+                data = new SpokenTextMomentData(id, nextId, fictionalProgress,
+                        getString(strings, in.getInt(base + SPOKEN_TEXT_TEXT * 4)));
+                break;
+            case MOMENT_TYPE_CHOICE:
+                int choicesStart = in.getInt(base + CHOICE_MOMENT_CHOICES_START * 4);
+                int choicesCount = in.getInt(base + CHOICE_MOMENT_CHOICES_COUNT * 4);
+                int defaultChoice = in.getInt(base + CHOICE_MOMENT_DEFAULT_CHOICE * 4);
+                if (choicesStart < 0 || choicesStart + choicesCount > numChoices) {
+                    throw new MissionParseException("Compiled mission is truncated or corrupt.");
+                }
+                ChoiceMomentData choiceData = new ChoiceMomentData(id, fictionalProgress,
+                        getString(strings, in.getInt(base + CHOICE_MOMENT_DESCRIPTION * 4)),
+                        getString(strings, getRecordInt(in, choicesPosition, CHOICE_RECORD_INTS,
+                                defaultChoice, CHOICE_ID)),
+                        in.getFloat(base + CHOICE_MOMENT_TIMEOUT_MINUTES * 4));
+                for (int i = choicesStart; i < choicesStart + choicesCount; i++) {
+                    choiceData.addChoice(readChoice(in, choicesPosition, i, strings, progress,
+                            momentIds, outcomes));
+                }
+                data = choiceData;
+                break;
+            default:
+                throw new MissionParseException("Moment type invalid.");
+        }
+        // Compiled missions are already linked.
+        data.setNextMomentIndex(nextIndex);
+        return data;
+    }
+
+    private static Choice readChoice(ByteBuffer in, int choicesPosition, int index,
+            String[] strings, String[] progress, String[] momentIds, Outcome[] outcomes)
+            throws MissionParseException {
+        int base = choicesPosition + index * CHOICE_RECORD_INTS * 4;
+        int nextIndex = checkMomentIndex(in.getInt(base + CHOICE_NEXT * 4), momentIds.length);
+        Choice choice = new Choice(
+                getString(strings, in.getInt(base + CHOICE_ID * 4)),
+                getString(strings, in.getInt(base + CHOICE_DESCRIPTION * 4)),
+                getMomentId(momentIds, nextIndex),
+                outcomes[in.getInt(base + CHOICE_OUTCOME * 4)],
+                in.getInt(base + CHOICE_REQUIRES_CHARGED_WEAPON * 4) != 0,
+                getProgress(progress, in.getInt(base + CHOICE_PROGRESS_START * 4),
+                        in.getInt(base + CHOICE_PROGRESS_COUNT * 4)),
+                getString(strings, in.getInt(base + CHOICE_ICON * 4)));
+        choice.setNextMomentIndex(nextIndex);
+        return choice;
+    }
+
+    private static int checkMomentIndex(int index, int numMoments) throws MissionParseException {
+        if (index < NO_INDEX || index >= numMoments) {
+            throw new MissionParseException("Compiled mission is truncated or corrupt.");
+        }
+        return index;
+    }
+
+    private static int getRecordInt(ByteBuffer in, int recordsPosition, int recordInts,
+            int index, int field) {
+        return in.getInt(recordsPosition + (index * recordInts + field) * 4);
+    }
+
+    private static String getString(String[] strings, int index) {
+        return index == NO_INDEX ? null : strings[index];
+    }
+
+    private static String getMomentId(String[] momentIds, int index) {
+        return index == NO_INDEX ? null : momentIds[index];
+    }
+
+    private static ArrayList<String> getProgress(String[] progress, int start, int count) {
+        ArrayList<String> fictionalProgress = new ArrayList<>(count);
+        for (int i = start; i < start + count; i++) {
+            fictionalProgress.add(progress[i]);
+        }
+        return fictionalProgress;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+/**
+ * A Clock that only moves when it is told to, for running missions faster than real time.
+ */
+public class ManualClock implements Clock {
+
+    private long mNowNanos;
+
+    /**
+     * @param startNanos The time at which the clock starts.
+     */
+    public ManualClock(long startNanos) {
+        mNowNanos = startNanos;
+    }
+
+    @Override
+    public long nanoTime() {
+        return mNowNanos;
+    }
+
+    /**
+     * Moves the clock to a later time.
+     * @param nowNanos The new time. Must not be before the current time.
+     */
+    public void setNanoTime(long nowNanos) {
+        if (nowNanos < mNowNanos) {
+            throw new IllegalArgumentException("The clock can not go back in time.");
+        }
+        mNowNanos = nowNanos;
+    }
+
+    /**
+     * Moves the clock forwards.
+     * @param nanos How far to move the clock. Must not be negative.
+     */
+    public void advanceNanos(long nanos) {
+        setNanoTime(mNowNanos + nanos);
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+import com.google.fpl.gim.examplegame.Choice;
+import com.google.fpl.gim.examplegame.ChoiceMomentData;
+import com.google.fpl.gim.examplegame.MissionTemplate;
+import com.google.fpl.gim.examplegame.MomentData;
+import com.google.fpl.gim.examplegame.Outcome;
+import com.google.fpl.gim.examplegame.SfxMomentData;
+import com.google.fpl.gim.examplegame.SpokenTextMomentData;
+import com.google.fpl.gim.examplegame.TimerMomentData;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Converts mission XML into the compiled form read by CompiledMissionLoader. The mission is
+ * linked while it is parsed, so a compiled mission never refers to a Moment that does not exist.
+ *
+ * To regenerate the compiled missions after editing the XML, run
+ * {@code MissionCompiler app/src/main/assets/missions app/src/main/assets/compiled_missions}
+ * with the app classes on the classpath.
+ */
+public class MissionCompiler {
+    private static final String TAG = MissionCompiler.class.getSimpleName();
+
+    private static final String MISSION_EXTENSION = ".xml";
+
+    /**
+     * Compiles every mission XML file in a folder.
+     * @param args The folder to read missions from, and the folder to write compiled missions to.
+     */
+    public static void main(String[] args) throws IOException, MissionParseException {
+        if (args.length != 2) {
+            System.err.println("Usage: MissionCompiler <mission folder> <output folder>");
+            System.exit(1);
+        }
+        File outputFolder = new File(args[1]);
+        if (!outputFolder.isDirectory() && !outputFolder.mkdirs()) {
+            throw new IOException("Unable to create " + outputFolder);
+        }
+        File[] missionFiles = new File(args[0]).listFiles();
+        if (missionFiles == null) {
+            throw new IOException(args[0] + " is not a folder.");
+        }
+        Arrays.sort(missionFiles);
+        for (File missionFile : missionFiles) {
+            if (!missionFile.getName().endsWith(MISSION_EXTENSION)) {
+                continue;
+            }
+            File compiledFile = new File(outputFolder, new File(
+                    CompiledMissionLoader.getCompiledAssetPath(missionFile.getName())).getName());
+            InputStream in = new FileInputStream(missionFile);
+            try {
+                byte[] compiled = compileMission(in);
+                OutputStream out = new FileOutputStream(compiledFile);
+                try {
+                    out.write(compiled);
+                } finally {
+                    out.close();
+                }
+                System.out.println(missionFile.getName() + " -> " + compiledFile.getName());
+            } catch (MissionParseException e) {
+                // Broken missions are left for the XML parser to report at runtime.
+                System.out.println(missionFile.getName() + " skipped: " + e.getMessage());
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Compiles a mission.
+     * @param missionStream The mission XML.
+     * @return The compiled mission.
+     * @throws MissionParseException Thrown if the mission cannot be parsed, or refers to a Moment
+     *         that does not exist.
+     */
+    public static byte[] compileMission(InputStream missionStream)
+            throws MissionParseException, IOException {
+        byte[] xml = readFully(missionStream);
+        CRC32 crc = new CRC32();
+        crc.update(xml);
+
+        MissionTemplate template =
+                MissionParser.parseMissionTemplate(new ByteArrayInputStream(xml));
+        return new Writer(template).write(crc.getValue());
+    }
+
+    private static byte[] readFully(InputStream stream) throws IOException {
+        ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int numBytesRead;
+        while ((numBytesRead = stream.read(buffer)) != -1) {
+            contents.write(buffer, 0, numBytesRead);
+        }
+        return contents.toByteArray();
+    }
+
+    /**
+     * Builds the tables of a compiled mission.
+     */
+    private static class Writer {
+        private final MissionTemplate mTemplate;
+
+        private final ArrayList<String> mStrings = new ArrayList<>();
+        private final HashMap<String, Integer> mStringIndices = new HashMap<>();
+        private final ArrayList<Integer> mProgress = new ArrayList<>();
+        private final ArrayList<int[]> mOutcomes = new ArrayList<>();
+        private final ArrayList<int[]> mChoices = new ArrayList<>();
+        private final ArrayList<int[]> mMoments = new ArrayList<>();
+
+        Writer(MissionTemplate template) {
+            mTemplate = template;
+        }
+
+        byte[] write(long sourceChecksum) throws MissionParseException, IOException {
+            for (int i = 0; i < mTemplate.getNumMoments(); i++) {
+                mMoments.add(makeMomentRecord(mTemplate.getMomentData(i)));
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(CompiledMissionLoader.MAGIC);
+            out.writeInt(CompiledMissionLoader.FORMAT_VERSION);
+            out.writeLong(sourceChecksum);
+            out.writeFloat(mTemplate.getPaceWindowSeconds());
+            out.writeFloat(mTemplate.getChallengePaceHysteresisMinutesPerMile());
+            out.writeFloat(mTemplate.getChallengePaceDwellSeconds());
+
+            writeStrings(out);
+            out.writeInt(mProgress.size());
+            for (int stringIndex : mProgress) {
+                out.writeInt(stringIndex);
+            }
+            writeRecords(out, mOutcomes);
+            writeRecords(out, mChoices);
+            out.writeInt(mMoments.size());
+            out.writeInt(mTemplate.getFirstMomentIndex());
+            for (int[] record : mMoments) {
+                writeRecord(out, record);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        }
+
+        private int[] makeMomentRecord(MomentData data) throws MissionParseException {
+            int[] record = new int[CompiledMissionLoader.MOMENT_RECORD_INTS];
+            Arrays.fill(record, CompiledMissionLoader.NO_INDEX);
+            if (data instanceof TimerMomentData) {
+                record[CompiledMissionLoader.MOMENT_TYPE] = CompiledMissionLoader.MOMENT_TYPE_TIMER;
+                record[CompiledMissionLoader.TIMER_LENGTH_MINUTES] =
+                        Float.floatToIntBits(((TimerMomentData) data).getLengthMinutes());
+            } else if (data instanceof SfxMomentData) {
+                record[CompiledMissionLoader.MOMENT_TYPE] = CompiledMissionLoader.MOMENT_TYPE_SFX;
+                record[CompiledMissionLoader.SFX_URI] =
+                        addString(((SfxMomentData) data).getUriAsset());
+            } else if (data instanceof SpokenTextMomentData) {
+                record[CompiledMissionLoader.MOMENT_TYPE] =
+                        CompiledMissionLoader.MOMENT_TYPE_SPOKEN_TEXT;
+                record[CompiledMissionLoader.SPOKEN_TEXT_TEXT] =
+                        addString(((SpokenTextMomentData) data).getTextToSpeak());
+            } else if (data instanceof ChoiceMomentData) {
+                ChoiceMomentData choiceData = (ChoiceMomentData) data;
+                record[CompiledMissionLoader.MOMENT_TYPE] =
+                        CompiledMissionLoader.MOMENT_TYPE_CHOICE;
+                record[CompiledMissionLoader.CHOICE_MOMENT_DESCRIPTION] =
+                        addString(choiceData.getText());
+                record[CompiledMissionLoader.CHOICE_MOMENT_TIMEOUT_MINUTES] =
+                        Float.floatToIntBits(choiceData.getTimeoutLengthMinutes());
+                record[CompiledMissionLoader.CHOICE_MOMENT_CHOICES_START] = mChoices.size();
+                record[CompiledMissionLoader.CHOICE_MOMENT_CHOICES_COUNT] =
+                        choiceData.getNumChoices();
+                for (Choice choice : choiceData.getChoices()) {
+                    if (choice.getChoiceId().equals(choiceData.getDefaultChoiceId())) {
+                        record[CompiledMissionLoader.CHOICE_MOMENT_DEFAULT_CHOICE] =
+                                mChoices.size();
+                    }
+                    mChoices.add(makeChoiceRecord(choice));
+                }
+            } else {
+                throw new MissionParseException("Moment type invalid.");
+            }
+
+            record[CompiledMissionLoader.MOMENT_ID] = addString(data.getMomentId());
+            record[CompiledMissionLoader.MOMENT_NEXT] = data.getNextMomentIndex();
+            record[CompiledMissionLoader.MOMENT_PROGRESS_START] = mProgress.size();
+            record[CompiledMissionLoader.MOMENT_PROGRESS_COUNT] =
+                    addProgress(data.getFictionalProgress());
+            return record;
+        }
+
+        private int[] makeChoiceRecord(Choice choice) {
+            Outcome outcome = choice.getOutcome();
+            int[] outcomeRecord = new int[CompiledMissionLoader.OUTCOME_RECORD_INTS];
+            outcomeRecord[CompiledMissionLoader.OUTCOME_DEPLETE_WEAPON] =
+                    outcome.weaponChargeDepleted() ? 1 : 0;
+            outcomeRecord[CompiledMissionLoader.OUTCOME_INCREMENT_ENEMIES] =
+                    outcome.numEnemiesDefeatedIncremented() ? 1 : 0;
+
+            int[] record = new int[CompiledMissionLoader.CHOICE_RECORD_INTS];
+            record[CompiledMissionLoader.CHOICE_ID] = addString(choice.getChoiceId());
+            record[CompiledMissionLoader.CHOICE_DESCRIPTION] = addString(choice.getDescription());
+            record[CompiledMissionLoader.CHOICE_NEXT] = choice.getNextMomentIndex();
+            record[CompiledMissionLoader.CHOICE_OUTCOME] = mOutcomes.size();
+            mOutcomes.add(outcomeRecord);
+            record[CompiledMissionLoader.CHOICE_REQUIRES_CHARGED_WEAPON] =
+                    choice.requiresChargedWeapon() ? 1 : 0;
+            record[CompiledMissionLoader.CHOICE_ICON] =
+                    addString(choice.getDrawableResourceName());
+            record[CompiledMissionLoader.CHOICE_PROGRESS_START] = mProgress.size();
+            record[CompiledMissionLoader.CHOICE_PROGRESS_COUNT] =
+                    addProgress(choice.getFictionalProgress());
+            return record;
+        }
+
+        private int addString(String s) {
+            if (s == null) {
+                return CompiledMissionLoader.NO_INDEX;
+            }
+            Integer index = mStringIndices.get(s);
+            if (index == null) {
+                index = mStrings.size();
+                mStrings.add(s);
+                mStringIndices.put(s, index);
+            }
+            return index;
+        }
+
+        private int addProgress(ArrayList<String> fictionalProgress) {
+            for (String progress : fictionalProgress) {
+                mProgress.add(addString(progress));
+            }
+            return fictionalProgress.size();
+        }
+
+        private void writeStrings(DataOutputStream out) throws IOException {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            out.writeInt(mStrings.size());
+            out.writeInt(0);
+            for (String s : mStrings) {
+                data.write(s.getBytes(CompiledMissionLoader.UTF_8));
+                out.writeInt(data.size());
+            }
+            data.writeTo(out);
+        }
+
+        private void writeRecords(DataOutputStream out, ArrayList<int[]> records)
+                throws IOException {
+            out.writeInt(records.size());
+            for (int[] record : records) {
+                writeRecord(out, record);
+            }
+        }
+
+        private void writeRecord(DataOutputStream out, int[] record) throws IOException {
+            for (int field : record) {
+                out.writeInt(field);
+            }
+        }
+    }
+}
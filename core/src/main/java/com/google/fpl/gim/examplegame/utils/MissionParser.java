@@ -0,0 +1,769 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+import com.google.fpl.gim.examplegame.Choice;
+import com.google.fpl.gim.examplegame.ChoiceMoment;
+import com.google.fpl.gim.examplegame.ChoiceMomentData;
+import com.google.fpl.gim.examplegame.MissionHeader;
+import com.google.fpl.gim.examplegame.MissionTemplate;
+import com.google.fpl.gim.examplegame.MomentData;
+import com.google.fpl.gim.examplegame.Outcome;
+import com.google.fpl.gim.examplegame.SfxMomentData;
+import com.google.fpl.gim.examplegame.SpokenTextMomentData;
+import com.google.fpl.gim.examplegame.TimerMomentData;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A class for parsing a mission in a file.
+ */
+public class MissionParser {
+    private static final String TAG = MissionParser.class.getSimpleName();
+
+    static final String ELEMENT_MISSION = "mission";
+    static final String MISSION_ATTRIBUTE_START_ID = "start_id";
+    private static final String MISSION_ATTRIBUTE_NAME = "name";
+    static final String MISSION_ATTRIBUTE_PACE_WINDOW_SECONDS = "pace_window_seconds";
+    static final String MISSION_ATTRIBUTE_CHALLENGE_PACE_HYSTERESIS = "challenge_pace_hysteresis";
+    static final String MISSION_ATTRIBUTE_CHALLENGE_PACE_DWELL_SECONDS =
+            "challenge_pace_dwell_seconds";
+
+    static final String ELEMENT_MOMENT = "moment";
+
+    // Types of moments.
+    private static final String MOMENT_TYPE_TIMER = "timer";
+    private static final String MOMENT_TYPE_SFX = "sfx";
+    private static final String MOMENT_TYPE_SPOKEN_TEXT = "spoken_text";
+    private static final String MOMENT_TYPE_CHOICE = "choice";
+
+    // Attributes for all moments.
+    static final String MOMENT_ATTRIBUTE_TYPE = "type";
+    static final String MOMENT_ATTRIBUTE_ID = "id";
+
+    // Attributes for specific types of moments.
+    private static final String ELEMENT_CHOICE = "choice";
+    private static final String ELEMENT_DESCRIPTION = "description";
+    private static final String ELEMENT_NEXT_MOMENT = "next_moment";
+    private static final String NEXT_MOMENT_ATTRIBUTE_ID = "id";
+    private static final String ELEMENT_LENGTH_MINUTES = "length_minutes";
+    private static final String ELEMENT_TIMEOUT_LENGTH_MINUTES = "timeout_length_minutes";
+    private static final String ELEMENT_DEFAULT_CHOICE = "default_choice";
+    private static final String ELEMENT_URI = "uri";
+    private static final String DEFAULT_CHOICE_ATTRIBUTE_ID  = "id";
+    private static final String ELEMENT_OUTCOME = "outcome";
+    private static final String CHOICE_ATTRIBUTE_ID = "id";
+    private static final String ELEMENT_TEXT_TO_SPEAK = "text_to_speak";
+    private static final String ELEMENT_FICTIONAL_PROGRESS = "fictional_progress";
+    private static final String ELEMENT_ICON = "icon";
+    private static final String ICON_ATTRIBUTE_NAME = "name";
+
+    // Attributes for outcomes.
+    private static final String OUTCOME_ATTRIBUTE_DEPLETE_WEAPON = "deplete_weapon";
+    private static final String OUTCOME_ATTRIBUTE_INCREMENT_ENEMIES = "increment_enemies";
+
+    // ID that signifies the moment whose next is this is an ending moment.
+    private static final String DEFAULT_END_ID = null;
+
+    // ID that signifies that this Choice should only be displayed when the user's weapon is
+    // charged.
+    public static final String FIRE_WEAPON_CHOICE_ID = "fire";
+
+    /**
+     * Reads the Moments that define a Mission from input. Assumes XML file. The file is read in a
+     * single streaming pass, so only the Moment currently being read is held in memory beyond the
+     * MomentData already read. The Moments are then linked, so that each refers to the next by
+     * index.
+     * @param missionStream The InputStream to read from.
+     * @return The linked template of the mission.
+     * @throws MissionParseException
+     */
+    public static MissionTemplate parseMissionTemplate(InputStream missionStream) throws
+            MissionParseException {
+        return parseMissionTemplate(missionStream, MomentTypeRegistry.getDefault());
+    }
+
+    /**
+     * Reads the Moments that define a Mission from input, using the types of Moment in the given
+     * registry.
+     * @param missionStream The InputStream to read from.
+     * @param registry The types of Moment that may appear in the mission.
+     * @return The linked template of the mission.
+     * @throws MissionParseException
+     */
+    public static MissionTemplate parseMissionTemplate(InputStream missionStream,
+            MomentTypeRegistry registry) throws MissionParseException {
+        XmlPullParser parser = newPullParser(missionStream);
+        HashMap<String, MomentData> momentData = new HashMap<>();
+
+        String startId = null;
+        float paceWindowSeconds = MissionTemplate.DEFAULT_PACE_WINDOW_SECONDS;
+        float challengePaceHysteresis =
+                MissionTemplate.DEFAULT_CHALLENGE_PACE_HYSTERESIS_MINUTES_PER_MILE;
+        float challengePaceDwellSeconds = MissionTemplate.DEFAULT_CHALLENGE_PACE_DWELL_SECONDS;
+        boolean foundMissionElement = false;
+        try {
+            int eventType = parser.getEventType();
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG) {
+                    String tag = parser.getName();
+                    if (!foundMissionElement && tag.equals(ELEMENT_MISSION)) {
+                        // Find the Mission's starting Moment.
+                        foundMissionElement = true;
+                        startId = getAttribute(parser, MISSION_ATTRIBUTE_START_ID);
+                        Utils.logDebug(TAG, "Start id is \"" + startId + "\".");
+                        paceWindowSeconds = parsePaceWindowAttribute(parser);
+                        challengePaceHysteresis = parseChallengePaceHysteresisAttribute(parser);
+                        challengePaceDwellSeconds = parseChallengePaceDwellAttribute(parser);
+                    } else if (tag.equals(ELEMENT_MOMENT)) {
+                        // Consumes the whole Moment, up to and including its end tag.
+                        parseMomentElement(parser, registry, momentData);
+                    }
+                }
+                eventType = parser.next();
+            }
+        } catch (XmlPullParserException e) {
+            e.printStackTrace();
+            throw new MissionParseException("XmlPullParserException while reading mission.");
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new MissionParseException("IOException  while reading mission.");
+        }
+
+        // Resolve every next moment to an index, rejecting ids that do not exist.
+        return MissionTemplate.link(momentData, startId, paceWindowSeconds,
+                challengePaceHysteresis, challengePaceDwellSeconds);
+    }
+
+    /**
+     * Reads the optional pace_window_seconds attribute of the mission element.
+     * @param parser The parser positioned on the mission start tag.
+     * @return The length of time the player's pace is averaged over.
+     * @throws MissionParseException Thrown if the attribute is not a positive number.
+     */
+    static float parsePaceWindowAttribute(XmlPullParser parser) throws MissionParseException {
+        String text = parser.getAttributeValue(null, MISSION_ATTRIBUTE_PACE_WINDOW_SECONDS);
+        if (text == null) {
+            return MissionTemplate.DEFAULT_PACE_WINDOW_SECONDS;
+        }
+        float paceWindowSeconds = parseFloat(text, MISSION_ATTRIBUTE_PACE_WINDOW_SECONDS);
+        if (!(paceWindowSeconds > 0)) {
+            throw new MissionParseException(MISSION_ATTRIBUTE_PACE_WINDOW_SECONDS + " \"" + text
+                    + "\" must be greater than zero.");
+        }
+        return paceWindowSeconds;
+    }
+
+    /**
+     * Reads the optional challenge_pace_hysteresis attribute of the mission element.
+     * @param parser The parser positioned on the mission start tag.
+     * @return How much slower than the challenge pace, in minutes per mile, a player who is at it
+     *         must go to leave it.
+     * @throws MissionParseException Thrown if the attribute is not a number of at least zero.
+     */
+    static float parseChallengePaceHysteresisAttribute(XmlPullParser parser)
+            throws MissionParseException {
+        return parseNonNegativeAttribute(parser, MISSION_ATTRIBUTE_CHALLENGE_PACE_HYSTERESIS,
+                MissionTemplate.DEFAULT_CHALLENGE_PACE_HYSTERESIS_MINUTES_PER_MILE);
+    }
+
+    /**
+     * Reads the optional challenge_pace_dwell_seconds attribute of the mission element.
+     * @param parser The parser positioned on the mission start tag.
+     * @return How long the player must stay on the other side of the challenge pace to reach or
+     *         leave it.
+     * @throws MissionParseException Thrown if the attribute is not a number of at least zero.
+     */
+    static float parseChallengePaceDwellAttribute(XmlPullParser parser)
+            throws MissionParseException {
+        return parseNonNegativeAttribute(parser, MISSION_ATTRIBUTE_CHALLENGE_PACE_DWELL_SECONDS,
+                MissionTemplate.DEFAULT_CHALLENGE_PACE_DWELL_SECONDS);
+    }
+
+    private static float parseNonNegativeAttribute(XmlPullParser parser, String attribute,
+            float defaultValue) throws MissionParseException {
+        String text = parser.getAttributeValue(null, attribute);
+        if (text == null) {
+            return defaultValue;
+        }
+        float value = parseFloat(text, attribute);
+        if (!(value >= 0)) {
+            throw new MissionParseException(attribute + " \"" + text
+                    + "\" must not be negative.");
+        }
+        return value;
+    }
+
+    /**
+     * Parses a moment element and adds the resulting MomentData to momentData. The parser must be
+     * positioned on the moment's start tag, and is left on its end tag.
+     * @param parser The parser positioned on a moment start tag.
+     * @param registry The types of Moment that may appear in the mission.
+     * @param momentData The data of the Moments read so far, by id.
+     */
+    private static void parseMomentElement(XmlPullParser parser, MomentTypeRegistry registry,
+            HashMap<String, MomentData> momentData)
+            throws MissionParseException, XmlPullParserException, IOException {
+        // Data for all Moments
+        String id = getAttribute(parser, MOMENT_ATTRIBUTE_ID);
+        String momentType = getAttribute(parser, MOMENT_ATTRIBUTE_TYPE);
+
+        MomentData data = registry.parseMoment(momentType, id, parser);
+        Utils.logDebug(TAG, "Moment \"" + id + "\" of type " + momentType + " created.");
+
+        momentData.put(id, data);
+    }
+
+    /**
+     * Adds the types of Moment that are built in to the game to a registry.
+     * @param registry The registry to add the types to.
+     */
+    static void registerBuiltInMomentTypes(MomentTypeRegistry registry) {
+        registry.register(new MomentType(MOMENT_TYPE_TIMER) {
+            @Override
+            public MomentData parseData(String momentId, XmlPullParser parser)
+                    throws MissionParseException, XmlPullParserException, IOException {
+                return parseTimerMoment(momentId, parser);
+            }
+        });
+        registry.register(new MomentType(MOMENT_TYPE_SFX) {
+            @Override
+            public MomentData parseData(String momentId, XmlPullParser parser)
+                    throws MissionParseException, XmlPullParserException, IOException {
+                return parseSfxMoment(momentId, parser);
+            }
+        });
+        registry.register(new MomentType(MOMENT_TYPE_SPOKEN_TEXT) {
+            @Override
+            public MomentData parseData(String momentId, XmlPullParser parser)
+                    throws MissionParseException, XmlPullParserException, IOException {
+                return parseSpokenTextMoment(momentId, parser);
+            }
+        });
+        registry.register(new MomentType(MOMENT_TYPE_CHOICE) {
+            @Override
+            public MomentData parseData(String momentId, XmlPullParser parser)
+                    throws MissionParseException, XmlPullParserException, IOException {
+                return parseChoiceMomentElement(momentId, parser);
+            }
+        });
+    }
+
+    /**
+     * Parses an element representing an SfxMoment to create SfxMomentData.
+     * @param momentId Already parsed data about the Moment.
+     * @param parser The parser positioned on the moment start tag.
+     * @return data to construct an SfxMoment
+     */
+    private static SfxMomentData parseSfxMoment(String momentId, XmlPullParser parser)
+            throws MissionParseException, XmlPullParserException, IOException {
+        String uriText = null;
+        String nextMomentId = DEFAULT_END_ID;
+        boolean foundNextMoment = false;
+        ArrayList<String> fictionalProgress = new ArrayList<>();
+
+        int depth = parser.getDepth();
+        while (nextChildElement(parser, depth)) {
+            String tag = parser.getName();
+            if (uriText == null && tag.equals(ELEMENT_URI)) {
+                uriText = readText(parser);
+            } else if (!foundNextMoment && tag.equals(ELEMENT_NEXT_MOMENT)) {
+                foundNextMoment = true;
+                nextMomentId = parseNextMomentElement(parser);
+            } else if (tag.equals(ELEMENT_FICTIONAL_PROGRESS)) {
+                fictionalProgress.add(parseFictionalProgressElement(parser));
+            } else {
+                skipElement(parser);
+            }
+        }
+
+        String uri = parseUriElement(requireElement(uriText, ELEMENT_URI));
+
+        return new SfxMomentData(momentId, nextMomentId, fictionalProgress, uri);
+    }
+
+    /**
+     * Parses an element representing a TimerMoment to create TimerMomentData.
+     * @param momentId Already parsed data about the Moment.
+     * @param parser The parser positioned on the moment start tag.
+     * @return data to construct a TimerMoment
+     */
+    private static TimerMomentData parseTimerMoment(String momentId, XmlPullParser parser)
+            throws MissionParseException, XmlPullParserException, IOException {
+        String lengthMinutesText = null;
+        String nextMomentId = DEFAULT_END_ID;
+        boolean foundNextMoment = false;
+        ArrayList<String> fictionalProgress = new ArrayList<>();
+
+        int depth = parser.getDepth();
+        while (nextChildElement(parser, depth)) {
+            String tag = parser.getName();
+            if (lengthMinutesText == null && tag.equals(ELEMENT_LENGTH_MINUTES)) {
+                lengthMinutesText = readText(parser);
+            } else if (!foundNextMoment && tag.equals(ELEMENT_NEXT_MOMENT)) {
+                foundNextMoment = true;
+                nextMomentId = parseNextMomentElement(parser);
+            } else if (tag.equals(ELEMENT_FICTIONAL_PROGRESS)) {
+                fictionalProgress.add(parseFictionalProgressElement(parser));
+            } else {
+                skipElement(parser);
+            }
+        }
+
+        float momentLengthMinutes = parseLengthMinutesElement(
+                requireElement(lengthMinutesText, ELEMENT_LENGTH_MINUTES));
+
+        return new TimerMomentData(momentId, nextMomentId, fictionalProgress, momentLengthMinutes);
+    }
+
+    /**
+     * Parses an element representing a SpokenTextMoment to create SpokenTextMomentData.
+     * @param momentId Already parsed data about the Moment.
+     * @param parser The parser positioned on the moment start tag.
+     * @return data to construct an SpokenTextMoment
+     */
+    private static SpokenTextMomentData parseSpokenTextMoment(String momentId,
+            XmlPullParser parser) throws MissionParseException, XmlPullParserException,
+            IOException {
+        String textToSpeakText = null;
+        String nextMomentId = DEFAULT_END_ID;
+        boolean foundNextMoment = false;
+        ArrayList<String> fictionalProgress = new ArrayList<>();
+
+        int depth = parser.getDepth();
+        while (nextChildElement(parser, depth)) {
+            String tag = parser.getName();
+            if (textToSpeakText == null && tag.equals(ELEMENT_TEXT_TO_SPEAK)) {
+                textToSpeakText = readText(parser);
+            } else if (!foundNextMoment && tag.equals(ELEMENT_NEXT_MOMENT)) {
+                foundNextMoment = true;
+                nextMomentId = parseNextMomentElement(parser);
+            } else if (tag.equals(ELEMENT_FICTIONAL_PROGRESS)) {
+                fictionalProgress.add(parseFictionalProgressElement(parser));
+            } else {
+                skipElement(parser);
+            }
+        }
+
+        String textToSpeak = parseTextToSpeakElement(
+                requireElement(textToSpeakText, ELEMENT_TEXT_TO_SPEAK));
+
+        return new SpokenTextMomentData(momentId, nextMomentId, fictionalProgress, textToSpeak);
+    }
+
+    /**
+     * Parses an element representing a ChoiceMoment to create ChoiceMomentData.
+     * @param momentId Already parsed data about the Moment.
+     * @param parser The parser positioned on the moment start tag.
+     * @return data to construct an ChoiceMoment
+     */
+    private static ChoiceMomentData parseChoiceMomentElement(String momentId,
+            XmlPullParser parser) throws MissionParseException, XmlPullParserException,
+            IOException {
+        String descriptionText = null;
+        String timeoutLengthMinutesText = null;
+        String defaultChoiceId = null;
+        ArrayList<String> fictionalProgress = new ArrayList<>();
+        ArrayList<Choice> choices = new ArrayList<>();
+
+        int depth = parser.getDepth();
+        while (nextChildElement(parser, depth)) {
+            String tag = parser.getName();
+            if (descriptionText == null && tag.equals(ELEMENT_DESCRIPTION)) {
+                descriptionText = readText(parser);
+            } else if (timeoutLengthMinutesText == null
+                    && tag.equals(ELEMENT_TIMEOUT_LENGTH_MINUTES)) {
+                timeoutLengthMinutesText = readText(parser);
+            } else if (defaultChoiceId == null && tag.equals(ELEMENT_DEFAULT_CHOICE)) {
+                defaultChoiceId = getAttribute(parser, DEFAULT_CHOICE_ATTRIBUTE_ID);
+                skipElement(parser);
+            } else if (tag.equals(ELEMENT_FICTIONAL_PROGRESS)) {
+                fictionalProgress.add(parseFictionalProgressElement(parser));
+            } else if (tag.equals(ELEMENT_CHOICE)) {
+                choices.add(parseChoiceElement(parser));
+            } else {
+                skipElement(parser);
+            }
+        }
+
+        String description = parseDescriptionElement(
+                requireElement(descriptionText, ELEMENT_DESCRIPTION));
+
+        float timeoutLengthMinutes = parseTimeoutLengthMinutesElement(
+                requireElement(timeoutLengthMinutesText, ELEMENT_TIMEOUT_LENGTH_MINUTES));
+
+        defaultChoiceId = parseDefaultChoiceElement(
+                requireElement(defaultChoiceId, ELEMENT_DEFAULT_CHOICE));
+
+        ChoiceMomentData data = new ChoiceMomentData(momentId, fictionalProgress, description,
+                defaultChoiceId, timeoutLengthMinutes);
+
+        if (choices.size() > ChoiceMoment.MAXIMUM_NUM_OF_CHOICES) {
+            throw new MissionParseException("ChoiceMoments can have no more than "
+                    + ChoiceMoment.MAXIMUM_NUM_OF_CHOICES + " Choices.");
+        }
+        if (choices.size() < ChoiceMoment.MINIMUM_NUM_OF_CHOICES) {
+            throw new MissionParseException("ChoiceMoments can have no fewer than "
+                    + ChoiceMoment.MINIMUM_NUM_OF_CHOICES + " Choices.");
+        }
+        boolean defaultChoiceIsExistingChoice = false;
+        for (Choice choice : choices) {
+            if (choice.getChoiceId().equals(defaultChoiceId)) {
+                defaultChoiceIsExistingChoice = true;
+            }
+            data.addChoice(choice);
+        }
+        if (!defaultChoiceIsExistingChoice) {
+            throw new MissionParseException("Default choice ID is not a valid Choice.");
+        }
+
+        return data;
+    }
+
+    /**
+     * Creates a Choice from an element representing a Choice.
+     * @param parser The parser positioned on the choice start tag.
+     * @return a Choice as defined in the element.
+     */
+    private static Choice parseChoiceElement(XmlPullParser parser)
+            throws MissionParseException, XmlPullParserException, IOException {
+        String id = getAttribute(parser, CHOICE_ATTRIBUTE_ID);
+
+        String descriptionText = null;
+        String nextMomentId = DEFAULT_END_ID;
+        boolean foundNextMoment = false;
+        Outcome outcome = null;
+        String iconName = null;
+        ArrayList<String> fictionalProgress = new ArrayList<>();
+
+        int depth = parser.getDepth();
+        while (nextChildElement(parser, depth)) {
+            String tag = parser.getName();
+            if (descriptionText == null && tag.equals(ELEMENT_DESCRIPTION)) {
+                descriptionText = readText(parser);
+            } else if (!foundNextMoment && tag.equals(ELEMENT_NEXT_MOMENT)) {
+                foundNextMoment = true;
+                nextMomentId = parseNextMomentElement(parser);
+            } else if (outcome == null && tag.equals(ELEMENT_OUTCOME)) {
+                outcome = parseOutcomeElement(parser);
+            } else if (tag.equals(ELEMENT_FICTIONAL_PROGRESS)) {
+                fictionalProgress.add(parseFictionalProgressElement(parser));
+            } else if (iconName == null && tag.equals(ELEMENT_ICON)) {
+                iconName = getAttribute(parser, ICON_ATTRIBUTE_NAME);
+                skipElement(parser);
+            } else {
+                skipElement(parser);
+            }
+        }
+
+        String description = parseDescriptionElement(
+                requireElement(descriptionText, ELEMENT_DESCRIPTION));
+
+        if (outcome == null) {
+            throw new MissionParseException(ELEMENT_OUTCOME + " could not be found.");
+        }
+
+        boolean requiresChargedWeapon = false;
+        if (id.equals(MissionParser.FIRE_WEAPON_CHOICE_ID)) {
+            requiresChargedWeapon = true;
+        }
+
+        iconName = parseIconElement(requireElement(iconName, ELEMENT_ICON));
+        return new Choice(id, description, nextMomentId, outcome, requiresChargedWeapon,
+                fictionalProgress, iconName);
+    }
+
+    /**
+     * Creates an Outcome from an element representing an Outcome.
+     * @param parser The parser positioned on the outcome start tag.
+     * @return an Outcome as defined in the element.
+     */
+    private static Outcome parseOutcomeElement(XmlPullParser parser)
+            throws XmlPullParserException, IOException {
+        boolean depleteWeapon =
+                Boolean.valueOf(parser.getAttributeValue(null, OUTCOME_ATTRIBUTE_DEPLETE_WEAPON));
+        boolean incrementEnemies = Boolean.valueOf(
+                parser.getAttributeValue(null, OUTCOME_ATTRIBUTE_INCREMENT_ENEMIES));
+        skipElement(parser);
+        return new Outcome(depleteWeapon, incrementEnemies);
+    }
+
+    /**
+     * Checks that a required child element was found while walking its parent.
+     * @param value The value read from the element, or null if the element was not found.
+     * @param tag The tag of the element.
+     * @return The value read from the element.
+     */
+    public static String requireElement(String value, String tag) throws MissionParseException {
+        // All elements are required except the 'next_moment' element.  The lack of a
+        // 'next_moment' element signifies that the moment is the last moment in the mission.
+        if (value == null) {
+            throw new MissionParseException(tag + " could not be found.");
+        }
+        return value;
+    }
+
+    /**
+     * Advances the parser to the next child element of the element at the given depth.
+     * @param parser The parser, positioned on the parent start tag or on the end tag of a child.
+     * @param parentDepth The depth of the parent element.
+     * @return True if the parser is now on a child start tag, false if it reached the end tag of
+     *         the parent.
+     */
+    public static boolean nextChildElement(XmlPullParser parser, int parentDepth)
+            throws XmlPullParserException, IOException {
+        int eventType = parser.next();
+        while (eventType != XmlPullParser.END_DOCUMENT) {
+            if (eventType == XmlPullParser.START_TAG) {
+                return true;
+            }
+            if (eventType == XmlPullParser.END_TAG && parser.getDepth() == parentDepth) {
+                return false;
+            }
+            eventType = parser.next();
+        }
+        return false;
+    }
+
+    /**
+     * Skips the element the parser is positioned on, including all of its children.
+     * @param parser The parser positioned on a start tag. Left on the matching end tag.
+     */
+    public static void skipElement(XmlPullParser parser)
+            throws XmlPullParserException, IOException {
+        int depth = 1;
+        while (depth > 0) {
+            switch (parser.next()) {
+                case XmlPullParser.START_TAG:
+                    depth++;
+                    break;
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    break;
+                case XmlPullParser.END_DOCUMENT:
+                    return;
+            }
+        }
+    }
+
+    /**
+     * Reads all of the text within the element the parser is positioned on.
+     * @param parser The parser positioned on a start tag. Left on the matching end tag.
+     * @return The text content of the element. Empty string if the element has no content.
+     */
+    public static String readText(XmlPullParser parser)
+            throws XmlPullParserException, IOException {
+        String text = "";
+        int depth = 1;
+        while (depth > 0) {
+            switch (parser.next()) {
+                case XmlPullParser.START_TAG:
+                    depth++;
+                    break;
+                case XmlPullParser.END_TAG:
+                    depth--;
+                    break;
+                case XmlPullParser.TEXT:
+                    text += parser.getText();
+                    break;
+                case XmlPullParser.END_DOCUMENT:
+                    return text;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Reads an attribute of the current start tag.
+     * @param parser The parser positioned on a start tag.
+     * @param name The name of the attribute.
+     * @return The attribute value. Empty string if the attribute is missing.
+     */
+    public static String getAttribute(XmlPullParser parser, String name) {
+        String value = parser.getAttributeValue(null, name);
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Reads a next_moment element.
+     * @param parser The parser positioned on the next_moment start tag. Left on its end tag.
+     * @return The id of the next Moment, or null if the element marks the end of the mission.
+     */
+    public static String parseNextMomentElement(XmlPullParser parser)
+            throws XmlPullParserException, IOException {
+        String nextMomentId = parser.getAttributeValue(null, NEXT_MOMENT_ATTRIBUTE_ID);
+        skipElement(parser);
+        if (nextMomentId == null || nextMomentId.equals("")) {
+            return DEFAULT_END_ID;
+        }
+        return nextMomentId;
+    }
+
+    private static float parseLengthMinutesElement(String lengthMinutesText)
+            throws MissionParseException {
+        if (lengthMinutesText.isEmpty()) {
+            throw new MissionParseException("Length minutes element could not be found.");
+        }
+        return parseFloat(lengthMinutesText, ELEMENT_LENGTH_MINUTES);
+    }
+
+    private static String parseUriElement(String uriText) throws MissionParseException {
+        if (uriText.isEmpty()) {
+            throw new MissionParseException("URI element could not be found.");
+        }
+        return uriText;
+    }
+
+    private static String parseTextToSpeakElement(String textToSpeakText)
+            throws MissionParseException {
+        if (textToSpeakText.isEmpty()) {
+            throw new MissionParseException("Text to speak element could not be found.");
+        }
+        return textToSpeakText;
+    }
+
+    private static String parseDescriptionElement(String descriptionText)
+            throws MissionParseException {
+        if (descriptionText.isEmpty()) {
+            throw new MissionParseException("Description element could not be found.");
+        }
+        return descriptionText;
+    }
+
+    private static float parseTimeoutLengthMinutesElement(String timeoutLengthMinutesText)
+            throws MissionParseException {
+        if (timeoutLengthMinutesText.isEmpty()) {
+            throw new MissionParseException("Timeout length minutes element could not be found.");
+        }
+        return parseFloat(timeoutLengthMinutesText, ELEMENT_TIMEOUT_LENGTH_MINUTES);
+    }
+
+    private static float parseFloat(String text, String tag) throws MissionParseException {
+        try {
+            return Float.parseFloat(text);
+        } catch (NumberFormatException e) {
+            throw new MissionParseException(tag + " \"" + text + "\" is not a number.");
+        }
+    }
+
+    private static String parseDefaultChoiceElement(String defaultChoice)
+            throws MissionParseException {
+        if (defaultChoice.equals(FIRE_WEAPON_CHOICE_ID)) {
+            throw new MissionParseException("Default choice cannot be 'fire'.");
+        }
+        return defaultChoice;
+    }
+
+    /**
+     * Determines the name of a mission.
+     * @param missionStream InputStream to read from.
+     * @return A string of the name of the mission.
+     * @throws MissionParseException if the name is not specified.
+     */
+    public static String getMissionName(InputStream missionStream) throws  MissionParseException {
+        String missionName = parseMissionHeader(missionStream).getName();
+        if (missionName.equals("")) {
+            throw new MissionParseException("Mission name missing.");
+        }
+        Utils.logDebug(TAG, "Mission name is " + missionName);
+        return missionName;
+    }
+
+    /**
+     * Reads the attributes of the root mission element. Stops reading at the mission start tag,
+     * so none of the Moments are read, and the cost does not depend on the size of the mission.
+     * @param missionStream InputStream to read from.
+     * @return The attributes of the mission element.
+     * @throws MissionParseException if the root element is not a mission element.
+     */
+    public static MissionHeader parseMissionHeader(InputStream missionStream)
+            throws MissionParseException {
+        XmlPullParser parser = newPullParser(missionStream);
+        int eventType;
+        try {
+            eventType = parser.getEventType();
+            while (eventType != XmlPullParser.START_TAG
+                    && eventType != XmlPullParser.END_DOCUMENT) {
+                eventType = parser.next();
+            }
+        } catch (XmlPullParserException e) {
+            e.printStackTrace();
+            throw new MissionParseException("XmlPullParserException while reading mission.");
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new MissionParseException("IOException  while reading mission.");
+        }
+
+        if (eventType != XmlPullParser.START_TAG || !parser.getName().equals(ELEMENT_MISSION)) {
+            throw new MissionParseException("Mission element could not be found.");
+        }
+
+        HashMap<String, String> attributes = new HashMap<>();
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            attributes.put(parser.getAttributeName(i), parser.getAttributeValue(i));
+        }
+        return new MissionHeader(getAttribute(parser, MISSION_ATTRIBUTE_NAME),
+                getAttribute(parser, MISSION_ATTRIBUTE_START_ID), attributes);
+    }
+
+    /**
+     * Reads a fictional progress element.
+     * @param parser The parser positioned on the fictional_progress start tag.
+     * @return The fictional progress string.
+     */
+    public static String parseFictionalProgressElement(XmlPullParser parser)
+            throws MissionParseException, XmlPullParserException, IOException {
+        String progressString = readText(parser);
+        if (progressString.isEmpty()) {
+            throw new MissionParseException("Fictional Progress Element not found");
+        }
+        return progressString;
+    }
+
+    private static String parseIconElement(String iconResourceName)
+            throws MissionParseException {
+        if (iconResourceName.equals("")) {
+            throw new MissionParseException("Icon element has no name attribute.");
+        }
+        return iconResourceName;
+    }
+
+    /**
+     * Creates a pull parser reading from the given stream.
+     * @param missionStream The stream to read the mission from.
+     * @return A parser positioned at the start of the document.
+     * @throws MissionParseException
+     */
+    static XmlPullParser newPullParser(InputStream missionStream)
+            throws MissionParseException {
+        try {
+            XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+            parser.setInput(missionStream, null);
+            return parser;
+        } catch (XmlPullParserException e) {
+            e.printStackTrace();
+            throw new MissionParseException("XmlPullParserException while reading mission.");
+        }
+    }
+}
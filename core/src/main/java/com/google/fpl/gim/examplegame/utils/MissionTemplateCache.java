@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+import com.google.fpl.gim.examplegame.MissionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of parsed MissionTemplates, keyed by the asset path of the
+ * mission. Replaying or restarting a mission reuses its template instead of loading it again.
+ */
+public class MissionTemplateCache {
+
+    private final LinkedHashMap<String, MissionTemplate> mTemplates;
+
+    /**
+     * @param maxTemplates The number of templates kept before the least recently used one is
+     *                     evicted.
+     */
+    public MissionTemplateCache(final int maxTemplates) {
+        // An access ordered map keeps the least recently used template first.
+        mTemplates = new LinkedHashMap<String, MissionTemplate>(maxTemplates + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MissionTemplate> eldest) {
+                return size() > maxTemplates;
+            }
+        };
+    }
+
+    /**
+     * @param assetPath The path of the mission within the assets folder.
+     * @return The cached template, or null if the mission is not cached.
+     */
+    public synchronized MissionTemplate get(String assetPath) {
+        return mTemplates.get(assetPath);
+    }
+
+    /**
+     * Caches a template, evicting the least recently used template if the cache is full.
+     * @param assetPath The path of the mission within the assets folder.
+     * @param template The parsed mission.
+     */
+    public synchronized void put(String assetPath, MissionTemplate template) {
+        mTemplates.put(assetPath, template);
+    }
+
+    public synchronized int size() {
+        return mTemplates.size();
+    }
+
+    public synchronized void clear() {
+        mTemplates.clear();
+    }
+}
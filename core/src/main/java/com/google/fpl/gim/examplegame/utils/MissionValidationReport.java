@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of validating a mission file: every problem found, rather than only the first.
+ * Contains no Android types, so it can be checked on a device or in a plain JVM test.
+ */
+public class MissionValidationReport {
+
+    /**
+     * How serious a problem is.
+     */
+    public enum Severity {
+        // The mission cannot be loaded.
+        ERROR,
+        // The mission can be loaded, but is probably not what the author intended.
+        WARNING
+    }
+
+    /**
+     * A single problem found in a mission.
+     */
+    public static class Problem {
+        private final Severity mSeverity;
+        private final String mMomentId;
+        private final String mMessage;
+
+        /**
+         * @param severity How serious the problem is.
+         * @param momentId The id of the Moment with the problem, or null if the problem is with
+         *                 the mission as a whole.
+         * @param message A description of the problem.
+         */
+        public Problem(Severity severity, String momentId, String message) {
+            mSeverity = severity;
+            mMomentId = momentId;
+            mMessage = message;
+        }
+
+        public Severity getSeverity() {
+            return mSeverity;
+        }
+
+        public String getMomentId() {
+            return mMomentId;
+        }
+
+        public String getMessage() {
+            return mMessage;
+        }
+
+        @Override
+        public String toString() {
+            String location = mMomentId == null ? "mission" : "moment \"" + mMomentId + "\"";
+            return mSeverity + " in " + location + ": " + mMessage;
+        }
+    }
+
+    private final ArrayList<Problem> mProblems = new ArrayList<>();
+
+    void addError(String momentId, String message) {
+        mProblems.add(new Problem(Severity.ERROR, momentId, message));
+    }
+
+    void addWarning(String momentId, String message) {
+        mProblems.add(new Problem(Severity.WARNING, momentId, message));
+    }
+
+    /**
+     * @return Every problem found, in the order they were found.
+     */
+    public List<Problem> getProblems() {
+        return Collections.unmodifiableList(mProblems);
+    }
+
+    /**
+     * @param severity The severity of the problems to count.
+     * @return The number of problems with the given severity.
+     */
+    public int getNumProblems(Severity severity) {
+        int count = 0;
+        for (Problem problem : mProblems) {
+            if (problem.getSeverity() == severity) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return True if the mission has no errors, and so can be loaded. It may still have warnings.
+     */
+    public boolean isValid() {
+        return getNumProblems(Severity.ERROR) == 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(getNumProblems(Severity.ERROR)).append(" errors, ")
+                .append(getNumProblems(Severity.WARNING)).append(" warnings.");
+        for (Problem problem : mProblems) {
+            builder.append('\n').append(problem);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+import com.google.fpl.gim.examplegame.Choice;
+import com.google.fpl.gim.examplegame.ChoiceMomentData;
+import com.google.fpl.gim.examplegame.MomentData;
+import com.google.fpl.gim.examplegame.TimerMomentData;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+
+/**
+ * Checks a mission file for every problem in one pass. Where MissionParser stops at the first
+ * problem, the validator reports it, skips the Moment with the problem, and carries on. Once
+ * every Moment is read, it checks the references between Moments and the shape of the mission:
+ * Moments that can never be reached, and Moments from which the mission can never end.
+ */
+public class MissionValidator {
+    private static final String TAG = MissionValidator.class.getSimpleName();
+
+    /**
+     * Validates a mission, using the built in types of Moment.
+     * @param missionStream The InputStream to read the mission from.
+     * @return Every problem found in the mission.
+     */
+    public static MissionValidationReport validate(InputStream missionStream) {
+        return validate(missionStream, MomentTypeRegistry.getDefault());
+    }
+
+    /**
+     * Validates a mission.
+     * @param missionStream The InputStream to read the mission from.
+     * @param registry The types of Moment that may appear in the mission.
+     * @return Every problem found in the mission.
+     */
+    public static MissionValidationReport validate(InputStream missionStream,
+            MomentTypeRegistry registry) {
+        MissionValidationReport report = new MissionValidationReport();
+        // Moments in the order they appear in the file, so that problems are reported in order.
+        LinkedHashMap<String, MomentData> moments = new LinkedHashMap<>();
+        // Moments that could not be read. References to them have already been reported.
+        HashSet<String> invalidMomentIds = new HashSet<>();
+        String startId = null;
+
+        try {
+            XmlPullParser parser = MissionParser.newPullParser(missionStream);
+            int eventType = parser.getEventType();
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG) {
+                    String tag = parser.getName();
+                    if (startId == null && tag.equals(MissionParser.ELEMENT_MISSION)) {
+                        startId = MissionParser.getAttribute(parser,
+                                MissionParser.MISSION_ATTRIBUTE_START_ID);
+                        try {
+                            MissionParser.parsePaceWindowAttribute(parser);
+                        } catch (MissionParseException e) {
+                            report.addError(null, e.getMessage());
+                        }
+                        try {
+                            MissionParser.parseChallengePaceHysteresisAttribute(parser);
+                        } catch (MissionParseException e) {
+                            report.addError(null, e.getMessage());
+                        }
+                        try {
+                            MissionParser.parseChallengePaceDwellAttribute(parser);
+                        } catch (MissionParseException e) {
+                            report.addError(null, e.getMessage());
+                        }
+                    } else if (tag.equals(MissionParser.ELEMENT_MOMENT)) {
+                        validateMomentElement(parser, registry, moments, invalidMomentIds,
+                                report);
+                    }
+                }
+                eventType = parser.next();
+            }
+        } catch (MissionParseException e) {
+            report.addError(null, e.getMessage());
+            return report;
+        } catch (XmlPullParserException | IOException e) {
+            // The rest of the file cannot be read, so the checks between Moments would only
+            // report problems that are not really there.
+            report.addError(null, "Mission could not be read: " + e.getMessage());
+            return report;
+        }
+
+        if (startId == null) {
+            report.addError(null, "Mission element could not be found.");
+            return report;
+        }
+        checkReferences(startId, moments, invalidMomentIds, report);
+        checkGraph(startId, moments, report);
+        Utils.logDebug(TAG, "Validated " + moments.size() + " moments. " + report);
+        return report;
+    }
+
+    /**
+     * Reads a moment element, reporting any problem with it. The parser is left on the moment's
+     * end tag, even if the Moment could not be read.
+     * @param parser The parser positioned on a moment start tag.
+     * @param registry The types of Moment that may appear in the mission.
+     * @param moments The Moments read so far, by id. The Moment is added if it could be read.
+     * @param invalidMomentIds The ids of the Moments that could not be read so far.
+     * @param report The report to add problems to.
+     */
+    private static void validateMomentElement(XmlPullParser parser, MomentTypeRegistry registry,
+            HashMap<String, MomentData> moments, HashSet<String> invalidMomentIds,
+            MissionValidationReport report)
+            throws XmlPullParserException, IOException {
+        int depth = parser.getDepth();
+        String id = MissionParser.getAttribute(parser, MissionParser.MOMENT_ATTRIBUTE_ID);
+        String typeKey = MissionParser.getAttribute(parser, MissionParser.MOMENT_ATTRIBUTE_TYPE);
+
+        if (id.isEmpty()) {
+            report.addError(null, "A moment of type \"" + typeKey + "\" has no id.");
+        }
+        MomentType type = registry.getType(typeKey);
+        if (type == null) {
+            report.addError(id, "Moment type \"" + typeKey + "\" invalid.");
+            invalidMomentIds.add(id);
+            MissionParser.skipElement(parser);
+            return;
+        }
+
+        MomentData data;
+        try {
+            data = type.parseData(id, parser);
+        } catch (MissionParseException e) {
+            report.addError(id, e.getMessage());
+            invalidMomentIds.add(id);
+            skipToEndTag(parser, depth);
+            return;
+        }
+
+        checkDurations(data, report);
+        if (moments.containsKey(id)) {
+            report.addError(id, "Moment id is used by more than one moment.");
+        } else if (!id.isEmpty()) {
+            moments.put(id, data);
+        }
+    }
+
+    /**
+     * Moves the parser to the end tag of the element at the given depth.
+     * @param parser The parser, positioned within the element.
+     * @param depth The depth of the element.
+     */
+    private static void skipToEndTag(XmlPullParser parser, int depth)
+            throws XmlPullParserException, IOException {
+        int eventType = parser.getEventType();
+        while (eventType != XmlPullParser.END_DOCUMENT
+                && !(eventType == XmlPullParser.END_TAG && parser.getDepth() == depth)) {
+            eventType = parser.next();
+        }
+    }
+
+    /**
+     * Reports lengths of time that are not positive.
+     * @param data The Moment to check.
+     * @param report The report to add problems to.
+     */
+    private static void checkDurations(MomentData data, MissionValidationReport report) {
+        if (data instanceof TimerMomentData) {
+            float lengthMinutes = ((TimerMomentData) data).getLengthMinutes();
+            if (!isPositiveDuration(lengthMinutes)) {
+                report.addError(data.getMomentId(),
+                        "Length " + lengthMinutes + " minutes is not a positive length of time.");
+            }
+        } else if (data instanceof ChoiceMomentData) {
+            float timeoutMinutes = ((ChoiceMomentData) data).getTimeoutLengthMinutes();
+            if (!isPositiveDuration(timeoutMinutes)) {
+                report.addError(data.getMomentId(), "Timeout " + timeoutMinutes
+                        + " minutes is not a positive length of time.");
+            }
+        }
+    }
+
+    private static boolean isPositiveDuration(float minutes) {
+        // Also false for NaN.
+        return minutes > 0f && !Float.isInfinite(minutes);
+    }
+
+    /**
+     * Reports references to Moments that do not exist.
+     * @param startId The id of the first Moment.
+     * @param moments Every Moment that was read, by id.
+     * @param invalidMomentIds The ids of the Moments that could not be read.
+     * @param report The report to add problems to.
+     */
+    private static void checkReferences(String startId, HashMap<String, MomentData> moments,
+            HashSet<String> invalidMomentIds, MissionValidationReport report) {
+        if (startId.isEmpty()) {
+            report.addError(null, "Mission has no start moment.");
+        } else if (!moments.containsKey(startId) && !invalidMomentIds.contains(startId)) {
+            report.addError(null, "Moment \"" + startId
+                    + "\" referred to by \"mission start\" could not be found.");
+        }
+
+        for (MomentData data : moments.values()) {
+            for (String nextMomentId : getNextMomentIds(data)) {
+                if (nextMomentId != null && !moments.containsKey(nextMomentId)
+                        && !invalidMomentIds.contains(nextMomentId)) {
+                    report.addError(data.getMomentId(), "Moment \"" + nextMomentId
+                            + "\" referred to by \"" + data.getMomentId()
+                            + "\" could not be found.");
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports Moments that cannot be reached from the first Moment, and Moments from which the
+     * end of the mission cannot be reached, such as those in a loop with no way out.
+     * @param startId The id of the first Moment.
+     * @param moments Every Moment that was read, by id.
+     * @param report The report to add problems to.
+     */
+    private static void checkGraph(String startId, HashMap<String, MomentData> moments,
+            MissionValidationReport report) {
+        // Search forwards from the first Moment, and record every link backwards.
+        HashSet<String> reachable = new HashSet<>();
+        HashMap<String, ArrayList<String>> previousMomentIds = new HashMap<>();
+        LinkedList<String> toVisit = new LinkedList<>();
+        if (moments.containsKey(startId)) {
+            reachable.add(startId);
+            toVisit.add(startId);
+        }
+        LinkedList<String> endMomentIds = new LinkedList<>();
+        for (MomentData data : moments.values()) {
+            for (String nextMomentId : getNextMomentIds(data)) {
+                // Links to Moments that do not exist have already been reported, so they are
+                // treated as ends rather than reported again.
+                if (!moments.containsKey(nextMomentId)) {
+                    endMomentIds.add(data.getMomentId());
+                } else {
+                    ArrayList<String> previous = previousMomentIds.get(nextMomentId);
+                    if (previous == null) {
+                        previous = new ArrayList<>();
+                        previousMomentIds.put(nextMomentId, previous);
+                    }
+                    previous.add(data.getMomentId());
+                }
+            }
+        }
+        while (!toVisit.isEmpty()) {
+            for (String nextMomentId : getNextMomentIds(moments.get(toVisit.removeFirst()))) {
+                if (moments.containsKey(nextMomentId) && reachable.add(nextMomentId)) {
+                    toVisit.add(nextMomentId);
+                }
+            }
+        }
+
+        // Search backwards from the Moments that can end the mission.
+        HashSet<String> canEnd = new HashSet<>(endMomentIds);
+        while (!endMomentIds.isEmpty()) {
+            ArrayList<String> previous = previousMomentIds.get(endMomentIds.removeFirst());
+            if (previous != null) {
+                for (String previousMomentId : previous) {
+                    if (canEnd.add(previousMomentId)) {
+                        endMomentIds.add(previousMomentId);
+                    }
+                }
+            }
+        }
+
+        for (String momentId : moments.keySet()) {
+            if (!reachable.contains(momentId)) {
+                report.addWarning(momentId,
+                        "Moment can never be reached from the start of the mission.");
+            } else if (!canEnd.contains(momentId)) {
+                report.addWarning(momentId,
+                        "The end of the mission can never be reached from this moment.");
+            }
+        }
+    }
+
+    /**
+     * @param data A Moment.
+     * @return The ids of every Moment the Moment can lead to, in a fixed order. An id is null if
+     *         the Moment can end the mission.
+     */
+    private static String[] getNextMomentIds(MomentData data) {
+        if (data instanceof ChoiceMomentData) {
+            Choice[] choices = ((ChoiceMomentData) data).getChoices();
+            Arrays.sort(choices, new Comparator<Choice>() {
+                @Override
+                public int compare(Choice lhs, Choice rhs) {
+                    return lhs.getChoiceId().compareTo(rhs.getChoiceId());
+                }
+            });
+            String[] nextMomentIds = new String[choices.length];
+            for (int i = 0; i < choices.length; i++) {
+                nextMomentIds[i] = choices[i].getNextMomentId();
+            }
+            return nextMomentIds;
+        }
+        return new String[] { data.getNextMomentId() };
+    }
+}
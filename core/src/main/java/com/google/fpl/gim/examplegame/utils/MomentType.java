@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+import com.google.fpl.gim.examplegame.MomentData;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+
+/**
+ * A kind of Moment that can be read from a mission file. Each type has the key used in the type
+ * attribute of moment elements, and reads the data of its Moments. The MomentData it returns is
+ * the factory for the Moments of a run, through {@link MomentData#createMoment}.
+ */
+public abstract class MomentType {
+
+    private final String mTypeKey;
+
+    /**
+     * @param typeKey The value of the type attribute of moment elements of this type.
+     */
+    public MomentType(String typeKey) {
+        mTypeKey = typeKey;
+    }
+
+    public String getTypeKey() {
+        return mTypeKey;
+    }
+
+    /**
+     * Reads the data of a Moment of this type. The helpers in MissionParser can be used to walk
+     * the children of the moment element.
+     * @param momentId The id of the Moment.
+     * @param parser The parser positioned on the moment start tag. Must be left on its end tag.
+     * @return The data of the Moment.
+     * @throws MissionParseException Thrown if the element does not describe a valid Moment.
+     */
+    public abstract MomentData parseData(String momentId, XmlPullParser parser)
+            throws MissionParseException, XmlPullParserException, IOException;
+}
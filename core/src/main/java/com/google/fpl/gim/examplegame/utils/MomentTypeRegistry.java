@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+import com.google.fpl.gim.examplegame.MomentData;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The types of Moment that the MissionParser can read, by type key. Also keeps the number of
+ * Moments of each type that have been parsed and the time spent parsing them, so that the types
+ * that dominate the cost of loading large missions can be found.
+ *
+ * The registry may be used by several threads at once, such as the mission prefetch thread and
+ * the catalog builder.
+ */
+public class MomentTypeRegistry {
+    private static final String TAG = MomentTypeRegistry.class.getSimpleName();
+
+    private static MomentTypeRegistry sDefaultRegistry;
+
+    private final HashMap<String, MomentType> mTypes = new HashMap<>();
+
+    // Parse statistics, by type key.
+    private final HashMap<String, ParseTimings> mTimings = new HashMap<>();
+
+    /**
+     * The number of Moments of a type that have been parsed, and the total time taken.
+     */
+    private static class ParseTimings {
+        int mCount;
+        long mTotalNanos;
+    }
+
+    /**
+     * @return The registry used by default by the MissionParser, containing every built in type
+     *         of Moment.
+     */
+    public static synchronized MomentTypeRegistry getDefault() {
+        if (sDefaultRegistry == null) {
+            sDefaultRegistry = new MomentTypeRegistry();
+            MissionParser.registerBuiltInMomentTypes(sDefaultRegistry);
+        }
+        return sDefaultRegistry;
+    }
+
+    /**
+     * Adds a type of Moment.
+     * @param type The type to add.
+     * @throws IllegalArgumentException Thrown if a type with the same key is already registered.
+     */
+    public synchronized void register(MomentType type) {
+        if (mTypes.containsKey(type.getTypeKey())) {
+            throw new IllegalArgumentException(
+                    "Moment type \"" + type.getTypeKey() + "\" is already registered.");
+        }
+        mTypes.put(type.getTypeKey(), type);
+        mTimings.put(type.getTypeKey(), new ParseTimings());
+    }
+
+    /**
+     * @param typeKey The value of the type attribute of a moment element.
+     * @return The type of Moment, or null if there is no type with that key.
+     */
+    public synchronized MomentType getType(String typeKey) {
+        return mTypes.get(typeKey);
+    }
+
+    /**
+     * @return The keys of every registered type, in ascending order.
+     */
+    public synchronized List<String> getTypeKeys() {
+        List<String> typeKeys = new ArrayList<>(mTypes.keySet());
+        Collections.sort(typeKeys);
+        return typeKeys;
+    }
+
+    /**
+     * Reads the data of a Moment with the type registered for its key, timing the read.
+     * @param typeKey The value of the type attribute of the moment element.
+     * @param momentId The id of the Moment.
+     * @param parser The parser positioned on the moment start tag. Left on its end tag.
+     * @return The data of the Moment.
+     * @throws MissionParseException Thrown if the type is not registered, or the element does not
+     *         describe a valid Moment.
+     */
+    public MomentData parseMoment(String typeKey, String momentId, XmlPullParser parser)
+            throws MissionParseException, XmlPullParserException, IOException {
+        MomentType type = getType(typeKey);
+        if (type == null) {
+            throw new MissionParseException("Moment type invalid.");
+        }
+        long startNanos = System.nanoTime();
+        MomentData data = type.parseData(momentId, parser);
+        recordParse(typeKey, System.nanoTime() - startNanos);
+        return data;
+    }
+
+    private synchronized void recordParse(String typeKey, long nanos) {
+        ParseTimings timings = mTimings.get(typeKey);
+        timings.mCount++;
+        timings.mTotalNanos += nanos;
+    }
+
+    /**
+     * @param typeKey The key of a registered type.
+     * @return The number of Moments of the type parsed since the timings were last reset.
+     */
+    public synchronized int getParseCount(String typeKey) {
+        ParseTimings timings = mTimings.get(typeKey);
+        return timings == null ? 0 : timings.mCount;
+    }
+
+    /**
+     * @param typeKey The key of a registered type.
+     * @return The time spent parsing Moments of the type since the timings were last reset, in
+     *         nanoseconds.
+     */
+    public synchronized long getParseTimeNanos(String typeKey) {
+        ParseTimings timings = mTimings.get(typeKey);
+        return timings == null ? 0 : timings.mTotalNanos;
+    }
+
+    /**
+     * Clears the parse counts and times of every type.
+     */
+    public synchronized void resetTimings() {
+        for (ParseTimings timings : mTimings.values()) {
+            timings.mCount = 0;
+            timings.mTotalNanos = 0;
+        }
+    }
+
+    /**
+     * Logs the parse count and time of every type.
+     */
+    public synchronized void logTimings() {
+        for (String typeKey : getTypeKeys()) {
+            ParseTimings timings = mTimings.get(typeKey);
+            Utils.logDebug(TAG, typeKey + ": " + timings.mCount + " moments parsed in "
+                    + timings.mTotalNanos / 1000 + "us.");
+        }
+    }
+}
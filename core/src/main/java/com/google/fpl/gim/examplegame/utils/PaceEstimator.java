@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+/**
+ * Estimates the player's step cadence over a sliding window of the most recent step readings,
+ * such as the last ten seconds. Unlike averaging over back-to-back periods, the estimate moves a
+ * little with every reading, rather than jumping once a period, and reacts as soon as the player
+ * speeds up or slows down.
+ *
+ * Readings are kept in a ring of primitive arrays, with a running total of the steps in the
+ * window. Adding a reading, and dropping the readings that have left the window, take constant
+ * time for each reading, and nothing is allocated after construction. If more readings arrive
+ * within one window than the ring holds, the oldest are dropped early.
+ *
+ * Not thread safe: it belongs to the thread that runs the game loop.
+ */
+public class PaceEstimator {
+
+    private final long[] mTimestampsNanos;
+    private final int[] mSteps;
+    // The index of the oldest reading, and the number of readings, in the ring.
+    private int mFirst = 0;
+    private int mCount = 0;
+    private int mStepsInWindow = 0;
+
+    private long mWindowNanos;
+    private long mStartNanos;
+
+    /**
+     * @param capacity The most readings kept at once.
+     * @param windowNanos The length of the window.
+     */
+    public PaceEstimator(int capacity, long windowNanos) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        mTimestampsNanos = new long[capacity];
+        mSteps = new int[capacity];
+        setWindowNanos(windowNanos);
+    }
+
+    /**
+     * @param windowNanos The length of the window. Must be greater than zero.
+     */
+    public void setWindowNanos(long windowNanos) {
+        if (windowNanos <= 0) {
+            throw new IllegalArgumentException("Window must be positive: " + windowNanos);
+        }
+        mWindowNanos = windowNanos;
+    }
+
+    public long getWindowNanos() {
+        return mWindowNanos;
+    }
+
+    /**
+     * Forgets every reading. Until a whole window has passed since the start, the cadence is
+     * averaged over the time since the start instead.
+     * @param startNanos When the player started.
+     */
+    public void reset(long startNanos) {
+        mStartNanos = startNanos;
+        mFirst = 0;
+        mCount = 0;
+        mStepsInWindow = 0;
+    }
+
+    /**
+     * Adds a step reading. Readings must be added in time order.
+     * @param timestampNanos When the steps were reported.
+     * @param steps The number of steps taken since the last reading.
+     */
+    public void addSteps(long timestampNanos, int steps) {
+        expire(timestampNanos);
+        if (mCount == mTimestampsNanos.length) {
+            dropOldest();
+        }
+        int index = (mFirst + mCount) % mTimestampsNanos.length;
+        mTimestampsNanos[index] = timestampNanos;
+        mSteps[index] = steps;
+        mCount++;
+        mStepsInWindow += steps;
+    }
+
+    /**
+     * Drops the readings that have left the window.
+     * @param nowNanos The current time.
+     */
+    public void expire(long nowNanos) {
+        long oldestNanos = nowNanos - mWindowNanos;
+        while (mCount > 0 && mTimestampsNanos[mFirst] <= oldestNanos) {
+            dropOldest();
+        }
+    }
+
+    private void dropOldest() {
+        mStepsInWindow -= mSteps[mFirst];
+        mFirst = (mFirst + 1) % mTimestampsNanos.length;
+        mCount--;
+    }
+
+    /**
+     * @param nowNanos The current time.
+     * @return The number of steps reported within the window.
+     */
+    public int getStepsInWindow(long nowNanos) {
+        expire(nowNanos);
+        return mStepsInWindow;
+    }
+
+    /**
+     * @param nowNanos The current time.
+     * @return The average number of steps a minute over the window, or 0 if none were taken.
+     */
+    public float getStepsPerMinute(long nowNanos) {
+        int steps = getStepsInWindow(nowNanos);
+        long durationNanos = Math.min(mWindowNanos, nowNanos - mStartNanos);
+        if (steps == 0 || durationNanos <= 0) {
+            return 0f;
+        }
+        return steps / Utils.secondsToMinutes(Utils.nanosToSeconds(durationNanos));
+    }
+
+    /**
+     * @return When the oldest reading leaves the window, and so the estimate next changes if no
+     *         more readings arrive, or TimerWheel.NO_DEADLINE if there are no readings.
+     */
+    public long getNextExpiryNanos() {
+        if (mCount == 0) {
+            return TimerWheel.NO_DEADLINE;
+        }
+        return mTimestampsNanos[mFirst] + mWindowNanos;
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+/**
+ * Records the metrics of a run once a second, for the summary at the end of it.
+ *
+ * Each metric is a column of its own. A value is stored as the difference from the value a second
+ * before, as a variable-length integer, so a value that does not change takes a single byte, and
+ * a two hour run takes a few tens of kilobytes. Every CHECKPOINT_INTERVAL seconds, the value
+ * itself and where it starts in the column are kept, so that reading a range of seconds only
+ * decodes from the checkpoint before it, rather than from the start of the run.
+ *
+ * Floating point metrics are kept at a fixed precision: the pace in hundredths of a minute per
+ * mile, and the speed in centimeters per second. Reads return them in their own units.
+ *
+ * Recording allocates nothing until the columns outgrow the number of seconds the recorder was
+ * created for. A recorder belongs to the game thread while it records; it may be read by another
+ * thread once the run has ended.
+ */
+public class RunRecorder {
+
+    public static final int METRIC_STEPS = 0;
+    public static final int METRIC_MINUTES_PER_MILE = 1;
+    public static final int METRIC_SPEED_METERS_PER_SECOND = 2;
+    public static final int METRIC_WEAPON_CHARGED_PERCENTAGE = 3;
+    public static final int METRIC_MOMENT_INDEX = 4;
+    public static final int METRIC_AT_CHALLENGE_PACE = 5;
+    public static final int NUM_METRICS = 6;
+
+    // What each metric is multiplied by before it is rounded and stored.
+    private static final float[] SCALES = {1f, 100f, 100f, 1f, 1f, 1f};
+
+    private static final int CHECKPOINT_INTERVAL = 64;
+
+    // The pace of a player who is not moving is far slower than any that is worth charting.
+    private static final float MAXIMUM_MINUTES_PER_MILE = 1000f;
+
+    private final Column[] mColumns = new Column[NUM_METRICS];
+    private int mNumSeconds = 0;
+
+    /**
+     * @param expectedNumSeconds How long the run is expected to last. The columns start with room
+     *                           for a byte a second, and grow if they need to.
+     */
+    public RunRecorder(int expectedNumSeconds) {
+        for (int i = 0; i < NUM_METRICS; i++) {
+            mColumns[i] = new Column(Math.max(expectedNumSeconds, CHECKPOINT_INTERVAL));
+        }
+    }
+
+    /**
+     * Forgets everything recorded, keeping the memory of the columns.
+     */
+    public void clear() {
+        for (Column column : mColumns) {
+            column.clear();
+        }
+        mNumSeconds = 0;
+    }
+
+    /**
+     * Records the metrics of the next second.
+     * @param numSteps The number of steps taken since the start of the run.
+     * @param minutesPerMile The pace of the player.
+     * @param speedMetersPerSecond The speed of the player.
+     * @param weaponChargedPercentage How far the weapon is charged.
+     * @param momentIndex The index of the current Moment.
+     * @param isAtChallengePace True if the player is at the challenge pace.
+     */
+    public void record(int numSteps, float minutesPerMile, float speedMetersPerSecond,
+                       int weaponChargedPercentage, int momentIndex, boolean isAtChallengePace) {
+        int second = mNumSeconds++;
+        mColumns[METRIC_STEPS].append(second, numSteps);
+        mColumns[METRIC_MINUTES_PER_MILE].append(second, quantize(METRIC_MINUTES_PER_MILE,
+                Math.min(minutesPerMile, MAXIMUM_MINUTES_PER_MILE)));
+        mColumns[METRIC_SPEED_METERS_PER_SECOND].append(second,
+                quantize(METRIC_SPEED_METERS_PER_SECOND, speedMetersPerSecond));
+        mColumns[METRIC_WEAPON_CHARGED_PERCENTAGE].append(second, weaponChargedPercentage);
+        mColumns[METRIC_MOMENT_INDEX].append(second, momentIndex);
+        mColumns[METRIC_AT_CHALLENGE_PACE].append(second, isAtChallengePace ? 1 : 0);
+    }
+
+    /**
+     * @return The number of seconds recorded.
+     */
+    public int getNumSeconds() {
+        return mNumSeconds;
+    }
+
+    /**
+     * @return The number of bytes the recorded values take, including the checkpoints.
+     */
+    public int getEncodedSizeBytes() {
+        int numCheckpoints = (mNumSeconds + CHECKPOINT_INTERVAL - 1) / CHECKPOINT_INTERVAL;
+        int numBytes = 0;
+        for (Column column : mColumns) {
+            // A value and an offset for each checkpoint.
+            numBytes += column.mNumBytes + numCheckpoints * 2 * 4;
+        }
+        return numBytes;
+    }
+
+    /**
+     * @param metric One of the METRIC_ constants.
+     * @param second The second to read.
+     * @return The value of the metric in that second.
+     */
+    public float get(int metric, int second) {
+        checkRange(second, second + 1);
+        return new Cursor(mColumns[metric], second).mValue / SCALES[metric];
+    }
+
+    /**
+     * Reads the values of a metric over a range of seconds.
+     * @param metric One of the METRIC_ constants.
+     * @param fromSecond The first second to read.
+     * @param toSecond The second after the last one to read.
+     * @param values Receives the values, from index 0. Must have room for all of them.
+     */
+    public void read(int metric, int fromSecond, int toSecond, float[] values) {
+        checkRange(fromSecond, toSecond);
+        if (values.length < toSecond - fromSecond) {
+            throw new IllegalArgumentException("No room for " + (toSecond - fromSecond)
+                    + " values.");
+        }
+        if (fromSecond == toSecond) {
+            return;
+        }
+        float scale = SCALES[metric];
+        Cursor cursor = new Cursor(mColumns[metric], fromSecond);
+        for (int second = fromSecond; second < toSecond; second++) {
+            values[second - fromSecond] = cursor.mValue / scale;
+            cursor.next();
+        }
+    }
+
+    /**
+     * Reads a metric over a range of seconds, averaged into as many points as there are in the
+     * array, such as the points of a chart.
+     * @param metric One of the METRIC_ constants.
+     * @param fromSecond The first second to read.
+     * @param toSecond The second after the last one to read.
+     * @param points Receives the averages, each over an equal part of the range. If there are
+     *               more points than seconds, only the first toSecond - fromSecond are written.
+     * @return The number of points written.
+     */
+    public int readDownsampled(int metric, int fromSecond, int toSecond, float[] points) {
+        checkRange(fromSecond, toSecond);
+        int numSeconds = toSecond - fromSecond;
+        int numPoints = Math.min(points.length, numSeconds);
+        if (numPoints == 0) {
+            return 0;
+        }
+        float scale = SCALES[metric];
+        Cursor cursor = new Cursor(mColumns[metric], fromSecond);
+        int second = fromSecond;
+        for (int point = 0; point < numPoints; point++) {
+            int endSecond = fromSecond + (int) ((long) numSeconds * (point + 1) / numPoints);
+            long sum = 0;
+            int count = 0;
+            for (; second < endSecond; second++) {
+                sum += cursor.mValue;
+                count++;
+                cursor.next();
+            }
+            points[point] = sum / (float) count / scale;
+        }
+        return numPoints;
+    }
+
+    /**
+     * @param metric One of the METRIC_ constants.
+     * @param fromSecond The first second to average.
+     * @param toSecond The second after the last one to average.
+     * @return The average of the metric over the range, or 0 if the range is empty.
+     */
+    public float getAverage(int metric, int fromSecond, int toSecond) {
+        checkRange(fromSecond, toSecond);
+        if (fromSecond == toSecond) {
+            return 0f;
+        }
+        float[] average = new float[1];
+        readDownsampled(metric, fromSecond, toSecond, average);
+        return average[0];
+    }
+
+    private static int quantize(int metric, float value) {
+        return Math.round(value * SCALES[metric]);
+    }
+
+    private void checkRange(int fromSecond, int toSecond) {
+        if (fromSecond < 0 || fromSecond > toSecond || toSecond > mNumSeconds) {
+            throw new IndexOutOfBoundsException("Seconds " + fromSecond + " to " + toSecond
+                    + " are not within the " + mNumSeconds + " recorded.");
+        }
+    }
+
+    /**
+     * The values of one metric, as differences from the value before, encoded as variable-length
+     * integers.
+     */
+    private static class Column {
+        byte[] mBytes;
+        int mNumBytes = 0;
+        // The value and the byte offset of every CHECKPOINT_INTERVAL-th value.
+        int[] mCheckpointValues;
+        int[] mCheckpointOffsets;
+        int mLastValue;
+
+        Column(int expectedNumValues) {
+            mBytes = new byte[expectedNumValues];
+            int numCheckpoints = expectedNumValues / CHECKPOINT_INTERVAL + 1;
+            mCheckpointValues = new int[numCheckpoints];
+            mCheckpointOffsets = new int[numCheckpoints];
+        }
+
+        void clear() {
+            mNumBytes = 0;
+        }
+
+        void append(int index, int value) {
+            if (index % CHECKPOINT_INTERVAL == 0) {
+                int checkpoint = index / CHECKPOINT_INTERVAL;
+                if (checkpoint == mCheckpointValues.length) {
+                    mCheckpointValues = copyOf(mCheckpointValues, checkpoint * 2);
+                    mCheckpointOffsets = copyOf(mCheckpointOffsets, checkpoint * 2);
+                }
+                // The value of a checkpoint is kept whole, and not encoded.
+                mCheckpointValues[checkpoint] = value;
+                mCheckpointOffsets[checkpoint] = mNumBytes;
+            } else {
+                int delta = value - mLastValue;
+                // Zigzag encoding, so that small negative differences are small too.
+                writeVarint((delta << 1) ^ (delta >> 31));
+            }
+            mLastValue = value;
+        }
+
+        private void writeVarint(int value) {
+            if (mNumBytes + 5 > mBytes.length) {
+                byte[] bytes = new byte[Math.max(mBytes.length * 2, mNumBytes + 5)];
+                System.arraycopy(mBytes, 0, bytes, 0, mNumBytes);
+                mBytes = bytes;
+            }
+            while ((value & ~0x7f) != 0) {
+                mBytes[mNumBytes++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            mBytes[mNumBytes++] = (byte) value;
+        }
+
+        private static int[] copyOf(int[] array, int length) {
+            int[] copy = new int[length];
+            System.arraycopy(array, 0, copy, 0, array.length);
+            return copy;
+        }
+    }
+
+    /**
+     * Decodes a column from a given index onwards.
+     */
+    private static class Cursor {
+        private final Column mColumn;
+        private int mIndex;
+        private int mOffset;
+        int mValue;
+
+        /**
+         * Starts at the checkpoint at or before the index, and decodes up to the index.
+         */
+        Cursor(Column column, int index) {
+            mColumn = column;
+            int checkpoint = index / CHECKPOINT_INTERVAL;
+            mIndex = checkpoint * CHECKPOINT_INTERVAL;
+            mOffset = column.mCheckpointOffsets[checkpoint];
+            mValue = column.mCheckpointValues[checkpoint];
+            while (mIndex < index) {
+                next();
+            }
+        }
+
+        /**
+         * Moves to the next value. Must not be called after the last value has been decoded.
+         */
+        void next() {
+            mIndex++;
+            if (mIndex % CHECKPOINT_INTERVAL == 0) {
+                int checkpoint = mIndex / CHECKPOINT_INTERVAL;
+                if (checkpoint < mColumn.mCheckpointValues.length) {
+                    mValue = mColumn.mCheckpointValues[checkpoint];
+                    mOffset = mColumn.mCheckpointOffsets[checkpoint];
+                }
+                return;
+            }
+            if (mOffset >= mColumn.mNumBytes) {
+                return;
+            }
+            int encoded = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = mColumn.mBytes[mOffset++];
+                encoded |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            mValue += (encoded >>> 1) ^ -(encoded & 1);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+/**
+ * A bounded queue of sensor readings, passed from the thread the sensors call back on to the
+ * thread that runs the game loop. Each reading is a type, a timestamp and a value, kept in
+ * primitive arrays, so neither side allocates.
+ *
+ * There must be a single producer, which only calls offer(), and a single consumer, which calls
+ * drain(). Neither side locks: the producer publishes a reading by advancing a volatile tail
+ * after writing it, and the consumer frees a slot by advancing a volatile head after reading it.
+ * When the queue is full, new readings are dropped and counted, rather than blocking the sensors.
+ */
+public class SensorSampleQueue {
+
+    public static final int TYPE_STEPS = 1;
+    public static final int TYPE_SPEED = 2;
+    public static final int TYPE_DISTANCE = 3;
+
+    /**
+     * Receives the readings taken from the queue, in the order they were offered.
+     */
+    public interface Consumer {
+        /**
+         * @param type TYPE_STEPS, TYPE_SPEED or TYPE_DISTANCE.
+         * @param timestampNanos When the reading was offered.
+         * @param durationNanos How long before the timestamp the reading covers, such as the
+         *                      time over which a distance was covered, or 0 if it is not known.
+         * @param value The number of steps, the speed in meters per second, or the distance
+         *              in meters covered over the duration.
+         */
+        void onSample(int type, long timestampNanos, long durationNanos, float value);
+    }
+
+    private final int mMask;
+    private final int[] mTypes;
+    private final long[] mTimestampsNanos;
+    private final long[] mDurationsNanos;
+    private final float[] mValues;
+
+    // The index of the next reading to drain, only written by the consumer.
+    private volatile long mHead = 0;
+    // The index of the next reading to offer, only written by the producer.
+    private volatile long mTail = 0;
+
+    // Only written by the producer.
+    private volatile int mNumOverflowed = 0;
+
+    // Only used by the consumer.
+    private long mNumDrained = 0;
+    private long mTotalLatencyNanos = 0;
+    private long mMaximumLatencyNanos = 0;
+
+    /**
+     * @param capacity The most readings the queue holds. Must be a power of two.
+     */
+    public SensorSampleQueue(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        mMask = capacity - 1;
+        mTypes = new int[capacity];
+        mTimestampsNanos = new long[capacity];
+        mDurationsNanos = new long[capacity];
+        mValues = new float[capacity];
+    }
+
+    /**
+     * Adds a reading that covers an instant, or an unknown time, to the queue. Only called by the
+     * producer.
+     * @see #offer(int, long, long, float)
+     */
+    public boolean offer(int type, long timestampNanos, float value) {
+        return offer(type, timestampNanos, 0, value);
+    }
+
+    /**
+     * Adds a reading to the queue. Only called by the producer.
+     * @param type TYPE_STEPS, TYPE_SPEED or TYPE_DISTANCE.
+     * @param timestampNanos When the reading was taken, on the consumer's clock.
+     * @param durationNanos How long before the timestamp the reading covers, or 0 if it is not
+     *                      known.
+     * @param value The number of steps, the speed in meters per second, or the distance in
+     *              meters.
+     * @return False if the queue was full, and the reading was dropped.
+     */
+    public boolean offer(int type, long timestampNanos, long durationNanos, float value) {
+        long tail = mTail;
+        if (tail - mHead > mMask) {
+            mNumOverflowed++;
+            return false;
+        }
+        int slot = (int) tail & mMask;
+        mTypes[slot] = type;
+        mTimestampsNanos[slot] = timestampNanos;
+        mDurationsNanos[slot] = durationNanos;
+        mValues[slot] = value;
+        mTail = tail + 1;
+        return true;
+    }
+
+    /**
+     * Passes every reading in the queue to the consumer, in order, and removes them. Readings
+     * offered while this runs are left for the next drain. Only called by the consumer.
+     * @param consumer Receives the readings.
+     * @param nowNanos The current time, to measure how long the readings waited.
+     * @return The number of readings drained.
+     */
+    public int drain(Consumer consumer, long nowNanos) {
+        long head = mHead;
+        long tail = mTail;
+        for (long i = head; i < tail; i++) {
+            int slot = (int) i & mMask;
+            long timestampNanos = mTimestampsNanos[slot];
+            long latencyNanos = nowNanos - timestampNanos;
+            mTotalLatencyNanos += latencyNanos;
+            if (latencyNanos > mMaximumLatencyNanos) {
+                mMaximumLatencyNanos = latencyNanos;
+            }
+            consumer.onSample(mTypes[slot], timestampNanos, mDurationsNanos[slot], mValues[slot]);
+            // Free the slot only once the reading has been read.
+            mHead = i + 1;
+        }
+        mNumDrained += tail - head;
+        return (int) (tail - head);
+    }
+
+    public int getCapacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * @return The number of readings waiting, which may already be out of date when read by the
+     *         producer.
+     */
+    public int size() {
+        return (int) (mTail - mHead);
+    }
+
+    /**
+     * @return The number of readings dropped because the queue was full.
+     */
+    public int getNumOverflowed() {
+        return mNumOverflowed;
+    }
+
+    /**
+     * @return The number of readings drained. Only read by the consumer.
+     */
+    public long getNumDrained() {
+        return mNumDrained;
+    }
+
+    /**
+     * @return The longest time a reading waited to be drained. Only read by the consumer.
+     */
+    public long getMaximumLatencyNanos() {
+        return mMaximumLatencyNanos;
+    }
+
+    /**
+     * @return The average time a reading waited to be drained. Only read by the consumer.
+     */
+    public long getAverageLatencyNanos() {
+        return mNumDrained == 0 ? 0 : mTotalLatencyNanos / mNumDrained;
+    }
+}
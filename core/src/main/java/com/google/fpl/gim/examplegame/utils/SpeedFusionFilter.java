@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+/**
+ * Combines speed measurements from several sources, such as the step cadence and the speed
+ * sensor, into a single smoothed speed, with a one-dimensional Kalman filter.
+ *
+ * The filter keeps an estimate of the speed and of its variance. Between measurements, the
+ * variance grows with the time that has passed, as the player may have sped up or slowed down,
+ * so the longer it has been since the last measurement, the more a new one counts. Each
+ * measurement comes with its own variance, so an accurate source counts for more than a rough
+ * one. Whichever source reports, the estimate moves part of the way towards it, rather than
+ * jumping to it.
+ *
+ * Not thread safe: it belongs to the thread that runs the game loop.
+ */
+public class SpeedFusionFilter {
+
+    // How much the speed may change, as a variance in (m/s)^2, for each second that passes.
+    private final float mProcessVariancePerSecond;
+
+    private boolean mHasEstimate = false;
+    private float mSpeedMetersPerSecond;
+    private float mVariance;
+    private long mLastMeasurementNanos;
+
+    /**
+     * @param processVariancePerSecond How much the speed may change between measurements, as a
+     *                                 variance in (m/s)^2 for each second that passes.
+     */
+    public SpeedFusionFilter(float processVariancePerSecond) {
+        if (!(processVariancePerSecond > 0)) {
+            throw new IllegalArgumentException(
+                    "Process variance must be positive: " + processVariancePerSecond);
+        }
+        mProcessVariancePerSecond = processVariancePerSecond;
+    }
+
+    /**
+     * Forgets the estimate. The next measurement is taken as it is.
+     */
+    public void reset() {
+        mHasEstimate = false;
+    }
+
+    /**
+     * Adds a measurement of the speed. Measurements must be added in time order.
+     * @param timestampNanos When the measurement was taken.
+     * @param speedMetersPerSecond The measured speed.
+     * @param variance The variance of the measurement, in (m/s)^2. The smaller it is, the more
+     *                 the measurement counts.
+     * @return The new estimate of the speed, in meters per second.
+     */
+    public float addMeasurement(long timestampNanos, float speedMetersPerSecond, float variance) {
+        if (!mHasEstimate) {
+            mHasEstimate = true;
+            mSpeedMetersPerSecond = speedMetersPerSecond;
+            mVariance = variance;
+            mLastMeasurementNanos = timestampNanos;
+            return mSpeedMetersPerSecond;
+        }
+
+        // The estimate becomes less certain as time passes.
+        long elapsedNanos = Math.max(0, timestampNanos - mLastMeasurementNanos);
+        mVariance += mProcessVariancePerSecond * Utils.nanosToSeconds(elapsedNanos);
+        mLastMeasurementNanos = Math.max(mLastMeasurementNanos, timestampNanos);
+
+        // Move towards the measurement by how certain it is, compared to the estimate.
+        float gain = mVariance / (mVariance + variance);
+        mSpeedMetersPerSecond += gain * (speedMetersPerSecond - mSpeedMetersPerSecond);
+        mVariance *= 1 - gain;
+        return mSpeedMetersPerSecond;
+    }
+
+    public boolean hasEstimate() {
+        return mHasEstimate;
+    }
+
+    /**
+     * @return The estimate of the speed, in meters per second, or 0 if there is none.
+     */
+    public float getSpeedMetersPerSecond() {
+        return mHasEstimate ? mSpeedMetersPerSecond : 0f;
+    }
+
+    /**
+     * @return The variance of the estimate, in (m/s)^2.
+     */
+    public float getVariance() {
+        return mVariance;
+    }
+}
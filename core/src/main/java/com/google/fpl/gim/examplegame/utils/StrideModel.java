@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Learns the stride length of a player as a function of their cadence, so that the distance
+ * covered can be worked out from the steps alone when there is no speed reading.
+ *
+ * Cadences are grouped into bins of BIN_WIDTH_STEPS_PER_MINUTE. Whenever the speed is known,
+ * from the speed sensor or from the distance covered, the stride length it implies at the current
+ * cadence is averaged into that cadence's bin. The average weighs the latest readings a little
+ * more than the old ones, so the model follows a player whose stride changes over the weeks. A
+ * cadence whose bin has few readings borrows from the nearest bin that has some, and from
+ * DEFAULT_STRIDE_FEET when no bin has any.
+ *
+ * The model is small and of fixed size, and learning allocates nothing, so it can be used from
+ * the game loop. write() and read() save it between missions. Not thread safe.
+ */
+public class StrideModel {
+
+    public static final float DEFAULT_STRIDE_FEET = 5.5f;
+
+    private static final int FORMAT_MAGIC = 0x47494d53; // "GIMS"
+    private static final int FORMAT_VERSION = 1;
+
+    // Bins of 10 steps per minute, from 60 steps per minute, a slow walk, to 260, a sprint.
+    // Cadences outside this range go in the first or the last bin.
+    private static final int MINIMUM_STEPS_PER_MINUTE = 60;
+    private static final int BIN_WIDTH_STEPS_PER_MINUTE = 10;
+    private static final int NUM_BINS = 20;
+
+    // Stride lengths outside this range come from a speed or step reading that is wrong, such as
+    // a speed reading while the player is standing still, and are not learned.
+    private static final float MINIMUM_STRIDE_FEET = 1f;
+    private static final float MAXIMUM_STRIDE_FEET = 9f;
+
+    // The weight of a bin stops growing here, so that a new reading always counts for at least
+    // this fraction of the average.
+    private static final float MAXIMUM_WEIGHT = 200f;
+    // How many readings the fallback stride counts as, against the readings of a bin.
+    private static final float PRIOR_WEIGHT = 3f;
+    // A bin with at least this weight is calibrated.
+    private static final float CALIBRATED_WEIGHT = 10f;
+
+    private final float[] mStrideFeet = new float[NUM_BINS];
+    private final float[] mWeights = new float[NUM_BINS];
+    private int mNumReadingsLearned = 0;
+
+    /**
+     * Learns the stride length implied by a speed at a cadence.
+     * @param stepsPerMinute The cadence of the player.
+     * @param speedMetersPerSecond The speed of the player at the same time.
+     * @return True if the reading was learned, false if it was not plausible.
+     */
+    public boolean learn(float stepsPerMinute, float speedMetersPerSecond) {
+        if (!(stepsPerMinute > 0) || !(speedMetersPerSecond > 0)) {
+            return false;
+        }
+        float metersPerStep =
+                speedMetersPerSecond * Utils.MINUTES_TO_SECONDS_SCALE / stepsPerMinute;
+        float strideFeet = metersPerStep / Utils.FEET_TO_METERS_SCALE;
+        if (strideFeet < MINIMUM_STRIDE_FEET || strideFeet > MAXIMUM_STRIDE_FEET) {
+            return false;
+        }
+        int bin = getBin(stepsPerMinute);
+        mWeights[bin] = Math.min(mWeights[bin] + 1f, MAXIMUM_WEIGHT);
+        mStrideFeet[bin] += (strideFeet - mStrideFeet[bin]) / mWeights[bin];
+        mNumReadingsLearned++;
+        return true;
+    }
+
+    /**
+     * @param stepsPerMinute The cadence of the player.
+     * @return The stride length of the player at that cadence, in feet.
+     */
+    public float getStrideFeet(float stepsPerMinute) {
+        int bin = getBin(stepsPerMinute);
+        float weight = mWeights[bin];
+        if (weight >= CALIBRATED_WEIGHT) {
+            return mStrideFeet[bin];
+        }
+        float fallback = getNearestStrideFeet(bin);
+        return (mStrideFeet[bin] * weight + fallback * PRIOR_WEIGHT) / (weight + PRIOR_WEIGHT);
+    }
+
+    /**
+     * @param stepsPerMinute The cadence of the player.
+     * @return True if enough has been learned at that cadence to trust the stride length.
+     */
+    public boolean isCalibrated(float stepsPerMinute) {
+        return mWeights[getBin(stepsPerMinute)] >= CALIBRATED_WEIGHT;
+    }
+
+    /**
+     * @return The number of readings learned since the model was created or read.
+     */
+    public int getNumReadingsLearned() {
+        return mNumReadingsLearned;
+    }
+
+    /**
+     * Writes the model, to be read back by read().
+     * @param out The output to write to.
+     * @throws IOException Thrown if the output can not be written.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(FORMAT_MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(NUM_BINS);
+        for (int i = 0; i < NUM_BINS; i++) {
+            out.writeFloat(mStrideFeet[i]);
+            out.writeFloat(mWeights[i]);
+        }
+    }
+
+    /**
+     * Reads a model written by write().
+     * @param in The input to read from.
+     * @return The model read.
+     * @throws IOException Thrown if the input can not be read, or is not a model of this version.
+     */
+    public static StrideModel read(DataInput in) throws IOException {
+        if (in.readInt() != FORMAT_MAGIC || in.readInt() != FORMAT_VERSION
+                || in.readInt() != NUM_BINS) {
+            throw new IOException("Not a stride model of version " + FORMAT_VERSION + ".");
+        }
+        StrideModel model = new StrideModel();
+        for (int i = 0; i < NUM_BINS; i++) {
+            float strideFeet = in.readFloat();
+            float weight = in.readFloat();
+            if (!(weight >= 0 && weight <= MAXIMUM_WEIGHT) || (weight > 0
+                    && !(strideFeet >= MINIMUM_STRIDE_FEET && strideFeet <= MAXIMUM_STRIDE_FEET))) {
+                throw new IOException("Invalid stride model bin " + i + ".");
+            }
+            model.mStrideFeet[i] = strideFeet;
+            model.mWeights[i] = weight;
+        }
+        return model;
+    }
+
+    private static int getBin(float stepsPerMinute) {
+        int bin = (int) ((stepsPerMinute - MINIMUM_STEPS_PER_MINUTE) / BIN_WIDTH_STEPS_PER_MINUTE);
+        return Math.max(0, Math.min(NUM_BINS - 1, bin));
+    }
+
+    /**
+     * @return The stride length of the nearest bin to the given one that has learned something,
+     * other than the bin itself, or DEFAULT_STRIDE_FEET if there is none.
+     */
+    private float getNearestStrideFeet(int bin) {
+        for (int distance = 1; distance < NUM_BINS; distance++) {
+            int lower = bin - distance;
+            int upper = bin + distance;
+            if (lower >= 0 && mWeights[lower] > 0) {
+                return mStrideFeet[lower];
+            }
+            if (upper < NUM_BINS && mWeights[upper] > 0) {
+                return mStrideFeet[upper];
+            }
+        }
+        return DEFAULT_STRIDE_FEET;
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame.utils;
+
+/**
+ * A hierarchical timer wheel for the deadlines of a mission: the end of a timer, the timeout of a
+ * choice, a delayed restart, the next speed sample. Scheduling and cancelling a timer take
+ * constant time, and advancing the wheel only visits the buckets whose time has come, instead of
+ * every deadline being checked on every update.
+ *
+ * Time is divided into ticks of TICK_NANOS. The first level has a bucket for each of the next
+ * SLOTS_PER_LEVEL ticks, and each level above it has buckets SLOTS_PER_LEVEL times as long. When
+ * the wheel reaches the start of a bucket on a higher level, the timers in it are moved down to
+ * the level that matches how far away they now are. Timers further away than the top level are
+ * kept in its last bucket until they are near enough.
+ *
+ * The wheel is not thread safe. It belongs to the thread that runs the game loop.
+ */
+public class TimerWheel {
+
+    // Returned by getNextDeadlineNanos() when no timer is scheduled.
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    public static final long TICK_NANOS = 1000000L; // One millisecond.
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS_PER_LEVEL = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS_PER_LEVEL - 1;
+    private static final int NUM_LEVELS = 4; // About four and a half hours of ticks.
+
+    /**
+     * A deadline that can be scheduled on a wheel. A timer can be scheduled on at most one wheel
+     * at a time, and is linked directly into its bucket, so it can be unlinked in constant time.
+     */
+    public static abstract class Timer {
+        private long mDeadlineNanos;
+        private long mTick;
+        private Timer mPrevious;
+        private Timer mNext;
+        private Timer[] mBucketHeads;
+        private int mSlot;
+
+        /**
+         * Called by TimerWheel.advance() once the deadline has passed. The timer is no longer
+         * scheduled, and may be scheduled again.
+         * @param nowNanos The time the wheel was advanced to.
+         */
+        protected abstract void onExpired(long nowNanos);
+
+        public boolean isScheduled() {
+            return mBucketHeads != null;
+        }
+
+        public long getDeadlineNanos() {
+            return mDeadlineNanos;
+        }
+    }
+
+    private final long mStartNanos;
+    // Every timer due before this tick has expired.
+    private long mCurrentTick = 0;
+    private final Timer[][] mLevels = new Timer[NUM_LEVELS][SLOTS_PER_LEVEL];
+    private int mNumTimers = 0;
+
+    /**
+     * @param startNanos The time of the first tick.
+     */
+    public TimerWheel(long startNanos) {
+        mStartNanos = startNanos;
+    }
+
+    /**
+     * Schedules a timer, replacing its deadline if it is already scheduled.
+     * @param timer The timer.
+     * @param deadlineNanos The time at which the timer expires. A deadline that has already passed
+     *                      expires at the next call to advance().
+     */
+    public void schedule(Timer timer, long deadlineNanos) {
+        cancel(timer);
+        timer.mDeadlineNanos = deadlineNanos;
+        // Round up, so that a timer never expires before its deadline.
+        long ticks = deadlineNanos - mStartNanos;
+        long tick = ticks <= 0 ? 0 : (ticks + TICK_NANOS - 1) / TICK_NANOS;
+        timer.mTick = Math.max(tick, mCurrentTick);
+        insert(timer);
+        mNumTimers++;
+    }
+
+    /**
+     * Cancels a timer. Does nothing if the timer is not scheduled.
+     * @param timer The timer.
+     */
+    public void cancel(Timer timer) {
+        if (timer.mBucketHeads != null) {
+            unlink(timer);
+            mNumTimers--;
+        }
+    }
+
+    /**
+     * Expires every timer whose deadline is at or before the given time, in order of deadline
+     * tick. Timers scheduled by an expiring timer for a time that has already passed also expire.
+     * @param nowNanos The current time.
+     */
+    public void advance(long nowNanos) {
+        if (nowNanos < mStartNanos) {
+            return;
+        }
+        long targetTick = (nowNanos - mStartNanos) / TICK_NANOS;
+        while (mCurrentTick <= targetTick) {
+            if (mNumTimers == 0) {
+                mCurrentTick = targetTick + 1;
+                return;
+            }
+            long tick = Math.min(findNextBusyTick(), targetTick + 1);
+            if (tick > mCurrentTick) {
+                // No bucket is due before then, so skip the ticks in between.
+                mCurrentTick = tick;
+                continue;
+            }
+            cascade();
+
+            // Move on to the next tick first, so that timers scheduled while this bucket expires
+            // are never added to it.
+            long dueTick = mCurrentTick++;
+            Timer[] heads = mLevels[0];
+            int slot = (int) (dueTick & SLOT_MASK);
+            Timer timer = heads[slot];
+            while (timer != null) {
+                if (timer.mTick > dueTick) {
+                    timer = timer.mNext;
+                    continue;
+                }
+                cancel(timer);
+                timer.onExpired(nowNanos);
+                // Expiring the timer may have scheduled or cancelled others in this bucket.
+                timer = heads[slot];
+            }
+        }
+    }
+
+    /**
+     * @return The time at which advance() next needs to be called for a timer to expire, or
+     *         NO_DEADLINE if no timers are scheduled. Is never earlier than the deadline of that
+     *         timer.
+     */
+    public long getNextDeadlineNanos() {
+        if (mNumTimers == 0) {
+            return NO_DEADLINE;
+        }
+        long nextTick = Long.MAX_VALUE;
+        for (int level = 0; level < NUM_LEVELS; level++) {
+            int shift = level * SLOT_BITS;
+            // Buckets above the first level hold timers from the next bucket onwards.
+            for (int i = level == 0 ? 0 : 1; i <= SLOTS_PER_LEVEL; i++) {
+                long bucketStartTick = ((mCurrentTick >> shift) + i) << shift;
+                if (level == 0) {
+                    bucketStartTick = mCurrentTick + i;
+                }
+                if (bucketStartTick >= nextTick) {
+                    break;
+                }
+                // Timers too far away for the wheel may be in an earlier bucket than their tick,
+                // so carry on to later buckets rather than stopping at the first timer.
+                Timer timer = mLevels[level][(int) ((bucketStartTick >> shift) & SLOT_MASK)];
+                for (; timer != null; timer = timer.mNext) {
+                    nextTick = Math.min(nextTick, Math.max(timer.mTick, bucketStartTick));
+                }
+            }
+        }
+        return mStartNanos + nextTick * TICK_NANOS;
+    }
+
+    /**
+     * @return The number of timers scheduled.
+     */
+    public int getNumTimers() {
+        return mNumTimers;
+    }
+
+    /**
+     * @return The next tick at which a bucket is due to be expired or cascaded, from the current
+     *         tick.
+     */
+    private long findNextBusyTick() {
+        // A cascade is due at the start of every bucket of the second level.
+        long nextCascadeTick = ((mCurrentTick >> SLOT_BITS) + 1) << SLOT_BITS;
+        if ((mCurrentTick & SLOT_MASK) == 0) {
+            nextCascadeTick = mCurrentTick;
+        }
+        for (long tick = mCurrentTick; tick < nextCascadeTick; tick++) {
+            if (mLevels[0][(int) (tick & SLOT_MASK)] != null) {
+                return tick;
+            }
+        }
+        return nextCascadeTick;
+    }
+
+    /**
+     * Moves the timers in the higher level buckets that start at the current tick down to the
+     * levels that match how far away they now are.
+     */
+    private void cascade() {
+        for (int level = 1; level < NUM_LEVELS; level++) {
+            int shift = level * SLOT_BITS;
+            if ((mCurrentTick & ((1L << shift) - 1)) != 0) {
+                return;
+            }
+            int slot = (int) ((mCurrentTick >> shift) & SLOT_MASK);
+            Timer timer = mLevels[level][slot];
+            mLevels[level][slot] = null;
+            while (timer != null) {
+                Timer next = timer.mNext;
+                timer.mPrevious = null;
+                timer.mNext = null;
+                insert(timer);
+                timer = next;
+            }
+        }
+    }
+
+    /**
+     * Links a timer into the bucket for its tick.
+     * @param timer The timer, which must not be linked into a bucket.
+     */
+    private void insert(Timer timer) {
+        long ticksAway = timer.mTick - mCurrentTick;
+        int level = 0;
+        while (level < NUM_LEVELS - 1 && ticksAway >= 1L << ((level + 1) * SLOT_BITS)) {
+            level++;
+        }
+        int shift = level * SLOT_BITS;
+        long bucketTick = timer.mTick;
+        if (ticksAway >= 1L << ((level + 1) * SLOT_BITS)) {
+            // Too far away for the wheel. Keep it in the last bucket of the top level, and move
+            // it down when that bucket is reached.
+            bucketTick = mCurrentTick + ((long) SLOT_MASK << shift);
+        }
+        Timer[] heads = mLevels[level];
+        int slot = (int) ((bucketTick >> shift) & SLOT_MASK);
+        timer.mBucketHeads = heads;
+        timer.mSlot = slot;
+        timer.mPrevious = null;
+        timer.mNext = heads[slot];
+        if (heads[slot] != null) {
+            heads[slot].mPrevious = timer;
+        }
+        heads[slot] = timer;
+    }
+
+    /**
+     * Unlinks a timer from its bucket.
+     * @param timer The timer, which must be linked into a bucket.
+     */
+    private void unlink(Timer timer) {
+        if (timer.mPrevious != null) {
+            timer.mPrevious.mNext = timer.mNext;
+        } else {
+            timer.mBucketHeads[timer.mSlot] = timer.mNext;
+        }
+        if (timer.mNext != null) {
+            timer.mNext.mPrevious = timer.mPrevious;
+        }
+        timer.mBucketHeads = null;
+        timer.mPrevious = null;
+        timer.mNext = null;
+    }
+}
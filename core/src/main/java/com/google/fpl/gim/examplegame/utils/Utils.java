@@ -16,10 +16,6 @@
 
 package com.google.fpl.gim.examplegame.utils;
 
-import android.util.Log;
-
-import com.google.fpl.gim.examplegame.BuildConfig;
-
 import java.io.File;
 import java.util.ArrayList;
 
@@ -33,10 +29,48 @@ public class Utils {
     public static final int MINUTES_TO_SECONDS_SCALE = 60;
     public static final float SECONDS_TO_MINUTES_SCALE = 1.0f / 60;
     public static final float MILES_TO_FEET_SCALE = 5280f;
+    public static final float FEET_TO_METERS_SCALE = 0.3048f;
     public static final float SECONDS_PER_METER_TO_MINUTES_PER_MILE_SCALE = 26.8224f;
 
-    // user control for displaying log messages
-    private static final boolean DEBUG_LOG = true;
+    /**
+     * Writes debugging messages somewhere they can be read, such as the Android log.
+     */
+    public interface Logger {
+        /**
+         * @return False if messages are dropped, so that callers need not build them.
+         */
+        boolean isDebugEnabled();
+
+        void logDebug(String tag, String message);
+    }
+
+    // Writes every message to the console.
+    public static final Logger CONSOLE_LOGGER = new Logger() {
+        @Override
+        public boolean isDebugEnabled() {
+            return true;
+        }
+
+        @Override
+        public void logDebug(String tag, String message) {
+            System.out.println(tag + ": " + message);
+        }
+    };
+
+    // Drops every message.
+    public static final Logger SILENT_LOGGER = new Logger() {
+        @Override
+        public boolean isDebugEnabled() {
+            return false;
+        }
+
+        @Override
+        public void logDebug(String tag, String message) {
+        }
+    };
+
+    // Writes to the console until the platform installs a Logger of its own.
+    private static volatile Logger sLogger = CONSOLE_LOGGER;
 
     public static float nanosToSeconds(long nanos) {
         return nanos / SECONDS_TO_NANOS_SCALE;
@@ -58,6 +92,10 @@ public class Utils {
         return feet / MILES_TO_FEET_SCALE;
     }
 
+    public static float feetToMeters(float feet) {
+        return feet * FEET_TO_METERS_SCALE;
+    }
+
     public static float secondsToMinutes(float seconds) {
         return seconds / MINUTES_TO_SECONDS_SCALE;
     }
@@ -70,16 +108,39 @@ public class Utils {
         return secondsPerMeter * SECONDS_PER_METER_TO_MINUTES_PER_MILE_SCALE;
     }
 
+    /**
+     * Sets where debugging messages are written.
+     * @param logger The Logger to write to.
+     */
+    public static void setLogger(Logger logger) {
+        sLogger = logger;
+    }
+
+    /**
+     * Messages on the game loop's path are only built if this is true, so that a release build
+     * does not allocate strings that are never written:
+     *
+     *     if (Utils.isDebugLogEnabled()) {
+     *         Utils.logDebug(TAG, "Taken " + steps + " steps.");
+     *     }
+     *
+     * @return True if debugging messages are written.
+     */
+    public static boolean isDebugLogEnabled() {
+        return sLogger.isDebugEnabled();
+    }
+
     /**
      * Prints debugging messages to the console.
      *
-     * Disabled for non-debug builds.
+     * Disabled for non-debug builds, by the Logger the platform installs.
      *
      * @param message - The message to print to the console.
      */
     public static void logDebug(String tag, String message) {
-        if (BuildConfig.DEBUG || DEBUG_LOG) {
-            Log.d(tag, message);
+        Logger logger = sLogger;
+        if (logger.isDebugEnabled()) {
+            logger.logDebug(tag, message);
         }
     }
 
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.Utils;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+
+/**
+ * Tests for the channel that sends the fitness stats to the UI.
+ */
+public class FitnessStatsChannelTest extends TestCase {
+
+    // Four updates a second at most.
+    private static final long INTERVAL_NANOS = Utils.secondsToNanos(0.25f);
+
+    private FitnessStatsChannel mChannel;
+    private FitnessSnapshot mSnapshot;
+    private final ArrayList<FitnessSnapshot> mReceived = new ArrayList<>();
+
+    private final FitnessStatsChannel.Source mSource = new FitnessStatsChannel.Source() {
+        @Override
+        public FitnessSnapshot getFitnessSnapshot() {
+            return mSnapshot;
+        }
+    };
+
+    private final FitnessStatsChannel.Observer mObserver = new FitnessStatsChannel.Observer() {
+        @Override
+        public void onFitnessStats(FitnessSnapshot snapshot) {
+            mReceived.add(snapshot);
+        }
+    };
+
+    @Override
+    public void setUp() {
+        mChannel = new FitnessStatsChannel(4f);
+        mSnapshot = null;
+        mReceived.clear();
+        publish(0);
+    }
+
+    /**
+     * Publishes a new version of the stats, as the mission does when they change.
+     */
+    private void publish(int numSteps) {
+        long version = mSnapshot == null ? 1 : mSnapshot.getVersion() + 1;
+        mSnapshot = new FitnessSnapshot(version, numSteps, 10f, 12f, 0, 0, 0);
+    }
+
+    /**
+     * Test that nothing is taken or sent while there is no observer.
+     */
+    public void testNothingSentWithoutObserver() {
+        mChannel.onStatsChanged();
+        Assert.assertFalse(mChannel.isPending());
+        Assert.assertFalse(mChannel.flush(mSource, 0));
+        Assert.assertEquals(Long.MAX_VALUE, mChannel.getNextFlushNanos());
+        Assert.assertEquals(0, mChannel.getNumDelivered());
+    }
+
+    /**
+     * Test that a new observer is sent the stats straight away, even if they have not changed.
+     */
+    public void testNewObserverSentStats() {
+        publish(7);
+        mChannel.setObserver(mObserver);
+        Assert.assertTrue(mChannel.flush(mSource, 0));
+        Assert.assertEquals(1, mReceived.size());
+        Assert.assertEquals(7, mReceived.get(0).getNumSteps());
+        Assert.assertFalse(mChannel.flush(mSource, INTERVAL_NANOS * 10));
+    }
+
+    /**
+     * Test that a burst of changes within the interval becomes a single update with the latest
+     * stats, sent once the interval has passed.
+     */
+    public void testBurstCoalesced() {
+        mChannel.setObserver(mObserver);
+        mChannel.flush(mSource, 0);
+
+        for (int i = 1; i <= 10; i++) {
+            publish(i);
+            mChannel.onStatsChanged();
+            Assert.assertFalse(mChannel.flush(mSource, i));
+        }
+        Assert.assertEquals(1, mReceived.size());
+        Assert.assertEquals(INTERVAL_NANOS, mChannel.getNextFlushNanos());
+
+        Assert.assertFalse(mChannel.flush(mSource, INTERVAL_NANOS - 1));
+        Assert.assertTrue(mChannel.flush(mSource, INTERVAL_NANOS));
+        Assert.assertEquals(2, mReceived.size());
+        Assert.assertEquals(10, mReceived.get(1).getNumSteps());
+        Assert.assertEquals(2, mChannel.getNumDelivered());
+        Assert.assertEquals(9, mChannel.getNumCoalesced());
+        Assert.assertFalse(mChannel.isPending());
+    }
+
+    /**
+     * Test that a version the observer has already been sent is skipped, but is sent again to a
+     * new observer.
+     */
+    public void testUnchangedVersionSkipped() {
+        mChannel.setObserver(mObserver);
+        Assert.assertTrue(mChannel.flush(mSource, 0));
+        mChannel.onStatsChanged();
+        Assert.assertFalse(mChannel.flush(mSource, INTERVAL_NANOS));
+        Assert.assertFalse(mChannel.isPending());
+        Assert.assertEquals(1, mChannel.getNumSkipped());
+
+        mChannel.setObserver(mObserver);
+        Assert.assertTrue(mChannel.flush(mSource, INTERVAL_NANOS * 2));
+        Assert.assertEquals(2, mReceived.size());
+        Assert.assertSame(mReceived.get(0), mReceived.get(1));
+    }
+
+    /**
+     * Test that removing the observer drops any pending change.
+     */
+    public void testObserverRemoved() {
+        mChannel.setObserver(mObserver);
+        mChannel.flush(mSource, 0);
+        publish(1);
+        mChannel.onStatsChanged();
+        mChannel.setObserver(null);
+        Assert.assertFalse(mChannel.flush(mSource, INTERVAL_NANOS));
+        Assert.assertEquals(1, mReceived.size());
+    }
+
+    /**
+     * Test that the maximum rate can be changed, and must be positive.
+     */
+    public void testMaximumRate() {
+        mChannel.setMaximumUpdatesPerSecond(1f);
+        mChannel.setObserver(mObserver);
+        mChannel.flush(mSource, 0);
+        publish(1);
+        mChannel.onStatsChanged();
+        Assert.assertFalse(mChannel.flush(mSource, INTERVAL_NANOS));
+        Assert.assertTrue(mChannel.flush(mSource, Utils.secondsToNanos(1f)));
+
+        try {
+            mChannel.setMaximumUpdatesPerSecond(0f);
+            Assert.fail("Expected IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+}
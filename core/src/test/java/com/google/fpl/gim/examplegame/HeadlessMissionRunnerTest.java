@@ -0,0 +1,420 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.MissionParseException;
+import com.google.fpl.gim.examplegame.utils.MissionParser;
+import com.google.fpl.gim.examplegame.utils.RunRecorder;
+import com.google.fpl.gim.examplegame.utils.Utils;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+
+/**
+ * Runs whole missions with the HeadlessMissionRunner, faster than real time.
+ */
+public class HeadlessMissionRunnerTest extends TestCase {
+
+    private static final String TAG = HeadlessMissionRunnerTest.class.getSimpleName();
+
+    private static final String CHASE_MISSION_XML = ""
+            + "<mission start_id=\"start\" name=\"Chase\">"
+            + "  <moment type=\"spoken_text\" id=\"start\">"
+            + "    <next_moment id=\"timer_1\"/>"
+            + "    <text_to_speak>Start running now!</text_to_speak>"
+            + "  </moment>"
+            + "  <moment type=\"timer\" id=\"timer_1\">"
+            + "    <next_moment id=\"choice_1\"/>"
+            + "    <length_minutes>3</length_minutes>"
+            + "  </moment>"
+            + "  <moment type=\"choice\" id=\"choice_1\">"
+            + "    <timeout_length_minutes>0.5</timeout_length_minutes>"
+            + "    <description>What will you do?</description>"
+            + "    <default_choice id=\"choice_blend\"/>"
+            + "    <choice id=\"fire\">"
+            + "      <description>Fire!!!</description>"
+            + "      <next_moment id=\"final\"/>"
+            + "      <outcome deplete_weapon=\"true\" increment_enemies=\"true\"/>"
+            + "      <icon name=\"ic_fire_white\"/>"
+            + "    </choice>"
+            + "    <choice id=\"choice_axe\">"
+            + "      <description>Axe.</description>"
+            + "      <next_moment id=\"sfx_axe\"/>"
+            + "      <outcome deplete_weapon=\"false\" increment_enemies=\"true\"/>"
+            + "      <icon name=\"ic_axe_white\"/>"
+            + "    </choice>"
+            + "    <choice id=\"choice_blend\">"
+            + "      <description>Blend.</description>"
+            + "      <next_moment id=\"sfx_blend\"/>"
+            + "      <outcome deplete_weapon=\"false\" increment_enemies=\"false\"/>"
+            + "      <icon name=\"ic_blend_zombie_white\"/>"
+            + "    </choice>"
+            + "  </moment>"
+            + "  <moment type=\"sfx\" id=\"sfx_axe\">"
+            + "    <uri>android.resource://com.google.fpl.gim.examplegame/raw/axe</uri>"
+            + "    <next_moment id=\"final\"/>"
+            + "  </moment>"
+            + "  <moment type=\"sfx\" id=\"sfx_blend\">"
+            + "    <uri>android.resource://com.google.fpl.gim.examplegame/raw/brains</uri>"
+            + "    <next_moment id=\"final\"/>"
+            + "  </moment>"
+            + "  <moment type=\"spoken_text\" id=\"final\">"
+            + "    <text_to_speak>You have arrived at the base.</text_to_speak>"
+            + "  </moment>"
+            + "</mission>";
+
+    private static final String LONG_TIMER_MISSION_XML = ""
+            + "<mission start_id=\"start\" name=\"Long\">"
+            + "  <moment type=\"timer\" id=\"start\">"
+            + "    <length_minutes>30</length_minutes>"
+            + "  </moment>"
+            + "</mission>";
+
+    // Faster than a runner at the challenge pace of the run.
+    private static final float FAST_SPEED_METERS_PER_SECOND = 4f;
+    private static final int FAST_STEPS_PER_SECOND = 3;
+    // Noisy speed readings either side of the challenge pace of the run, on average faster.
+    private static final float NOISY_SLOW_SPEED_METERS_PER_SECOND = 3.2f;
+    private static final float NOISY_FAST_SPEED_METERS_PER_SECOND = 3.8f;
+    // Either side of the challenge pace of the run, by less than the hysteresis band.
+    private static final float HOVERING_SLOW_SPEED_METERS_PER_SECOND = 3.3f;
+    private static final float HOVERING_FAST_SPEED_METERS_PER_SECOND = 3.5f;
+
+    // The most updates a mission may need for each second of readings. Each second of the trace
+    // wakes it, and only the odd timer falls between readings.
+    private static final int MAXIMUM_UPDATES_PER_SECOND = 2;
+
+    private HeadlessMissionRunner createRunner(String xml) throws MissionParseException {
+        MissionTemplate template =
+                MissionParser.parseMissionTemplate(new ByteArrayInputStream(xml.getBytes()));
+        // A 30 minute run, with 1 minute intervals and a challenge pace of 8 minutes per mile.
+        return new HeadlessMissionRunner(template, new MissionData("Test", "Test", 30f, 1f, 8f));
+    }
+
+    /**
+     * Test that a scripted choice takes the mission down its branch, and that the steps of the
+     * trace are counted.
+     */
+    public void testScriptedChoice() throws MissionParseException {
+        HeadlessMissionRunner runner = createRunner(CHASE_MISSION_XML);
+        runner.setChoice("choice_1", "choice_axe");
+        for (int second = 1; second <= 10 * Utils.MINUTES_TO_SECONDS_SCALE; second++) {
+            runner.addSteps(second, FAST_STEPS_PER_SECOND);
+        }
+
+        Assert.assertTrue(runner.run(10f));
+        Assert.assertEquals(Arrays.asList("start", "timer_1", "choice_1", "sfx_axe", "final"),
+                runner.getMomentSequence());
+        Assert.assertEquals(Arrays.asList("choice_axe"), runner.getChoicesMade());
+
+        long missionSeconds = runner.getMissionNanos() / (long) Utils.SECONDS_TO_NANOS_SCALE;
+        Assert.assertTrue(missionSeconds >= 3 * Utils.MINUTES_TO_SECONDS_SCALE);
+        Assert.assertEquals(missionSeconds * FAST_STEPS_PER_SECOND,
+                runner.getMission().getNumSteps());
+    }
+
+    /**
+     * Test that a choice moment with no choice made times out, and picks its default choice.
+     */
+    public void testDefaultChoice() throws MissionParseException {
+        HeadlessMissionRunner runner = createRunner(CHASE_MISSION_XML);
+
+        Assert.assertTrue(runner.run(10f));
+        Assert.assertEquals(Arrays.asList("start", "timer_1", "choice_1", "sfx_blend", "final"),
+                runner.getMomentSequence());
+        Assert.assertEquals(Arrays.asList("choice_blend"), runner.getChoicesMade());
+        Assert.assertTrue(runner.getMissionNanos() >= Utils.minutesToNanos(3.5f));
+        Assert.assertEquals(0, runner.getMission().getNumSteps());
+    }
+
+    /**
+     * Test that running at the challenge pace for an interval charges the weapon, and plays the
+     * sounds that say so.
+     */
+    public void testWeaponCharges() throws MissionParseException {
+        HeadlessMissionRunner runner = createRunner(CHASE_MISSION_XML);
+        runner.setChoice("choice_1", "choice_axe");
+        for (int second = 1; second <= 10 * Utils.MINUTES_TO_SECONDS_SCALE; second++) {
+            runner.addSteps(second, FAST_STEPS_PER_SECOND);
+            runner.addSpeed(second, FAST_SPEED_METERS_PER_SECOND);
+        }
+
+        Assert.assertTrue(runner.run(10f));
+        Assert.assertTrue(runner.getMission().isWeaponCharged());
+        Assert.assertEquals(100, runner.getMission().getWeaponChargedPercentage());
+        // At challenge pace, weapon charged, and the sound of the axe.
+        Assert.assertEquals(3, runner.getNumSoundsPlayed());
+    }
+
+    /**
+     * Test that the weapon is charged once the player has been at the challenge pace for an
+     * interval, rather than by the next reading after that.
+     */
+    public void testWeaponChargesBetweenReadings() throws MissionParseException {
+        HeadlessMissionRunner runner = createRunner(LONG_TIMER_MISSION_XML);
+        // Far apart, so that no reading arrives near the end of the interval.
+        for (int second = 1; second <= 3 * Utils.MINUTES_TO_SECONDS_SCALE; second += 40) {
+            runner.addSpeed(second, FAST_SPEED_METERS_PER_SECOND);
+        }
+
+        // Past the end of the interval, but before the reading at 81 seconds.
+        runner.run(78f / Utils.MINUTES_TO_SECONDS_SCALE);
+        Mission mission = runner.getMission();
+        Assert.assertTrue(mission.isWeaponCharged());
+        Assert.assertEquals(100, mission.getWeaponChargedPercentage());
+        // At challenge pace, and weapon charged.
+        Assert.assertEquals(2, runner.getNumSoundsPlayed());
+    }
+
+    /**
+     * Test that when the speed readings are noisy either side of the challenge pace, the pace
+     * comes from the steps as well as the readings, rather than flipping with each reading.
+     */
+    public void testStepsAndSpeedCombined() throws MissionParseException {
+        HeadlessMissionRunner runner = createRunner(LONG_TIMER_MISSION_XML);
+        for (int second = 1; second <= 3 * Utils.MINUTES_TO_SECONDS_SCALE; second++) {
+            runner.addSteps(second, FAST_STEPS_PER_SECOND);
+            runner.addSpeed(second + 0.5f, second % 2 == 0
+                    ? NOISY_SLOW_SPEED_METERS_PER_SECOND : NOISY_FAST_SPEED_METERS_PER_SECOND);
+        }
+
+        runner.run(3f);
+        Mission mission = runner.getMission();
+        Assert.assertTrue(mission.getMinutesPerMile() < mission.getChallengePace());
+        // At challenge pace once, and weapon charged.
+        Assert.assertTrue(mission.isWeaponCharged());
+        Assert.assertEquals(2, runner.getNumSoundsPlayed());
+    }
+
+    /**
+     * Test that a runner hovering around the challenge pace reaches it once, and keeps charging
+     * their weapon, rather than reaching and leaving it every few seconds.
+     */
+    public void testChallengePaceHysteresis() throws MissionParseException {
+        HeadlessMissionRunner runner = createRunner(LONG_TIMER_MISSION_XML);
+        HeadlessMissionRunner unfilteredRunner = createRunner(LONG_TIMER_MISSION_XML);
+        unfilteredRunner.getMission().getMissionData().setChallengePaceHysteresisMinutesPerMile(0f);
+        unfilteredRunner.getMission().getMissionData().setChallengePaceDwellSeconds(0f);
+        for (int second = 1; second <= 3 * Utils.MINUTES_TO_SECONDS_SCALE; second++) {
+            // Clearly at the challenge pace at first, then either side of it every four seconds.
+            float speed = second <= 20 || (second / 4) % 2 == 0
+                    ? HOVERING_FAST_SPEED_METERS_PER_SECOND
+                    : HOVERING_SLOW_SPEED_METERS_PER_SECOND;
+            runner.addSpeed(second, speed);
+            unfilteredRunner.addSpeed(second, speed);
+        }
+
+        runner.run(3f);
+        unfilteredRunner.run(3f);
+        Assert.assertEquals(1, runner.getMission().getNumChallengePaceChanges());
+        Assert.assertTrue(runner.getMission().isWeaponCharged());
+        Assert.assertTrue(unfilteredRunner.getMission().getNumChallengePaceChanges() > 20);
+        Assert.assertFalse(unfilteredRunner.getMission().isWeaponCharged());
+        Assert.assertTrue(runner.getNumSoundsPlayed() < unfilteredRunner.getNumSoundsPlayed());
+    }
+
+    /**
+     * Test that the stride length is learned while there are speed or distance readings, and used
+     * to work out the pace from the steps alone once they stop.
+     */
+    public void testStrideCalibration() throws MissionParseException {
+        HeadlessMissionRunner speedRunner = createRunner(LONG_TIMER_MISSION_XML);
+        HeadlessMissionRunner distanceRunner = createRunner(LONG_TIMER_MISSION_XML);
+        for (int second = 1; second <= 3 * Utils.MINUTES_TO_SECONDS_SCALE; second++) {
+            speedRunner.addSteps(second, FAST_STEPS_PER_SECOND);
+            distanceRunner.addSteps(second, FAST_STEPS_PER_SECOND);
+            if (second <= Utils.MINUTES_TO_SECONDS_SCALE) {
+                speedRunner.addSpeed(second, FAST_SPEED_METERS_PER_SECOND);
+                if (second % 5 == 0) {
+                    distanceRunner.addDistance(second, 5f, 5 * FAST_SPEED_METERS_PER_SECOND);
+                }
+            }
+        }
+
+        float expectedMinutesPerMile =
+                Utils.metersPerSecondToMinutesPerMile(FAST_SPEED_METERS_PER_SECOND);
+        for (HeadlessMissionRunner runner : Arrays.asList(speedRunner, distanceRunner)) {
+            runner.run(3f);
+            Mission mission = runner.getMission();
+            Assert.assertTrue(mission.getStrideModel().getNumReadingsLearned() > 10);
+            Assert.assertEquals(expectedMinutesPerMile, mission.getMinutesPerMile(), 0.2f);
+        }
+    }
+
+    /**
+     * Test that distance readings which arrive together, and are applied by the same update, are
+     * each learned from over the time they cover rather than the time between them.
+     */
+    public void testBatchedDistanceReadings() throws MissionParseException {
+        HeadlessMissionRunner singleRunner = createRunner(LONG_TIMER_MISSION_XML);
+        HeadlessMissionRunner batchedRunner = createRunner(LONG_TIMER_MISSION_XML);
+        for (int second = 1; second <= 3 * Utils.MINUTES_TO_SECONDS_SCALE; second++) {
+            singleRunner.addSteps(second, FAST_STEPS_PER_SECOND);
+            batchedRunner.addSteps(second, FAST_STEPS_PER_SECOND);
+            if (second <= Utils.MINUTES_TO_SECONDS_SCALE && second % 5 == 0) {
+                singleRunner.addDistance(second, 5f, 5 * FAST_SPEED_METERS_PER_SECOND);
+                // The same distance, reported as two halves at once.
+                batchedRunner.addDistance(second, 2.5f, 2.5f * FAST_SPEED_METERS_PER_SECOND);
+                batchedRunner.addDistance(second, 2.5f, 2.5f * FAST_SPEED_METERS_PER_SECOND);
+            }
+        }
+
+        singleRunner.run(3f);
+        batchedRunner.run(3f);
+        int numSingleReadingsLearned =
+                singleRunner.getMission().getStrideModel().getNumReadingsLearned();
+        Assert.assertTrue(numSingleReadingsLearned > 5);
+        Assert.assertEquals(2 * numSingleReadingsLearned,
+                batchedRunner.getMission().getStrideModel().getNumReadingsLearned());
+        Assert.assertEquals(Utils.metersPerSecondToMinutesPerMile(FAST_SPEED_METERS_PER_SECOND),
+                batchedRunner.getMission().getMinutesPerMile(), 0.2f);
+    }
+
+    /**
+     * Test that readings delivered in batches, and applied together by one update, leave the
+     * mission as it is when each of them is applied when it is taken.
+     */
+    public void testBatchedReadingsMatchSingleReadings() throws MissionParseException {
+        // No step reading leaves the pace window during the run, so that the mission is never
+        // woken to work out the pace between batches.
+        String xml = LONG_TIMER_MISSION_XML.replace("name=\"Long\"",
+                "name=\"Long\" pace_window_seconds=\"120\"");
+        HeadlessMissionRunner singleRunner = createRunner(xml);
+        HeadlessMissionRunner batchedRunner = createRunner(xml);
+        batchedRunner.setSensorBatchSeconds(5f);
+        for (HeadlessMissionRunner runner : Arrays.asList(singleRunner, batchedRunner)) {
+            // Readings stop before the end of the run, so both runners have been given them all.
+            for (int second = 1; second <= 50; second++) {
+                runner.addSteps(second, second <= 30 ? FAST_STEPS_PER_SECOND : 1);
+                runner.addSpeed(second + 0.5f, second % 2 == 0
+                        ? NOISY_SLOW_SPEED_METERS_PER_SECOND : NOISY_FAST_SPEED_METERS_PER_SECOND);
+            }
+        }
+
+        singleRunner.run(1f);
+        batchedRunner.run(1f);
+        Mission single = singleRunner.getMission();
+        Mission batched = batchedRunner.getMission();
+        Assert.assertTrue(batchedRunner.getNumUpdates() < singleRunner.getNumUpdates() / 2);
+        Assert.assertEquals(single.getNumSteps(), batched.getNumSteps());
+        Assert.assertEquals(single.getStrideModel().getNumReadingsLearned(),
+                batched.getStrideModel().getNumReadingsLearned());
+        Assert.assertEquals(single.getMinutesPerMile(), batched.getMinutesPerMile(), 1e-4f);
+    }
+
+    /**
+     * Test that a mission publishes a new snapshot of its fitness stats only when they change,
+     * and only while publishing is turned on.
+     */
+    public void testPublishedFitnessSnapshot() throws MissionParseException {
+        HeadlessMissionRunner runner = createRunner(LONG_TIMER_MISSION_XML);
+        for (int second = 1; second <= 60; second++) {
+            runner.addSteps(second, FAST_STEPS_PER_SECOND);
+        }
+        Mission mission = runner.getMission();
+        Assert.assertNull(mission.getFitnessSnapshot());
+        mission.setPublishingFitnessSnapshots(true);
+
+        runner.run(2f);
+        FitnessSnapshot snapshot = mission.getFitnessSnapshot();
+        Assert.assertEquals(mission.getNumSteps(), snapshot.getNumSteps());
+        Assert.assertEquals(mission.getNumMinutesExercised(), snapshot.getNumMinutesExercised());
+        Assert.assertEquals(mission.getNumSecondsExercised(), snapshot.getNumSecondsExercised());
+        // Far fewer versions than updates and readings, as most of them change nothing shown.
+        Assert.assertTrue(snapshot.getVersion() > 60);
+        Assert.assertTrue(snapshot.getVersion() < runner.getNumFitnessStatsChanges());
+
+        mission.setPublishingFitnessSnapshots(false);
+        mission.onStepTaken(1);
+        Assert.assertSame(snapshot, mission.getFitnessSnapshot());
+    }
+
+    /**
+     * Test that the mission records the metrics of every second, including the seconds between
+     * updates that are further apart.
+     */
+    public void testRunRecorded() throws MissionParseException {
+        HeadlessMissionRunner runner = createRunner(CHASE_MISSION_XML);
+        runner.setChoice("choice_1", "choice_axe");
+        for (int second = 1; second <= 10 * Utils.MINUTES_TO_SECONDS_SCALE; second++) {
+            runner.addSteps(second, FAST_STEPS_PER_SECOND);
+            runner.addSpeed(second, FAST_SPEED_METERS_PER_SECOND);
+        }
+
+        Assert.assertTrue(runner.run(10f));
+        RunRecorder recorder = runner.getMission().getRunRecorder();
+        long missionSeconds = runner.getMissionNanos() / (long) Utils.SECONDS_TO_NANOS_SCALE;
+        Assert.assertEquals(missionSeconds, recorder.getNumSeconds());
+        int lastSecond = recorder.getNumSeconds() - 1;
+        Assert.assertEquals((float) (lastSecond * FAST_STEPS_PER_SECOND),
+                recorder.get(RunRecorder.METRIC_STEPS, lastSecond));
+        Assert.assertEquals(FAST_SPEED_METERS_PER_SECOND,
+                recorder.get(RunRecorder.METRIC_SPEED_METERS_PER_SECOND, lastSecond), 0.1f);
+        Assert.assertEquals(100f,
+                recorder.get(RunRecorder.METRIC_WEAPON_CHARGED_PERCENTAGE, lastSecond));
+        // The Moment changes, at most once for each Moment played after the first, as a short
+        // Moment may start and end within a second.
+        float[] momentIndices = new float[recorder.getNumSeconds()];
+        recorder.read(RunRecorder.METRIC_MOMENT_INDEX, 0, recorder.getNumSeconds(),
+                momentIndices);
+        int numMomentChanges = 0;
+        for (int second = 1; second < momentIndices.length; second++) {
+            if (momentIndices[second] != momentIndices[second - 1]) {
+                numMomentChanges++;
+            }
+        }
+        Assert.assertTrue(numMomentChanges >= 2);
+        Assert.assertTrue(numMomentChanges < runner.getMomentSequence().size());
+        Assert.assertTrue(recorder.getAverage(RunRecorder.METRIC_AT_CHALLENGE_PACE, 0,
+                recorder.getNumSeconds()) > 0.9f);
+    }
+
+    /**
+     * Test that a mission is cut short after the maximum length of time.
+     */
+    public void testMaximumLength() throws MissionParseException {
+        HeadlessMissionRunner runner = createRunner(LONG_TIMER_MISSION_XML);
+
+        Assert.assertFalse(runner.run(10f));
+        Assert.assertEquals(Arrays.asList("start"), runner.getMomentSequence());
+        Assert.assertTrue(runner.getMissionNanos() <= Utils.minutesToNanos(10f));
+    }
+
+    /**
+     * Test that a 30 minute mission, with a step reading every second, runs to its end in mission
+     * time, and is only updated when a reading or a timer needs it, rather than at a fixed rate.
+     */
+    public void testThroughput() throws MissionParseException {
+        int numSeconds = 30 * Utils.MINUTES_TO_SECONDS_SCALE;
+        HeadlessMissionRunner runner = createRunner(LONG_TIMER_MISSION_XML);
+        for (int second = 1; second <= numSeconds; second++) {
+            runner.addSteps(second, FAST_STEPS_PER_SECOND);
+            runner.addSpeed(second, FAST_SPEED_METERS_PER_SECOND);
+        }
+
+        Assert.assertTrue(runner.run(60f));
+        Utils.logDebug(TAG, "Ran " + runner.getNumUpdates() + " updates.");
+        Assert.assertTrue(runner.getMissionNanos() >= Utils.secondsToNanos(numSeconds));
+        // The mission ends shortly after its timer does.
+        Assert.assertTrue(runner.getMissionNanos() <= Utils.secondsToNanos(numSeconds + 2));
+        Assert.assertTrue(runner.getNumUpdates() >= numSeconds);
+        Assert.assertTrue(runner.getNumUpdates() <= MAXIMUM_UPDATES_PER_SECOND * numSeconds);
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.Clock;
+import com.google.fpl.gim.examplegame.utils.ManualClock;
+import com.google.fpl.gim.examplegame.utils.Utils;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+
+/**
+ * Checks that the game loop does not allocate once a mission is running, so that it never makes
+ * work for the garbage collector. Allocations are counted by the JVM, so these tests only check
+ * anything on a JVM that can count them, such as HotSpot.
+ */
+public class MissionAllocationTest extends TestCase {
+
+    private static final long TICK_NANOS = Utils.secondsToNanos(1f);
+    // Compiling allocates on the ticking thread, and the JIT may still be compiling some of the
+    // paths the ticks take after a whole mission. An allocation made by the ticks themselves
+    // happens in every mission, so only the mission that allocated least is checked.
+    private static final int NUM_MEASURED_MISSIONS = 5;
+    private static final int NUM_WARM_UP_TICKS = 300;
+    private static final int NUM_MEASURED_TICKS = 3000;
+
+    private ManualClock mClock;
+    private Mission mMission;
+    private QuietHost mHost;
+    // Bytes allocated by the measured ticks in which no notification was posted and no interval
+    // was completed, in the mission that allocated least.
+    private long mSteadyTickBytes;
+    private int mNumSteadyTicks;
+
+    @Override
+    public void setUp() {
+        // A release build does not log.
+        Utils.setLogger(Utils.SILENT_LOGGER);
+    }
+
+    @Override
+    public void tearDown() {
+        Utils.setLogger(Utils.CONSOLE_LOGGER);
+    }
+
+    /**
+     * Test that a tick in which nothing changes, other than the clock and the speed samples,
+     * allocates nothing.
+     */
+    public void testSteadyTickDoesNotAllocate() {
+        if (!measureTicks(0)) {
+            return;
+        }
+        Assert.assertEquals("Steady ticks allocated.", 0, mSteadyTickBytes);
+        Assert.assertEquals(NUM_MEASURED_TICKS, mNumSteadyTicks);
+        Assert.assertEquals(NUM_WARM_UP_TICKS + NUM_MEASURED_TICKS, mHost.mNumStatsPublished);
+    }
+
+    /**
+     * Test that ticks do not allocate while the player runs at the challenge pace and the weapon
+     * charges, other than the ticks that post a notification or complete the interval.
+     */
+    public void testChargingTickDoesNotAllocate() {
+        // 20 steps every 10 seconds is about 8 minutes per mile, faster than the challenge pace.
+        if (!measureTicks(2)) {
+            return;
+        }
+        Assert.assertEquals("Steady ticks allocated.", 0, mSteadyTickBytes);
+        Assert.assertEquals(1, mMission.getNumIntervalsCompleted());
+        Assert.assertTrue(mHost.mNumFitnessNotifications > 100);
+        // Most ticks charge the weapon without changing what the notification shows.
+        Assert.assertTrue(mNumSteadyTicks > NUM_MEASURED_TICKS / 2);
+    }
+
+    /**
+     * Runs NUM_MEASURED_MISSIONS missions for NUM_WARM_UP_TICKS and then NUM_MEASURED_TICKS
+     * ticks a second apart. Sets mSteadyTickBytes and mNumSteadyTicks from the measured ticks of
+     * the mission whose steady ticks allocated least.
+     * @param stepsPerTick Steps reported before each tick.
+     * @return Whether the allocations could be counted.
+     */
+    private boolean measureTicks(int stepsPerTick) {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+        if (!allocationBean.isThreadAllocatedMemorySupported()) {
+            return false;
+        }
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        // Reading the counter may allocate a little itself.
+        long overheadStart = allocationBean.getThreadAllocatedBytes(threadId);
+        long overhead = allocationBean.getThreadAllocatedBytes(threadId) - overheadStart;
+
+        mSteadyTickBytes = Long.MAX_VALUE;
+        for (int i = 0; i < NUM_MEASURED_MISSIONS && mSteadyTickBytes > 0; i++) {
+            startMission();
+            for (int j = 0; j < NUM_WARM_UP_TICKS; j++) {
+                tick(stepsPerTick);
+            }
+
+            long steadyTickBytes = 0;
+            int numSteadyTicks = 0;
+            for (int j = 0; j < NUM_MEASURED_TICKS; j++) {
+                int numFitnessNotifications = mHost.mNumFitnessNotifications;
+                int numIntervalsCompleted = mMission.getNumIntervalsCompleted();
+                long start = allocationBean.getThreadAllocatedBytes(threadId);
+                tick(stepsPerTick);
+                long allocatedBytes = allocationBean.getThreadAllocatedBytes(threadId) - start
+                        - overhead;
+                if (numFitnessNotifications == mHost.mNumFitnessNotifications
+                        && numIntervalsCompleted == mMission.getNumIntervalsCompleted()) {
+                    steadyTickBytes += allocatedBytes;
+                    numSteadyTicks++;
+                }
+            }
+            if (steadyTickBytes < mSteadyTickBytes) {
+                mSteadyTickBytes = steadyTickBytes;
+                mNumSteadyTicks = numSteadyTicks;
+            }
+        }
+        return true;
+    }
+
+    private void startMission() {
+        mClock = new ManualClock(0);
+        mHost = new QuietHost(mClock);
+        TimerMomentData data = new TimerMomentData("timer", null, new ArrayList<String>(), 60f);
+        // The weapon takes 40 minutes to charge, so it charges while the ticks are measured.
+        mMission = new Mission(new MissionData("test", "test", 60f, 40f, 10f), mClock);
+        mMission.setHost(mHost);
+        mMission.setTemplate(new MissionTemplate(new String[] {"timer"},
+                new MomentData[] {data}, 0));
+        mMission.start();
+    }
+
+    private void tick(int stepsPerTick) {
+        if (stepsPerTick > 0) {
+            mMission.onStepTaken(stepsPerTick);
+        }
+        mClock.advanceNanos(TICK_NANOS);
+        mMission.update();
+    }
+
+    /**
+     * A host that only counts what the mission asks of it.
+     */
+    private static class QuietHost implements MissionHost {
+        private final Clock mClock;
+        int mNumStatsPublished = 0;
+        int mNumFitnessNotifications = 0;
+
+        QuietHost(Clock clock) {
+            mClock = clock;
+        }
+
+        @Override
+        public Clock getClock() {
+            return mClock;
+        }
+
+        @Override
+        public void requestUpdate() {
+        }
+
+        @Override
+        public void runOnGameThread(Runnable task) {
+            task.run();
+        }
+
+        @Override
+        public void queueSound(String uri, PlaybackListener listener) {
+        }
+
+        @Override
+        public void dequeueSound(String uri) {
+        }
+
+        @Override
+        public boolean obtainAudioFocus() {
+            return true;
+        }
+
+        @Override
+        public void endPlayback() {
+        }
+
+        @Override
+        public void speak(String utteranceId, String text, PlaybackListener listener) {
+        }
+
+        @Override
+        public void stopSpeaking() {
+        }
+
+        @Override
+        public void postChoiceNotification(Choice[] choices) {
+        }
+
+        @Override
+        public void cancelChoiceNotification() {
+        }
+
+        @Override
+        public void postFitnessNotification(int weaponChargedPercentage) {
+            mNumFitnessNotifications++;
+        }
+
+        @Override
+        public void cancelFitnessNotification() {
+        }
+
+        @Override
+        public void publishFitnessStats() {
+            mNumStatsPublished++;
+        }
+    }
+}
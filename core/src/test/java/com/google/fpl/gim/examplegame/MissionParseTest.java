@@ -16,15 +16,27 @@
 
 package com.google.fpl.gim.examplegame;
 
+import com.google.fpl.gim.examplegame.utils.CompiledMissionLoader;
+import com.google.fpl.gim.examplegame.utils.MissionCompiler;
 import com.google.fpl.gim.examplegame.utils.MissionParseException;
 import com.google.fpl.gim.examplegame.utils.MissionParser;
+import com.google.fpl.gim.examplegame.utils.MissionTemplateCache;
+import com.google.fpl.gim.examplegame.utils.MomentType;
+import com.google.fpl.gim.examplegame.utils.MomentTypeRegistry;
 import com.google.fpl.gim.examplegame.utils.Utils;
 
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
 /**
  * Tests the functionality of mission parsing from XML.
@@ -460,6 +472,30 @@ public class MissionParseTest extends TestCase {
         Assert.assertEquals(true, didMissionNameParseFail);
     }
 
+    /**
+     * Test that the mission header is read without reading the moments. The body of the mission
+     * is truncated, which would fail a full parse.
+     */
+    public void testMissionHeaderParsing() {
+        String xml = "<?xml version='1.0' encoding='utf-8'?>" +
+                "<mission start_id='start' name='Name' author='Author'>" +
+                "<moment type='timer' id='start'><length_minutes>";
+
+        InputStream missionInputStream = new ByteArrayInputStream(xml.getBytes());
+        MissionHeader header = null;
+        try {
+            header = MissionParser.parseMissionHeader(missionInputStream);
+        } catch (MissionParseException e) {
+            e.printStackTrace();
+        }
+
+        Assert.assertNotNull(header);
+        Assert.assertEquals("Name", header.getName());
+        Assert.assertEquals("start", header.getStartMomentId());
+        Assert.assertEquals("Author", header.getAttribute("author"));
+        Assert.assertEquals(null, header.getAttribute("missing"));
+    }
+
     /**
      * Test for correct parsing of fictional progress for a SpokenText moment.
      */
@@ -773,6 +809,575 @@ public class MissionParseTest extends TestCase {
         Assert.assertEquals(true, didMissionParseFail);
     }
 
+    /**
+     * Test for correct construction of a mission with a large number of moments.
+     */
+    public void testManyMomentConstruction() {
+        int numMoments = 5000;
+        StringBuilder xml = new StringBuilder();
+        xml.append(createStartMissionXml(           // <mission> [...]
+                "moment_0",                         // First moment in mission.
+                "Name"));                           // Mission name.
+
+        for (int i = 0; i < numMoments; i++) {
+            String nextMomentId = (i + 1 < numMoments) ? "moment_" + (i + 1) : null;
+            xml.append(createTimerMomentXml(        // <moment type="timer"> [...]
+                    "moment_" + i,                  // Moment id.
+                    nextMomentId,                   // Next moment id.
+                    0.5));                          // Length of timer moment (minutes).
+                                                    // </moment>
+        }
+
+        xml.append(createEndMissionXml());          // </mission>
+
+        InputStream momentInputStream =
+                new ByteArrayInputStream(xml.toString().getBytes());
+        mMission = new Mission(mMissionData);
+        try {
+            mMission.readMoments(momentInputStream);
+        } catch (MissionParseException e) {
+            e.printStackTrace();
+        }
+
+        Assert.assertEquals(numMoments, mMissionData.getNumMoments());
+        Assert.assertEquals("moment_0", mMissionData.getFirstMomentId());
+        Assert.assertEquals("moment_1", mMissionData.getMomentFromId("moment_0").getNextMomentId());
+        Assert.assertEquals(null,
+                mMissionData.getMomentFromId("moment_" + (numMoments - 1)).getNextMomentId());
+    }
+
+    /**
+     * Test that parsing links every next moment to the index of that moment.
+     */
+    public void testMomentLinking() {
+        String xml = "";
+        xml += createStartMissionXml(               // <mission> [...]
+                "start",                            // First moment in mission.
+                "Name");                            // Mission name.
+
+        xml += createTimerMomentXml(                // <moment type="timer"> [...]
+                "start",                            // Moment id.
+                "choice",                           // Next moment id.
+                0.5);                               // Length of timer moment (minutes).
+
+        xml += createStartChoiceMomentXml(          // <moment type="choice"> [...]
+                "choice",                           // Moment id.
+                0.5,                                // Length of choice timeout in minutes.
+                "Example ChoiceMoment Description", // Description of choice moment.
+                "choice_2");                        // Id of default choice.
+
+        xml += createChoiceXml(                     // <choice> [...]
+                "choice_1",                         // Choice id.
+                "Example Choice Description 1",     // Description of choice.
+                "start",                            // Next moment id.
+                false,                              // Whether the weapon charge should be depleted
+                false,                              // Whether the number of enemies defeated should
+                                                    //    be incremented.
+                "test_icon");                       // Icon resource name.
+
+        xml += createChoiceXml(                     // <choice> [...]
+                "choice_2",                         // Choice id.
+                "Example Choice Description 2",     // Description of choice.
+                null,                               // Next moment id.
+                false,                              // Whether the weapon charge should be depleted
+                false,                              // Whether the number of enemies defeated should
+                                                    //    be incremented.
+                "test_icon");                       // Icon resource name.
+
+        xml += createEndChoiceMomentXml();          // </moment>
+
+        xml += createEndMissionXml();               // </mission>
+
+        mMission = new Mission(mMissionData);
+        try {
+            mMission.readMoments(new ByteArrayInputStream(xml.getBytes()));
+        } catch (MissionParseException e) {
+            e.printStackTrace();
+        }
+
+        int startIndex = mMissionData.getFirstMomentIndex();
+        Moment start = mMissionData.getMoment(startIndex);
+        Assert.assertSame(mMissionData.getMomentFromId("start"), start);
+
+        ChoiceMoment choiceMoment =
+                (ChoiceMoment) mMissionData.getMoment(start.getNextMomentIndex());
+        Assert.assertSame(mMissionData.getMomentFromId("choice"), choiceMoment);
+        Assert.assertEquals(startIndex,
+                choiceMoment.getMomentData().getChoiceById("choice_1").getNextMomentIndex());
+        Assert.assertEquals(MissionTemplate.END_MOMENT_INDEX,
+                choiceMoment.getMomentData().getChoiceById("choice_2").getNextMomentIndex());
+        // No choice has been made yet.
+        Assert.assertEquals(MissionTemplate.END_MOMENT_INDEX, choiceMoment.getNextMomentIndex());
+    }
+
+    /**
+     * Test that a next moment that does not exist is rejected when the mission is loaded.
+     */
+    public void testMissingNextMomentErrorHandling() {
+        String xml = "";
+        xml += createStartMissionXml(               // <mission> [...]
+                "start",                            // First moment in mission.
+                "Name");                            // Mission name.
+
+        xml += createTimerMomentXml(                // <moment type="timer"> [...]
+                "start",                            // Moment id.
+                "missing",                          // Next moment id.
+                0.5);                               // Length of timer moment (minutes).
+
+        xml += createEndMissionXml();               // </mission>
+
+        mMission = new Mission(mMissionData);
+        try {
+            mMission.readMoments(new ByteArrayInputStream(xml.getBytes()));
+            Assert.fail("Loading a mission with a missing next moment should fail.");
+        } catch (MissionParseException e) {
+            Assert.assertEquals(
+                    "Moment \"missing\" referred to by \"start\" could not be found.",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Test that a start moment that does not exist is rejected when the mission is loaded.
+     */
+    public void testMissingStartMomentErrorHandling() {
+        String xml = "";
+        xml += createStartMissionXml(               // <mission> [...]
+                "missing",                          // First moment in mission.
+                "Name");                            // Mission name.
+
+        xml += createTimerMomentXml(                // <moment type="timer"> [...]
+                "start",                            // Moment id.
+                null,                               // Next moment id.
+                0.5);                               // Length of timer moment (minutes).
+
+        xml += createEndMissionXml();               // </mission>
+
+        mMission = new Mission(mMissionData);
+        try {
+            mMission.readMoments(new ByteArrayInputStream(xml.getBytes()));
+            Assert.fail("Loading a mission with a missing start moment should fail.");
+        } catch (MissionParseException e) {
+            Assert.assertEquals(
+                    "Moment \"missing\" referred to by \"mission start\" could not be found.",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Test that a compiled mission loads the same Moments as its XML.
+     */
+    public void testCompiledMissionRoundTrip() throws Exception {
+        String xml = "";
+        xml += createStartMissionXml(               // <mission> [...]
+                "start",                            // First moment in mission.
+                "Name");                            // Mission name.
+
+        xml += createTimerMomentWithFictionalProgressXML(
+                "start",                            // Moment id.
+                "sfx",                              // Next moment id.
+                2.5,                                // Length of timer moment (minutes).
+                "Timer progress");                  // Fictional progress.
+
+        xml += createSfxMomentXml(                  // <moment type="sfx"> [...]
+                "sfx",                              // Moment id.
+                "choice",                           // Next moment id.
+                "android.resource://test/raw/sound");  // Sound resource.
+
+        xml += createStartChoiceMomentWithFictionalProgressXML(
+                "choice",                           // Moment id.
+                0.5,                                // Length of choice timeout in minutes.
+                "Choice description",               // Description of choice moment.
+                "run",                              // Id of default choice.
+                "Choice progress");                 // Fictional progress.
+
+        xml += createChoiceWithFictionalProgressXML(
+                "fire",                             // Choice id.
+                "Fire",                             // Description of choice.
+                "spoken",                           // Next moment id.
+                true,                               // Whether the weapon charge should be depleted
+                true,                               // Whether the number of enemies defeated should
+                                                    //    be incremented.
+                "Fired",                            // Fictional progress.
+                "fire_icon");                       // Icon resource name.
+
+        xml += createChoiceXml(                     // <choice> [...]
+                "run",                              // Choice id.
+                "Run",                              // Description of choice.
+                null,                               // Next moment id.
+                false,                              // Whether the weapon charge should be depleted
+                false,                              // Whether the number of enemies defeated should
+                                                    //    be incremented.
+                "run_icon");                        // Icon resource name.
+
+        xml += createEndChoiceMomentXml();          // </moment>
+
+        xml += createSpokenTextMomentXml(           // <moment type="spoken_text"> [...]
+                "spoken",                           // Moment id.
+                null,                               // Next moment id.
+                "Caf\u00e9 text to speak");        // Text to speak.
+
+        xml += createEndMissionXml();               // </mission>
+
+        byte[] compiled = MissionCompiler.compileMission(
+                new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        mMission = new Mission(mMissionData);
+        mMission.setTemplate(CompiledMissionLoader.loadTemplate(ByteBuffer.wrap(compiled)));
+
+        Assert.assertEquals(4, mMissionData.getNumMoments());
+        Assert.assertEquals("start", mMissionData.getFirstMomentId());
+
+        TimerMoment timerMoment = (TimerMoment) mMissionData.getMomentFromId("start");
+        Assert.assertEquals(2.5f, timerMoment.getMomentData().getLengthMinutes());
+        Assert.assertEquals("sfx", timerMoment.getNextMomentId());
+        Assert.assertEquals("Timer progress", timerMoment.getFictionalProgress().get(0));
+
+        SfxMoment sfxMoment = (SfxMoment) mMissionData.getMomentFromId("sfx");
+        Assert.assertEquals("android.resource://test/raw/sound",
+                sfxMoment.getMomentData().getUriAsset().toString());
+        Assert.assertEquals("choice", sfxMoment.getMomentData().getNextMomentId());
+
+        ChoiceMomentData choiceData =
+                ((ChoiceMoment) mMissionData.getMomentFromId("choice")).getMomentData();
+        Assert.assertEquals("Choice description", choiceData.getText());
+        Assert.assertEquals("run", choiceData.getDefaultChoiceId());
+        Assert.assertEquals(0.5f, choiceData.getTimeoutLengthMinutes());
+        Assert.assertEquals(2, choiceData.getNumChoices());
+        Assert.assertEquals("Choice progress", choiceData.getFictionalProgress().get(0));
+
+        Choice fire = choiceData.getChoiceById("fire");
+        Assert.assertEquals("Fire", fire.getDescription());
+        Assert.assertEquals("spoken", fire.getNextMomentId());
+        Assert.assertEquals(true, fire.requiresChargedWeapon());
+        Assert.assertEquals(true, fire.getOutcome().weaponChargeDepleted());
+        Assert.assertEquals(true, fire.getOutcome().numEnemiesDefeatedIncremented());
+        Assert.assertEquals("Fired", fire.getFictionalProgress().get(0));
+        Assert.assertEquals("fire_icon", fire.getDrawableResourceName());
+
+        Choice run = choiceData.getChoiceById("run");
+        Assert.assertEquals(null, run.getNextMomentId());
+        Assert.assertEquals(false, run.requiresChargedWeapon());
+        Assert.assertEquals(false, run.getOutcome().weaponChargeDepleted());
+        Assert.assertEquals("run_icon", run.getDrawableResourceName());
+
+        SpokenTextMoment spokenTextMoment =
+                (SpokenTextMoment) mMissionData.getMomentFromId("spoken");
+        Assert.assertEquals("Caf\u00e9 text to speak",
+                spokenTextMoment.getMomentData().getTextToSpeak());
+        Assert.assertEquals(null, spokenTextMoment.getMomentData().getNextMomentId());
+        Assert.assertEquals(null, mMissionData.getMomentFromId("missing"));
+    }
+
+    /**
+     * Test that a mission whose next moment does not exist cannot be compiled.
+     */
+    public void testCompiledMissionMissingNextMomentErrorHandling() throws Exception {
+        String xml = "";
+        xml += createStartMissionXml(               // <mission> [...]
+                "start",                            // First moment in mission.
+                "Name");                            // Mission name.
+
+        xml += createTimerMomentXml(                // <moment type="timer"> [...]
+                "start",                            // Moment id.
+                "missing",                          // Next moment id.
+                0.5);                               // Length of timer moment (minutes).
+
+        xml += createEndMissionXml();               // </mission>
+
+        try {
+            MissionCompiler.compileMission(new ByteArrayInputStream(xml.getBytes()));
+            Assert.fail("Compiling a mission with a missing next moment should fail.");
+        } catch (MissionParseException e) {
+            Assert.assertEquals(
+                    "Moment \"missing\" referred to by \"start\" could not be found.",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Test that truncated compiled missions are rejected.
+     */
+    public void testCompiledMissionTruncatedErrorHandling() throws Exception {
+        String xml = "";
+        xml += createStartMissionXml("start", "Name");
+        xml += createTimerMomentXml("start", null, 0.5);
+        xml += createEndMissionXml();
+
+        byte[] compiled = MissionCompiler.compileMission(
+                new ByteArrayInputStream(xml.getBytes()));
+        mMission = new Mission(mMissionData);
+        try {
+            mMission.setTemplate(CompiledMissionLoader.loadTemplate(
+                    ByteBuffer.wrap(compiled, 0, compiled.length - 4).slice()));
+            Assert.fail("Loading a truncated compiled mission should fail.");
+        } catch (MissionParseException e) {
+            Assert.assertEquals("Compiled mission is truncated or corrupt.", e.getMessage());
+        }
+        Assert.assertEquals(0, mMissionData.getNumMoments());
+    }
+
+    /**
+     * Test that the pace window of a mission is read from its mission element, kept by the
+     * compiled form, and defaults when it is not given.
+     */
+    public void testPaceWindowParsing() throws Exception {
+        String moments = createTimerMomentXml("start", null, 0.5) + createEndMissionXml();
+        String xml = "<mission start_id='start' name='Name' pace_window_seconds='30'>" + moments;
+
+        MissionTemplate template =
+                MissionParser.parseMissionTemplate(new ByteArrayInputStream(xml.getBytes()));
+        Assert.assertEquals(30f, template.getPaceWindowSeconds());
+        byte[] compiled = MissionCompiler.compileMission(new ByteArrayInputStream(xml.getBytes()));
+        Assert.assertEquals(30f, CompiledMissionLoader.loadTemplate(ByteBuffer.wrap(compiled))
+                .getPaceWindowSeconds());
+
+        xml = createStartMissionXml("start", "Name") + moments;
+        template = MissionParser.parseMissionTemplate(new ByteArrayInputStream(xml.getBytes()));
+        Assert.assertEquals(MissionTemplate.DEFAULT_PACE_WINDOW_SECONDS,
+                template.getPaceWindowSeconds());
+
+        xml = "<mission start_id='start' name='Name' pace_window_seconds='0'>" + moments;
+        try {
+            MissionParser.parseMissionTemplate(new ByteArrayInputStream(xml.getBytes()));
+            Assert.fail("Loading a mission with a pace window of zero should fail.");
+        } catch (MissionParseException e) {
+            Assert.assertEquals("pace_window_seconds \"0\" must be greater than zero.",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Test that the challenge pace hysteresis and dwell time of a mission are read from its
+     * mission element, kept by the compiled form, and given to each run of the mission.
+     */
+    public void testChallengePaceSettingsParsing() throws Exception {
+        String moments = createTimerMomentXml("start", null, 0.5) + createEndMissionXml();
+        String xml = "<mission start_id='start' name='Name' challenge_pace_hysteresis='0.5'"
+                + " challenge_pace_dwell_seconds='0'>" + moments;
+
+        MissionTemplate template =
+                MissionParser.parseMissionTemplate(new ByteArrayInputStream(xml.getBytes()));
+        Assert.assertEquals(0.5f, template.getChallengePaceHysteresisMinutesPerMile());
+        Assert.assertEquals(0f, template.getChallengePaceDwellSeconds());
+        byte[] compiled = MissionCompiler.compileMission(new ByteArrayInputStream(xml.getBytes()));
+        MissionTemplate compiledTemplate =
+                CompiledMissionLoader.loadTemplate(ByteBuffer.wrap(compiled));
+        Assert.assertEquals(0.5f, compiledTemplate.getChallengePaceHysteresisMinutesPerMile());
+        Assert.assertEquals(0f, compiledTemplate.getChallengePaceDwellSeconds());
+        mMission = new Mission(mMissionData);
+        mMission.setTemplate(template);
+        Assert.assertEquals(0.5f, mMissionData.getChallengePaceHysteresisMinutesPerMile());
+        Assert.assertEquals(0f, mMissionData.getChallengePaceDwellSeconds());
+
+        xml = createStartMissionXml("start", "Name") + moments;
+        template = MissionParser.parseMissionTemplate(new ByteArrayInputStream(xml.getBytes()));
+        Assert.assertEquals(MissionTemplate.DEFAULT_CHALLENGE_PACE_HYSTERESIS_MINUTES_PER_MILE,
+                template.getChallengePaceHysteresisMinutesPerMile());
+        Assert.assertEquals(MissionTemplate.DEFAULT_CHALLENGE_PACE_DWELL_SECONDS,
+                template.getChallengePaceDwellSeconds());
+
+        xml = "<mission start_id='start' name='Name' challenge_pace_dwell_seconds='-1'>"
+                + moments;
+        try {
+            MissionParser.parseMissionTemplate(new ByteArrayInputStream(xml.getBytes()));
+            Assert.fail("Loading a mission with a negative dwell time should fail.");
+        } catch (MissionParseException e) {
+            Assert.assertEquals("challenge_pace_dwell_seconds \"-1\" must not be negative.",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Test that runs of a mission share its template, but not the state of its Moments.
+     */
+    public void testTemplateSharedBetweenRuns() throws Exception {
+        String xml = "";
+        xml += createStartMissionXml("start", "Name");
+        xml += createTimerMomentXml("start", "end", 0.5);
+        xml += createTimerMomentXml("end", null, 1.0);
+        xml += createEndMissionXml();
+
+        MissionTemplate template =
+                MissionParser.parseMissionTemplate(new ByteArrayInputStream(xml.getBytes()));
+
+        mMission = new Mission(mMissionData);
+        mMission.setTemplate(template);
+        MissionData replayData = new MissionData("replay", "replay", 1f, 1f, 1f);
+        Mission replay = new Mission(replayData);
+        replay.setTemplate(template);
+
+        Assert.assertSame(template, mMissionData.getTemplate());
+        Assert.assertSame(template, replayData.getTemplate());
+        Assert.assertNotSame(mMissionData.getMoment(0), replayData.getMoment(0));
+        Assert.assertSame(mMissionData.getMoment(0).getMomentData(),
+                replayData.getMoment(0).getMomentData());
+
+        mMissionData.setCurrentMomentIndex(template.getMomentIndex("end"));
+        Assert.assertEquals("end", mMissionData.getCurrentMomentId());
+        Assert.assertEquals(MissionTemplate.END_MOMENT_INDEX, replayData.getCurrentMomentIndex());
+    }
+
+    /**
+     * Test that the template cache evicts the least recently used mission.
+     */
+    public void testTemplateCacheEviction() throws Exception {
+        String xml = "";
+        xml += createStartMissionXml("start", "Name");
+        xml += createTimerMomentXml("start", null, 0.5);
+        xml += createEndMissionXml();
+
+        MissionTemplateCache cache = new MissionTemplateCache(2);
+        MissionTemplate first =
+                MissionParser.parseMissionTemplate(new ByteArrayInputStream(xml.getBytes()));
+        MissionTemplate second =
+                MissionParser.parseMissionTemplate(new ByteArrayInputStream(xml.getBytes()));
+        MissionTemplate third =
+                MissionParser.parseMissionTemplate(new ByteArrayInputStream(xml.getBytes()));
+
+        cache.put("first", first);
+        cache.put("second", second);
+        // Using the first mission makes the second the least recently used.
+        Assert.assertSame(first, cache.get("first"));
+        cache.put("third", third);
+
+        Assert.assertEquals(2, cache.size());
+        Assert.assertSame(first, cache.get("first"));
+        Assert.assertNull(cache.get("second"));
+        Assert.assertSame(third, cache.get("third"));
+    }
+
+    /**
+     * Test that a new type of Moment can be registered and parsed without changing the parser.
+     */
+    public void testCustomMomentTypeRegistration() throws Exception {
+        MomentTypeRegistry registry = new MomentTypeRegistry();
+        registry.register(new MomentType("pause") {
+            @Override
+            public MomentData parseData(String momentId, XmlPullParser parser)
+                    throws MissionParseException, XmlPullParserException, IOException {
+                String nextMomentId = null;
+                int depth = parser.getDepth();
+                while (MissionParser.nextChildElement(parser, depth)) {
+                    if (parser.getName().equals("next_moment")) {
+                        nextMomentId = MissionParser.parseNextMomentElement(parser);
+                    } else {
+                        MissionParser.skipElement(parser);
+                    }
+                }
+                return new TimerMomentData(momentId, nextMomentId, new ArrayList<String>(), 0.25f);
+            }
+        });
+        try {
+            registry.register(new MomentType("pause") {
+                @Override
+                public MomentData parseData(String momentId, XmlPullParser parser) {
+                    return null;
+                }
+            });
+            Assert.fail("Registering a type twice should fail.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+
+        String xml = "";
+        xml += createStartMissionXml("start", "Name");
+        xml += createStartMomentXml("pause", "start");
+        xml += createNextMomentXml("end");
+        xml += createEndMomentXml();
+        xml += createStartMomentXml("pause", "end");
+        xml += createEndMomentXml();
+        xml += createEndMissionXml();
+
+        MissionTemplate template = MissionParser.parseMissionTemplate(
+                new ByteArrayInputStream(xml.getBytes()), registry);
+        Assert.assertEquals(2, template.getNumMoments());
+        TimerMomentData data = (TimerMomentData) template.getMomentData(
+                template.getFirstMomentIndex());
+        Assert.assertEquals(0.25f, data.getLengthMinutes());
+        Assert.assertEquals(template.getMomentIndex("end"), data.getNextMomentIndex());
+        Assert.assertEquals(2, registry.getParseCount("pause"));
+
+        // Types that are not registered are rejected, even when they are built in.
+        xml = "";
+        xml += createStartMissionXml("start", "Name");
+        xml += createTimerMomentXml("start", null, 0.5);
+        xml += createEndMissionXml();
+        try {
+            MissionParser.parseMissionTemplate(new ByteArrayInputStream(xml.getBytes()), registry);
+            Assert.fail("Parsing an unregistered moment type should fail.");
+        } catch (MissionParseException e) {
+            Assert.assertEquals("Moment type invalid.", e.getMessage());
+        }
+    }
+
+    /**
+     * Test that the default registry counts the Moments parsed of each type.
+     */
+    public void testMomentTypeParseTimings() throws Exception {
+        MomentTypeRegistry registry = MomentTypeRegistry.getDefault();
+        registry.resetTimings();
+
+        MissionParser.parseMissionTemplate(new ByteArrayInputStream(createSyntheticMissionXml(20)));
+
+        Assert.assertEquals(18, registry.getParseCount("timer"));
+        Assert.assertEquals(2, registry.getParseCount("choice"));
+        Assert.assertEquals(0, registry.getParseCount("sfx"));
+        Assert.assertEquals(0, registry.getParseTimeNanos("sfx"));
+        Assert.assertTrue(registry.getParseTimeNanos("timer") > 0);
+        registry.logTimings();
+    }
+
+    /**
+     * Test that a mission of 100000 moments is read with one parse of each moment, and linked
+     * from end to end. How long it takes is measured by MissionParserBenchmark rather than here,
+     * where a busy machine would make a timing flaky.
+     */
+    public void testLargeMissionParsesEachMomentOnce() throws Exception {
+        int numMoments = 100000;
+        MomentTypeRegistry registry = MomentTypeRegistry.getDefault();
+        registry.resetTimings();
+
+        MissionTemplate template = MissionParser.parseMissionTemplate(
+                new ByteArrayInputStream(createSyntheticMissionXml(numMoments)));
+
+        Assert.assertEquals(numMoments, template.getNumMoments());
+        Assert.assertEquals(numMoments * 9 / 10, registry.getParseCount("timer"));
+        Assert.assertEquals(numMoments / 10, registry.getParseCount("choice"));
+        int lastMomentIndex = template.getMomentIndex("moment_" + (numMoments - 1));
+        Assert.assertEquals(MissionTemplate.END_MOMENT_INDEX,
+                template.getMomentData(lastMomentIndex).getNextMomentIndex());
+    }
+
+    /**
+     * A helper function to create a mission with a chain of moments, where every tenth moment is
+     * a choice moment whose choices both lead to the following moment.
+     * @param numMoments The number of moments in the mission.
+     * @return The mission XML as UTF-8 bytes.
+     */
+    private byte[] createSyntheticMissionXml(int numMoments) throws IOException {
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        xml.write(createStartMissionXml("moment_0", "Name").getBytes("UTF-8"));
+        for (int i = 0; i < numMoments; i++) {
+            String momentId = "moment_" + i;
+            String nextMomentId = (i + 1 < numMoments) ? "moment_" + (i + 1) : null;
+            String momentXml;
+            if (i % 10 == 9) {
+                momentXml = createStartChoiceMomentWithFictionalProgressXML(momentId, 0.5,
+                        "Description", "choice_2", "Progress");
+                momentXml += createChoiceWithFictionalProgressXML("choice_1", "Choice 1",
+                        nextMomentId, false, true, "Choice progress", "test_icon");
+                momentXml += createChoiceXml("choice_2", "Choice 2", nextMomentId, false, false,
+                        "test_icon");
+                momentXml += createEndChoiceMomentXml();
+            } else {
+                momentXml = createTimerMomentXml(momentId, nextMomentId, 0.5);
+            }
+            xml.write(momentXml.getBytes("UTF-8"));
+        }
+        xml.write(createEndMissionXml().getBytes("UTF-8"));
+        return xml.toByteArray();
+    }
+
     /**
      * A helper function to create an XML string representing the start of a mission.
      * @param startMomentId The id of the first moment in the mission.
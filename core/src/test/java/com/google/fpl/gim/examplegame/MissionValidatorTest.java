@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.MissionValidationReport;
+import com.google.fpl.gim.examplegame.utils.MissionValidator;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+/**
+ * Tests for the MissionValidator, which reports every problem in a mission at once.
+ */
+public class MissionValidatorTest extends TestCase {
+
+    private MissionValidationReport validate(String xml) {
+        return MissionValidator.validate(new ByteArrayInputStream(xml.getBytes()));
+    }
+
+    private String createTimerMomentXml(String momentId, String nextMomentId,
+            String lengthMinutes) {
+        String xml = "<moment type=\"timer\" id=\"" + momentId + "\">";
+        if (nextMomentId != null) {
+            xml += "<next_moment id=\"" + nextMomentId + "\" />";
+        }
+        xml += "<length_minutes>" + lengthMinutes + "</length_minutes>";
+        return xml + "</moment>";
+    }
+
+    private String createChoiceMomentXml(String momentId, String firstNextMomentId,
+            String secondNextMomentId, boolean withIcons) {
+        String icon = withIcons ? "<icon name=\"run_icon\" />" : "";
+        return "<moment type=\"choice\" id=\"" + momentId + "\">"
+                + "<description>Description</description>"
+                + "<timeout_length_minutes>0.5</timeout_length_minutes>"
+                + "<default_choice id=\"first\" />"
+                + "<choice id=\"first\"><description>First</description>"
+                + "<next_moment id=\"" + firstNextMomentId + "\" />"
+                + "<outcome deplete_weapon=\"false\" increment_enemies=\"false\" />"
+                + icon + "</choice>"
+                + "<choice id=\"second\"><description>Second</description>"
+                + "<next_moment id=\"" + secondNextMomentId + "\" />"
+                + "<outcome deplete_weapon=\"false\" increment_enemies=\"false\" />"
+                + icon + "</choice>"
+                + "</moment>";
+    }
+
+    /**
+     * Test that a correct mission has no problems.
+     */
+    public void testValidMission() {
+        String xml = "<mission start_id=\"start\" name=\"Name\">"
+                + createTimerMomentXml("start", "choice", "1")
+                + createChoiceMomentXml("choice", "end", "start", true)
+                + createTimerMomentXml("end", null, "0.5")
+                + "</mission>";
+
+        MissionValidationReport report = validate(xml);
+        Assert.assertTrue(report.isValid());
+        Assert.assertEquals(0, report.getProblems().size());
+    }
+
+    /**
+     * Test that every problem is reported, rather than only the first.
+     */
+    public void testAllErrorsReported() {
+        String xml = "<mission start_id=\"start\" name=\"Name\">"
+                + createTimerMomentXml("start", "bad_type", "1")
+                + "<moment type=\"dance\" id=\"bad_type\"></moment>"
+                + createTimerMomentXml("bad_length", "missing", "-2")
+                + createTimerMomentXml("not_a_number", null, "soon")
+                + createChoiceMomentXml("no_icons", "start", "start", false)
+                + createChoiceMomentXml("unknown_target", "nowhere", "start", true)
+                + "</mission>";
+
+        MissionValidationReport report = validate(xml);
+        Assert.assertFalse(report.isValid());
+        List<MissionValidationReport.Problem> problems = report.getProblems();
+        Assert.assertEquals(6, report.getNumProblems(MissionValidationReport.Severity.ERROR));
+
+        Assert.assertEquals("bad_type", problems.get(0).getMomentId());
+        Assert.assertEquals("Moment type \"dance\" invalid.", problems.get(0).getMessage());
+        Assert.assertEquals("bad_length", problems.get(1).getMomentId());
+        Assert.assertEquals("not_a_number", problems.get(2).getMomentId());
+        Assert.assertEquals("length_minutes \"soon\" is not a number.",
+                problems.get(2).getMessage());
+        Assert.assertEquals("no_icons", problems.get(3).getMomentId());
+        Assert.assertEquals("icon could not be found.", problems.get(3).getMessage());
+        // References are checked once every moment is read.
+        Assert.assertEquals("Moment \"missing\" referred to by \"bad_length\" could not be found.",
+                problems.get(4).getMessage());
+        Assert.assertEquals(
+                "Moment \"nowhere\" referred to by \"unknown_target\" could not be found.",
+                problems.get(5).getMessage());
+    }
+
+    /**
+     * Test that moments that cannot be reached, and loops that cannot be left, are reported.
+     */
+    public void testGraphProblems() {
+        String xml = "<mission start_id=\"start\" name=\"Name\">"
+                + createTimerMomentXml("start", "loop_1", "1")
+                + createTimerMomentXml("loop_1", "loop_2", "1")
+                + createTimerMomentXml("loop_2", "loop_1", "1")
+                + createTimerMomentXml("orphan", null, "1")
+                + "</mission>";
+
+        MissionValidationReport report = validate(xml);
+        // Such missions can still be loaded.
+        Assert.assertTrue(report.isValid());
+        List<MissionValidationReport.Problem> problems = report.getProblems();
+        Assert.assertEquals(4, problems.size());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(MissionValidationReport.Severity.WARNING,
+                    problems.get(i).getSeverity());
+            Assert.assertEquals("The end of the mission can never be reached from this moment.",
+                    problems.get(i).getMessage());
+        }
+        Assert.assertEquals("orphan", problems.get(3).getMomentId());
+        Assert.assertEquals("Moment can never be reached from the start of the mission.",
+                problems.get(3).getMessage());
+    }
+
+    /**
+     * Test that a missing start moment is reported.
+     */
+    public void testMissingStartMoment() {
+        String xml = "<mission start_id=\"missing\" name=\"Name\">"
+                + createTimerMomentXml("start", null, "1")
+                + "</mission>";
+
+        MissionValidationReport report = validate(xml);
+        Assert.assertFalse(report.isValid());
+        Assert.assertEquals(
+                "Moment \"missing\" referred to by \"mission start\" could not be found.",
+                report.getProblems().get(0).getMessage());
+        Assert.assertNull(report.getProblems().get(0).getMomentId());
+    }
+
+    /**
+     * Test that a negative challenge pace hysteresis or dwell time is reported.
+     */
+    public void testNegativeChallengePaceSettings() {
+        String xml = "<mission start_id=\"start\" name=\"Name\""
+                + " challenge_pace_hysteresis=\"-1\" challenge_pace_dwell_seconds=\"-5\">"
+                + createTimerMomentXml("start", null, "1")
+                + "</mission>";
+
+        MissionValidationReport report = validate(xml);
+        Assert.assertFalse(report.isValid());
+        List<MissionValidationReport.Problem> problems = report.getProblems();
+        Assert.assertEquals(2, problems.size());
+        Assert.assertEquals("challenge_pace_hysteresis \"-1\" must not be negative.",
+                problems.get(0).getMessage());
+        Assert.assertEquals("challenge_pace_dwell_seconds \"-5\" must not be negative.",
+                problems.get(1).getMessage());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.TimerWheel;
+import com.google.fpl.gim.examplegame.utils.Utils;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+
+/**
+ * Tests for the deadlines that Moments schedule on the mission's timer wheel.
+ */
+public class MomentDeadlineTest extends TestCase {
+
+    private Mission mMission;
+    private TimerMomentData mTimerData;
+
+    @Override
+    public void setUp() {
+        mMission = new Mission(new MissionData("test", "test", 1f, 1f, 1f));
+        mTimerData = new TimerMomentData("timer", null, new ArrayList<String>(), 3f);
+    }
+
+    /**
+     * Test that a TimerMoment finishes when the wheel reaches its length.
+     */
+    public void testTimerMomentDeadline() {
+        TimerWheel wheel = mMission.getTimerWheel();
+        TimerMoment moment = new TimerMoment(mMission, mTimerData);
+        long startNanos = System.nanoTime();
+        moment.start(startNanos);
+
+        long deadlineNanos = wheel.getNextDeadlineNanos();
+        Assert.assertTrue(deadlineNanos >= startNanos + Utils.minutesToNanos(3f));
+        Assert.assertTrue(deadlineNanos < startNanos + Utils.minutesToNanos(3f)
+                + TimerWheel.TICK_NANOS);
+
+        wheel.advance(deadlineNanos - TimerWheel.TICK_NANOS);
+        Assert.assertFalse(moment.isDone());
+        wheel.advance(deadlineNanos);
+        Assert.assertTrue(moment.isDone());
+        Assert.assertEquals(0, wheel.getNumTimers());
+    }
+
+    /**
+     * Test that a delayed restart is scheduled on the wheel, and that the Moment restarts when it
+     * is reached, or never once its timers are cancelled.
+     */
+    public void testRestartDeadline() {
+        final int[] numStarts = {0};
+        Moment moment = new Moment(mMission) {
+            @Override
+            public void start(long nowNanos) {
+                super.start(nowNanos);
+                numStarts[0]++;
+            }
+
+            @Override
+            public void restart(long nowNanos) {
+                start(nowNanos);
+            }
+
+            @Override
+            public void end() {
+            }
+
+            @Override
+            public String getNextMomentId() {
+                return null;
+            }
+
+            @Override
+            public int getNextMomentIndex() {
+                return MissionTemplate.END_MOMENT_INDEX;
+            }
+
+            @Override
+            public MomentData getMomentData() {
+                return mTimerData;
+            }
+
+            @Override
+            public ArrayList<String> getFictionalProgress() {
+                return new ArrayList<>();
+            }
+        };
+        TimerWheel wheel = mMission.getTimerWheel();
+        long startNanos = System.nanoTime();
+
+        moment.start(startNanos);
+        Assert.assertEquals(TimerWheel.NO_DEADLINE, wheel.getNextDeadlineNanos());
+
+        moment.restartWithDelay(startNanos, 2.5f);
+        long deadlineNanos = wheel.getNextDeadlineNanos();
+        Assert.assertTrue(deadlineNanos >= startNanos + Utils.secondsToNanos(2.5f));
+
+        wheel.advance(deadlineNanos - TimerWheel.TICK_NANOS);
+        Assert.assertEquals(1, numStarts[0]);
+        wheel.advance(deadlineNanos);
+        Assert.assertEquals(2, numStarts[0]);
+        Assert.assertEquals(TimerWheel.NO_DEADLINE, wheel.getNextDeadlineNanos());
+
+        moment.restartWithDelay(deadlineNanos, 1f);
+        moment.cancelTimers();
+        wheel.advance(deadlineNanos + Utils.secondsToNanos(2f));
+        Assert.assertEquals(2, numStarts[0]);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.PaceEstimator;
+import com.google.fpl.gim.examplegame.utils.TimerWheel;
+import com.google.fpl.gim.examplegame.utils.Utils;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the sliding window PaceEstimator.
+ */
+public class PaceEstimatorTest extends TestCase {
+
+    private static final long SECOND_NANOS = Utils.secondsToNanos(1f);
+    private static final long WINDOW_NANOS = 10 * SECOND_NANOS;
+
+    private PaceEstimator mEstimator;
+
+    @Override
+    public void setUp() {
+        mEstimator = new PaceEstimator(16, WINDOW_NANOS);
+        mEstimator.reset(0);
+    }
+
+    /**
+     * Test that the cadence is averaged over the time since the start until a whole window has
+     * passed, and over the window after that.
+     */
+    public void testCadence() {
+        Assert.assertEquals(0f, mEstimator.getStepsPerMinute(0));
+        for (int second = 1; second <= 30; second++) {
+            mEstimator.addSteps(second * SECOND_NANOS, 2);
+            Assert.assertEquals(120f, mEstimator.getStepsPerMinute(second * SECOND_NANOS), 0.01f);
+        }
+        Assert.assertEquals(20, mEstimator.getStepsInWindow(30 * SECOND_NANOS));
+    }
+
+    /**
+     * Test that the estimate moves with each reading, rather than once a window.
+     */
+    public void testSlidesWithEachReading() {
+        for (int second = 1; second <= 10; second++) {
+            mEstimator.addSteps(second * SECOND_NANOS, 2);
+        }
+        mEstimator.addSteps(11 * SECOND_NANOS, 4);
+        Assert.assertEquals(22, mEstimator.getStepsInWindow(11 * SECOND_NANOS));
+        mEstimator.addSteps(12 * SECOND_NANOS, 4);
+        Assert.assertEquals(24, mEstimator.getStepsInWindow(12 * SECOND_NANOS));
+    }
+
+    /**
+     * Test that readings leave the window when they are older than it, and that the next expiry
+     * is when the oldest reading leaves.
+     */
+    public void testExpiry() {
+        mEstimator.addSteps(SECOND_NANOS, 5);
+        mEstimator.addSteps(3 * SECOND_NANOS, 7);
+        Assert.assertEquals(11 * SECOND_NANOS, mEstimator.getNextExpiryNanos());
+        Assert.assertEquals(12, mEstimator.getStepsInWindow(11 * SECOND_NANOS - 1));
+        Assert.assertEquals(7, mEstimator.getStepsInWindow(11 * SECOND_NANOS));
+        Assert.assertEquals(0, mEstimator.getStepsInWindow(13 * SECOND_NANOS));
+        Assert.assertEquals(TimerWheel.NO_DEADLINE, mEstimator.getNextExpiryNanos());
+        Assert.assertEquals(0f, mEstimator.getStepsPerMinute(13 * SECOND_NANOS));
+    }
+
+    /**
+     * Test that the oldest readings are dropped early when more arrive within a window than the
+     * estimator holds.
+     */
+    public void testCapacity() {
+        for (int i = 1; i <= 20; i++) {
+            mEstimator.addSteps(i * SECOND_NANOS / 10, 1);
+        }
+        Assert.assertEquals(16, mEstimator.getStepsInWindow(2 * SECOND_NANOS));
+    }
+
+    /**
+     * Test that the window can be changed, and must be positive.
+     */
+    public void testWindow() {
+        mEstimator.setWindowNanos(2 * SECOND_NANOS);
+        mEstimator.addSteps(SECOND_NANOS, 1);
+        mEstimator.addSteps(2 * SECOND_NANOS, 1);
+        mEstimator.addSteps(3 * SECOND_NANOS, 1);
+        Assert.assertEquals(2, mEstimator.getStepsInWindow(3 * SECOND_NANOS));
+
+        try {
+            mEstimator.setWindowNanos(0);
+            Assert.fail("Expected IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.RunRecorder;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the RunRecorder, which keeps the metrics of each second of a run.
+ */
+public class RunRecorderTest extends TestCase {
+
+    private static final int TWO_HOURS_SECONDS = 2 * 60 * 60;
+
+    private RunRecorder mRecorder;
+
+    @Override
+    public void setUp() {
+        mRecorder = new RunRecorder(TWO_HOURS_SECONDS);
+    }
+
+    /**
+     * Records a run: steps at 3 a second, a pace and speed that change every minute, the weapon
+     * charging, and the Moment changing every ten minutes.
+     */
+    private void recordRun(int numSeconds) {
+        int numSteps = 0;
+        for (int second = 0; second < numSeconds; second++) {
+            numSteps += 3;
+            float speed = 3f + (second / 60) % 5 * 0.25f;
+            mRecorder.record(numSteps, 26.8224f / speed, speed, second % 101, second / 600,
+                    speed > 3.3f);
+        }
+    }
+
+    /**
+     * Test that each metric reads back as it was recorded, at its precision.
+     */
+    public void testRoundTrip() {
+        recordRun(1000);
+        Assert.assertEquals(1000, mRecorder.getNumSeconds());
+        for (int second = 0; second < 1000; second += 7) {
+            float speed = 3f + (second / 60) % 5 * 0.25f;
+            Assert.assertEquals(3f * (second + 1), mRecorder.get(RunRecorder.METRIC_STEPS, second));
+            Assert.assertEquals(speed,
+                    mRecorder.get(RunRecorder.METRIC_SPEED_METERS_PER_SECOND, second), 0.005f);
+            Assert.assertEquals(26.8224f / speed,
+                    mRecorder.get(RunRecorder.METRIC_MINUTES_PER_MILE, second), 0.005f);
+            Assert.assertEquals((float) (second % 101),
+                    mRecorder.get(RunRecorder.METRIC_WEAPON_CHARGED_PERCENTAGE, second));
+            Assert.assertEquals((float) (second / 600),
+                    mRecorder.get(RunRecorder.METRIC_MOMENT_INDEX, second));
+            Assert.assertEquals(speed > 3.3f ? 1f : 0f,
+                    mRecorder.get(RunRecorder.METRIC_AT_CHALLENGE_PACE, second));
+        }
+    }
+
+    /**
+     * Test that a range that does not start at a checkpoint reads the right values, and that a
+     * range outside the run is refused.
+     */
+    public void testRangeQuery() {
+        recordRun(300);
+        float[] values = new float[100];
+        mRecorder.read(RunRecorder.METRIC_STEPS, 150, 250, values);
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(3f * (151 + i), values[i]);
+        }
+        mRecorder.read(RunRecorder.METRIC_STEPS, 300, 300, values);
+        try {
+            mRecorder.read(RunRecorder.METRIC_STEPS, 250, 301, values);
+            Assert.fail("Read past the end of the run.");
+        } catch (IndexOutOfBoundsException e) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Test that a downsampled read averages equal parts of the range.
+     */
+    public void testDownsampledRead() {
+        recordRun(600);
+        float[] points = new float[10];
+        Assert.assertEquals(10, mRecorder.readDownsampled(
+                RunRecorder.METRIC_SPEED_METERS_PER_SECOND, 0, 600, points));
+        for (int point = 0; point < points.length; point++) {
+            Assert.assertEquals(3f + point % 5 * 0.25f, points[point], 0.005f);
+        }
+        Assert.assertEquals(0.6f,
+                mRecorder.getAverage(RunRecorder.METRIC_AT_CHALLENGE_PACE, 0, 600), 0.001f);
+        // More points than seconds.
+        Assert.assertEquals(3, mRecorder.readDownsampled(RunRecorder.METRIC_STEPS, 0, 3, points));
+    }
+
+    /**
+     * Test that a two hour run takes a few tens of kilobytes, and that clearing the recorder
+     * forgets it.
+     */
+    public void testEncodedSize() {
+        recordRun(TWO_HOURS_SECONDS);
+        int numBytes = mRecorder.getEncodedSizeBytes();
+        Assert.assertTrue("A two hour run took " + numBytes + " bytes.", numBytes < 64 * 1024);
+        // Less than half of an int for each metric of each second.
+        Assert.assertTrue(numBytes < 4 * TWO_HOURS_SECONDS * RunRecorder.NUM_METRICS / 2);
+
+        mRecorder.clear();
+        Assert.assertEquals(0, mRecorder.getNumSeconds());
+        recordRun(10);
+        Assert.assertEquals(30f, mRecorder.get(RunRecorder.METRIC_STEPS, 9));
+    }
+}
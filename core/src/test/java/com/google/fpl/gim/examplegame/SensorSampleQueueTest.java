@@ -0,0 +1,132 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.SensorSampleQueue;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the queue that passes sensor readings to the game thread.
+ */
+public class SensorSampleQueueTest extends TestCase {
+
+    private static final int NUM_THREADED_SAMPLES = 10000;
+
+    // Checks that the readings arrive in order, and adds up the steps.
+    private static class CheckingConsumer implements SensorSampleQueue.Consumer {
+        long mLastTimestampNanos = -1;
+        long mTotalSteps = 0;
+        int mNumSpeedSamples = 0;
+
+        @Override
+        public void onSample(int type, long timestampNanos, long durationNanos, float value) {
+            Assert.assertTrue(timestampNanos > mLastTimestampNanos);
+            mLastTimestampNanos = timestampNanos;
+            if (type == SensorSampleQueue.TYPE_STEPS) {
+                mTotalSteps += (long) value;
+            } else {
+                Assert.assertEquals(SensorSampleQueue.TYPE_SPEED, type);
+                mNumSpeedSamples++;
+            }
+        }
+    }
+
+    /**
+     * Test that readings are drained in the order they were offered, with their latency.
+     */
+    public void testDrainInOrder() {
+        SensorSampleQueue queue = new SensorSampleQueue(8);
+        queue.offer(SensorSampleQueue.TYPE_STEPS, 10, 2f);
+        queue.offer(SensorSampleQueue.TYPE_SPEED, 20, 3.5f);
+        queue.offer(SensorSampleQueue.TYPE_STEPS, 30, 3f);
+        Assert.assertEquals(3, queue.size());
+
+        CheckingConsumer consumer = new CheckingConsumer();
+        Assert.assertEquals(3, queue.drain(consumer, 40));
+        Assert.assertEquals(5, consumer.mTotalSteps);
+        Assert.assertEquals(1, consumer.mNumSpeedSamples);
+        Assert.assertEquals(0, queue.size());
+        Assert.assertEquals(3, queue.getNumDrained());
+        Assert.assertEquals(30, queue.getMaximumLatencyNanos());
+        Assert.assertEquals(20, queue.getAverageLatencyNanos());
+        Assert.assertEquals(0, queue.drain(consumer, 50));
+    }
+
+    /**
+     * Test that readings offered to a full queue are dropped and counted, and that the queue
+     * wraps around once drained.
+     */
+    public void testOverflow() {
+        SensorSampleQueue queue = new SensorSampleQueue(4);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(queue.offer(SensorSampleQueue.TYPE_STEPS, i, 1f));
+        }
+        Assert.assertFalse(queue.offer(SensorSampleQueue.TYPE_STEPS, 4, 1f));
+        Assert.assertEquals(1, queue.getNumOverflowed());
+
+        CheckingConsumer consumer = new CheckingConsumer();
+        Assert.assertEquals(4, queue.drain(consumer, 4));
+        for (int i = 5; i < 8; i++) {
+            Assert.assertTrue(queue.offer(SensorSampleQueue.TYPE_STEPS, i, 1f));
+        }
+        Assert.assertEquals(3, queue.drain(consumer, 8));
+        Assert.assertEquals(7, consumer.mTotalSteps);
+    }
+
+    /**
+     * Test that the capacity must be a power of two.
+     */
+    public void testCapacity() {
+        try {
+            new SensorSampleQueue(6);
+            Assert.fail("Expected IllegalArgumentException.");
+        } catch (IllegalArgumentException e) {
+            // Expected.
+        }
+        Assert.assertEquals(16, new SensorSampleQueue(16).getCapacity());
+    }
+
+    /**
+     * Test that every reading offered on one thread is drained, in order, on another.
+     */
+    public void testProducerThread() throws InterruptedException {
+        final SensorSampleQueue queue = new SensorSampleQueue(64);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < NUM_THREADED_SAMPLES; i++) {
+                    while (!queue.offer(SensorSampleQueue.TYPE_STEPS, i, 1f)) {
+                        Thread.yield();
+                    }
+                }
+            }
+        });
+        producer.start();
+
+        CheckingConsumer consumer = new CheckingConsumer();
+        while (consumer.mTotalSteps < NUM_THREADED_SAMPLES) {
+            queue.drain(consumer, 0);
+            // Let the producer run, so that the threads take turns many times.
+            Thread.yield();
+        }
+        producer.join();
+        Assert.assertEquals(NUM_THREADED_SAMPLES, consumer.mTotalSteps);
+        Assert.assertEquals(NUM_THREADED_SAMPLES, queue.getNumDrained());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.SpeedFusionFilter;
+import com.google.fpl.gim.examplegame.utils.Utils;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the SpeedFusionFilter, on short recorded traces of step and speed readings.
+ */
+public class SpeedFusionFilterTest extends TestCase {
+
+    private static final long SECOND_NANOS = Utils.secondsToNanos(1f);
+
+    private static final float PROCESS_VARIANCE = 0.05f;
+    private static final float CADENCE_VARIANCE = 0.25f;
+    private static final float SENSOR_VARIANCE = 0.09f;
+
+    // A recorded trace of a runner just over a pace of 3.35 m/s: each row is the second of the
+    // reading, the speed worked out from the cadence, and the speed from the sensor. The two
+    // sources disagree, and the sensor reading is noisy.
+    private static final float[][] RUNNER_TRACE = {
+            {1, 3.9f, 3.2f}, {2, 3.8f, 3.6f}, {3, 3.9f, 3.1f}, {4, 3.7f, 3.7f},
+            {5, 3.8f, 3.2f}, {6, 3.9f, 3.5f}, {7, 3.8f, 3.1f}, {8, 3.8f, 3.8f},
+            {9, 3.7f, 3.2f}, {10, 3.9f, 3.6f}, {11, 3.8f, 3.1f}, {12, 3.8f, 3.7f},
+            {13, 3.9f, 3.2f}, {14, 3.8f, 3.6f}, {15, 3.7f, 3.1f}, {16, 3.8f, 3.7f},
+    };
+    private static final float CHALLENGE_SPEED = 3.35f;
+
+    private SpeedFusionFilter mFilter;
+
+    @Override
+    public void setUp() {
+        mFilter = new SpeedFusionFilter(PROCESS_VARIANCE);
+    }
+
+    /**
+     * Test that the first measurement is taken as it is, and that there is no estimate after a
+     * reset.
+     */
+    public void testFirstMeasurement() {
+        Assert.assertFalse(mFilter.hasEstimate());
+        Assert.assertEquals(0f, mFilter.getSpeedMetersPerSecond());
+        Assert.assertEquals(3f, mFilter.addMeasurement(0, 3f, SENSOR_VARIANCE));
+        Assert.assertTrue(mFilter.hasEstimate());
+        mFilter.reset();
+        Assert.assertFalse(mFilter.hasEstimate());
+        Assert.assertEquals(5f, mFilter.addMeasurement(SECOND_NANOS, 5f, CADENCE_VARIANCE));
+    }
+
+    /**
+     * Test that a measurement counts for more when it is more accurate.
+     */
+    public void testWeightsByAccuracy() {
+        SpeedFusionFilter other = new SpeedFusionFilter(PROCESS_VARIANCE);
+        mFilter.addMeasurement(0, 3f, CADENCE_VARIANCE);
+        other.addMeasurement(0, 3f, CADENCE_VARIANCE);
+
+        float accurate = mFilter.addMeasurement(SECOND_NANOS, 4f, SENSOR_VARIANCE);
+        float rough = other.addMeasurement(SECOND_NANOS, 4f, CADENCE_VARIANCE);
+        Assert.assertTrue(accurate > rough);
+        Assert.assertTrue(rough > 3f);
+        Assert.assertTrue(accurate < 4f);
+    }
+
+    /**
+     * Test that a measurement counts for more the longer it has been since the last one.
+     */
+    public void testWeightsByFreshness() {
+        SpeedFusionFilter other = new SpeedFusionFilter(PROCESS_VARIANCE);
+        for (int second = 0; second < 10; second++) {
+            mFilter.addMeasurement(second * SECOND_NANOS, 3f, SENSOR_VARIANCE);
+            other.addMeasurement(second * SECOND_NANOS, 3f, SENSOR_VARIANCE);
+        }
+
+        float soon = mFilter.addMeasurement(10 * SECOND_NANOS, 4f, SENSOR_VARIANCE);
+        float late = other.addMeasurement(60 * SECOND_NANOS, 4f, SENSOR_VARIANCE);
+        Assert.assertTrue(late > soon);
+        Assert.assertTrue(late > 3.9f);
+        Assert.assertTrue(mFilter.getVariance() < SENSOR_VARIANCE);
+    }
+
+    /**
+     * Test that on a recorded trace the combined speed stays between the two sources, and that it
+     * does not cross the challenge speed, although the sensor readings cross it again and again.
+     */
+    public void testRecordedTrace() {
+        int numSensorCrossings = 0;
+        for (int i = 0; i < RUNNER_TRACE.length; i++) {
+            long nanos = (long) (RUNNER_TRACE[i][0] * SECOND_NANOS);
+            float cadenceSpeed = RUNNER_TRACE[i][1];
+            float sensorSpeed = RUNNER_TRACE[i][2];
+            mFilter.addMeasurement(nanos, cadenceSpeed, CADENCE_VARIANCE);
+            float speed = mFilter.addMeasurement(nanos + SECOND_NANOS / 2, sensorSpeed,
+                    SENSOR_VARIANCE);
+            if (i > 0 && (sensorSpeed < CHALLENGE_SPEED)
+                    != (RUNNER_TRACE[i - 1][2] < CHALLENGE_SPEED)) {
+                numSensorCrossings++;
+            }
+            Assert.assertTrue(speed >= CHALLENGE_SPEED);
+            Assert.assertTrue(speed <= Math.max(cadenceSpeed, sensorSpeed));
+        }
+        Assert.assertTrue(numSensorCrossings > 10);
+    }
+}
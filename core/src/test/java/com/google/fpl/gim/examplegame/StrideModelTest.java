@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.StrideModel;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Tests for the StrideModel, which learns the stride length of a player at each cadence.
+ */
+public class StrideModelTest extends TestCase {
+
+    // 4 m/s at 180 steps per minute is a stride of 4.37 feet.
+    private static final float SPEED_METERS_PER_SECOND = 4f;
+    private static final float STEPS_PER_MINUTE = 180f;
+    private static final float STRIDE_FEET = 4.374f;
+
+    /**
+     * Test that a new model uses the default stride length, and is not calibrated.
+     */
+    public void testDefault() {
+        StrideModel model = new StrideModel();
+        Assert.assertEquals(StrideModel.DEFAULT_STRIDE_FEET, model.getStrideFeet(STEPS_PER_MINUTE));
+        Assert.assertFalse(model.isCalibrated(STEPS_PER_MINUTE));
+    }
+
+    /**
+     * Test that the model moves from the default to the learned stride length, and is calibrated
+     * after enough readings.
+     */
+    public void testLearns() {
+        StrideModel model = new StrideModel();
+        Assert.assertTrue(model.learn(STEPS_PER_MINUTE, SPEED_METERS_PER_SECOND));
+        float strideFeet = model.getStrideFeet(STEPS_PER_MINUTE);
+        Assert.assertTrue(strideFeet < StrideModel.DEFAULT_STRIDE_FEET);
+        Assert.assertTrue(strideFeet > STRIDE_FEET);
+
+        for (int i = 0; i < 20; i++) {
+            model.learn(STEPS_PER_MINUTE, SPEED_METERS_PER_SECOND);
+        }
+        Assert.assertTrue(model.isCalibrated(STEPS_PER_MINUTE));
+        Assert.assertEquals(STRIDE_FEET, model.getStrideFeet(STEPS_PER_MINUTE), 0.01f);
+        Assert.assertEquals(21, model.getNumReadingsLearned());
+
+        // A cadence that has not been learned borrows from the nearest one that has.
+        Assert.assertFalse(model.isCalibrated(120f));
+        Assert.assertEquals(STRIDE_FEET, model.getStrideFeet(120f), 0.01f);
+    }
+
+    /**
+     * Test that readings which imply an impossible stride length are not learned.
+     */
+    public void testRejectsImplausibleReadings() {
+        StrideModel model = new StrideModel();
+        Assert.assertFalse(model.learn(0f, SPEED_METERS_PER_SECOND));
+        Assert.assertFalse(model.learn(STEPS_PER_MINUTE, 0f));
+        // Moving fast in a vehicle, while a few steps are counted.
+        Assert.assertFalse(model.learn(60f, 20f));
+        Assert.assertEquals(0, model.getNumReadingsLearned());
+        Assert.assertEquals(StrideModel.DEFAULT_STRIDE_FEET, model.getStrideFeet(60f));
+    }
+
+    /**
+     * Test that a model read back is the same as the one written, and that a corrupt model is not
+     * read.
+     */
+    public void testWriteAndRead() throws IOException {
+        StrideModel model = new StrideModel();
+        for (int i = 0; i < 20; i++) {
+            model.learn(STEPS_PER_MINUTE, SPEED_METERS_PER_SECOND);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        model.write(new DataOutputStream(bytes));
+        byte[] written = bytes.toByteArray();
+
+        StrideModel read = StrideModel.read(new DataInputStream(new ByteArrayInputStream(written)));
+        Assert.assertTrue(read.isCalibrated(STEPS_PER_MINUTE));
+        Assert.assertEquals(model.getStrideFeet(STEPS_PER_MINUTE),
+                read.getStrideFeet(STEPS_PER_MINUTE));
+
+        written[4] = 99;
+        try {
+            StrideModel.read(new DataInputStream(new ByteArrayInputStream(written)));
+            Assert.fail("A model of another version was read.");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 Google Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.fpl.gim.examplegame;
+
+import com.google.fpl.gim.examplegame.utils.TimerWheel;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Tests for the TimerWheel.
+ */
+public class TimerWheelTest extends TestCase {
+
+    private static final long START_NANOS = 5000L;
+    private static final long SECOND_NANOS = 1000000000L;
+    private static final long HOUR_NANOS = 3600L * SECOND_NANOS;
+
+    /**
+     * A timer that records when it expired.
+     */
+    private static class RecordingTimer extends TimerWheel.Timer {
+        long mExpiredAtNanos = -1;
+
+        @Override
+        protected void onExpired(long nowNanos) {
+            Assert.assertEquals(-1, mExpiredAtNanos);
+            mExpiredAtNanos = nowNanos;
+        }
+    }
+
+    /**
+     * @return The time of the first tick at or after the deadline.
+     */
+    private static long roundUpToTick(long deadlineNanos) {
+        long ticks = (deadlineNanos - START_NANOS + TimerWheel.TICK_NANOS - 1)
+                / TimerWheel.TICK_NANOS;
+        return START_NANOS + ticks * TimerWheel.TICK_NANOS;
+    }
+
+    /**
+     * Test that timers expire in order, on the tick of their deadline.
+     */
+    public void testTimersExpireInOrder() {
+        TimerWheel wheel = new TimerWheel(START_NANOS);
+        final ArrayList<String> expired = new ArrayList<>();
+        long[] delays = {SECOND_NANOS, 3 * TimerWheel.TICK_NANOS, 10 * 60 * SECOND_NANOS, 0};
+        String[] names = {"second", "ticks", "minutes", "now"};
+        for (int i = 0; i < delays.length; i++) {
+            final String name = names[i];
+            wheel.schedule(new TimerWheel.Timer() {
+                @Override
+                protected void onExpired(long nowNanos) {
+                    expired.add(name);
+                }
+            }, START_NANOS + delays[i]);
+        }
+
+        Assert.assertEquals(START_NANOS, wheel.getNextDeadlineNanos());
+        wheel.advance(START_NANOS + 20 * 60 * SECOND_NANOS);
+        Assert.assertEquals("[now, ticks, second, minutes]", expired.toString());
+        Assert.assertEquals(0, wheel.getNumTimers());
+        Assert.assertEquals(TimerWheel.NO_DEADLINE, wheel.getNextDeadlineNanos());
+    }
+
+    /**
+     * Test that cancelled and rescheduled timers do not expire at their old deadline.
+     */
+    public void testCancelAndReschedule() {
+        TimerWheel wheel = new TimerWheel(START_NANOS);
+        RecordingTimer cancelled = new RecordingTimer();
+        RecordingTimer rescheduled = new RecordingTimer();
+        wheel.schedule(cancelled, START_NANOS + SECOND_NANOS);
+        wheel.schedule(rescheduled, START_NANOS + SECOND_NANOS);
+        wheel.cancel(cancelled);
+        wheel.schedule(rescheduled, START_NANOS + 2 * SECOND_NANOS);
+        Assert.assertFalse(cancelled.isScheduled());
+        Assert.assertEquals(1, wheel.getNumTimers());
+
+        wheel.advance(START_NANOS + SECOND_NANOS);
+        Assert.assertEquals(-1, rescheduled.mExpiredAtNanos);
+        Assert.assertEquals(START_NANOS + 2 * SECOND_NANOS, wheel.getNextDeadlineNanos());
+        wheel.advance(START_NANOS + 2 * SECOND_NANOS);
+        Assert.assertEquals(START_NANOS + 2 * SECOND_NANOS, rescheduled.mExpiredAtNanos);
+        Assert.assertEquals(-1, cancelled.mExpiredAtNanos);
+    }
+
+    /**
+     * Test that a timer may schedule itself, or cancel another timer due in the same tick.
+     */
+    public void testScheduleAndCancelWhileExpiring() {
+        final TimerWheel wheel = new TimerWheel(START_NANOS);
+        final int[] numExpiries = {0};
+        TimerWheel.Timer repeating = new TimerWheel.Timer() {
+            @Override
+            protected void onExpired(long nowNanos) {
+                numExpiries[0]++;
+                if (numExpiries[0] < 3) {
+                    wheel.schedule(this, getDeadlineNanos() + SECOND_NANOS);
+                }
+            }
+        };
+        wheel.schedule(repeating, START_NANOS + SECOND_NANOS);
+
+        // Whichever of the two expires first cancels the other.
+        final RecordingTimer[] rivals = new RecordingTimer[2];
+        for (int i = 0; i < rivals.length; i++) {
+            final int other = 1 - i;
+            rivals[i] = new RecordingTimer() {
+                @Override
+                protected void onExpired(long nowNanos) {
+                    super.onExpired(nowNanos);
+                    wheel.cancel(rivals[other]);
+                }
+            };
+            wheel.schedule(rivals[i], START_NANOS + SECOND_NANOS);
+        }
+
+        // One long advance expires every repeat that falls within it.
+        wheel.advance(START_NANOS + 10 * SECOND_NANOS);
+        Assert.assertEquals(3, numExpiries[0]);
+        Assert.assertTrue((rivals[0].mExpiredAtNanos == -1) != (rivals[1].mExpiredAtNanos == -1));
+        Assert.assertEquals(0, wheel.getNumTimers());
+    }
+
+    /**
+     * Test the wheel against a plain list of deadlines, over deadlines from a tick to beyond the
+     * span of the wheel.
+     */
+    public void testMatchesListOfDeadlines() {
+        Random random = new Random(1);
+        TimerWheel wheel = new TimerWheel(START_NANOS);
+        ArrayList<RecordingTimer> timers = new ArrayList<>();
+        long nowNanos = START_NANOS;
+        long[] ranges = {64 * TimerWheel.TICK_NANOS, 10 * SECOND_NANOS, HOUR_NANOS,
+                12 * HOUR_NANOS};
+
+        for (int step = 0; step < 2000; step++) {
+            int action = random.nextInt(10);
+            if (action < 5) {
+                RecordingTimer timer = new RecordingTimer();
+                long range = ranges[random.nextInt(ranges.length)];
+                wheel.schedule(timer, nowNanos + (long) (random.nextDouble() * range));
+                timers.add(timer);
+            } else if (action < 7 && !timers.isEmpty()) {
+                RecordingTimer timer = timers.get(random.nextInt(timers.size()));
+                wheel.cancel(timer);
+            } else {
+                long expectedNextNanos = TimerWheel.NO_DEADLINE;
+                for (RecordingTimer timer : timers) {
+                    if (timer.isScheduled()) {
+                        expectedNextNanos = Math.min(expectedNextNanos,
+                                Math.max(roundUpToTick(timer.getDeadlineNanos()),
+                                        roundUpToTick(nowNanos)));
+                    }
+                }
+                Assert.assertEquals(expectedNextNanos, wheel.getNextDeadlineNanos());
+
+                long range = ranges[random.nextInt(ranges.length)];
+                nowNanos += (long) (random.nextDouble() * range);
+                wheel.advance(nowNanos);
+            }
+
+            int numScheduled = 0;
+            for (RecordingTimer timer : timers) {
+                if (timer.isScheduled()) {
+                    numScheduled++;
+                    Assert.assertTrue(roundUpToTick(timer.getDeadlineNanos()) > nowNanos);
+                } else if (timer.mExpiredAtNanos != -1) {
+                    Assert.assertTrue(timer.mExpiredAtNanos >= timer.getDeadlineNanos());
+                }
+            }
+            Assert.assertEquals(numScheduled, wheel.getNumTimers());
+        }
+    }
+}